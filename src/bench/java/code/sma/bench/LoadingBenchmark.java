@@ -0,0 +1,82 @@
+package code.sma.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import code.sma.core.impl.CSRMatrix;
+import code.sma.util.MatrixIOUtil;
+import code.sma.util.TextChunkParser;
+
+/**
+ * Benchmarks of loading the user-grouped training data,
+ * i.e., parsing line by line, parsing chunks in parallel, and mapping the binary columns.
+ *
+ * @author Chao.Chen
+ * @version $Id: LoadingBenchmark.java, v 0.1 2017年6月26日 上午11:20:46 Chao.Chen Exp $
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadingBenchmark {
+    /** number of users, each of which has 50 ratings*/
+    @Param({ "10000" })
+    public int               userCount;
+
+    private SyntheticRatings ratings;
+    private File             textFile;
+    private File             binFile;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        ratings = new SyntheticRatings(userCount, 3000, 50, 20170626L);
+
+        textFile = File.createTempFile("ratings", ".txt");
+        ratings.write(textFile);
+
+        binFile = new File(textFile.getPath() + MatrixIOUtil.CSR_BINARY_SUFFIX);
+        MatrixIOUtil.writeBinary(ratings.csrMatrix(), binFile.getPath());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        textFile.delete();
+        binFile.delete();
+    }
+
+    @Benchmark
+    public CSRMatrix loadNext() {
+        CSRMatrix csm = new CSRMatrix(userCount, ratings.getNum_val());
+        for (String line : ratings.getLines()) {
+            csm.loadNext(line);
+        }
+        return csm;
+    }
+
+    @Benchmark
+    public CSRMatrix parseChunks() throws IOException {
+        return TextChunkParser.parseCSRMatrix(textFile.getPath());
+    }
+
+    @Benchmark
+    public CSRMatrix loadBinary() {
+        return MatrixIOUtil.loadBinaryCSRMatrix(binFile.getPath());
+    }
+}
@@ -0,0 +1,140 @@
+package code.sma.bench;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+import code.sma.core.impl.CSRMatrix;
+import code.sma.main.Configures;
+
+/**
+ * Synthetic rating generator used by the benchmarks, where the popularity of items follows
+ * a Zipf-like distribution and each user rates the same number of distinct items.
+ * The ratings are generated in the user-grouped text format, i.e.,
+ * <tt>label 0 1 n uId:1 iId:rating ...</tt>, so that they go through the same loaders as real data.
+ *
+ * @author Chao.Chen
+ * @version $Id: SyntheticRatings.java, v 0.1 2017年6月26日 上午10:12:08 Chao.Chen Exp $
+ */
+public final class SyntheticRatings {
+    /** number of users*/
+    private final int      userCount;
+    /** number of items*/
+    private final int      itemCount;
+    /** number of ratings of every user*/
+    private final int      ratingsPerUser;
+    /** the user-grouped lines*/
+    private final String[] lines;
+
+    /**
+     * generate the ratings in a deterministic way
+     *
+     * @param userCount         number of users
+     * @param itemCount         number of items
+     * @param ratingsPerUser    number of ratings of every user
+     * @param seed              the random seed
+     */
+    public SyntheticRatings(int userCount, int itemCount, int ratingsPerUser, long seed) {
+        assert ratingsPerUser <= itemCount : "Users cannot rate more items than existing ones.";
+
+        this.userCount = userCount;
+        this.itemCount = itemCount;
+        this.ratingsPerUser = ratingsPerUser;
+        this.lines = new String[userCount];
+
+        Random ran = new Random(seed);
+        boolean[] rated = new boolean[itemCount];
+        int[] items = new int[ratingsPerUser];
+        StringBuilder line = new StringBuilder();
+        for (int u = 0; u < userCount; u++) {
+            // popular items have small ids
+            for (int n = 0; n < ratingsPerUser; n++) {
+                int i;
+                do {
+                    i = (int) (itemCount * Math.pow(ran.nextDouble(), 2.0d));
+                } while (rated[i]);
+                rated[i] = true;
+                items[n] = i;
+            }
+
+            line.setLength(0);
+            line.append(u % 5 + 1).append(" 0 1 ").append(ratingsPerUser).append(' ').append(u)
+                .append(":1");
+            for (int n = 0; n < ratingsPerUser; n++) {
+                line.append(' ').append(items[n]).append(':').append(ran.nextInt(5) + 1);
+                rated[items[n]] = false;
+            }
+            lines[u] = line.toString();
+        }
+    }
+
+    /**
+     * build the CSR matrix through the text loader
+     *
+     * @return  the CSR matrix containing all ratings
+     */
+    public CSRMatrix csrMatrix() {
+        CSRMatrix csm = new CSRMatrix(userCount, userCount * (ratingsPerUser + 1));
+        for (String line : lines) {
+            csm.loadNext(line);
+        }
+        return csm;
+    }
+
+    /**
+     * write the ratings into the given file
+     *
+     * @param file  the file to write
+     * @throws IOException
+     */
+    public void write(File file) throws IOException {
+        BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+        try {
+            for (String line : lines) {
+                writer.write(line);
+                writer.newLine();
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * the configures required by the runtime environment
+     *
+     * @param featureCount  number of latent factors
+     * @return              the configures
+     */
+    public Configures configures(int featureCount) {
+        Configures conf = new Configures();
+        conf.setDouble("USER_COUNT_VALUE", (double) userCount);
+        conf.setDouble("ITEM_COUNT_VALUE", (double) itemCount);
+        conf.setDouble("MAX_RATING_VALUE", 5.0d);
+        conf.setDouble("MIN_RATING_VALUE", 1.0d);
+        conf.setDouble("THREAD_NUMBER_VALUE", 1.0d);
+        conf.setDouble("FEATURE_COUNT_VALUE", (double) featureCount);
+        conf.setDouble("LEARNING_RATE_VALUE", 0.01d);
+        conf.setDouble("REGULAIZED_VALUE", 0.01d);
+        conf.setDouble("MAX_ITERATION_VALUE", 1.0d);
+        conf.put("VERBOSE_BOOLEAN", false);
+        return conf;
+    }
+
+    public String[] getLines() {
+        return lines;
+    }
+
+    public int getUserCount() {
+        return userCount;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    public int getNum_val() {
+        return userCount * (ratingsPerUser + 1);
+    }
+}
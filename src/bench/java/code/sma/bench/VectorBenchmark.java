@@ -0,0 +1,134 @@
+package code.sma.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import code.sma.core.impl.DenseVector;
+import code.sma.core.impl.SparseVector;
+import code.sma.core.linalg.Blas;
+import code.sma.core.linalg.Cholesky;
+import code.sma.recmmd.Loss;
+import code.sma.recmmd.stats.Accumulator;
+import code.sma.recmmd.stats.StatsOperator;
+
+/**
+ * Benchmarks of the vector kernels used in every update,
+ * i.e., inner-products of dense and sparse vectors, accumulating the differences,
+ * and solving the normal equations of least squares.
+ *
+ * @author Chao.Chen
+ * @version $Id: VectorBenchmark.java, v 0.1 2017年6月26日 上午10:45:31 Chao.Chen Exp $
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VectorBenchmark {
+    /** number of latent factors*/
+    @Param({ "20", "100" })
+    public int           featureCount;
+
+    private DenseVector  ufactor;
+    private DenseVector  ifactor;
+    private SparseVector usparse;
+    private SparseVector isparse;
+    /** accumulator with 3 calculators over 1M values*/
+    private Accumulator  acumltor;
+    /** accumulator with 100K calculators over the latent factors*/
+    private Accumulator  factorAcc;
+    /** 128 rated factors in one panel, K-by-128*/
+    private double[]     panel;
+    private double[]     rates;
+    private double[]     gram;
+    private double[]     rhs;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ufactor = new DenseVector(featureCount, true);
+        ifactor = new DenseVector(featureCount, true);
+
+        Random ran = new Random(20170626L);
+        usparse = new SparseVector(featureCount * 10);
+        isparse = new SparseVector(featureCount * 10);
+        for (int n = 0; n < featureCount; n++) {
+            usparse.setValue(ran.nextInt(featureCount * 10), ran.nextFloat());
+            isparse.setValue(ran.nextInt(featureCount * 10), ran.nextFloat());
+        }
+
+        acumltor = new Accumulator(3, 1000 * 1000);
+        factorAcc = new Accumulator(100 * 1000, featureCount);
+        for (int accId = 0; accId < 100 * 1000; accId++) {
+            for (int n = 0; n < featureCount; n++) {
+                factorAcc.update(accId, n, ran.nextFloat());
+            }
+        }
+
+        panel = new double[featureCount * 128];
+        rates = new double[128];
+        gram = new double[featureCount * featureCount];
+        rhs = new double[featureCount];
+        for (int p = 0; p < panel.length; p++) {
+            panel[p] = ran.nextGaussian();
+        }
+        for (int p = 0; p < 128; p++) {
+            rates[p] = 1 + ran.nextInt(5);
+        }
+    }
+
+    @Benchmark
+    public double denseInnerProduct() {
+        return ufactor.innerProduct(ifactor);
+    }
+
+    @Benchmark
+    public double sparseInnerProduct() {
+        return usparse.innerProduct(isparse);
+    }
+
+    @Benchmark
+    public double statsInnerProduct() {
+        return StatsOperator.innerProduct(ufactor, ifactor, Loss.LOSS_RMSE, 3.0d, acumltor);
+    }
+
+    @Benchmark
+    public void accumulatorTraverse() {
+        acumltor.traverse(0.5d);
+    }
+
+    @Benchmark
+    public double accumulatorRm() {
+        return factorAcc.rm();
+    }
+
+    @Benchmark
+    public double normalEquation() {
+        int K = featureCount;
+        for (int a = 0; a < K * K; a++) {
+            gram[a] = 0.0d;
+        }
+        Blas.syrk(K, 128, 1.0d, panel, gram);
+        Blas.gemv(K, 128, 1.0d, panel, rates, 0.0d, rhs);
+        for (int a = 0; a < K; a++) {
+            gram[a * K + a] += 0.1d;
+        }
+
+        Cholesky.factor(gram, K);
+        Cholesky.solve(gram, K, rhs);
+        return rhs[0];
+    }
+}
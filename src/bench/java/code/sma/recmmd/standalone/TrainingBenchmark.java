@@ -0,0 +1,114 @@
+package code.sma.recmmd.standalone;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import code.sma.bench.SyntheticRatings;
+import code.sma.core.AbstractIterator;
+import code.sma.core.DataElem;
+import code.sma.core.impl.CSRMatrix;
+import code.sma.main.Configures;
+import code.sma.plugin.Plugin;
+
+/**
+ * Benchmarks of the training and prediction hot paths of matrix factorization,
+ * placed in the same package as the models to reach their protected update methods.
+ * One operation of the training benchmarks is one epoch over the synthetic ratings.
+ *
+ * @author Chao.Chen
+ * @version $Id: TrainingBenchmark.java, v 0.1 2017年6月26日 下午2:03:17 Chao.Chen Exp $
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrainingBenchmark {
+    /** number of latent factors*/
+    @Param({ "20" })
+    public int        featureCount;
+    /** number of users, each of which has 50 ratings*/
+    @Param({ "10000" })
+    public int        userCount;
+
+    private RegSVD    regSVD;
+    private StableMA  stableMA;
+
+    /** the entries to predict*/
+    private int[]     users;
+    private int[]     items;
+    private int       cursor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SyntheticRatings ratings = new SyntheticRatings(userCount, 3000, 50, 20170626L);
+        CSRMatrix train = ratings.csrMatrix();
+        Configures conf = ratings.configures(featureCount);
+
+        regSVD = new RegSVD(conf, null);
+        regSVD.prepare_runtimes(train, null);
+        regSVD.prepare_workers();
+
+        // stable MA requires an auxiliary model to choose the hard-predictive subsets
+        RegSVD auxRec = new RegSVD(conf, null);
+        auxRec.buildModel(train, null);
+
+        Configures smaConf = new Configures(conf);
+        smaConf.setDouble("NUMBER_HARD_PREDICTION_SET_VALUE", 3.0d);
+        Map<String, Plugin> plugins = new HashMap<String, Plugin>();
+        plugins.put("AUXILIARY_RCMMD_MODEL", auxRec);
+        stableMA = new StableMA(smaConf, plugins);
+        stableMA.prepare_runtimes(train, null);
+        stableMA.prepare_workers();
+
+        Random ran = new Random(20170626L);
+        users = new int[4096];
+        items = new int[4096];
+        for (int n = 0; n < users.length; n++) {
+            users[n] = ran.nextInt(ratings.getUserCount());
+            items[n] = ran.nextInt(ratings.getItemCount());
+        }
+    }
+
+    @Benchmark
+    public double regSVDUpdateEach() {
+        double sumErr = 0.0d;
+        int rid = 0;
+
+        AbstractIterator iDataElem = regSVD.runtimes.itrain.refresh();
+        while (iDataElem.hasNext()) {
+            DataElem e = iDataElem.next();
+            sumErr += regSVD.update_each(e, rid, 0);
+            rid += e.getNum_ifacotr();
+        }
+        return sumErr;
+    }
+
+    @Benchmark
+    public double stableMAUpdateInner() {
+        stableMA.update_inner(stableMA.runtimes.itrain);
+        return stableMA.runtimes.currErr;
+    }
+
+    @Benchmark
+    public double predict() {
+        int n = cursor++ & (users.length - 1);
+        return regSVD.predict(users[n], items[n]);
+    }
+}
@@ -4,13 +4,18 @@
  */
 package code.sma.clustering;
 
-import org.apache.commons.math3.distribution.UniformIntegerDistribution;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
 import org.apache.log4j.Logger;
 
 import code.sma.core.impl.SparseMatrix;
 import code.sma.core.impl.SparseVector;
 import code.sma.util.LoggerDefineConstant;
 import code.sma.util.LoggerUtil;
+import code.sma.util.RandomUtil;
+import code.sma.util.SplitRandom;
 
 /**
  * Co-cluster method 
@@ -27,25 +32,32 @@ public final class CoclusterUtil {
     //      Constraints
     //===========================================
     /** Constraint 1: preserve E[Z|U*], E[Z|V*] */
-    public final static int     C_1    = 1;
+    public final static int           C_1      = 1;
 
     /** Constraint 2: preserve E[Z|U*,V*] */
-    public final static int     C_2    = 2;
+    public final static int           C_2      = 2;
 
     /** Constraint 3: preserve E[Z|U*,V*], E[Z|U] */
-    public final static int     C_3    = 3;
+    public final static int           C_3      = 3;
 
     /** Constraint 4: preserve E[Z|U*,V*], E[Z|V] */
-    public final static int     C_4    = 4;
+    public final static int           C_4      = 4;
 
     /** Constraint 5: preserve E[Z|U*,V*], E[Z|U*,V], E[Z|U,V*] */
-    public final static int     C_5    = 5;
+    public final static int           C_5      = 5;
 
     /** Constraint 6: preserve E[Z|U,V*], E[Z|U*,V] */
-    public final static int     C_6    = 6;
+    public final static int           C_6      = 6;
+
+    /** the pool reassigning rows and columns */
+    private final static ForkJoinPool POOL     = new ForkJoinPool();
+
+    /** the number of reassigning tasks */
+    private final static int          NUM_TASK = POOL.getParallelism();
 
     /** logger */
-    private final static Logger logger = Logger.getLogger(LoggerDefineConstant.SERVICE_CORE);
+    private final static Logger       logger   = Logger
+        .getLogger(LoggerDefineConstant.SERVICE_CORE);
 
     /**
      * forbide construction
@@ -55,8 +67,9 @@ public final class CoclusterUtil {
     }
 
     /**
-     * cocolustering the matrix, while we assume the missing value comply
-     * with the distribution of observations.
+     * cocolustering the matrix with the conjugate assumption, where the conditional 
+     * expectations are computed in a single pass over the nonzeros, 
+     * and rows (columns) are reassigned in parallel.
      * 
      * @param points        the matrix contains the data
      * @param K             the number of row clusters
@@ -77,6 +90,13 @@ public final class CoclusterUtil {
         if (rowCount < K || colCount < L) {
             throw new RuntimeException("Number of samples is less than the number of classes.");
         }
+        if (dtncConst != Distance.IW && dtncConst != Distance.EW) {
+            throw new RuntimeException("No Divergence is choosed! ");
+        }
+
+        //the nonzeros in row-major and column-major order
+        CompressedMatrix rows = CompressedMatrix.rowsOf(points);
+        CompressedMatrix cols = CompressedMatrix.colsOf(points);
 
         //make a initial division
         Cluster[] rowCluster = new Cluster[K];
@@ -88,37 +108,36 @@ public final class CoclusterUtil {
         initialCluster(colCluster, colAssigmnt);
 
         //conditional expectation
-        double[][] E_Uc_Vc = new double[K][L];
-        double[][] E_U_Vc = new double[rowCount][L];
-        double[][] E_Uc_V = new double[K][colCount];
-        double[] E_U = new double[rowCount];
-        double[] E_Uc = new double[K];
-        double[] E_V = new double[colCount];
-        double[] E_Vc = new double[L];
-        double E = points.average();
-        comConExpectationAsConjugateDist(points, K, L, rowCluster, colCluster, E_Uc_Vc, E_U, E_Uc,
-            E_V, E_Vc, E_U_Vc, E_Uc_V);
+        Expectations expt = new Expectations(rowCount, colCount, K, L, points.average(),
+            constraint, dtncConst);
+        expt.compute(rows, rowAssigmnt, colAssigmnt);
 
         int round = 0;
         while (round < maxIteration) {
-            boolean isChanged = false;
             double err = 0.0;
             round++;
 
             //update row cluster
-            err = updateRowCluster(points, K, L, rowCluster, colCluster, rowAssigmnt, colAssigmnt,
-                constraint, dtncConst, isChanged, E_Uc_Vc, E_U, E_Uc, E_V, E_Vc, E_U_Vc, E_Uc_V, E);
+            err = POOL.invoke(new AssignTask(rows, expt, rowAssigmnt, colAssigmnt, true, null, 0,
+                NUM_TASK, NUM_TASK));
+            rebuildCluster(rows, rowCluster, rowAssigmnt);
             LoggerUtil.info(logger, round + "A:\t" + err);
 
-            //update column cluster
-            err = updateColCluster(points, K, L, rowCluster, colCluster, rowAssigmnt, colAssigmnt,
-                constraint, dtncConst, isChanged, E_Uc_Vc, E_U, E_Uc, E_V, E_Vc, E_U_Vc, E_Uc_V, E);
+            //update column cluster, where the initially empty ones stay empty under I-divergence
+            boolean[] emptyIndicator = new boolean[L];
+            if (dtncConst == Distance.IW) {
+                for (int l = 0; l < L; l++) {
+                    emptyIndicator[l] = colCluster[l].isEmpty();
+                }
+            }
+            err = POOL.invoke(new AssignTask(cols, expt, colAssigmnt, rowAssigmnt, false,
+                emptyIndicator, 0, NUM_TASK, NUM_TASK));
+            rebuildCluster(cols, colCluster, colAssigmnt);
             LoggerUtil.info(logger, round + "B:\t" + err);
 
             //update Lagrange multipliers
             if (round < maxIteration) {
-                comConExpectationAsConjugateDist(points, K, L, rowCluster, colCluster, E_Uc_Vc, E_U,
-                    E_Uc, E_V, E_Vc, E_U_Vc, E_Uc_V);
+                expt.compute(rows, rowAssigmnt, colAssigmnt);
             }
 
         }
@@ -150,9 +169,9 @@ public final class CoclusterUtil {
             }
 
             // distribute umiformly
-            UniformIntegerDistribution ran = new UniformIntegerDistribution(0, dimension - 1);
+            SplitRandom ran = RandomUtil.current();
             for (int i = 0; i < sampleCount; i++) {
-                int local = ran.sample();
+                int local = ran.nextInt(dimension);
 
                 cluster[local].add(i);
                 assigmnt[i] = local;
@@ -171,640 +190,393 @@ public final class CoclusterUtil {
     }
 
     /**
-     * update row clusters w.r.t bragmen-divergence
+     * rebuild the clusters from the assigment, 
+     * where the samples without any nonzero are left out as before
      * 
-     * @param points        the matrix contains the data
-     * @param K             the number of row clusters
-     * @param L             the number of column clusters
-     * @param rowCluster    the row cluster
-     * @param colCluster    the column cluster
-     * @param rowAssigmnt   the assigment of row clusters
-     * @param colAssigmnt   the assigment of column clusters
-     * @param constraint    the constraints to retain
-     * @param divergence    the bragman divergence to compute
-     * @param isChanged     the pivot to indicate whether the cocluster changes
-     */
-    protected static double updateRowCluster(final SparseMatrix points, final int K, final int L,
-                                             final Cluster[] rowCluster, final Cluster[] colCluster,
-                                             final int[] rowAssigmnt, final int[] colAssigmnt,
-                                             final int constraint, final Distance dtncConst,
-                                             boolean isChanged, double[][] E_Uc_Vc, double[] E_U,
-                                             double[] E_Uc, double[] E_V, double[] E_Vc,
-                                             double[][] E_U_Vc, double[][] E_Uc_V, double E) {
-        switch (dtncConst) {
-            case IW:
-                return updateRowClusterForIDivergence(points, K, L, rowCluster, colCluster,
-                    rowAssigmnt, colAssigmnt, constraint, isChanged, E_Uc_Vc, E_U, E_Uc, E_V, E_Vc,
-                    E_U_Vc, E_Uc_V, E);
-            case EW:
-                return updateRowClusterForEuclidean(points, K, L, rowCluster, colCluster,
-                    rowAssigmnt, colAssigmnt, constraint, isChanged, E_Uc_Vc, E_U, E_Uc, E_V, E_Vc,
-                    E_U_Vc, E_Uc_V, E);
-            default:
-                throw new RuntimeException("No Divergence is choosed! ");
-        }
-    }
-
-    /**
-     * update row clusters, when the I-divergence is involved
-     * 
-     * @param points        the matrix contains the data
-     * @param K             the number of row clusters
-     * @param L             the number of column clusters
-     * @param rowCluster    the row cluster
-     * @param colCluster    the column cluster
-     * @param rowAssigmnt   the assigment of row clusters
-     * @param colAssigmnt   the assigment of column clusters
-     * @param constraint    the constraints to retain
-     * @param isChanged     the pivot to indicate whether the cocluster changes
+     * @param compressed    the nonzeros grouped by samples
+     * @param cluster       the clusters to rebuild
+     * @param assigmnt      the cluster assigment
      */
-    protected static double updateRowClusterForIDivergence(final SparseMatrix points, final int K,
-                                                           final int L, final Cluster[] rowCluster,
-                                                           final Cluster[] colCluster,
-                                                           final int[] rowAssigmnt,
-                                                           final int[] colAssigmnt,
-                                                           final int constraint, boolean isChanged,
-                                                           double[][] E_Uc_Vc, double[] E_U,
-                                                           double[] E_Uc, double[] E_V,
-                                                           double[] E_Vc, double[][] E_U_Vc,
-                                                           double[][] E_Uc_V, double E) {
-        int rowCount = points.shape()[0];
-
-        //clear current clusters
-        for (Cluster local : rowCluster) {
+    protected static void rebuildCluster(CompressedMatrix compressed, Cluster[] cluster,
+                                         int[] assigmnt) {
+        for (Cluster local : cluster) {
             local.clear();
         }
 
-        //update row clusters
-        double error = 0.0d;
-        for (int u = 0; u < rowCount; u++) {
-            SparseVector ZuReal = points.getRowRef(u);
-            int[] itemList = ZuReal.indexList();
-            if (itemList == null) {
-                continue;
-            }
-
-            // find minimium position
-            int pivot = -1;
-            double min = Double.MAX_VALUE;
-            for (int Uc = 0; Uc < K; Uc++) {
-                double iDivergence = 0.0d;
-                for (int v : itemList) {
-                    int Vc = colAssigmnt[v];
-
-                    double ZuvReal = ZuReal.floatValue(v);
-                    // compute Zuv w.r.t constraints
-                    double ZuvEstim = 0.0d;
-                    switch (constraint) {
-                        case C_1:
-                            ZuvEstim = E_Uc[Uc] * E_Vc[Vc] / E;
-                            break;
-                        case C_2:
-                            ZuvEstim = E_Uc_Vc[Uc][Vc];
-                            break;
-                        case C_3:
-                            ZuvEstim = E_Uc_Vc[Uc][Vc] * E_U[u] / E_Uc[Uc];
-                            break;
-                        case C_4:
-                            ZuvEstim = E_Uc_Vc[Uc][Vc] * E_U[v] / E_Uc[Vc];
-                            break;
-                        case C_5:
-                            ZuvEstim = E_Uc_Vc[Uc][Vc] * E_U[u] * E_V[v] / (E_Uc[Uc] * E_Vc[Vc]);
-                            break;
-                        case C_6:
-                            ZuvEstim = E_U_Vc[u][Vc] * E_Uc_V[Uc][v] / (E_Uc_Vc[Uc][Vc]);
-                            break;
-                        default:
-                            throw new RuntimeException("No contraints is choosed! ");
-                    }
-                    iDivergence += Distance.IW.divergence(ZuvReal, ZuvEstim);
-                }
-
-                if (min > iDivergence) {
-                    min = iDivergence;
-                    pivot = Uc;
-                }
-            }
-
-            // check whether changed
-            if (rowAssigmnt[u] != pivot) {
-                isChanged = true;
+        int[] ptr = compressed.ptr;
+        for (int s = 0; s < assigmnt.length; s++) {
+            if (ptr[s + 1] > ptr[s]) {
+                cluster[assigmnt[s]].add(s);
             }
-
-            // move to the position
-            rowCluster[pivot].add(u);
-            rowAssigmnt[u] = pivot;
-
-            // update errors
-            error += min;
         }
-        return error;
     }
 
     /**
-     * update row clusters, when the euclidean divergence is involved
+     * the nonzeros grouped by rows (or columns) in the compressed sparse form, 
+     * i.e., the nonzeros of sample s lie in [ptr[s], ptr[s+1])
      * 
-     * @param points        the matrix contains the data
-     * @param K             the number of row clusters
-     * @param L             the number of column clusters
-     * @param rowCluster    the row cluster
-     * @param colCluster    the column cluster
-     * @param rowAssigmnt   the assigment of row clusters
-     * @param colAssigmnt   the assigment of column clusters
-     * @param constraint    the constraints to retain
-     * @param isChanged     the pivot to indicate whether the cocluster changes
+     * @author Chao.Chen
+     * @version $Id: CoclusterUtil.java, v 0.1 2017年6月28日 上午10:05:37 Chao.Chen Exp $
      */
-    protected static double updateRowClusterForEuclidean(final SparseMatrix points, final int K,
-                                                         final int L, final Cluster[] rowCluster,
-                                                         final Cluster[] colCluster,
-                                                         final int[] rowAssigmnt,
-                                                         final int[] colAssigmnt,
-                                                         final int constraint, boolean isChanged,
-                                                         double[][] E_Uc_Vc, double[] E_U,
-                                                         double[] E_Uc, double[] E_V, double[] E_Vc,
-                                                         double[][] E_U_Vc, double[][] E_Uc_V,
-                                                         double E) {
-        int rowCount = points.shape()[0];
-
-        //clear current clusters
-        for (Cluster local : rowCluster) {
-            local.clear();
-        }
-
-        //update row clusters
-        double error = 0.0d;
-        for (int u = 0; u < rowCount; u++) {
-            SparseVector ZuReal = points.getRowRef(u);
-            int[] itemList = ZuReal.indexList();
-            if (itemList == null) {
-                continue;
+    protected static final class CompressedMatrix {
+        /** the offsets of samples*/
+        final int[]      ptr;
+        /** the indices in the other dimension*/
+        final int[]      indx;
+        /** the values*/
+        final float[]    vals;
+
+        private CompressedMatrix(SparseVector[] samples) {
+            ptr = new int[samples.length + 1];
+            for (int s = 0; s < samples.length; s++) {
+                ptr[s + 1] = ptr[s] + samples[s].itemCount();
             }
 
-            // find minimium position
-            int pivot = -1;
-            double min = Double.MAX_VALUE;
-            for (int Uc = 0; Uc < K; Uc++) {
-                double euDivergence = 0.0d;
-                for (int v : itemList) {
-                    int Vc = colAssigmnt[v];
-
-                    double ZuvReal = ZuReal.floatValue(v);
-                    // compute Zuv w.r.t constraints
-                    double ZuvEstim = 0.0d;
-                    switch (constraint) {
-                        case C_1:
-                            ZuvEstim = E_Uc[Uc] + E_Vc[Vc] - E;
-                            break;
-                        case C_2:
-                            ZuvEstim = E_Uc_Vc[Uc][Vc];
-                            break;
-                        case C_3:
-                            ZuvEstim = E_Uc_Vc[Uc][Vc] + E_U[u] - E_Uc[Uc];
-                            break;
-                        case C_4:
-                            ZuvEstim = E_Uc_Vc[Uc][Vc] + E_U[v] - E_Uc[Vc];
-                            break;
-                        case C_5:
-                            ZuvEstim = E_Uc_Vc[Uc][Vc] + E_U[u] + E_V[v] - E_Uc[Uc] - E_Vc[Vc];
-                            break;
-                        case C_6:
-                            ZuvEstim = E_U_Vc[u][Vc] + E_Uc_V[Uc][v] - E_Uc_Vc[Uc][Vc];
-                            break;
-                        default:
-                            throw new RuntimeException("No contraints is choosed! ");
-                    }
-                    euDivergence += Distance.EW.divergence(ZuvReal, ZuvEstim);
+            indx = new int[ptr[samples.length]];
+            vals = new float[ptr[samples.length]];
+            for (int s = 0; s < samples.length; s++) {
+                int[] indexList = samples[s].indexList();
+                if (indexList == null) {
+                    continue;
                 }
 
-                if (min > euDivergence) {
-                    min = euDivergence;
-                    pivot = Uc;
+                int p = ptr[s];
+                for (int j : indexList) {
+                    indx[p] = j;
+                    vals[p] = samples[s].floatValue(j);
+                    p++;
                 }
             }
+        }
 
-            // check whether changed
-            if (rowAssigmnt[u] != pivot) {
-                isChanged = true;
+        /**
+         * the nonzeros in row-major order
+         * 
+         * @param points    the matrix contains the data
+         * @return          the compressed rows
+         */
+        static CompressedMatrix rowsOf(SparseMatrix points) {
+            SparseVector[] samples = new SparseVector[points.shape()[0]];
+            for (int u = 0; u < samples.length; u++) {
+                samples[u] = points.getRowRef(u);
             }
-
-            // move to the position
-            rowCluster[pivot].add(u);
-            rowAssigmnt[u] = pivot;
-
-            // update errors
-            error += min;
+            return new CompressedMatrix(samples);
         }
 
-        return error;
-    }
-
-    protected static double updateColCluster(final SparseMatrix points, final int K, final int L,
-                                             final Cluster[] rowCluster, final Cluster[] colCluster,
-                                             final int[] rowAssigmnt, final int[] colAssigmnt,
-                                             final int constraint, final Distance dtncConst,
-                                             boolean isChanged, double[][] E_Uc_Vc, double[] E_U,
-                                             double[] E_Uc, double[] E_V, double[] E_Vc,
-                                             double[][] E_U_Vc, double[][] E_Uc_V, double E) {
-        switch (dtncConst) {
-            case IW:
-                return updateColClusterForIDivergence(points, K, L, rowCluster, colCluster,
-                    rowAssigmnt, colAssigmnt, constraint, isChanged, E_Uc_Vc, E_U, E_Uc, E_V, E_Vc,
-                    E_U_Vc, E_Uc_V, E);
-            case EW:
-                return updateColClusterForEuclidean(points, K, L, rowCluster, colCluster,
-                    rowAssigmnt, colAssigmnt, constraint, isChanged, E_Uc_Vc, E_U, E_Uc, E_V, E_Vc,
-                    E_U_Vc, E_Uc_V, E);
-            default:
-                throw new RuntimeException("No Divergence is choosed! ");
+        /**
+         * the nonzeros in column-major order
+         * 
+         * @param points    the matrix contains the data
+         * @return          the compressed columns
+         */
+        static CompressedMatrix colsOf(SparseMatrix points) {
+            SparseVector[] samples = new SparseVector[points.shape()[1]];
+            for (int v = 0; v < samples.length; v++) {
+                samples[v] = points.getColRef(v);
+            }
+            return new CompressedMatrix(samples);
         }
     }
 
     /**
-     * update column clusters, when the I-divergence is involved
+     * the conditional expectations preserved by the constraints, and the estimation w.r.t them
      * 
-     * @param points        the matrix contains the data
-     * @param K             the number of row clusters
-     * @param L             the number of column clusters
-     * @param rowCluster    the row cluster
-     * @param colCluster    the column cluster
-     * @param rowAssigmnt   the assigment of row clusters
-     * @param colAssigmnt   the assigment of column clusters
-     * @param constraint    the constraints to retain
-     * @param isChanged     the pivot to indicate whether the cocluster changes
+     * @author Chao.Chen
+     * @version $Id: CoclusterUtil.java, v 0.1 2017年6月28日 上午10:21:14 Chao.Chen Exp $
      */
-    protected static double updateColClusterForIDivergence(final SparseMatrix points, final int K,
-                                                           final int L, final Cluster[] rowCluster,
-                                                           final Cluster[] colCluster,
-                                                           final int[] rowAssigmnt,
-                                                           final int[] colAssigmnt,
-                                                           final int constraint, boolean isChanged,
-                                                           double[][] E_Uc_Vc, double[] E_U,
-                                                           double[] E_Uc, double[] E_V,
-                                                           double[] E_Vc, double[][] E_U_Vc,
-                                                           double[][] E_Uc_V, double E) {
-        int colCount = points.shape()[1];
-        //clear current clusters
-        boolean[] emptyIndicator = new boolean[L];
-        for (int i = 0; i < L; i++) {
-            if (colCluster[i].isEmpty()) {
-                emptyIndicator[i] = true;
-            } else {
-                colCluster[i].clear();
-                emptyIndicator[i] = false;
-            }
+    protected static final class Expectations {
+        /** the mean of cocluster*/
+        final double[][] E_Uc_Vc;
+        /** the mean of specified row in cocluster*/
+        final double[][] E_U_Vc;
+        /** the mean of specified column in cocluster*/
+        final double[][] E_Uc_V;
+        /** the mean of specified row*/
+        final double[]   E_U;
+        /** the mean of specified row cluster*/
+        final double[]   E_Uc;
+        /** the mean of specified column*/
+        final double[]   E_V;
+        /** the mean of specified column cluster*/
+        final double[]   E_Vc;
+        /** the mean of the entire matrix*/
+        final double     E;
+        /** the constraints to retain*/
+        final int        constraint;
+        /** the bragman divergence to compute*/
+        final Distance   dtncConst;
+
+        /** the number of nonzeros behind the means above*/
+        final int[][]    N_Uc_Vc;
+        final int[][]    N_U_Vc;
+        final int[][]    N_Uc_V;
+        final int[]      N_U;
+        final int[]      N_Uc;
+        final int[]      N_V;
+        final int[]      N_Vc;
+
+        Expectations(int rowCount, int colCount, int K, int L, double E, int constraint,
+                     Distance dtncConst) {
+            this.E_Uc_Vc = new double[K][L];
+            this.E_U_Vc = new double[rowCount][L];
+            this.E_Uc_V = new double[K][colCount];
+            this.E_U = new double[rowCount];
+            this.E_Uc = new double[K];
+            this.E_V = new double[colCount];
+            this.E_Vc = new double[L];
+            this.E = E;
+            this.constraint = constraint;
+            this.dtncConst = dtncConst;
+
+            this.N_Uc_Vc = new int[K][L];
+            this.N_U_Vc = new int[rowCount][L];
+            this.N_Uc_V = new int[K][colCount];
+            this.N_U = new int[rowCount];
+            this.N_Uc = new int[K];
+            this.N_V = new int[colCount];
+            this.N_Vc = new int[L];
         }
 
-        //update column clusters
-        double error = 0.0d;
-        for (int v = 0; v < colCount; v++) {
-            SparseVector ZvReal = points.getColRef(v);
-            int[] itemList = ZvReal.indexList();
-            if (itemList == null) {
-                continue;
-            }
-
-            // find minimium position
-            int pivot = -1;
-            double min = Double.MAX_VALUE;
-            for (int Vc = 0; Vc < L; Vc++) {
-                if (emptyIndicator[Vc]) {
-                    continue;
-                }
-
-                double iDivergence = 0.0d;
-                for (int u : itemList) {
-                    int Uc = rowAssigmnt[u];
-
-                    // compute Zuv w.r.t constraints
-                    double ZuvReal = ZvReal.floatValue(u);
-                    double ZuvEstim = 0.0d;
-                    switch (constraint) {
-                        case C_1:
-                            ZuvEstim = E_Uc[Uc] * E_Vc[Vc] / E;
-                            break;
-                        case C_2:
-                            ZuvEstim = E_Uc_Vc[Uc][Vc];
-                            break;
-                        case C_3:
-                            ZuvEstim = E_Uc_Vc[Uc][Vc] * E_U[u] / E_Uc[Uc];
-                            break;
-                        case C_4:
-                            ZuvEstim = E_Uc_Vc[Uc][Vc] * E_U[v] / E_Uc[Vc];
-                            break;
-                        case C_5:
-                            ZuvEstim = E_Uc_Vc[Uc][Vc] * E_U[u] * E_V[v] / (E_Uc[Uc] * E_Vc[Vc]);
-                            break;
-                        case C_6:
-                            ZuvEstim = E_U_Vc[u][Vc] * E_Uc_V[Uc][v] / (E_Uc_Vc[Uc][Vc]);
-                            break;
-
-                        default:
-                            throw new RuntimeException("No contraints is choosed! ");
+        /**
+         * compute all conditional expectations in one pass over the nonzeros
+         * 
+         * @param rows          the nonzeros in row-major order
+         * @param rowAssigmnt   the assigment of row clusters
+         * @param colAssigmnt   the assigment of column clusters
+         */
+        void compute(CompressedMatrix rows, int[] rowAssigmnt, int[] colAssigmnt) {
+            clear(E_Uc_Vc, N_Uc_Vc);
+            clear(E_U_Vc, N_U_Vc);
+            clear(E_Uc_V, N_Uc_V);
+            clear(E_U, N_U);
+            clear(E_Uc, N_Uc);
+            clear(E_V, N_V);
+            clear(E_Vc, N_Vc);
+
+            //accumulate the sums and the counts
+            for (int u = 0; u < E_U.length; u++) {
+                int Uc = rowAssigmnt[u];
+                for (int p = rows.ptr[u]; p < rows.ptr[u + 1]; p++) {
+                    int v = rows.indx[p];
+                    int Vc = colAssigmnt[v];
+                    double val = rows.vals[p];
+
+                    E_U[u] += val;
+                    N_U[u]++;
+                    E_Uc[Uc] += val;
+                    N_Uc[Uc]++;
+                    E_V[v] += val;
+                    N_V[v]++;
+                    E_Vc[Vc] += val;
+                    N_Vc[Vc]++;
+
+                    if (val == 0.0d) {
+                        continue;
                     }
-                    iDivergence += Distance.IW.divergence(ZuvReal, ZuvEstim);
-                }
-
-                if (min > iDivergence) {
-                    min = iDivergence;
-                    pivot = Vc;
+                    E_Uc_Vc[Uc][Vc] += val;
+                    N_Uc_Vc[Uc][Vc]++;
+                    E_U_Vc[u][Vc] += val;
+                    N_U_Vc[u][Vc]++;
+                    E_Uc_V[Uc][v] += val;
+                    N_Uc_V[Uc][v]++;
                 }
             }
 
-            //check whether changed
-            if (colAssigmnt[v] != pivot) {
-                isChanged = true;
+            //turn the sums into means, where E_U and E_V of empty samples are never used
+            for (int u = 0; u < E_U.length; u++) {
+                E_U[u] /= N_U[u];
             }
-
-            // move to position
-            colCluster[pivot].add(v);
-            colAssigmnt[v] = pivot;
-
-            //record errors
-            error += min;
-        }
-
-        return error;
-    }
-
-    /**
-     * update column clusters, when the I-divergence is involved
-     * 
-     * @param points        the matrix contains the data
-     * @param K             the number of row clusters
-     * @param L             the number of column clusters
-     * @param rowCluster    the row cluster
-     * @param colCluster    the column cluster
-     * @param rowAssigmnt   the assigment of row clusters
-     * @param colAssigmnt   the assigment of column clusters
-     * @param constraint    the constraints to retain
-     * @param isChanged     the pivot to indicate whether the cocluster changes
-     */
-    protected static double updateColClusterForEuclidean(final SparseMatrix points, final int K,
-                                                         final int L, final Cluster[] rowCluster,
-                                                         final Cluster[] colCluster,
-                                                         final int[] rowAssigmnt,
-                                                         final int[] colAssigmnt,
-                                                         final int constraint, boolean isChanged,
-                                                         double[][] E_Uc_Vc, double[] E_U,
-                                                         double[] E_Uc, double[] E_V, double[] E_Vc,
-                                                         double[][] E_U_Vc, double[][] E_Uc_V,
-                                                         double E) {
-        int colCount = points.shape()[1];
-        //clear current clusters
-        for (Cluster local : colCluster) {
-            local.clear();
-        }
-
-        //update column clusters
-        double error = 0.0d;
-        for (int v = 0; v < colCount; v++) {
-            SparseVector ZvReal = points.getColRef(v);
-            int[] itemList = ZvReal.indexList();
-            if (itemList == null) {
-                continue;
+            for (int v = 0; v < E_V.length; v++) {
+                E_V[v] /= N_V[v];
             }
-
-            // find minimium position
-            int pivot = -1;
-            double min = Double.MAX_VALUE;
-            for (int Vc = 0; Vc < L; Vc++) {
-                double euDivergence = 0.0d;
-                for (int u : itemList) {
-                    int Uc = rowAssigmnt[u];
-
-                    // compute Zuv w.r.t constraints
-                    double ZuvReal = ZvReal.floatValue(u);
-                    double ZuvEstim = 0.0d;
-                    switch (constraint) {
-                        case C_1:
-                            ZuvEstim = E_Uc[Uc] + E_Vc[Vc] - E;
-                            break;
-                        case C_2:
-                            ZuvEstim = E_Uc_Vc[Uc][Vc];
-                            break;
-                        case C_3:
-                            ZuvEstim = E_Uc_Vc[Uc][Vc] + E_U[u] - E_Uc[Uc];
-                            break;
-                        case C_4:
-                            ZuvEstim = E_Uc_Vc[Uc][Vc] + E_U[v] - E_Uc[Vc];
-                            break;
-                        case C_5:
-                            ZuvEstim = E_Uc_Vc[Uc][Vc] + E_U[u] + E_V[v] - E_Uc[Uc] - E_Vc[Vc];
-                            break;
-                        case C_6:
-                            ZuvEstim = E_U_Vc[u][Vc] + E_Uc_V[Uc][v] - E_Uc_Vc[Uc][Vc];
-                            break;
-                        default:
-                            throw new RuntimeException("No contraints is choosed! ");
-                    }
-                    euDivergence += Distance.EW.divergence(ZuvReal, ZuvEstim);
-                }
-
-                if (min > euDivergence) {
-                    min = euDivergence;
-                    pivot = Vc;
-                }
+            average(E_Uc, N_Uc);
+            average(E_Vc, N_Vc);
+            for (int k = 0; k < E_Uc_Vc.length; k++) {
+                average(E_Uc_Vc[k], N_Uc_Vc[k]);
+                average(E_Uc_V[k], N_Uc_V[k]);
             }
-
-            //check whether changed
-            if (colAssigmnt[v] != pivot) {
-                isChanged = true;
+            for (int u = 0; u < E_U_Vc.length; u++) {
+                average(E_U_Vc[u], N_U_Vc[u]);
             }
-
-            // move to position
-            colCluster[pivot].add(v);
-            colAssigmnt[v] = pivot;
-
-            //update errors
-            error += min;
         }
 
-        return error;
-    }
-
-    /**
-     * estimate the conditional expectation
-     * 
-     * @param points        the matrix contains the data
-     * @param rowCluster    the row cluster
-     * @param colCluster    the column cluster
-     * @param K             the number of row clusters
-     * @param L             the number of column clusters
-     * @param E_Uc_Vc       the mean of cocluster
-     * @param E_U           the mean of specified row
-     * @param E_Uc          the mean of specified row cluster
-     * @param E_V           the mean of specified column
-     * @param E_Vc          the mean of specified column cluster
-     */
-    protected static void comConExpectation(final SparseMatrix points, final int K, final int L,
-                                            final Cluster[] rowCluster, final Cluster[] colCluster,
-                                            double[][] E_Uc_Vc, double[] E_U, double[] E_Uc,
-                                            double[] E_V, double[] E_Vc) {
-        int rowCount = points.shape()[0];
-        int colCount = points.shape()[1];
-
-        //1. cmp E_Uc_Vc
-        for (int k = 0; k < K; k++) {
-            for (int l = 0; l < L; l++) {
-                Cluster rowLocal = rowCluster[k];
-                Cluster colLocal = colCluster[l];
-
-                for (int i : rowLocal) {
-                    for (int j : colLocal) {
-                        E_Uc_Vc[k][l] += points.getValue(i, j);
-                    }
+        /**
+         * the divergence between the real value and the estimation w.r.t the constraints
+         * 
+         * @param ZuvReal   the real value
+         * @param u         the row index
+         * @param v         the column index
+         * @param Uc        the row cluster
+         * @param Vc        the column cluster
+         * @return          the divergence
+         */
+        double divergence(double ZuvReal, int u, int v, int Uc, int Vc) {
+            double ZuvEstim = 0.0d;
+            if (dtncConst == Distance.IW) {
+                switch (constraint) {
+                    case C_1:
+                        ZuvEstim = E_Uc[Uc] * E_Vc[Vc] / E;
+                        break;
+                    case C_2:
+                        ZuvEstim = E_Uc_Vc[Uc][Vc];
+                        break;
+                    case C_3:
+                        ZuvEstim = E_Uc_Vc[Uc][Vc] * E_U[u] / E_Uc[Uc];
+                        break;
+                    case C_4:
+                        ZuvEstim = E_Uc_Vc[Uc][Vc] * E_V[v] / E_Vc[Vc];
+                        break;
+                    case C_5:
+                        ZuvEstim = E_Uc_Vc[Uc][Vc] * E_U[u] * E_V[v] / (E_Uc[Uc] * E_Vc[Vc]);
+                        break;
+                    case C_6:
+                        ZuvEstim = E_U_Vc[u][Vc] * E_Uc_V[Uc][v] / (E_Uc_Vc[Uc][Vc]);
+                        break;
+                    default:
+                        throw new RuntimeException("No contraints is choosed! ");
+                }
+            } else {
+                switch (constraint) {
+                    case C_1:
+                        ZuvEstim = E_Uc[Uc] + E_Vc[Vc] - E;
+                        break;
+                    case C_2:
+                        ZuvEstim = E_Uc_Vc[Uc][Vc];
+                        break;
+                    case C_3:
+                        ZuvEstim = E_Uc_Vc[Uc][Vc] + E_U[u] - E_Uc[Uc];
+                        break;
+                    case C_4:
+                        ZuvEstim = E_Uc_Vc[Uc][Vc] + E_V[v] - E_Vc[Vc];
+                        break;
+                    case C_5:
+                        ZuvEstim = E_Uc_Vc[Uc][Vc] + E_U[u] + E_V[v] - E_Uc[Uc] - E_Vc[Vc];
+                        break;
+                    case C_6:
+                        ZuvEstim = E_U_Vc[u][Vc] + E_Uc_V[Uc][v] - E_Uc_Vc[Uc][Vc];
+                        break;
+                    default:
+                        throw new RuntimeException("No contraints is choosed! ");
                 }
-                E_Uc_Vc[k][l] /= rowLocal.getList().size() * colLocal.getList().size();
             }
+            return dtncConst.divergence(ZuvReal, ZuvEstim);
         }
 
-        //2. cmp E_Uc
-        for (int k = 0; k < K; k++) {
-            Cluster rowLocal = rowCluster[k];
-            for (int u : rowLocal) {
-                E_Uc[k] += points.getRowRef(u).sum();
-
+        private static void clear(double[][] sums, int[][] counts) {
+            for (int n = 0; n < sums.length; n++) {
+                clear(sums[n], counts[n]);
             }
-            E_Uc[k] /= rowLocal.getList().size() * colCount;
         }
 
-        //3. cmp E_U
-        for (int u = 0; u < rowCount; u++) {
-            E_U[u] = points.getRowRef(u).sum() / colCount;
+        private static void clear(double[] sums, int[] counts) {
+            Arrays.fill(sums, 0.0d);
+            Arrays.fill(counts, 0);
         }
 
-        //4. cmp E_Vc
-        for (int l = 0; l < L; l++) {
-            Cluster colLocal = colCluster[l];
-            for (int v : colLocal) {
-                E_Vc[l] += points.getColRef(v).sum();
+        private static void average(double[] sums, int[] counts) {
+            for (int n = 0; n < sums.length; n++) {
+                sums[n] = (counts[n] == 0) ? 0.0 : (sums[n] / counts[n]);
             }
-            E_Vc[l] /= colLocal.getList().size() * rowCount;
-        }
-
-        //5. cmp E_V
-        for (int v = 0; v < colCount; v++) {
-            E_V[v] = points.getColRef(v).sum() / rowCount;
         }
     }
 
     /**
-     * estimate the conditional expectation
+     * task reassigning the rows (or columns) whose index modulo the number of tasks equals its id,
+     * which returns the partial sum of divergences
      * 
-     * @param points        the matrix contains the data
-     * @param rowCluster    the row cluster
-     * @param colCluster    the column cluster
-     * @param K             the number of row clusters
-     * @param L             the number of column clusters
-     * @param E_Uc_Vc       the mean of cocluster
-     * @param E_U           the mean of specified row
-     * @param E_Uc          the mean of specified row cluster
-     * @param E_V           the mean of specified column
-     * @param E_Vc          the mean of specified column cluster
-     * @param E_U_Vc        the mean of specified row in cocluster
-     * @param E_Uc_V        the mean of specified column in cocluster
-     * @param E             the mean of the entire matrix
+     * @author Chao.Chen
+     * @version $Id: CoclusterUtil.java, v 0.1 2017年6月28日 上午10:48:02 Chao.Chen Exp $
      */
-    protected static void comConExpectationAsConjugateDist(final SparseMatrix points, final int K,
-                                                           final int L, final Cluster[] rowCluster,
-                                                           final Cluster[] colCluster,
-                                                           double[][] E_Uc_Vc, double[] E_U,
-                                                           double[] E_Uc, double[] E_V,
-                                                           double[] E_Vc, double[][] E_U_Vc,
-                                                           double[][] E_Uc_V) {
-        int rowCount = points.shape()[0];
-        int colCount = points.shape()[1];
-
-        //1. cmp E_Uc_Vc
-        for (int k = 0; k < K; k++) {
-            for (int l = 0; l < L; l++) {
-                int itemCount = 0;
-                Cluster rowLocal = rowCluster[k];
-                Cluster colLocal = colCluster[l];
-                for (int i : rowLocal) {
-                    for (int j : colLocal) {
-                        double val = points.getValue(i, j);
-                        if (val == 0.0d) {
-                            continue;
-                        }
-
-                        E_Uc_Vc[k][l] += val;
-                        itemCount++;
-                    }
-                }
-                E_Uc_Vc[k][l] = (itemCount == 0) ? 0.0 : (E_Uc_Vc[k][l] / itemCount);
-            }
+    protected static class AssignTask extends RecursiveTask<Double> {
+        private static final long      serialVersionUID = 1L;
+
+        /** the nonzeros grouped by the samples to reassign*/
+        private final CompressedMatrix compressed;
+        /** the conditional expectations*/
+        private final Expectations     expt;
+        /** the assigment to update*/
+        private final int[]            assigmnt;
+        /** the assigment of the other dimension*/
+        private final int[]            othAssigmnt;
+        /** whether the samples are rows*/
+        private final boolean          isRow;
+        /** the clusters excluded from candidates, or null if none*/
+        private final boolean[]        emptyIndicator;
+        /** the range of task ids*/
+        private final int              lo;
+        private final int              hi;
+        /** the number of tasks*/
+        private final int              num_task;
+
+        AssignTask(CompressedMatrix compressed, Expectations expt, int[] assigmnt,
+                   int[] othAssigmnt, boolean isRow, boolean[] emptyIndicator, int lo, int hi,
+                   int num_task) {
+            this.compressed = compressed;
+            this.expt = expt;
+            this.assigmnt = assigmnt;
+            this.othAssigmnt = othAssigmnt;
+            this.isRow = isRow;
+            this.emptyIndicator = emptyIndicator;
+            this.lo = lo;
+            this.hi = hi;
+            this.num_task = num_task;
         }
 
-        //2. cmp E_Uc
-        for (int k = 0; k < K; k++) {
-            Cluster rowLocal = rowCluster[k];
-            int itemCount = 0;
-            for (int u : rowLocal) {
-                E_Uc[k] += points.getRowRef(u).sum();
-                itemCount += points.getRowRef(u).itemCount();
-
+        /**
+         * @see java.util.concurrent.RecursiveTask#compute()
+         */
+        @Override
+        protected Double compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                AssignTask left = new AssignTask(compressed, expt, assigmnt, othAssigmnt, isRow,
+                    emptyIndicator, lo, mid, num_task);
+                left.fork();
+                double error = new AssignTask(compressed, expt, assigmnt, othAssigmnt, isRow,
+                    emptyIndicator, mid, hi, num_task).compute();
+                return error + left.join();
             }
-            E_Uc[k] = (itemCount == 0) ? 0.0 : (E_Uc[k] / itemCount);
-        }
 
-        //3. cmp E_U
-        for (int u = 0; u < rowCount; u++) {
-            E_U[u] = points.getRowRef(u).average();
-        }
+            int num_cluster = isRow ? expt.E_Uc.length : expt.E_Vc.length;
+            int[] ptr = compressed.ptr;
+            int[] indx = compressed.indx;
+            float[] vals = compressed.vals;
 
-        //4. cmp E_Vc
-        for (int l = 0; l < L; l++) {
-            Cluster colLocal = colCluster[l];
-            int itemCount = 0;
-            for (int v : colLocal) {
-                E_Vc[l] += points.getColRef(v).sum();
-                itemCount += points.getColRef(v).itemCount();
-            }
-            E_Vc[l] = (itemCount == 0) ? 0.0 : (E_Vc[l] / itemCount);
-        }
+            double error = 0.0d;
+            for (int s = lo; s < assigmnt.length; s += num_task) {
+                if (ptr[s + 1] == ptr[s]) {
+                    continue;
+                }
 
-        //5. cmp E_V
-        for (int v = 0; v < colCount; v++) {
-            E_V[v] = points.getColRef(v).average();
-        }
+                // find minimium position
+                int pivot = -1;
+                double min = Double.MAX_VALUE;
+                for (int c = 0; c < num_cluster; c++) {
+                    if (emptyIndicator != null && emptyIndicator[c]) {
+                        continue;
+                    }
 
-        //6. cmp E_U_Vc
-        for (int u = 0; u < rowCount; u++) {
-            SparseVector Ru = points.getRowRef(u);
-            for (int l = 0; l < L; l++) {
-                Cluster colLocal = colCluster[l];
-
-                int itemCount = 0;
-                double sum = 0.0d;
-                for (int v : colLocal) {
-                    double val = Ru.floatValue(v);
-                    if (val != 0.0d) {
-                        sum += val;
-                        itemCount++;
+                    double divergence = 0.0d;
+                    for (int p = ptr[s]; p < ptr[s + 1]; p++) {
+                        int o = indx[p];
+                        divergence += isRow
+                            ? expt.divergence(vals[p], s, o, c, othAssigmnt[o])
+                            : expt.divergence(vals[p], o, s, othAssigmnt[o], c);
                     }
-                }
-                E_U_Vc[u][l] = sum / itemCount;
-            }
-        }
 
-        //7. cmp E_Uc_V
-        for (int v = 0; v < colCount; v++) {
-            SparseVector Rv = points.getColRef(v);
-            for (int k = 0; k < K; k++) {
-                Cluster rowLocal = rowCluster[k];
-
-                int itemCount = 0;
-                double sum = 0.0d;
-                for (int u : rowLocal) {
-                    double val = Rv.floatValue(u);
-                    if (val != 0.0d) {
-                        sum += val;
-                        itemCount++;
+                    if (min > divergence) {
+                        min = divergence;
+                        pivot = c;
                     }
                 }
-                E_Uc_V[k][v] = sum / itemCount;
+
+                // move to the position
+                assigmnt[s] = pivot;
+
+                // update errors
+                error += min;
             }
+            return error;
         }
     }
 
@@ -45,11 +45,33 @@ public abstract class AbstractIterator implements Iterator<DataElem> {
         throw new RuntimeException("This method has not been implemented in AbstractIterator!");
     }
 
+    /**
+     * skip the given number of rows, which are walked over one by one 
+     * unless the iterator has random access to rows
+     * 
+     * @param num   the number of rows to skip
+     * @return      the number of rows skipped, less than the given number at the end
+     */
+    public int skip(int num) {
+        int skipped = 0;
+        while (skipped < num && hasNext()) {
+            next();
+            skipped++;
+        }
+        return skipped;
+    }
+
     /**
      * @see java.lang.Object#clone()
      */
     public abstract AbstractIterator clone();
 
+    /**
+     * Get the number of rows
+     * @return  number of rows
+     */
+    public abstract int get_num_row();
+
     /**
      * Get the number of nonzero global feature 
      * @return  number of nonzero global feature 
@@ -3,6 +3,7 @@ package code.sma.core;
 import java.util.Iterator;
 
 import code.sma.core.impl.CPrjRefVector;
+import code.sma.util.SplitRandom;
 import it.unimi.dsi.fastutil.shorts.ShortArrayList;
 
 /**
@@ -48,6 +49,18 @@ public abstract class AbstractMatrix implements Iterable<DataElem> {
      */
     public abstract void loadNext(String line);
 
+    /**
+     * Split the data at random into the part to fit and the part held out, e.g., for validation.
+     * 
+     * @param ratio The probability that an entry is held out
+     * @param ran   The random stream to draw from
+     * @return  The part to fit and the part held out.
+     */
+    public AbstractMatrix[] split(double ratio, SplitRandom ran) {
+        throw new RuntimeException(
+            "This method has not been implemented in " + getClass().getSimpleName() + "!");
+    }
+
     /**
      * Returns an iterator over a set of elements with a join subset of user/item features
      * 
@@ -72,6 +85,24 @@ public abstract class AbstractMatrix implements Iterable<DataElem> {
         return new Default2DMatrixIter(acc_feature[0], acc_feature[1], true);
     }
 
+    /**
+     * Getter method for property <tt>num_row</tt>.
+     * 
+     * @return property value of num_row
+     */
+    public int getNum_row() {
+        return num_row;
+    }
+
+    /**
+     * Getter method for property <tt>num_val</tt>.
+     * 
+     * @return property value of num_val
+     */
+    public int getNum_val() {
+        return num_val;
+    }
+
     private final class Default2DMatrixIter extends AbstractIterator {
         private int              _num_row;
         private int              _num_gfactors;     // ABUSE: used to record #Entry of both available users and items
@@ -193,6 +224,14 @@ public abstract class AbstractMatrix implements Iterable<DataElem> {
             return this;
         }
 
+        /** 
+         * @see code.sma.core.AbstractIterator#get_num_row()
+         */
+        @Override
+        public int get_num_row() {
+            return _num_row;
+        }
+
         /** 
          * @see code.sma.core.AbstractIterator#get_num_global()
          */
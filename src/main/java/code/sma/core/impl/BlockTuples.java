@@ -0,0 +1,195 @@
+package code.sma.core.impl;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import code.sma.core.AbstractIterator;
+import code.sma.core.DataElem;
+
+/**
+ * Tuples gridded into P-by-P blocks, where users and items are split into P groups respectively.
+ * Blocks sharing neither a user group nor an item group never touch the same latent factor,
+ * thus P such blocks, i.e., one stratum, can be trained at the same time without races.
+ *
+ * @author Chao.Chen
+ * @version $Id: BlockTuples.java, v 0.1 2017年6月21日 下午2:10:45 Chao.Chen Exp $
+ */
+public class BlockTuples {
+    /** number of user (item) groups */
+    protected int     num_block;
+    /** the group of each user */
+    protected int[]   ublk_map;
+    /** the group of each item */
+    protected int[]   iblk_map;
+
+    /** points to the beginning and ends of each block, size(blk_ptr)=num_block*num_block+1 */
+    protected int[]   blk_ptr;
+    /** array of user id*/
+    protected int[]   rowIndx;
+    /** array of item id*/
+    protected int[]   colIndx;
+    /** array of labels*/
+    protected float[] vals;
+    /** array of sequence id of each entry in the original iterator */
+    protected int[]   rIds;
+
+    /**
+     * grid the training data into blocks, where the users (items) are assigned to the groups
+     * in a greedy way, so that every group contains similar number of entries
+     *
+     * @param iDataElem     user-grouped training data
+     * @param userCount     number of users
+     * @param itemCount     number of items
+     * @param num_block     number of user (item) groups
+     */
+    public BlockTuples(AbstractIterator iDataElem, int userCount, int itemCount, int num_block) {
+        this.num_block = num_block;
+
+        // count the entries of each user and item
+        int[] uCount = new int[userCount];
+        int[] iCount = new int[itemCount];
+        int nnz = 0;
+
+        iDataElem.refresh();
+        while (iDataElem.hasNext()) {
+            DataElem e = iDataElem.next();
+            short num_ifactor = e.getNum_ifacotr();
+
+            uCount[e.getIndex_user(0)] += num_ifactor;
+            for (int f = 0; f < num_ifactor; f++) {
+                iCount[e.getIndex_item(f)]++;
+            }
+            nnz += num_ifactor;
+        }
+        ublk_map = balance(uCount, num_block);
+        iblk_map = balance(iCount, num_block);
+
+        // count the entries of each block
+        blk_ptr = new int[num_block * num_block + 1];
+        iDataElem.refresh();
+        while (iDataElem.hasNext()) {
+            DataElem e = iDataElem.next();
+            short num_ifactor = e.getNum_ifacotr();
+
+            int ublk = ublk_map[e.getIndex_user(0)];
+            for (int f = 0; f < num_ifactor; f++) {
+                blk_ptr[ublk * num_block + iblk_map[e.getIndex_item(f)] + 1]++;
+            }
+        }
+        for (int b = 0; b < num_block * num_block; b++) {
+            blk_ptr[b + 1] += blk_ptr[b];
+        }
+
+        // fill the entries block by block
+        rowIndx = new int[nnz];
+        colIndx = new int[nnz];
+        vals = new float[nnz];
+        rIds = new int[nnz];
+
+        int[] cursor = Arrays.copyOf(blk_ptr, num_block * num_block);
+        int rid = 0;
+        iDataElem.refresh();
+        while (iDataElem.hasNext()) {
+            DataElem e = iDataElem.next();
+            short num_ifactor = e.getNum_ifacotr();
+
+            int u = e.getIndex_user(0);
+            for (int f = 0; f < num_ifactor; f++) {
+                int i = e.getIndex_item(f);
+                int pos = cursor[ublk_map[u] * num_block + iblk_map[i]]++;
+
+                rowIndx[pos] = u;
+                colIndx[pos] = i;
+                vals[pos] = e.getValue_ifactor(f);
+                rIds[pos] = rid++;
+            }
+        }
+    }
+
+    /**
+     * assign the indices to groups, where the heaviest index goes to the lightest group
+     *
+     * @param counts        number of entries of each index
+     * @param num_block     number of groups
+     * @return              the group of each index
+     */
+    protected static int[] balance(final int[] counts, int num_block) {
+        Integer[] order = new Integer[counts.length];
+        for (int n = 0; n < counts.length; n++) {
+            order[n] = n;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return counts[o2] - counts[o1];
+            }
+        });
+
+        int[] blk_map = new int[counts.length];
+        long[] load = new long[num_block];
+        for (Integer n : order) {
+            int lightest = 0;
+            for (int b = 1; b < num_block; b++) {
+                if (load[b] < load[lightest]) {
+                    lightest = b;
+                }
+            }
+
+            blk_map[n] = lightest;
+            load[lightest] += counts[n];
+        }
+        return blk_map;
+    }
+
+    /**
+     * the block trained by the given worker in the given stratum,
+     * i.e., the worker's user group and the stratum-shifted item group
+     *
+     * @param workerId      the worker's id
+     * @param stratum       the stratum's id
+     * @return              the block's id
+     */
+    public int blockId(int workerId, int stratum) {
+        return workerId * num_block + (workerId + stratum) % num_block;
+    }
+
+    /**
+     * the beginning of the given block
+     *
+     * @param blockId   the block's id
+     * @return          the index of the first entry
+     */
+    public int blockBegin(int blockId) {
+        return blk_ptr[blockId];
+    }
+
+    /**
+     * the end of the given block
+     *
+     * @param blockId   the block's id
+     * @return          the index following the last entry
+     */
+    public int blockEnd(int blockId) {
+        return blk_ptr[blockId + 1];
+    }
+
+    public int getNum_block() {
+        return num_block;
+    }
+
+    public int rowIndx(int pos) {
+        return rowIndx[pos];
+    }
+
+    public int colIndx(int pos) {
+        return colIndx[pos];
+    }
+
+    public float vals(int pos) {
+        return vals[pos];
+    }
+
+    public int rIds(int pos) {
+        return rIds[pos];
+    }
+}
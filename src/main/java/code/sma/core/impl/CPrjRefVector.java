@@ -9,6 +9,8 @@ public class CPrjRefVector extends CRefVector {
     private static final long serialVersionUID = 1L;
     /** projection mappings*/
     protected short[]         prj_mpg;
+    /** the beginning of the projection mappings in prj_mpg*/
+    protected int             prj_offset;
 
     public CPrjRefVector(float[] data, int ptr_offset, int num_factors) {
         super(data, ptr_offset, num_factors);
@@ -39,9 +41,9 @@ public class CPrjRefVector extends CRefVector {
 
         switch (refType) {
             case Ints:
-                return intPtr[ptr_offset + prj_mpg[i]];
+                return intPtr[ptr_offset + prj_mpg[prj_offset + i]];
             case Floats:
-                return floatPtr[ptr_offset + prj_mpg[i]];
+                return floatPtr[ptr_offset + prj_mpg[prj_offset + i]];
             default:
                 throw new RuntimeException("CRefArray only support Ints, Floats.");
         }
@@ -58,14 +60,22 @@ public class CPrjRefVector extends CRefVector {
 
         switch (refType) {
             case Ints:
-                return intPtr[ptr_offset + prj_mpg[i]];
+                return intPtr[ptr_offset + prj_mpg[prj_offset + i]];
             case Floats:
-                return (int) floatPtr[ptr_offset + prj_mpg[i]];
+                return (int) floatPtr[ptr_offset + prj_mpg[prj_offset + i]];
             default:
                 throw new RuntimeException("CRefArray only support Ints, Floats.");
         }
     }
 
+    /** 
+     * @see code.sma.core.impl.CRefVector#position(int)
+     */
+    @Override
+    public int position(int i) {
+        return (prj_mpg == null) ? super.position(i) : ptr_offset + prj_mpg[prj_offset + i];
+    }
+
     /**
      * Getter method for property <tt>prj_mpg</tt>.
      * 
@@ -82,6 +92,19 @@ public class CPrjRefVector extends CRefVector {
      */
     public void setPrj_mpg(short[] prj_mpg) {
         this.prj_mpg = prj_mpg;
+        this.prj_offset = 0;
+    }
+
+    /**
+     * Setter method for property <tt>prj_mpg</tt>, 
+     * where the mappings are a segment of a shared array
+     * 
+     * @param prj_mpg       value to be assigned to property prj_mpg
+     * @param prj_offset    the beginning of the mappings in prj_mpg
+     */
+    public void setPrj_mpg(short[] prj_mpg, int prj_offset) {
+        this.prj_mpg = prj_mpg;
+        this.prj_offset = prj_offset;
     }
 
 }
@@ -89,6 +89,16 @@ public class CRefVector extends AbstractVector {
         }
     }
 
+    /**
+     * the position of the i-th factor in the referred array
+     * 
+     * @param i the index of the factor
+     * @return  the position in the referred array
+     */
+    public int position(int i) {
+        return ptr_offset + i;
+    }
+
     /** 
      * @see code.sma.core.AbstractVector#length()
      */
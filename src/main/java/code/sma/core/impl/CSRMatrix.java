@@ -8,6 +8,7 @@ import org.apache.commons.io.IOUtils;
 import code.sma.core.AbstractIterator;
 import code.sma.core.AbstractMatrix;
 import code.sma.core.DataElem;
+import code.sma.util.SplitRandom;
 import code.sma.util.StringUtil;
 
 /**
@@ -38,6 +39,26 @@ public class CSRMatrix extends AbstractMatrix {
         feat_value = new float[num_val];
     }
 
+    /**
+     * build from the loaded columns, without any parsing
+     * 
+     * @param row_label     label of each row
+     * @param row_ptr       the beginning and ends of each row, size(row_ptr)=3*num_row+1
+     * @param feat_index    array of the indices
+     * @param feat_value    array of the features
+     * @param num_row       number of rows
+     * @param num_val       number of features
+     */
+    public CSRMatrix(float[] row_label, int[] row_ptr, int[] feat_index, float[] feat_value,
+                     int num_row, int num_val) {
+        this.row_label = row_label;
+        this.row_ptr = row_ptr;
+        this.feat_index = feat_index;
+        this.feat_value = feat_value;
+        this.num_row = num_row;
+        this.num_val = num_val;
+    }
+
     /** 
      * @see code.sma.core.AbstractMatrix#loadNext(java.lang.String)
      */
@@ -88,6 +109,84 @@ public class CSRMatrix extends AbstractMatrix {
         throw new RuntimeException("This method has not been implemented in CSRMatrix!");
     }
 
+    /** 
+     * hold out each item feature with the given probability, 
+     * where both parts share the label, global and user features of the row
+     * 
+     * @see code.sma.core.AbstractMatrix#split(double, code.sma.util.SplitRandom)
+     */
+    @Override
+    public AbstractMatrix[] split(double ratio, SplitRandom ran) {
+        boolean[] heldOut = new boolean[num_val];
+        for (int r = 0; r < num_row; r++) {
+            for (int p = row_ptr[3 * r + 2]; p < row_ptr[3 * r + 3]; p++) {
+                heldOut[p] = ran.nextDouble() < ratio;
+            }
+        }
+
+        CSRMatrix fit = select(heldOut, false);
+        CSRMatrix held = select(heldOut, true);
+        return new AbstractMatrix[] { fit, held };
+    }
+
+    /**
+     * copy the rows with the item features whose indicator equals the given value, 
+     * where the rows without such item features are skipped
+     * 
+     * @param heldOut   the indicator of each feature
+     * @param value     the value to select
+     * @return          the selected rows
+     */
+    protected CSRMatrix select(boolean[] heldOut, boolean value) {
+        int[] num_item = new int[num_row];
+        int rows = 0;
+        int nnz = 0;
+        for (int r = 0; r < num_row; r++) {
+            for (int p = row_ptr[3 * r + 2]; p < row_ptr[3 * r + 3]; p++) {
+                if (heldOut[p] == value) {
+                    num_item[r]++;
+                }
+            }
+            if (num_item[r] > 0) {
+                rows++;
+                nnz += row_ptr[3 * r + 2] - row_ptr[3 * r] + num_item[r];
+            }
+        }
+
+        CSRMatrix part = new CSRMatrix(rows, nnz);
+        for (int r = 0; r < num_row; r++) {
+            if (num_item[r] == 0) {
+                continue;
+            }
+
+            // the global and user features are shared
+            int k = part.num_row;
+            int from = row_ptr[3 * r];
+            int shared = row_ptr[3 * r + 2] - from;
+            part.row_label[k] = row_label[r];
+            System.arraycopy(feat_index, from, part.feat_index, part.num_val, shared);
+            System.arraycopy(feat_value, from, part.feat_value, part.num_val, shared);
+            part.row_ptr[3 * k + 1] = part.num_val + row_ptr[3 * r + 1] - from;
+            part.row_ptr[3 * k + 2] = part.num_val + shared;
+            part.num_val += shared;
+
+            for (int p = row_ptr[3 * r + 2]; p < row_ptr[3 * r + 3]; p++) {
+                if (heldOut[p] == value) {
+                    part.feat_index[part.num_val] = feat_index[p];
+                    part.feat_value[part.num_val] = feat_value[p];
+                    part.num_val++;
+                }
+            }
+            part.row_ptr[3 * k + 3] = part.num_val;
+
+            part.num_global += row_ptr[3 * r + 1] - row_ptr[3 * r];
+            part.num_ufactor += row_ptr[3 * r + 2] - row_ptr[3 * r + 1];
+            part.num_ifactor += num_item[r];
+            part.num_row++;
+        }
+        return part;
+    }
+
     /** 
      * @see java.lang.Iterable#iterator()
      */
@@ -157,6 +256,35 @@ public class CSRMatrix extends AbstractMatrix {
             return e;
         }
 
+        /**
+         * move to the given row and return it
+         * 
+         * @param row   the index of the row
+         * @return      the reusable instance filled with the row
+         */
+        DataElem seek(int row) {
+            cursor = row;
+            return next();
+        }
+
+        /** 
+         * @see code.sma.core.AbstractIterator#skip(int)
+         */
+        @Override
+        public int skip(int num) {
+            int skipped = Math.min(num, num_row - cursor);
+            cursor += skipped;
+            return skipped;
+        }
+
+        /** 
+         * @see code.sma.core.AbstractIterator#get_num_row()
+         */
+        @Override
+        public int get_num_row() {
+            return num_row;
+        }
+
         /** 
          * @see code.sma.core.AbstractIterator#get_num_global()
          */
@@ -190,4 +318,40 @@ public class CSRMatrix extends AbstractMatrix {
         }
 
     }
+
+    /**
+     * Getter method for property <tt>row_label</tt>.
+     * 
+     * @return property value of row_label
+     */
+    public float[] getRow_label() {
+        return row_label;
+    }
+
+    /**
+     * Getter method for property <tt>row_ptr</tt>.
+     * 
+     * @return property value of row_ptr
+     */
+    public int[] getRow_ptr() {
+        return row_ptr;
+    }
+
+    /**
+     * Getter method for property <tt>feat_index</tt>.
+     * 
+     * @return property value of feat_index
+     */
+    public int[] getFeat_index() {
+        return feat_index;
+    }
+
+    /**
+     * Getter method for property <tt>feat_value</tt>.
+     * 
+     * @return property value of feat_value
+     */
+    public float[] getFeat_value() {
+        return feat_value;
+    }
 }
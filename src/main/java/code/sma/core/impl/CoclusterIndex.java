@@ -0,0 +1,303 @@
+package code.sma.core.impl;
+
+import code.sma.core.AbstractIterator;
+import code.sma.core.DataElem;
+
+/**
+ * Pre-partitioned index of a sparse matrix over a co-clustering,
+ * where the item features of every row are grouped by the column clusters in one pass.
+ * The join and uion subsets of all (row cluster, column cluster)-blocks are then
+ * iterated over the shared arrays, thus concurrent learners hold no private copies.
+ * <br/>
+ * NOTE: both row and column clusterings should be partitions, and
+ *       the number of item features of one row should be less than Short.MAX_VALUE.
+ *
+ * @author Chao.Chen
+ * @version $Id: CoclusterIndex.java, v 0.1 2017年7月4日 下午2:16:05 Chao.Chen Exp $
+ */
+public class CoclusterIndex {
+    /** the indexed matrix*/
+    private final CSRMatrix mtx;
+    /** the number of row clusters*/
+    private final int       num_rclusters;
+    /** the number of column clusters*/
+    private final int       num_cclusters;
+    /** the row cluster of each row, or num_rclusters if not clustered*/
+    private final int[]     row_cluster;
+    /** the positions of item features in each row, grouped by the column clusters*/
+    private final short[]   prj_mpg;
+    /** the beginning of the segment of each (row, column cluster) in prj_mpg, size=num_row*(num_cclusters+1)+1*/
+    private final int[]     seg_ptr;
+    /** the rows of each row cluster*/
+    private final int[][]   cluster_rows;
+    /** the number of entries of each block, including the blocks of unclustered rows/columns*/
+    private final int[][]   block_vals;
+    /** the number of non-empty rows of each block, including the blocks of unclustered rows/columns*/
+    private final int[][]   block_rows;
+    /** the number of non-empty rows of each row cluster*/
+    private final int[]     full_rows;
+
+    /**
+     * Construction
+     *
+     * @param mtx               the matrix to index
+     * @param raf               row assignment function, [userId] : [user clustering id] or -1
+     * @param caf               column assignment function, [itemId] : [item clustering id] or -1
+     * @param num_rclusters     the number of row clusters
+     * @param num_cclusters     the number of column clusters
+     */
+    public CoclusterIndex(CSRMatrix mtx, int[] raf, int[] caf, int num_rclusters,
+                          int num_cclusters) {
+        this.mtx = mtx;
+        this.num_rclusters = num_rclusters;
+        this.num_cclusters = num_cclusters;
+
+        int num_row = mtx.getNum_row();
+        int[] row_ptr = mtx.getRow_ptr();
+        int[] feat_index = mtx.getFeat_index();
+        int num_seg = num_cclusters + 1;
+
+        row_cluster = new int[num_row];
+        seg_ptr = new int[num_row * num_seg + 1];
+        block_vals = new int[num_rclusters + 1][num_seg];
+        block_rows = new int[num_rclusters + 1][num_seg];
+        full_rows = new int[num_rclusters + 1];
+
+        int num_val = 0;
+        for (int r = 0; r < num_row; r++) {
+            num_val += row_ptr[3 * r + 3] - row_ptr[3 * r + 2];
+        }
+        prj_mpg = new short[num_val];
+
+        // one pass: group the item features of every row by the column clusters
+        int[] cluster_size = new int[num_rclusters + 1];
+        int[] seg_cnt = new int[num_seg];
+        int ptr = 0;
+        for (int r = 0; r < num_row; r++) {
+            int u = feat_index[row_ptr[3 * r + 1]];
+            int k = (u >= raf.length || raf[u] < 0) ? num_rclusters : raf[u];
+            row_cluster[r] = k;
+            cluster_size[k]++;
+
+            int begin = row_ptr[3 * r + 2];
+            short num_ifactor = (short) (row_ptr[3 * r + 3] - begin);
+            full_rows[k] += (num_ifactor == 0) ? 0 : 1;
+            for (int l = 0; l < num_seg; l++) {
+                seg_cnt[l] = 0;
+            }
+            for (short f = 0; f < num_ifactor; f++) {
+                seg_cnt[clusterOf(caf, feat_index[begin + f])]++;
+            }
+
+            for (int l = 0; l < num_seg; l++) {
+                seg_ptr[r * num_seg + l] = ptr;
+                ptr += seg_cnt[l];
+
+                block_vals[k][l] += seg_cnt[l];
+                block_rows[k][l] += (seg_cnt[l] == 0) ? 0 : 1;
+                seg_cnt[l] = seg_ptr[r * num_seg + l];
+            }
+            for (short f = 0; f < num_ifactor; f++) {
+                prj_mpg[seg_cnt[clusterOf(caf, feat_index[begin + f])]++] = f;
+            }
+        }
+        seg_ptr[num_row * num_seg] = ptr;
+
+        cluster_rows = new int[num_rclusters][];
+        for (int k = 0; k < num_rclusters; k++) {
+            cluster_rows[k] = new int[cluster_size[k]];
+            cluster_size[k] = 0;
+        }
+        for (int r = 0; r < num_row; r++) {
+            int k = row_cluster[r];
+            if (k < num_rclusters) {
+                cluster_rows[k][cluster_size[k]++] = r;
+            }
+        }
+    }
+
+    /**
+     * convert the accessible indicators of clusters to the assignment function
+     *
+     * @param acc_feature   indicator whether one feature belongs to one cluster, [clustering id][feature id]
+     * @return              the assignment function, or null if clusters overlap
+     */
+    public static int[] assignment(boolean[][] acc_feature) {
+        int num_feature = acc_feature.length == 0 ? 0 : acc_feature[0].length;
+        int[] af = new int[num_feature];
+        for (int j = 0; j < num_feature; j++) {
+            af[j] = -1;
+        }
+
+        for (int c = 0; c < acc_feature.length; c++) {
+            for (int j = 0; j < num_feature; j++) {
+                if (!acc_feature[c][j]) {
+                    continue;
+                } else if (af[j] != -1) {
+                    return null;
+                }
+                af[j] = c;
+            }
+        }
+        return af;
+    }
+
+    private int clusterOf(int[] caf, int i) {
+        return (i >= caf.length || caf[i] < 0) ? num_cclusters : caf[i];
+    }
+
+    /**
+     * Returns an iterator over the entries of the block, i.e., the join subset
+     *
+     * @param k     the row cluster
+     * @param l     the column cluster
+     * @return      an Iterator.
+     */
+    public AbstractIterator iteratorJion(int k, int l) {
+        int num_val = block_vals[k][l];
+        return new BlockIter(k, l, false, block_rows[k][l], num_val, num_val, num_val);
+    }
+
+    /**
+     * Returns an iterator over the entries of the row cluster and the column cluster, i.e., the uion subset
+     *
+     * @param k     the row cluster
+     * @param l     the column cluster
+     * @return      an Iterator.
+     */
+    public AbstractIterator iteratorUion(int k, int l) {
+        int num_row = 0;
+        int num_uval = 0;
+        int num_ival = 0;
+        for (int c = 0; c <= num_cclusters; c++) {
+            num_uval += block_vals[k][c];
+        }
+        for (int c = 0; c <= num_rclusters; c++) {
+            num_row += (c == k) ? full_rows[k] : block_rows[c][l];
+            num_ival += block_vals[c][l];
+        }
+        return new BlockIter(k, l, true, num_row, block_vals[k][l], num_uval, num_ival);
+    }
+
+    private final class BlockIter extends AbstractIterator {
+        private final int            k;
+        private final int            l;
+        private final boolean        needUion;
+        private final int            _num_row;
+        private final int            _num_gfactors;
+        private final int            _num_ufactors;
+        private final int            _num_ifactors;
+        private final CSRMatrix.Iter iter;
+        /** the position of next candidate row*/
+        private int                  pos;
+
+        BlockIter(int k, int l, boolean needUion, int _num_row, int _num_gfactors,
+                  int _num_ufactors, int _num_ifactors) {
+            super();
+            this.k = k;
+            this.l = l;
+            this.needUion = needUion;
+            this._num_row = _num_row;
+            this._num_gfactors = _num_gfactors;
+            this._num_ufactors = _num_ufactors;
+            this._num_ifactors = _num_ifactors;
+            this.iter = mtx.new Iter();
+        }
+
+        /**
+         * @see java.util.Iterator#hasNext()
+         */
+        @Override
+        public boolean hasNext() {
+            return cursor != _num_row;
+        }
+
+        /**
+         * @see java.util.Iterator#next()
+         */
+        @Override
+        public DataElem next() {
+            int num_seg = num_cclusters + 1;
+            while (true) {
+                int r = needUion ? pos : cluster_rows[k][pos];
+                pos++;
+
+                int begin;
+                int end;
+                short[] prj;
+                if (needUion && row_cluster[r] == k) {
+                    begin = seg_ptr[r * num_seg];
+                    end = seg_ptr[r * num_seg + num_seg];
+                    prj = null;
+                } else {
+                    begin = seg_ptr[r * num_seg + l];
+                    end = seg_ptr[r * num_seg + l + 1];
+                    prj = prj_mpg;
+                }
+                if (begin == end) {
+                    continue;
+                }
+
+                e = iter.seek(r);
+                e.setNum_ifacotr((short) (end - begin));
+                ((CPrjRefVector) e.getValue_ifactor()).setPrj_mpg(prj, begin);
+                ((CPrjRefVector) e.getIndex_item()).setPrj_mpg(prj, begin);
+                break;
+            }
+
+            cursor++;
+            return e;
+        }
+
+        /**
+         * @see code.sma.core.AbstractIterator#refresh()
+         */
+        @Override
+        public AbstractIterator refresh() {
+            cursor = 0;
+            pos = 0;
+            return this;
+        }
+
+        /**
+         * @see code.sma.core.AbstractIterator#get_num_row()
+         */
+        @Override
+        public int get_num_row() {
+            return _num_row;
+        }
+
+        /**
+         * @see code.sma.core.AbstractIterator#get_num_global()
+         */
+        @Override
+        public int get_num_global() {
+            return _num_gfactors;
+        }
+
+        /**
+         * @see code.sma.core.AbstractIterator#get_num_ufactor()
+         */
+        @Override
+        public int get_num_ufactor() {
+            return _num_ufactors;
+        }
+
+        /**
+         * @see code.sma.core.AbstractIterator#get_num_ifactor()
+         */
+        @Override
+        public int get_num_ifactor() {
+            return _num_ifactors;
+        }
+
+        /**
+         * @see code.sma.core.AbstractIterator#clone()
+         */
+        @Override
+        public AbstractIterator clone() {
+            return new BlockIter(k, l, needUion, _num_row, _num_gfactors, _num_ufactors,
+                _num_ifactors);
+        }
+    }
+}
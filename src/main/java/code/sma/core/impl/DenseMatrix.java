@@ -1,40 +1,86 @@
 package code.sma.core.impl;
 
 import java.io.Serializable;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import code.sma.util.RandomUtil;
+import code.sma.util.SplitRandom;
 
 /**
- * Dense Matrix used to represent the features
- * 
+ * Dense Matrix used to represent the features,
+ * where rows are packed in row-major float arrays with stride N.
+ * A matrix beyond the capacity of one array is split into shards,
+ * each of which holds a power-of-two number of rows.
+ * Factors beyond a comfortable heap size go to {@link OffHeapDenseMatrix} instead.
+ *
  * @author Chao Chen
  * @version $Id: DenseMatrix.java, v 0.1 2015-5-16 下午3:15:50 Exp $
  */
 public class DenseMatrix implements Serializable {
-    /**  */
-    private static final long serialVersionUID = 1L;
-    /** The matrix of values*/
-    private DenseVector[]     vals;
+    /** bumped since the rows are packed into shards, which breaks the old layout */
+    private static final long  serialVersionUID   = 2L;
+    /** The maximum number of values in one shard */
+    private static final int   MAX_SHARD_SIZE     = 1 << 30;
+    /** The number of rows of the transposed matrix in one tile of multiplication */
+    protected static final int MULTIPLY_TILE_SIZE = 256;
+    /** The number of values in one chunk of copying */
+    private static final int   COPY_CHUNK_SIZE    = 1 << 16;
+
+    /** The shards of values*/
+    private float[][]          vals;
+    /** The indicator whether the row has been initialized*/
+    private boolean[]          inited;
     /** The number of rows. */
-    private int               M;
+    private int                M;
     /** The number of columns. */
-    private int               N;
+    private int                N;
+    /** log2 of the number of rows in one shard */
+    private int                shift;
+    /** mask to locate the row within one shard */
+    private int                mask;
 
     /**
      * @param m
      * @param n
      */
     public DenseMatrix(int m, int n) {
+        this(m, n, true);
+    }
+
+    /**
+     * @param m
+     * @param n
+     * @param onHeap    whether to allocate the values on the heap, 
+     *                  false for subclasses holding the values elsewhere
+     */
+    protected DenseMatrix(int m, int n, boolean onHeap) {
         M = m;
         N = n;
-        vals = new DenseVector[M];
+
+        int shardRows = Integer.highestOneBit(Math.max(1, MAX_SHARD_SIZE / Math.max(1, N)));
+        shift = Integer.numberOfTrailingZeros(shardRows);
+        mask = shardRows - 1;
+
+        if (!onHeap) {
+            return;
+        }
+
+        int num_shard = (M + shardRows - 1) >>> shift;
+        vals = new float[num_shard][];
+        for (int s = 0; s < num_shard; s++) {
+            vals[s] = new float[Math.min(shardRows, M - (s << shift)) * N];
+        }
+        inited = new boolean[M];
     }
 
-    // ======================================== 
+    // ========================================
     //          Getter/Setter
     // ========================================
 
     /**
      * Retrieve a stored value from the given index.
-     * 
+     *
      * @param i
      *            The row index to retrieve.
      * @param j
@@ -42,8 +88,8 @@ public class DenseMatrix implements Serializable {
      * @return The value stored at the given index.
      */
     public double getValue(int i, int j) {
-        if (vals[i] != null) {
-            return vals[i].floatValue(j);
+        if (inited[i]) {
+            return vals[i >>> shift][(i & mask) * N + j];
         } else {
             return 0.0d;
         }
@@ -51,7 +97,7 @@ public class DenseMatrix implements Serializable {
 
     /**
      * Set a new value at the given index.
-     * 
+     *
      * @param i
      *            The row index to store new value.
      * @param j
@@ -60,50 +106,462 @@ public class DenseMatrix implements Serializable {
      *            The value to store.
      */
     public void setValue(int i, int j, double value, boolean needRanInit) {
-        if (vals[i] == null) {
-            vals[i] = new DenseVector(N, needRanInit);
+        if (!inited[i]) {
+            initRow(i, needRanInit);
         } else {
-            vals[i].setValue(j, value);
+            vals[i >>> shift][(i & mask) * N + j] = (float) value;
         }
     }
 
     /**
-     * return the reference of the vector at the given row index
-     * 
+     * Retrieve a stored value from the given index, regardless of whether the row is initialized.
+     *
+     * @param i The row index to retrieve.
+     * @param j The column index to retrieve.
+     * @return  The value stored at the given index.
+     */
+    public float floatValue(int i, int j) {
+        return vals[i >>> shift][(i & mask) * N + j];
+    }
+
+    /**
+     * Set a new value at the given index, and mark the row as initialized.
+     *
+     * @param i     The row index to store new value.
+     * @param j     The column index to store new value.
+     * @param value The value to store.
+     */
+    public void setValue(int i, int j, float value) {
+        vals[i >>> shift][(i & mask) * N + j] = value;
+        inited[i] = true;
+    }
+
+    /**
+     * initialize the row with zeros or random values
+     *
+     * @param i             The row index
+     * @param needRanInit   whether to initialize with random values
+     */
+    public void initRow(int i, boolean needRanInit) {
+        float[] shard = vals[i >>> shift];
+        int offset = (i & mask) * N;
+        if (needRanInit) {
+            SplitRandom ran = RandomUtil.current();
+            for (int n = 0; n < N; n++) {
+                shard[offset + n] = (float) (ran.nextDouble() / N);
+            }
+        } else {
+            Arrays.fill(shard, offset, offset + N, 0.0f);
+        }
+        inited[i] = true;
+    }
+
+    /**
+     * whether the row at the given index has been initialized
+     *
      * @param i The row index
-     * @return  The reference
+     * @return  true if initialized
+     */
+    public boolean hasRow(int i) {
+        return inited[i];
+    }
+
+    /**
+     * return the view of the vector at the given row index,
+     * where writes to the view go to this matrix
+     *
+     * @param i The row index
+     * @return  The view, or null if the row has not been initialized
      */
     public DenseVector getRowRef(int i) {
-        return vals[i];
+        if (!inited[i]) {
+            return null;
+        }
+        return new DenseVector(vals[i >>> shift], (i & mask) * N, N);
     }
 
     /**
-     * set the reference of the vector at the given row index
-     * 
+     * point the given view to the vector at the given row index, without any allocation
+     *
+     * @param i     The row index
+     * @param reuse The view to reuse
+     * @return      The view, or null if the row has not been initialized
+     */
+    public DenseVector getRowRef(int i, DenseVector reuse) {
+        if (!inited[i]) {
+            return null;
+        }
+        return reuse.wrap(vals[i >>> shift], (i & mask) * N, N);
+    }
+
+    /**
+     * set the vector at the given row index by copying the values
+     *
      * @param i The row index
-     * @param b The reference
+     * @param b The vector
      */
     public void setRowRef(int i, DenseVector b) {
-        vals[i] = b;
+        if (b == null) {
+            inited[i] = false;
+            return;
+        }
+
+        float[] shard = vals[i >>> shift];
+        int offset = (i & mask) * N;
+        for (int n = 0; n < N; n++) {
+            shard[offset + n] = b.floatValue(n);
+        }
+        inited[i] = true;
+    }
+
+    /**
+     * copy the rows in [from, from + num) into the buffer in row-major order, 
+     * regardless of whether they are initialized
+     *
+     * @param from  the first row index
+     * @param num   the number of rows
+     * @param dst   the buffer to write
+     */
+    public void getRows(int from, int num, FloatBuffer dst) {
+        int end = from + num;
+        for (int i = from; i < end;) {
+            int len = Math.min(end - i, mask + 1 - (i & mask));
+            dst.put(vals[i >>> shift], (i & mask) * N, len * N);
+            i += len;
+        }
+    }
+
+    /**
+     * copy the rows in [from, from + num) from the buffer in row-major order, 
+     * and mark them as initialized
+     *
+     * @param from  the first row index
+     * @param num   the number of rows
+     * @param src   the buffer to read
+     */
+    public void setRows(int from, int num, FloatBuffer src) {
+        int end = from + num;
+        for (int i = from; i < end;) {
+            int len = Math.min(end - i, mask + 1 - (i & mask));
+            src.get(vals[i >>> shift], (i & mask) * N, len * N);
+            i += len;
+        }
+        Arrays.fill(inited, from, end, true);
+    }
+
+    /**
+     * copy all rows and whether they are initialized into the matrix of the same shape, 
+     * chunk by chunk, so that either matrix can be off-heap
+     *
+     * @param dst   the matrix to write
+     */
+    public void copyTo(DenseMatrix dst) {
+        int[] shape = shape();
+        int M = shape[0];
+        int N = shape[1];
+
+        int rowChunk = Math.max(1, COPY_CHUNK_SIZE / Math.max(1, N));
+        FloatBuffer buffer = FloatBuffer.allocate(rowChunk * N);
+        for (int i = 0; i < M; i += rowChunk) {
+            int len = Math.min(rowChunk, M - i);
+            buffer.clear();
+            getRows(i, len, buffer);
+            buffer.flip();
+            dst.setRows(i, len, buffer);
+        }
+        for (int i = 0; i < M; i++) {
+            if (!hasRow(i)) {
+                dst.setRowRef(i, null);
+            }
+        }
+    }
+
+    /**
+     * copy the row at the given index into the buffer, regardless of whether it is initialized
+     *
+     * @param i     The row index
+     * @param dst   the buffer whose length is at least N
+     */
+    public void getRow(int i, float[] dst) {
+        System.arraycopy(vals[i >>> shift], (i & mask) * N, dst, 0, N);
+    }
+
+    /**
+     * copy the buffer into the row at the given index, and mark the row as initialized
+     *
+     * @param i     The row index
+     * @param src   the buffer whose length is at least N
+     */
+    public void setRow(int i, float[] src) {
+        System.arraycopy(src, 0, vals[i >>> shift], (i & mask) * N, N);
+        inited[i] = true;
     }
 
     /**
      * Inner product of two vectors.
-     * 
-     * @param u                 the index of rows in this object 
+     *
+     * @param u                 the index of rows in this object
      * @param i                 the index of rows in tDenseFeature
      * @param tDenseMatrix     the transposed DenseMatrix
      * @return
      */
     public double innerProduct(int u, int i, DenseMatrix tDenseMatrix, boolean needRanInit) {
-        if (needRanInit & vals[u] == null) {
-            this.setRowRef(u, new DenseVector(N, true));
+        if (needRanInit & !inited[u]) {
+            this.initRow(u, true);
         }
-        if (needRanInit & tDenseMatrix.getRowRef(i) == null) {
-            tDenseMatrix.setRowRef(i, new DenseVector(N, true));
+        if (needRanInit & !tDenseMatrix.hasRow(i)) {
+            tDenseMatrix.initRow(i, true);
         }
 
-        return vals[u].innerProduct(tDenseMatrix.getRowRef(i));
+        return innerProduct(u, i, tDenseMatrix);
+    }
+
+    /**
+     * Inner product of two rows, regardless of whether they are initialized.
+     *
+     * @param u                 the index of rows in this object
+     * @param i                 the index of rows in tDenseFeature
+     * @param tDenseMatrix      the transposed DenseMatrix
+     * @return
+     */
+    public double innerProduct(int u, int i, DenseMatrix tDenseMatrix) {
+        if (tDenseMatrix.vals == null) {
+            return innerProductByElem(u, i, tDenseMatrix);
+        }
+
+        float[] a = vals[u >>> shift];
+        int aOff = (u & mask) * N;
+        float[] b = tDenseMatrix.vals[i >>> tDenseMatrix.shift];
+        int bOff = (i & tDenseMatrix.mask) * tDenseMatrix.N;
+
+        double sum = 0.0d;
+        for (int n = 0; n < N; n++) {
+            sum += a[aOff + n] * b[bOff + n];
+        }
+        return sum;
+    }
+
+    /**
+     * row_i += alpha * x.row_j
+     *
+     * @param i     the index of rows in this object
+     * @param alpha the scale
+     * @param x     the other matrix
+     * @param j     the index of rows in x
+     */
+    public void axpy(int i, double alpha, DenseMatrix x, int j) {
+        if (x.vals == null) {
+            axpyByElem(i, alpha, x, j);
+            return;
+        }
+
+        float[] a = vals[i >>> shift];
+        int aOff = (i & mask) * N;
+        float[] b = x.vals[j >>> x.shift];
+        int bOff = (j & x.mask) * x.N;
+
+        for (int n = 0; n < N; n++) {
+            a[aOff + n] += alpha * b[bOff + n];
+        }
+    }
+
+    /**
+     * fused update of two rows in one pass, where both use the values before update, i.e., <br/>
+     * row_u = cu * row_u + du * t.row_i, <br/>
+     * t.row_i = ci * t.row_i + di * row_u
+     *
+     * @param u     the index of rows in this object
+     * @param t     the transposed DenseMatrix
+     * @param i     the index of rows in t
+     * @param cu    the scale of row_u
+     * @param du    the scale of t.row_i added to row_u
+     * @param ci    the scale of t.row_i
+     * @param di    the scale of row_u added to t.row_i
+     */
+    public void sgdUpdate(int u, DenseMatrix t, int i, double cu, double du, double ci,
+                          double di) {
+        if (t.vals == null) {
+            sgdUpdateByElem(u, t, i, cu, du, ci, di);
+            return;
+        }
+
+        float[] a = vals[u >>> shift];
+        int aOff = (u & mask) * N;
+        float[] b = t.vals[i >>> t.shift];
+        int bOff = (i & t.mask) * t.N;
+
+        for (int n = 0; n < N; n++) {
+            double Fus = a[aOff + n];
+            double Gis = b[bOff + n];
+
+            a[aOff + n] = (float) (cu * Fus + du * Gis);
+            b[bOff + n] = (float) (ci * Gis + di * Fus);
+        }
+    }
+
+    /**
+     * fused update of two rows under the smoothed L1-norm in one pass, 
+     * where both use the values before update, i.e., <br/>
+     * row_u = row_u + d * t.row_i - c * row_u / sqrt(row_u^2 + eps2), <br/>
+     * t.row_i = t.row_i + d * row_u - c * t.row_i / sqrt(t.row_i^2 + eps2)
+     *
+     * @param u     the index of rows in this object
+     * @param t     the transposed DenseMatrix
+     * @param i     the index of rows in t
+     * @param c     the scale of the regularization
+     * @param d     the scale of the other row
+     * @param eps2  the square of the smoothing width
+     */
+    public void sgdUpdateL1(int u, DenseMatrix t, int i, double c, double d, double eps2) {
+        if (t.vals == null) {
+            sgdUpdateL1ByElem(u, t, i, c, d, eps2);
+            return;
+        }
+
+        float[] a = vals[u >>> shift];
+        int aOff = (u & mask) * N;
+        float[] b = t.vals[i >>> t.shift];
+        int bOff = (i & t.mask) * t.N;
+
+        for (int n = 0; n < N; n++) {
+            double Fus = a[aOff + n];
+            double Gis = b[bOff + n];
+
+            a[aOff + n] = (float) (Fus + d * Gis - c * Fus / Math.sqrt(Fus * Fus + eps2));
+            b[bOff + n] = (float) (Gis + d * Fus - c * Gis / Math.sqrt(Gis * Gis + eps2));
+        }
+    }
+
+    /**
+     * inner product of the row at the given index and the buffered vector
+     *
+     * @param i     the index of rows in this object
+     * @param x     the buffered vector
+     * @return      the inner product
+     */
+    public double innerProduct(int i, float[] x) {
+        float[] b = vals[i >>> shift];
+        int bOff = (i & mask) * N;
+
+        double sum = 0.0d;
+        for (int n = 0; n < N; n++) {
+            sum += x[n] * b[bOff + n];
+        }
+        return sum;
+    }
+
+    /**
+     * update the row at the given index against the buffered vector, 
+     * and accumulate the gradient of the buffered vector in one pass, i.e., <br/>
+     * grad += g * row_i, <br/>
+     * row_i = c * row_i + d * x
+     *
+     * @param i     the index of rows in this object
+     * @param x     the buffered vector
+     * @param c     the scale of row_i
+     * @param d     the scale of x added to row_i
+     * @param g     the scale of row_i added to grad
+     * @param grad  the accumulated gradient of the buffered vector
+     */
+    public void sgdUpdate(int i, float[] x, double c, double d, double g, double[] grad) {
+        float[] b = vals[i >>> shift];
+        int bOff = (i & mask) * N;
+
+        for (int n = 0; n < N; n++) {
+            double Gis = b[bOff + n];
+            grad[n] += g * Gis;
+            b[bOff + n] = (float) (c * Gis + d * x[n]);
+        }
+    }
+
+    /**
+     * blocked product of the given rows and all rows of the transposed matrix, i.e., <br/>
+     * out[r * t.M + i] = row_{rows[r]} * t.row_i, <br/>
+     * where the rows of t are visited tile by tile, so that one tile stays in cache for all given rows
+     *
+     * @param rows      the indices of rows in this object
+     * @param num_row   the number of given rows
+     * @param t         the transposed DenseMatrix
+     * @param out       the products in row-major, whose length is at least num_row * t.M
+     */
+    public void multiply(int[] rows, int num_row, DenseMatrix t, float[] out) {
+        if (t.vals == null) {
+            multiplyByElem(rows, num_row, t, out);
+            return;
+        }
+
+        int num_col = t.M;
+        for (int iBegin = 0; iBegin < num_col; iBegin += MULTIPLY_TILE_SIZE) {
+            int iEnd = Math.min(num_col, iBegin + MULTIPLY_TILE_SIZE);
+
+            for (int r = 0; r < num_row; r++) {
+                int u = rows[r];
+                float[] a = vals[u >>> shift];
+                int aOff = (u & mask) * N;
+                int oOff = r * num_col;
+
+                for (int i = iBegin; i < iEnd; i++) {
+                    float[] b = t.vals[i >>> t.shift];
+                    int bOff = (i & t.mask) * t.N;
+
+                    double sum = 0.0d;
+                    for (int n = 0; n < N; n++) {
+                        sum += a[aOff + n] * b[bOff + n];
+                    }
+                    out[oOff + i] = (float) sum;
+                }
+            }
+        }
+    }
+
+    // ========================================
+    //          Kernels over element accessors
+    // ========================================
+    // used when the two matrices keep their values in different layouts, e.g., on and off the heap
+
+    protected final double innerProductByElem(int u, int i, DenseMatrix t) {
+        double sum = 0.0d;
+        for (int n = 0; n < N; n++) {
+            sum += floatValue(u, n) * t.floatValue(i, n);
+        }
+        return sum;
+    }
+
+    protected final void axpyByElem(int i, double alpha, DenseMatrix x, int j) {
+        for (int n = 0; n < N; n++) {
+            setValue(i, n, (float) (floatValue(i, n) + alpha * x.floatValue(j, n)));
+        }
+    }
+
+    protected final void sgdUpdateByElem(int u, DenseMatrix t, int i, double cu, double du,
+                                         double ci, double di) {
+        for (int n = 0; n < N; n++) {
+            double Fus = floatValue(u, n);
+            double Gis = t.floatValue(i, n);
+
+            setValue(u, n, (float) (cu * Fus + du * Gis));
+            t.setValue(i, n, (float) (ci * Gis + di * Fus));
+        }
+    }
+
+    protected final void sgdUpdateL1ByElem(int u, DenseMatrix t, int i, double c, double d,
+                                           double eps2) {
+        for (int n = 0; n < N; n++) {
+            double Fus = floatValue(u, n);
+            double Gis = t.floatValue(i, n);
+
+            setValue(u, n, (float) (Fus + d * Gis - c * Fus / Math.sqrt(Fus * Fus + eps2)));
+            t.setValue(i, n, (float) (Gis + d * Fus - c * Gis / Math.sqrt(Gis * Gis + eps2)));
+        }
+    }
+
+    protected final void multiplyByElem(int[] rows, int num_row, DenseMatrix t, float[] out) {
+        int num_col = t.M;
+        for (int r = 0; r < num_row; r++) {
+            for (int i = 0; i < num_col; i++) {
+                out[r * num_col + i] = (float) innerProductByElem(rows[r], i, t);
+            }
+        }
     }
 
     public int[] shape() {
@@ -3,6 +3,8 @@ package code.sma.core.impl;
 import org.apache.commons.lang3.ArrayUtils;
 
 import code.sma.core.AbstractVector;
+import code.sma.util.RandomUtil;
+import code.sma.util.SplitRandom;
 
 /**
  * Dense Vector used to represent the features
@@ -17,6 +19,8 @@ public class DenseVector extends AbstractVector {
     private int               N;
     /** The vector of values*/
     private float[]           vals;
+    /** The position of the first value in vals*/
+    private int               offset;
 
     public DenseVector(int N) {
         super();
@@ -24,18 +28,48 @@ public class DenseVector extends AbstractVector {
         this.vals = new float[N];
     }
 
+    /**
+     * view over the given values, where no value is copied
+     * 
+     * @param vals      the array holding the values
+     * @param offset    the position of the first value
+     * @param N         the number of values
+     */
+    DenseVector(float[] vals, int offset, int N) {
+        super();
+        this.N = N;
+        this.vals = vals;
+        this.offset = offset;
+    }
+
     public DenseVector(int N, boolean needRanInit) {
         super();
         this.N = N;
         this.vals = new float[N];
 
         if (needRanInit) {
+            SplitRandom ran = RandomUtil.current();
             for (int n = 0; n < N; n++) {
-                vals[n] = (float) (Math.random() / N);
+                vals[n] = (float) (ran.nextDouble() / N);
             }
         }
     }
 
+    /**
+     * point this view to the given values
+     * 
+     * @param vals      the array holding the values
+     * @param offset    the position of the first value
+     * @param N         the number of values
+     * @return          this view
+     */
+    DenseVector wrap(float[] vals, int offset, int N) {
+        this.N = N;
+        this.vals = vals;
+        this.offset = offset;
+        return this;
+    }
+
     // ======================================== 
     //          Getter/Setter
     // ========================================
@@ -47,7 +81,7 @@ public class DenseVector extends AbstractVector {
         if (i >= N) {
             return 0.0f;
         } else {
-            return vals[i];
+            return vals[offset + i];
         }
     }
 
@@ -57,7 +91,7 @@ public class DenseVector extends AbstractVector {
     @Override
     public void setValue(int i, double value) {
         if (i < N) {
-            vals[i] = (float) value;
+            vals[offset + i] = (float) value;
         }
     }
 
@@ -67,7 +101,7 @@ public class DenseVector extends AbstractVector {
     @Override
     public void setValue(int i, float value) {
         if (i < N) {
-            vals[i] = value;
+            vals[offset + i] = value;
         }
     }
 
@@ -79,6 +113,26 @@ public class DenseVector extends AbstractVector {
         return N;
     }
 
+    /** 
+     * @see code.sma.core.AbstractVector#innerProduct(code.sma.core.AbstractVector)
+     */
+    @Override
+    public double innerProduct(AbstractVector b) {
+        if (b.getClass() != DenseVector.class) {
+            return super.innerProduct(b);
+        }
+        assert this.length() == b.length() : "The dimentions of two vector are inequate";
+
+        float[] bVals = ((DenseVector) b).vals;
+        int bOff = ((DenseVector) b).offset;
+
+        double sum = 0.0d;
+        for (int n = 0; n < N; n++) {
+            sum += vals[offset + n] * bVals[bOff + n];
+        }
+        return sum;
+    }
+
     /**
      * Euclidean norm of the vector
      * 
@@ -93,7 +147,7 @@ public class DenseVector extends AbstractVector {
      */
     @Override
     public String toString() {
-        return ArrayUtils.toString(vals);
+        return ArrayUtils.toString(ArrayUtils.subarray(vals, offset, offset + N));
     }
 
 }
@@ -0,0 +1,660 @@
+package code.sma.core.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import org.apache.commons.lang3.ArrayUtils;
+
+import code.sma.core.AbstractVector;
+import code.sma.util.RandomUtil;
+import code.sma.util.SplitRandom;
+
+/**
+ * Dense Matrix whose values live outside the Java heap,
+ * where rows are packed in row-major little-endian float slabs with stride N,
+ * and the indicators of initialized rows take one byte per row.
+ * The slabs are either allocated directly or mapped from the factor block of a model file,
+ * and are released explicitly by {@link #close()} rather than by the garbage collector.
+ * Kernels involving two matrices run on the slabs if both are off-heap,
+ * otherwise they fall back on the element accessors of the other matrix.
+ *
+ * @author Chao.Chen
+ * @version $Id: OffHeapDenseMatrix.java, v 0.1 2017年6月30日 上午9:42:17 Chao.Chen Exp $
+ */
+public class OffHeapDenseMatrix extends DenseMatrix implements Closeable {
+    /**  */
+    private static final long   serialVersionUID = 1L;
+    /** The maximum number of bytes in one slab */
+    private static final int    MAX_SLAB_BYTES   = 1 << 30;
+    /** sun.misc.Unsafe#invokeCleaner in Java 9+, or null */
+    private static final Method INVOKE_CLEANER;
+    /** the instance of sun.misc.Unsafe, or null */
+    private static final Object UNSAFE;
+
+    static {
+        Method invokeCleaner = null;
+        Object unsafe = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+        } catch (Exception e) {
+            invokeCleaner = null;
+        }
+        INVOKE_CLEANER = invokeCleaner;
+        UNSAFE = unsafe;
+    }
+
+    /** The slabs of values*/
+    private transient FloatBuffer[] slabs;
+    /** The indicator whether the row has been initialized*/
+    private transient ByteBuffer    inited;
+    /** The buffers backing the slabs and the indicators*/
+    private transient ByteBuffer[]  buffers;
+    /** The number of rows. */
+    private final int               M;
+    /** The number of columns. */
+    private final int               N;
+    /** log2 of the number of rows in one slab */
+    private final int               shift;
+    /** mask to locate the row within one slab */
+    private final int               mask;
+
+    /**
+     * allocate the matrix outside the Java heap, where all rows are uninitialized
+     *
+     * @param m the number of rows
+     * @param n the number of columns
+     */
+    public OffHeapDenseMatrix(int m, int n) {
+        super(m, n, false);
+        M = m;
+        N = n;
+
+        int slabRows = slabRows(n);
+        shift = Integer.numberOfTrailingZeros(slabRows);
+        mask = slabRows - 1;
+
+        int num_slab = (M + slabRows - 1) >>> shift;
+        slabs = new FloatBuffer[num_slab];
+        buffers = new ByteBuffer[num_slab + 1];
+        for (int s = 0; s < num_slab; s++) {
+            buffers[s] = ByteBuffer
+                .allocateDirect(Math.min(slabRows, M - (s << shift)) * N * 4)
+                .order(ByteOrder.LITTLE_ENDIAN);
+            slabs[s] = buffers[s].asFloatBuffer();
+        }
+        inited = buffers[num_slab] = ByteBuffer.allocateDirect(M);
+    }
+
+    /**
+     * map the matrix from the file, where the indicators and the row-major floats are
+     * stored at the given positions respectively
+     *
+     * @param channel       the file channel
+     * @param posInited     the position of the indicators, one byte per row
+     * @param posVals       the position of the row-major little-endian floats
+     * @param m             the number of rows
+     * @param n             the number of columns
+     * @param mode          READ_ONLY, READ_WRITE where updates go to the file,
+     *                      or PRIVATE where updates are copy-on-write
+     * @throws IOException
+     */
+    public OffHeapDenseMatrix(FileChannel channel, long posInited, long posVals, int m, int n,
+                              MapMode mode) throws IOException {
+        super(m, n, false);
+        M = m;
+        N = n;
+
+        int slabRows = slabRows(n);
+        shift = Integer.numberOfTrailingZeros(slabRows);
+        mask = slabRows - 1;
+
+        int num_slab = (M + slabRows - 1) >>> shift;
+        slabs = new FloatBuffer[num_slab];
+        buffers = new ByteBuffer[num_slab + 1];
+        for (int s = 0; s < num_slab; s++) {
+            long rowBytes = 4L * N;
+            buffers[s] = channel
+                .map(mode, posVals + rowBytes * (s << shift),
+                    rowBytes * Math.min(slabRows, M - (s << shift)))
+                .order(ByteOrder.LITTLE_ENDIAN);
+            slabs[s] = buffers[s].asFloatBuffer();
+        }
+        inited = buffers[num_slab] = channel.map(mode, posInited, M);
+    }
+
+    /**
+     * the power-of-two number of rows in one slab
+     *
+     * @param n the number of columns
+     * @return  the number of rows
+     */
+    private static int slabRows(int n) {
+        return Integer.highestOneBit(Math.max(1, MAX_SLAB_BYTES / (4 * Math.max(1, n))));
+    }
+
+    // ========================================
+    //          Lifecycle
+    // ========================================
+
+    /**
+     * write the updates of the mapped slabs back to the file
+     */
+    public void force() {
+        for (ByteBuffer buffer : buffers) {
+            if (buffer instanceof MappedByteBuffer) {
+                ((MappedByteBuffer) buffer).force();
+            }
+        }
+    }
+
+    /**
+     * release the slabs at once, after which the matrix cannot be used anymore
+     *
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() {
+        if (buffers == null) {
+            return;
+        }
+
+        ByteBuffer[] toRelease = buffers;
+        slabs = null;
+        inited = null;
+        buffers = null;
+        for (ByteBuffer buffer : toRelease) {
+            release(buffer);
+        }
+    }
+
+    /**
+     * free the memory of the direct or mapped buffer,
+     * otherwise leave it to the garbage collector
+     *
+     * @param buffer    the buffer to free
+     */
+    private static void release(ByteBuffer buffer) {
+        try {
+            if (INVOKE_CLEANER != null) {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+            } else {
+                Method cleaner = buffer.getClass().getMethod("cleaner");
+                cleaner.setAccessible(true);
+                Object c = cleaner.invoke(buffer);
+                if (c != null) {
+                    c.getClass().getMethod("clean").invoke(c);
+                }
+            }
+        } catch (Exception e) {
+            // the buffer is freed once unreachable
+        }
+    }
+
+    /**
+     * serialize as an on-heap copy, since the slabs cannot be serialized
+     *
+     * @return  the on-heap copy
+     */
+    private Object writeReplace() {
+        DenseMatrix copy = new DenseMatrix(M, N);
+        for (int s = 0; s < slabs.length; s++) {
+            int from = s << shift;
+            copy.setRows(from, Math.min(mask + 1, M - from), slabs[s].duplicate());
+        }
+        for (int i = 0; i < M; i++) {
+            if (!hasRow(i)) {
+                copy.setRowRef(i, null);
+            }
+        }
+        return copy;
+    }
+
+    // ========================================
+    //          Getter/Setter
+    // ========================================
+
+    /**
+     * @see code.sma.core.impl.DenseMatrix#getValue(int, int)
+     */
+    @Override
+    public double getValue(int i, int j) {
+        if (hasRow(i)) {
+            return slabs[i >>> shift].get((i & mask) * N + j);
+        } else {
+            return 0.0d;
+        }
+    }
+
+    /**
+     * @see code.sma.core.impl.DenseMatrix#setValue(int, int, double, boolean)
+     */
+    @Override
+    public void setValue(int i, int j, double value, boolean needRanInit) {
+        if (!hasRow(i)) {
+            initRow(i, needRanInit);
+        } else {
+            slabs[i >>> shift].put((i & mask) * N + j, (float) value);
+        }
+    }
+
+    /**
+     * @see code.sma.core.impl.DenseMatrix#floatValue(int, int)
+     */
+    @Override
+    public float floatValue(int i, int j) {
+        return slabs[i >>> shift].get((i & mask) * N + j);
+    }
+
+    /**
+     * @see code.sma.core.impl.DenseMatrix#setValue(int, int, float)
+     */
+    @Override
+    public void setValue(int i, int j, float value) {
+        slabs[i >>> shift].put((i & mask) * N + j, value);
+        inited.put(i, (byte) 1);
+    }
+
+    /**
+     * @see code.sma.core.impl.DenseMatrix#initRow(int, boolean)
+     */
+    @Override
+    public void initRow(int i, boolean needRanInit) {
+        FloatBuffer slab = slabs[i >>> shift];
+        int offset = (i & mask) * N;
+        if (needRanInit) {
+            SplitRandom ran = RandomUtil.current();
+            for (int n = 0; n < N; n++) {
+                slab.put(offset + n, (float) (ran.nextDouble() / N));
+            }
+        } else {
+            for (int n = 0; n < N; n++) {
+                slab.put(offset + n, 0.0f);
+            }
+        }
+        inited.put(i, (byte) 1);
+    }
+
+    /**
+     * @see code.sma.core.impl.DenseMatrix#hasRow(int)
+     */
+    @Override
+    public boolean hasRow(int i) {
+        return inited.get(i) != 0;
+    }
+
+    /**
+     * @see code.sma.core.impl.DenseMatrix#getRowRef(int)
+     */
+    @Override
+    public DenseVector getRowRef(int i) {
+        if (!hasRow(i)) {
+            return null;
+        }
+        return new RowView(slabs[i >>> shift], (i & mask) * N, N);
+    }
+
+    /**
+     * @see code.sma.core.impl.DenseMatrix#getRowRef(int, code.sma.core.impl.DenseVector)
+     */
+    @Override
+    public DenseVector getRowRef(int i, DenseVector reuse) {
+        if (!hasRow(i)) {
+            return null;
+        } else if (!(reuse instanceof RowView)) {
+            return getRowRef(i);
+        }
+        return ((RowView) reuse).wrap(slabs[i >>> shift], (i & mask) * N);
+    }
+
+    /**
+     * @see code.sma.core.impl.DenseMatrix#setRowRef(int, code.sma.core.impl.DenseVector)
+     */
+    @Override
+    public void setRowRef(int i, DenseVector b) {
+        if (b == null) {
+            inited.put(i, (byte) 0);
+            return;
+        }
+
+        FloatBuffer slab = slabs[i >>> shift];
+        int offset = (i & mask) * N;
+        for (int n = 0; n < N; n++) {
+            slab.put(offset + n, b.floatValue(n));
+        }
+        inited.put(i, (byte) 1);
+    }
+
+    /**
+     * @see code.sma.core.impl.DenseMatrix#getRows(int, int, java.nio.FloatBuffer)
+     */
+    @Override
+    public void getRows(int from, int num, FloatBuffer dst) {
+        int end = from + num;
+        for (int i = from; i < end;) {
+            int len = Math.min(end - i, mask + 1 - (i & mask));
+            FloatBuffer src = slabs[i >>> shift].duplicate();
+            src.position((i & mask) * N);
+            src.limit((i & mask) * N + len * N);
+            dst.put(src);
+            i += len;
+        }
+    }
+
+    /**
+     * @see code.sma.core.impl.DenseMatrix#setRows(int, int, java.nio.FloatBuffer)
+     */
+    @Override
+    public void setRows(int from, int num, FloatBuffer src) {
+        int end = from + num;
+        for (int i = from; i < end;) {
+            int len = Math.min(end - i, mask + 1 - (i & mask));
+            FloatBuffer dst = slabs[i >>> shift].duplicate();
+            dst.position((i & mask) * N);
+
+            FloatBuffer part = src.duplicate();
+            part.limit(part.position() + len * N);
+            dst.put(part);
+            src.position(src.position() + len * N);
+            i += len;
+        }
+        for (int i = from; i < end; i++) {
+            inited.put(i, (byte) 1);
+        }
+    }
+
+    /**
+     * @see code.sma.core.impl.DenseMatrix#getRow(int, float[])
+     */
+    @Override
+    public void getRow(int i, float[] dst) {
+        FloatBuffer slab = slabs[i >>> shift];
+        int offset = (i & mask) * N;
+        for (int n = 0; n < N; n++) {
+            dst[n] = slab.get(offset + n);
+        }
+    }
+
+    /**
+     * @see code.sma.core.impl.DenseMatrix#setRow(int, float[])
+     */
+    @Override
+    public void setRow(int i, float[] src) {
+        FloatBuffer slab = slabs[i >>> shift];
+        int offset = (i & mask) * N;
+        for (int n = 0; n < N; n++) {
+            slab.put(offset + n, src[n]);
+        }
+        inited.put(i, (byte) 1);
+    }
+
+    // ========================================
+    //          Kernels
+    // ========================================
+
+    /**
+     * @see code.sma.core.impl.DenseMatrix#innerProduct(int, int, code.sma.core.impl.DenseMatrix)
+     */
+    @Override
+    public double innerProduct(int u, int i, DenseMatrix tDenseMatrix) {
+        if (!(tDenseMatrix instanceof OffHeapDenseMatrix)) {
+            return innerProductByElem(u, i, tDenseMatrix);
+        }
+
+        OffHeapDenseMatrix t = (OffHeapDenseMatrix) tDenseMatrix;
+        FloatBuffer a = slabs[u >>> shift];
+        int aOff = (u & mask) * N;
+        FloatBuffer b = t.slabs[i >>> t.shift];
+        int bOff = (i & t.mask) * t.N;
+
+        double sum = 0.0d;
+        for (int n = 0; n < N; n++) {
+            sum += a.get(aOff + n) * b.get(bOff + n);
+        }
+        return sum;
+    }
+
+    /**
+     * @see code.sma.core.impl.DenseMatrix#axpy(int, double, code.sma.core.impl.DenseMatrix, int)
+     */
+    @Override
+    public void axpy(int i, double alpha, DenseMatrix x, int j) {
+        if (!(x instanceof OffHeapDenseMatrix)) {
+            axpyByElem(i, alpha, x, j);
+            return;
+        }
+
+        OffHeapDenseMatrix t = (OffHeapDenseMatrix) x;
+        FloatBuffer a = slabs[i >>> shift];
+        int aOff = (i & mask) * N;
+        FloatBuffer b = t.slabs[j >>> t.shift];
+        int bOff = (j & t.mask) * t.N;
+
+        for (int n = 0; n < N; n++) {
+            a.put(aOff + n, (float) (a.get(aOff + n) + alpha * b.get(bOff + n)));
+        }
+    }
+
+    /**
+     * @see code.sma.core.impl.DenseMatrix#sgdUpdate(int, code.sma.core.impl.DenseMatrix, int, double, double, double, double)
+     */
+    @Override
+    public void sgdUpdate(int u, DenseMatrix tDenseMatrix, int i, double cu, double du, double ci,
+                          double di) {
+        if (!(tDenseMatrix instanceof OffHeapDenseMatrix)) {
+            sgdUpdateByElem(u, tDenseMatrix, i, cu, du, ci, di);
+            return;
+        }
+
+        OffHeapDenseMatrix t = (OffHeapDenseMatrix) tDenseMatrix;
+        FloatBuffer a = slabs[u >>> shift];
+        int aOff = (u & mask) * N;
+        FloatBuffer b = t.slabs[i >>> t.shift];
+        int bOff = (i & t.mask) * t.N;
+
+        for (int n = 0; n < N; n++) {
+            double Fus = a.get(aOff + n);
+            double Gis = b.get(bOff + n);
+
+            a.put(aOff + n, (float) (cu * Fus + du * Gis));
+            b.put(bOff + n, (float) (ci * Gis + di * Fus));
+        }
+    }
+
+    /**
+     * @see code.sma.core.impl.DenseMatrix#sgdUpdateL1(int, code.sma.core.impl.DenseMatrix, int, double, double, double)
+     */
+    @Override
+    public void sgdUpdateL1(int u, DenseMatrix tDenseMatrix, int i, double c, double d,
+                            double eps2) {
+        if (!(tDenseMatrix instanceof OffHeapDenseMatrix)) {
+            sgdUpdateL1ByElem(u, tDenseMatrix, i, c, d, eps2);
+            return;
+        }
+
+        OffHeapDenseMatrix t = (OffHeapDenseMatrix) tDenseMatrix;
+        FloatBuffer a = slabs[u >>> shift];
+        int aOff = (u & mask) * N;
+        FloatBuffer b = t.slabs[i >>> t.shift];
+        int bOff = (i & t.mask) * t.N;
+
+        for (int n = 0; n < N; n++) {
+            double Fus = a.get(aOff + n);
+            double Gis = b.get(bOff + n);
+
+            a.put(aOff + n, (float) (Fus + d * Gis - c * Fus / Math.sqrt(Fus * Fus + eps2)));
+            b.put(bOff + n, (float) (Gis + d * Fus - c * Gis / Math.sqrt(Gis * Gis + eps2)));
+        }
+    }
+
+    /**
+     * @see code.sma.core.impl.DenseMatrix#innerProduct(int, float[])
+     */
+    @Override
+    public double innerProduct(int i, float[] x) {
+        FloatBuffer b = slabs[i >>> shift];
+        int bOff = (i & mask) * N;
+
+        double sum = 0.0d;
+        for (int n = 0; n < N; n++) {
+            sum += x[n] * b.get(bOff + n);
+        }
+        return sum;
+    }
+
+    /**
+     * @see code.sma.core.impl.DenseMatrix#sgdUpdate(int, float[], double, double, double, double[])
+     */
+    @Override
+    public void sgdUpdate(int i, float[] x, double c, double d, double g, double[] grad) {
+        FloatBuffer b = slabs[i >>> shift];
+        int bOff = (i & mask) * N;
+
+        for (int n = 0; n < N; n++) {
+            double Gis = b.get(bOff + n);
+            grad[n] += g * Gis;
+            b.put(bOff + n, (float) (c * Gis + d * x[n]));
+        }
+    }
+
+    /**
+     * @see code.sma.core.impl.DenseMatrix#multiply(int[], int, code.sma.core.impl.DenseMatrix, float[])
+     */
+    @Override
+    public void multiply(int[] rows, int num_row, DenseMatrix tDenseMatrix, float[] out) {
+        if (!(tDenseMatrix instanceof OffHeapDenseMatrix)) {
+            multiplyByElem(rows, num_row, tDenseMatrix, out);
+            return;
+        }
+
+        OffHeapDenseMatrix t = (OffHeapDenseMatrix) tDenseMatrix;
+        int num_col = t.M;
+        for (int iBegin = 0; iBegin < num_col; iBegin += MULTIPLY_TILE_SIZE) {
+            int iEnd = Math.min(num_col, iBegin + MULTIPLY_TILE_SIZE);
+
+            for (int r = 0; r < num_row; r++) {
+                int u = rows[r];
+                FloatBuffer a = slabs[u >>> shift];
+                int aOff = (u & mask) * N;
+                int oOff = r * num_col;
+
+                for (int i = iBegin; i < iEnd; i++) {
+                    FloatBuffer b = t.slabs[i >>> t.shift];
+                    int bOff = (i & t.mask) * t.N;
+
+                    double sum = 0.0d;
+                    for (int n = 0; n < N; n++) {
+                        sum += a.get(aOff + n) * b.get(bOff + n);
+                    }
+                    out[oOff + i] = (float) sum;
+                }
+            }
+        }
+    }
+
+    /**
+     * view over one row of the slab, where writes to the view go to the slab
+     *
+     * @author Chao.Chen
+     * @version $Id: OffHeapDenseMatrix.java, v 0.1 2017年6月30日 上午9:42:17 Chao.Chen Exp $
+     */
+    static final class RowView extends DenseVector {
+        private static final long serialVersionUID = 1L;
+
+        /** The slab holding the values*/
+        private FloatBuffer       slab;
+        /** The position of the first value in the slab*/
+        private int               offset;
+
+        RowView(FloatBuffer slab, int offset, int N) {
+            super(null, 0, N);
+            this.slab = slab;
+            this.offset = offset;
+        }
+
+        RowView wrap(FloatBuffer slab, int offset) {
+            this.slab = slab;
+            this.offset = offset;
+            return this;
+        }
+
+        /**
+         * @see code.sma.core.impl.DenseVector#floatValue(int)
+         */
+        @Override
+        public float floatValue(int i) {
+            if (i >= length()) {
+                return 0.0f;
+            } else {
+                return slab.get(offset + i);
+            }
+        }
+
+        /**
+         * @see code.sma.core.impl.DenseVector#setValue(int, double)
+         */
+        @Override
+        public void setValue(int i, double value) {
+            if (i < length()) {
+                slab.put(offset + i, (float) value);
+            }
+        }
+
+        /**
+         * @see code.sma.core.impl.DenseVector#setValue(int, float)
+         */
+        @Override
+        public void setValue(int i, float value) {
+            if (i < length()) {
+                slab.put(offset + i, value);
+            }
+        }
+
+        /**
+         * @see code.sma.core.impl.DenseVector#innerProduct(code.sma.core.AbstractVector)
+         */
+        @Override
+        public double innerProduct(AbstractVector b) {
+            assert this.length() == b.length() : "The dimentions of two vector are inequate";
+
+            int N = length();
+            double sum = 0.0d;
+            if (b instanceof RowView) {
+                FloatBuffer bSlab = ((RowView) b).slab;
+                int bOff = ((RowView) b).offset;
+                for (int n = 0; n < N; n++) {
+                    sum += slab.get(offset + n) * bSlab.get(bOff + n);
+                }
+            } else {
+                for (int n = 0; n < N; n++) {
+                    sum += slab.get(offset + n) * b.floatValue(n);
+                }
+            }
+            return sum;
+        }
+
+        /**
+         * @see code.sma.core.impl.DenseVector#toString()
+         */
+        @Override
+        public String toString() {
+            int N = length();
+            float[] vals = new float[N];
+            for (int n = 0; n < N; n++) {
+                vals[n] = slab.get(offset + n);
+            }
+            return ArrayUtils.toString(vals);
+        }
+    }
+}
@@ -8,6 +8,8 @@ import org.apache.commons.io.IOUtils;
 
 import code.sma.core.AbstractMatrix;
 import code.sma.core.DataElem;
+import code.sma.core.linalg.Cholesky;
+import code.sma.core.linalg.GaussJordan;
 import code.sma.util.StringUtil;
 
 /**
@@ -580,79 +582,12 @@ public class SparseMatrix extends AbstractMatrix implements Serializable {
         if (this.M != this.N)
             throw new RuntimeException("Dimensions disagree");
 
-        SparseMatrix original = this;
-        SparseMatrix newMatrix = makeIdentity(this.M);
-
         int n = this.M;
+        double[] inv = new double[n * n];
+        GaussJordan.invert(toDense(), n, inv);
 
-        if (n == 1) {
-            newMatrix.setValue(0, 0, 1 / original.getValue(0, 0));
-            return newMatrix;
-        }
-
-        SparseMatrix b = new SparseMatrix(original);
-
-        for (int i = 0; i < n; i++) {
-            // find pivot:
-            double mag = 0;
-            int pivot = -1;
-
-            for (int j = i; j < n; j++) {
-                double mag2 = Math.abs(b.getValue(j, i));
-                if (mag2 > mag) {
-                    mag = mag2;
-                    pivot = j;
-                }
-            }
-
-            // no pivot (error):
-            if (pivot == -1 || mag == 0) {
-                return newMatrix;
-            }
-
-            // move pivot row into position:
-            if (pivot != i) {
-                double temp;
-                for (int j = i; j < n; j++) {
-                    temp = b.getValue(i, j);
-                    b.setValue(i, j, b.getValue(pivot, j));
-                    b.setValue(pivot, j, temp);
-                }
-
-                for (int j = 0; j < n; j++) {
-                    temp = newMatrix.getValue(i, j);
-                    newMatrix.setValue(i, j, newMatrix.getValue(pivot, j));
-                    newMatrix.setValue(pivot, j, temp);
-                }
-            }
-
-            // normalize pivot row:
-            mag = b.getValue(i, i);
-            for (int j = i; j < n; j++) {
-                b.setValue(i, j, b.getValue(i, j) / mag);
-            }
-            for (int j = 0; j < n; j++) {
-                newMatrix.setValue(i, j, newMatrix.getValue(i, j) / mag);
-            }
-
-            // eliminate pivot row component from other rows:
-            for (int k = 0; k < n; k++) {
-                if (k == i)
-                    continue;
-
-                double mag2 = b.getValue(k, i);
-
-                for (int j = i; j < n; j++) {
-                    b.setValue(k, j, b.getValue(k, j) - mag2 * b.getValue(i, j));
-                }
-                for (int j = 0; j < n; j++) {
-                    newMatrix.setValue(k, j,
-                        newMatrix.getValue(k, j) - mag2 * newMatrix.getValue(i, j));
-                }
-            }
-        }
-
-        return newMatrix;
+        // no pivot (error): the partially eliminated matrix is returned
+        return fromDense(inv, n, n);
     }
 
     /**
@@ -665,30 +600,59 @@ public class SparseMatrix extends AbstractMatrix implements Serializable {
         if (this.M != this.N)
             throw new RuntimeException("Matrix is not square");
 
-        SparseMatrix A = this;
-
-        int n = A.M;
-        SparseMatrix L = new SparseMatrix(n, n);
-
+        int n = this.M;
+        double[] l = toDense();
+        if (!Cholesky.factor(l, n)) {
+            //throw new RuntimeException("Matrix not positive definite");
+            return null;
+        }
         for (int i = 0; i < n; i++) {
-            for (int j = 0; j <= i; j++) {
-                double sum = 0.0;
-                for (int k = 0; k < j; k++) {
-                    sum += L.getValue(i, k) * L.getValue(j, k);
-                }
-                if (i == j) {
-                    L.setValue(i, i, Math.sqrt(A.getValue(i, i) - sum));
-                } else {
-                    L.setValue(i, j, 1.0 / L.getValue(j, j) * (A.getValue(i, j) - sum));
-                }
+            for (int j = i + 1; j < n; j++) {
+                l[i * n + j] = 0.0d;
             }
-            if (Double.isNaN(L.getValue(i, i))) {
-                //throw new RuntimeException("Matrix not positive definite: (" + i + ", " + i + ")");
-                return null;
+        }
+
+        return fromDense(l, n, n).transpose();
+    }
+
+    /**
+     * Copy the stored values to a dense row-major array.
+     * 
+     * @return The row-major values of the matrix.
+     */
+    private double[] toDense() {
+        double[] a = new double[M * N];
+        for (int i = 0; i < M; i++) {
+            int[] indexList = rows[i].indexList();
+            if (indexList == null)
+                continue;
+
+            int iOff = i * N;
+            for (int j : indexList) {
+                a[iOff + j] = rows[i].floatValue(j);
             }
         }
+        return a;
+    }
 
-        return L.transpose();
+    /**
+     * Construct a sparse matrix holding the non-zero values of a dense row-major array.
+     * 
+     * @param a The row-major values.
+     * @param m The number of rows.
+     * @param n The number of columns.
+     * @return The sparse matrix.
+     */
+    private static SparseMatrix fromDense(double[] a, int m, int n) {
+        SparseMatrix A = new SparseMatrix(m, n);
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j < n; j++) {
+                if (a[i * n + j] != 0.0d) {
+                    A.setValue(i, j, a[i * n + j]);
+                }
+            }
+        }
+        return A;
     }
 
     /**
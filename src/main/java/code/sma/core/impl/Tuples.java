@@ -8,6 +8,7 @@ import org.apache.commons.io.IOUtils;
 import code.sma.core.AbstractIterator;
 import code.sma.core.AbstractMatrix;
 import code.sma.core.DataElem;
+import code.sma.util.SplitRandom;
 import code.sma.util.StringUtil;
 
 /**
@@ -35,6 +36,26 @@ public class Tuples extends AbstractMatrix {
         this.num_val = 0;
     }
 
+    /**
+     * build from the loaded columns, without any parsing
+     * 
+     * @param row_ptr       the beginning and ends of each row, size(row_ptr)=num_row+1
+     * @param rowIndx       array of user id
+     * @param colIndx       array of item id
+     * @param vals          array of labels
+     * @param num_row       number of rows
+     * @param num_val       number of entries
+     */
+    public Tuples(int[] row_ptr, int[] rowIndx, int[] colIndx, float[] vals, int num_row,
+                  int num_val) {
+        this.row_ptr = row_ptr;
+        this.rowIndx = rowIndx;
+        this.colIndx = colIndx;
+        this.vals = vals;
+        this.num_row = num_row;
+        this.num_val = num_val;
+    }
+
     /**
      * @see code.sma.core.AbstractMatrix#setValue(int, int, double)
      */
@@ -84,6 +105,58 @@ public class Tuples extends AbstractMatrix {
         IOUtils.closeQuietly(scanner);
     }
 
+    /** 
+     * hold out each entry with the given probability
+     * 
+     * @see code.sma.core.AbstractMatrix#split(double, code.sma.util.SplitRandom)
+     */
+    @Override
+    public AbstractMatrix[] split(double ratio, SplitRandom ran) {
+        boolean[] heldOut = new boolean[num_val];
+        int num_held = 0;
+        for (int p = 0; p < num_val; p++) {
+            if (ran.nextDouble() < ratio) {
+                heldOut[p] = true;
+                num_held++;
+            }
+        }
+
+        Tuples fit = select(heldOut, false, num_val - num_held);
+        Tuples held = select(heldOut, true, num_held);
+        return new AbstractMatrix[] { fit, held };
+    }
+
+    /**
+     * copy the entries whose indicator equals the given value, where empty rows are skipped
+     * 
+     * @param heldOut   the indicator of each entry
+     * @param value     the value to select
+     * @param nnz       the number of selected entries
+     * @return          the selected entries
+     */
+    protected Tuples select(boolean[] heldOut, boolean value, int nnz) {
+        Tuples part = new Tuples(nnz);
+        for (int r = 0; r < num_row; r++) {
+            for (int p = row_ptr[r]; p < row_ptr[r + 1]; p++) {
+                if (heldOut[p] != value) {
+                    continue;
+                }
+
+                part.rowIndx[part.num_val] = rowIndx[p];
+                part.colIndx[part.num_val] = colIndx[p];
+                part.vals[part.num_val] = vals[p];
+                part.num_val++;
+            }
+
+            if (part.num_val > part.row_ptr[part.num_row]) {
+                part.row_ptr[++part.num_row] = part.num_val;
+                part.num_ufactor++;
+            }
+        }
+        part.num_ifactor = part.num_val;
+        return part;
+    }
+
     /** 
      * @see java.lang.Iterable#iterator()
      */
@@ -134,6 +207,24 @@ public class Tuples extends AbstractMatrix {
             return e;
         }
 
+        /** 
+         * @see code.sma.core.AbstractIterator#skip(int)
+         */
+        @Override
+        public int skip(int num) {
+            int skipped = Math.min(num, num_row - cursor);
+            cursor += skipped;
+            return skipped;
+        }
+
+        /** 
+         * @see code.sma.core.AbstractIterator#get_num_row()
+         */
+        @Override
+        public int get_num_row() {
+            return num_row;
+        }
+
         /** 
          * @see code.sma.core.AbstractIterator#get_num_global()
          */
@@ -168,6 +259,15 @@ public class Tuples extends AbstractMatrix {
 
     }
 
+    /**
+     * Getter method for property <tt>row_ptr</tt>.
+     * 
+     * @return property value of row_ptr
+     */
+    public int[] getRow_ptr() {
+        return row_ptr;
+    }
+
     /**
      * Getter method for property <tt>rowIndx</tt>.
      * 
@@ -2,6 +2,12 @@ package code.sma.core.impl;
 
 import org.ujmp.core.Matrix;
 import org.ujmp.core.calculation.Calculation.Ret;
+import org.ujmp.core.doublematrix.impl.DefaultDenseDoubleMatrix2D;
+import org.ujmp.core.interfaces.HasColumnMajorDoubleArray1D;
+
+import code.sma.core.linalg.Blas;
+import code.sma.core.linalg.Cholesky;
+import code.sma.core.linalg.GaussJordan;
 
 /**
  * 
@@ -55,6 +61,42 @@ public class UJMPDenseMatrix {
         return map;
     }
 
+    /**
+     * Get the column-major values of an UJMP matrix, i.e., the row-major values of its transpose,
+     * which are shared with the matrix if it is backed by one array.
+     * 
+     * @param m An UJMP matrix.
+     * @return The column-major values, which should not be modified.
+     */
+    static double[] columnMajor(Matrix m) {
+        if (m instanceof HasColumnMajorDoubleArray1D) {
+            return ((HasColumnMajorDoubleArray1D) m).getColumnMajorDoubleArray1D();
+        }
+
+        long[] size = m.getSize();
+        int rows = (int) size[0];
+        int cols = (int) size[1];
+        double[] values = new double[rows * cols];
+        for (int j = 0; j < cols; j++) {
+            for (int i = 0; i < rows; i++) {
+                values[j * rows + i] = m.getAsDouble(i, j);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Construct an UJMP matrix backed by the column-major values, without copy.
+     * 
+     * @param values The column-major values.
+     * @param m The number of rows.
+     * @param n The number of columns.
+     * @return An UJMP matrix.
+     */
+    static Matrix fromColumnMajor(double[] values, int m, int n) {
+        return new DefaultDenseDoubleMatrix2D(values, m, n);
+    }
+
     /**
      * Set a new value at the given index.
      * 
@@ -395,8 +437,10 @@ public class UJMPDenseMatrix {
         if (N != x.length())
             throw new RuntimeException("Dimensions disagree");
 
-        Matrix m = map.mtimes(x.getVector());
-        return new UJMPDenseVector(m);
+        // A is stored as the row-major A^T
+        double[] y = new double[M];
+        Blas.gemvT(N, M, 1.0d, columnMajor(map), columnMajor(x.getVector()), 0.0d, y);
+        return new UJMPDenseVector(fromColumnMajor(y, M, 1));
     }
 
     /**
@@ -410,7 +454,11 @@ public class UJMPDenseMatrix {
         if (N != (B.length())[0])
             throw new RuntimeException("Dimensions disagree");
 
-        return new UJMPDenseMatrix(map.mtimes(B.getMatrix()));
+        // C^T = B^T * A^T over the row-major transposes
+        int L = B.N;
+        double[] c = new double[M * L];
+        Blas.gemm(L, M, N, 1.0d, columnMajor(B.getMatrix()), columnMajor(map), 0.0d, c);
+        return new UJMPDenseMatrix(fromColumnMajor(c, M, L));
     }
 
     // Matrix-Matrix product (A = AB), without using extra memory.
@@ -434,10 +482,14 @@ public class UJMPDenseMatrix {
         if (A.M != B.M || A.N != B.N)
             throw new RuntimeException("Dimensions disagree");
 
-        Matrix m1 = A.map;
-        Matrix m2 = B.getMatrix();
+        double[] a = columnMajor(A.map);
+        double[] b = columnMajor(B.getMatrix());
+        double[] c = new double[M * N];
+        for (int j = 0; j < c.length; j++) {
+            c[j] = a[j] + b[j];
+        }
 
-        return new UJMPDenseMatrix(m1.plus(m2));
+        return new UJMPDenseMatrix(fromColumnMajor(c, M, N));
     }
 
     /**
@@ -453,14 +505,20 @@ public class UJMPDenseMatrix {
     /**
      * Calculate inverse matrix.
      * 
-     * @throws RuntimeException when dimensions disagree.
+     * @throws RuntimeException when dimensions disagree, or the matrix is singular.
      * @return The inverse of current matrix.
      */
     public UJMPDenseMatrix inverse() {
         if (this.M != this.N)
             throw new RuntimeException("Dimensions disagree");
 
-        return new UJMPDenseMatrix(this.map.inv());
+        // inv(A^T) = inv(A)^T, thus the row-major inverse of A^T is the column-major inverse of A
+        int n = this.M;
+        double[] inv = new double[n * n];
+        if (!GaussJordan.invert(columnMajor(map).clone(), n, inv))
+            throw new RuntimeException("Matrix is singular");
+
+        return new UJMPDenseMatrix(fromColumnMajor(inv, n, n));
     }
 
     /**
@@ -475,30 +533,21 @@ public class UJMPDenseMatrix {
 
         // ToDo: Need to check whether A is symmetric...
 
-        UJMPDenseMatrix A = this.transpose();
-
-        int n = A.M;
-        UJMPDenseMatrix L = new UJMPDenseMatrix(n, n);
-
+        // the lower triangle of A^T is factorized, where A^T is the row-major values of A
+        int n = this.M;
+        double[] l = columnMajor(map).clone();
+        if (!Cholesky.factor(l, n)) {
+            //throw new RuntimeException("Matrix not positive definite");
+            return null;
+        }
         for (int i = 0; i < n; i++) {
-            for (int j = 0; j <= i; j++) {
-                double sum = 0.0;
-                for (int k = 0; k < j; k++) {
-                    sum += L.getValue(i, k) * L.getValue(j, k);
-                }
-                if (i == j) {
-                    L.setValue(i, i, Math.sqrt(A.getValue(i, i) - sum));
-                } else {
-                    L.setValue(i, j, 1.0 / L.getValue(j, j) * (A.getValue(i, j) - sum));
-                }
-            }
-            if (Double.isNaN(L.getValue(i, i))) {
-                //throw new RuntimeException("Matrix not positive definite: (" + i + ", " + i + ")");
-                return null;
+            for (int j = i + 1; j < n; j++) {
+                l[i * n + j] = 0.0d;
             }
         }
 
-        return L.transpose();
+        // the row-major L is the column-major L^T
+        return new UJMPDenseMatrix(fromColumnMajor(l, n, n));
     }
 
     /**
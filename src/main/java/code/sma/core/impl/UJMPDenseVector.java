@@ -3,6 +3,8 @@ package code.sma.core.impl;
 import org.ujmp.core.Matrix;
 import org.ujmp.core.calculation.Calculation.Ret;
 
+import code.sma.core.linalg.Blas;
+
 /**
  * This class implements dense vector with array-based implementation.
  * Note that we use UJMP package (http://www.ujmp.org) to implement this class.
@@ -457,15 +459,12 @@ public class UJMPDenseVector {
      * @return The resulting outer-product matrix. 
      */
     public UJMPDenseMatrix outerProduct(UJMPDenseVector b) {
-        UJMPDenseMatrix A = new UJMPDenseMatrix(this.N, b.N);
-
-        for (int i = 0; i < this.N; i++) {
-            for (int j = 0; j < b.N; j++) {
-                A.setValue(i, j, this.getValue(i) * b.getValue(j));
-            }
-        }
+        // A^T = b * a^T over the row-major transpose
+        double[] a = new double[this.N * b.N];
+        Blas.ger(b.N, this.N, 1.0d, UJMPDenseMatrix.columnMajor(b.map),
+            UJMPDenseMatrix.columnMajor(map), a);
 
-        return A;
+        return new UJMPDenseMatrix(UJMPDenseMatrix.fromColumnMajor(a, this.N, b.N));
     }
 
     /*========================================
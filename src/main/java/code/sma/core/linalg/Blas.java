@@ -0,0 +1,239 @@
+package code.sma.core.linalg;
+
+/**
+ * Cache-blocked dense kernels over row-major primitive arrays,
+ * i.e., the matrix-matrix product (GEMM), the matrix-vector products (GEMV),
+ * the rank-1 update (GER), the symmetric rank-k update (SYRK) and the triangular solves (TRSV). <br/>
+ * No kernel allocates, thus small K-by-K systems are solved at memory bandwidth.
+ * Column-major matrices are passed as the row-major transposes.
+ *
+ * @author Chao.Chen
+ * @version $Id: Blas.java, v 0.1 2017年7月10日 下午3:05:18 Chao.Chen Exp $
+ */
+public final class Blas {
+    /** the block of rows of C in GEMM*/
+    private static final int ROW_BLOCK   = 64;
+    /** the block of the inner dimension, in GEMM and SYRK*/
+    private static final int INNER_BLOCK = 128;
+    /** the block of columns of C in GEMM, where one block of B fits in L2 cache*/
+    private static final int COL_BLOCK   = 256;
+
+    private Blas() {
+    }
+
+    /**
+     * C = alpha * A * B + beta * C
+     *
+     * @param m     the number of rows of A and C
+     * @param n     the number of columns of B and C
+     * @param k     the number of columns of A, and rows of B
+     * @param alpha the scale of the product
+     * @param a     the m-by-k matrix
+     * @param b     the k-by-n matrix
+     * @param beta  the scale of C, where C is not read if zero
+     * @param c     the m-by-n matrix
+     */
+    public static void gemm(int m, int n, int k, double alpha, double[] a, double[] b,
+                            double beta, double[] c) {
+        scale(m * n, beta, c);
+
+        for (int jj = 0; jj < n; jj += COL_BLOCK) {
+            int jEnd = Math.min(jj + COL_BLOCK, n);
+            for (int pp = 0; pp < k; pp += INNER_BLOCK) {
+                int pEnd = Math.min(pp + INNER_BLOCK, k);
+                for (int ii = 0; ii < m; ii += ROW_BLOCK) {
+                    int iEnd = Math.min(ii + ROW_BLOCK, m);
+
+                    // the block of B stays in cache while the rows of C stream by
+                    for (int i = ii; i < iEnd; i++) {
+                        int aOff = i * k;
+                        int cOff = i * n;
+                        for (int p = pp; p < pEnd; p++) {
+                            double aip = alpha * a[aOff + p];
+                            if (aip == 0.0d) {
+                                continue;
+                            }
+
+                            int bOff = p * n;
+                            for (int j = jj; j < jEnd; j++) {
+                                c[cOff + j] += aip * b[bOff + j];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * y = alpha * A * x + beta * y
+     *
+     * @param m     the number of rows of A
+     * @param n     the number of columns of A
+     * @param alpha the scale of the product
+     * @param a     the m-by-n matrix
+     * @param x     the vector of length n
+     * @param beta  the scale of y, where y is not read if zero
+     * @param y     the vector of length m
+     */
+    public static void gemv(int m, int n, double alpha, double[] a, double[] x, double beta,
+                            double[] y) {
+        for (int i = 0; i < m; i++) {
+            int aOff = i * n;
+
+            double s = 0.0d;
+            for (int j = 0; j < n; j++) {
+                s += a[aOff + j] * x[j];
+            }
+            y[i] = (beta == 0.0d) ? alpha * s : alpha * s + beta * y[i];
+        }
+    }
+
+    /**
+     * y = alpha * A^T * x + beta * y, which streams the rows of A
+     *
+     * @param m     the number of rows of A
+     * @param n     the number of columns of A
+     * @param alpha the scale of the product
+     * @param a     the m-by-n matrix
+     * @param x     the vector of length m
+     * @param beta  the scale of y, where y is not read if zero
+     * @param y     the vector of length n
+     */
+    public static void gemvT(int m, int n, double alpha, double[] a, double[] x, double beta,
+                             double[] y) {
+        scale(n, beta, y);
+
+        for (int i = 0; i < m; i++) {
+            axpy(n, alpha * x[i], a, i * n, y, 0);
+        }
+    }
+
+    /**
+     * A = alpha * x * y^T + A
+     *
+     * @param m     the number of rows of A
+     * @param n     the number of columns of A
+     * @param alpha the scale of the product
+     * @param x     the vector of length m
+     * @param y     the vector of length n
+     * @param a     the m-by-n matrix
+     */
+    public static void ger(int m, int n, double alpha, double[] x, double[] y, double[] a) {
+        for (int i = 0; i < m; i++) {
+            axpy(n, alpha * x[i], y, 0, a, i * n);
+        }
+    }
+
+    /**
+     * C = alpha * A * A^T + C on the lower triangle, leaving the upper triangle untouched,
+     * where C is computed in 2-by-2 tiles held in registers over blocks of the inner dimension
+     *
+     * @param n     the order of C, and the number of rows of A
+     * @param k     the number of columns of A
+     * @param alpha the scale of the product
+     * @param a     the n-by-k matrix
+     * @param c     the n-by-n matrix
+     */
+    public static void syrk(int n, int k, double alpha, double[] a, double[] c) {
+        for (int pp = 0; pp < k; pp += INNER_BLOCK) {
+            int pEnd = Math.min(pp + INNER_BLOCK, k);
+
+            for (int i = 0; i < n; i += 2) {
+                // the last odd row is paired with itself, and stored once
+                boolean pair = i + 1 < n;
+                int i0Off = i * k;
+                int i1Off = pair ? i0Off + k : i0Off;
+
+                for (int j = 0; j <= i; j += 2) {
+                    int j0Off = j * k;
+                    int j1Off = (j + 1 < n) ? j0Off + k : j0Off;
+
+                    double s00 = 0.0d;
+                    double s01 = 0.0d;
+                    double s10 = 0.0d;
+                    double s11 = 0.0d;
+                    for (int p = pp; p < pEnd; p++) {
+                        double ai0 = a[i0Off + p];
+                        double ai1 = a[i1Off + p];
+                        double aj0 = a[j0Off + p];
+                        double aj1 = a[j1Off + p];
+                        s00 += ai0 * aj0;
+                        s01 += ai0 * aj1;
+                        s10 += ai1 * aj0;
+                        s11 += ai1 * aj1;
+                    }
+
+                    int cOff = i * n + j;
+                    c[cOff] += alpha * s00;
+                    if (j < i) {
+                        c[cOff + 1] += alpha * s01;
+                    }
+                    if (pair) {
+                        c[cOff + n] += alpha * s10;
+                        c[cOff + n + 1] += alpha * s11;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * solve L * x = b in place
+     *
+     * @param n     the order of the matrix
+     * @param l     the row-major n-by-n matrix, whose lower triangle is read
+     * @param b     the right-hand side, overwritten by the solution
+     */
+    public static void trsvLower(int n, double[] l, double[] b) {
+        for (int i = 0; i < n; i++) {
+            int iOff = i * n;
+
+            double s = b[i];
+            for (int p = 0; p < i; p++) {
+                s -= l[iOff + p] * b[p];
+            }
+            b[i] = s / l[iOff + i];
+        }
+    }
+
+    /**
+     * solve L^T * x = b in place, which streams the rows of L
+     *
+     * @param n     the order of the matrix
+     * @param l     the row-major n-by-n matrix, whose lower triangle is read
+     * @param b     the right-hand side, overwritten by the solution
+     */
+    public static void trsvLowerT(int n, double[] l, double[] b) {
+        for (int i = n - 1; i >= 0; i--) {
+            int iOff = i * n;
+
+            b[i] /= l[iOff + i];
+            axpy(i, -b[i], l, iOff, b, 0);
+        }
+    }
+
+    /**
+     * y[yOff:yOff+n] += alpha * x[xOff:xOff+n]
+     */
+    static void axpy(int n, double alpha, double[] x, int xOff, double[] y, int yOff) {
+        if (alpha == 0.0d) {
+            return;
+        }
+        for (int j = 0; j < n; j++) {
+            y[yOff + j] += alpha * x[xOff + j];
+        }
+    }
+
+    /**
+     * x[0:n] *= alpha, where x is cleared if alpha is zero
+     */
+    static void scale(int n, double alpha, double[] x) {
+        if (alpha == 1.0d) {
+            return;
+        }
+        for (int j = 0; j < n; j++) {
+            x[j] = (alpha == 0.0d) ? 0.0d : alpha * x[j];
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package code.sma.core.linalg;
+
+/**
+ * Cholesky factorization of symmetric positive-definite matrices,
+ * and the solution of the linear systems, over row-major primitive arrays
+ * without any allocation, i.e., A = L * L^T and A * x = b.
+ *
+ * @author Chao.Chen
+ * @version $Id: Cholesky.java, v 0.1 2017年7月7日 上午10:12:46 Chao.Chen Exp $
+ */
+public final class Cholesky {
+
+    private Cholesky() {
+    }
+
+    /**
+     * factorize the matrix in place, where only the lower triangle of a is read,
+     * and L is written to the lower triangle, leaving the upper triangle untouched
+     *
+     * @param a     the row-major n-by-n matrix
+     * @param n     the order of the matrix
+     * @return      false if the matrix is not positive definite
+     */
+    public static boolean factor(double[] a, int n) {
+        for (int j = 0; j < n; j++) {
+            int jOff = j * n;
+
+            double d = a[jOff + j];
+            for (int k = 0; k < j; k++) {
+                d -= a[jOff + k] * a[jOff + k];
+            }
+            if (!(d > 0.0d)) {
+                return false;
+            }
+            d = Math.sqrt(d);
+            a[jOff + j] = d;
+
+            for (int i = j + 1; i < n; i++) {
+                int iOff = i * n;
+
+                double s = a[iOff + j];
+                for (int k = 0; k < j; k++) {
+                    s -= a[iOff + k] * a[jOff + k];
+                }
+                a[iOff + j] = s / d;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * solve L * L^T * x = b in place, by forward and backward substitution
+     *
+     * @param l     the factor in the lower triangle of the row-major n-by-n matrix
+     * @param n     the order of the matrix
+     * @param b     the right-hand side, overwritten by the solution
+     */
+    public static void solve(double[] l, int n, double[] b) {
+        Blas.trsvLower(n, l, b);
+        Blas.trsvLowerT(n, l, b);
+    }
+}
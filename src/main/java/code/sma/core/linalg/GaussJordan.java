@@ -0,0 +1,85 @@
+package code.sma.core.linalg;
+
+/**
+ * Inversion of square matrices by Gauss-Jordan elimination with partial pivoting,
+ * over row-major primitive arrays, where pivoting swaps and eliminates whole rows at once.
+ *
+ * @author Chao.Chen
+ * @version $Id: GaussJordan.java, v 0.1 2017年7月10日 下午4:41:52 Chao.Chen Exp $
+ */
+public final class GaussJordan {
+
+    private GaussJordan() {
+    }
+
+    /**
+     * invert the matrix, where a is destroyed
+     *
+     * @param a     the row-major n-by-n matrix
+     * @param n     the order of the matrix
+     * @param inv   the row-major n-by-n inverse, left eliminated up to the failing column if singular
+     * @return      false if the matrix is singular, i.e., a column has no non-zero pivot
+     */
+    public static boolean invert(double[] a, int n, double[] inv) {
+        for (int j = 0; j < n * n; j++) {
+            inv[j] = 0.0d;
+        }
+        for (int i = 0; i < n; i++) {
+            inv[i * n + i] = 1.0d;
+        }
+
+        for (int i = 0; i < n; i++) {
+            int iOff = i * n;
+
+            // find pivot
+            double mag = 0.0d;
+            int pivot = -1;
+            for (int r = i; r < n; r++) {
+                double mag2 = Math.abs(a[r * n + i]);
+                if (mag2 > mag) {
+                    mag = mag2;
+                    pivot = r;
+                }
+            }
+            if (pivot == -1) {
+                return false;
+            }
+
+            // move pivot row into position
+            if (pivot != i) {
+                swap(a, iOff + i, pivot * n + i, n - i);
+                swap(inv, iOff, pivot * n, n);
+            }
+
+            // normalize pivot row
+            mag = a[iOff + i];
+            for (int j = i; j < n; j++) {
+                a[iOff + j] /= mag;
+            }
+            for (int j = 0; j < n; j++) {
+                inv[iOff + j] /= mag;
+            }
+
+            // eliminate pivot row component from other rows
+            for (int r = 0; r < n; r++) {
+                if (r == i) {
+                    continue;
+                }
+
+                int rOff = r * n;
+                double mag2 = -a[rOff + i];
+                Blas.axpy(n - i, mag2, a, iOff + i, a, rOff + i);
+                Blas.axpy(n, mag2, inv, iOff, inv, rOff);
+            }
+        }
+        return true;
+    }
+
+    private static void swap(double[] x, int off1, int off2, int len) {
+        for (int j = 0; j < len; j++) {
+            double temp = x[off1 + j];
+            x[off1 + j] = x[off2 + j];
+            x[off2 + j] = temp;
+        }
+    }
+}
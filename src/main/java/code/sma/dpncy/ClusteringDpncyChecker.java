@@ -3,11 +3,10 @@ package code.sma.dpncy;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 import code.sma.clustering.Cluster;
 import code.sma.clustering.CoclusterUtil;
@@ -15,11 +14,14 @@ import code.sma.clustering.Distance;
 import code.sma.core.AbstractMatrix;
 import code.sma.core.impl.SparseMatrix;
 import code.sma.main.Configures;
+import code.sma.thread.Learner;
+import code.sma.thread.LearnerPool;
 import code.sma.thread.TaskMsgDispatcher;
 import code.sma.util.ClusterInfoUtil;
 import code.sma.util.ExceptionUtil;
 import code.sma.util.LoggerUtil;
 import code.sma.util.MatrixIOUtil;
+import code.sma.util.RandomUtil;
 import code.sma.util.StringUtil;
 
 /**
@@ -30,8 +32,6 @@ import code.sma.util.StringUtil;
 public class ClusteringDpncyChecker extends AbstractDpncyChecker implements TaskMsgDispatcher {
     /** the clusting tasks */
     protected Queue<String> clusterDirs;
-    /** mutex using in map procedure*/
-    protected static Object MAP_MUTEX = new Object();
 
     public ClusteringDpncyChecker() {
         clusterDirs = new LinkedList<String>();
@@ -61,16 +61,11 @@ public class ClusteringDpncyChecker extends AbstractDpncyChecker implements Task
             String trainFile = rootDir + "trainingset";
             SparseMatrix rateMatrix = MatrixIOUtil.loadSparseMatrix(trainFile, rowCount, colCount);
 
-            try {
-                ExecutorService exec = Executors.newCachedThreadPool();
-                for (int t = 0; t < threadNum; t++) {
-                    exec.execute(new ClusteringLearner(this, rateMatrix, conf));
-                }
-                exec.shutdown();
-                exec.awaitTermination(Integer.MAX_VALUE, TimeUnit.DAYS);
-            } catch (InterruptedException e) {
-                ExceptionUtil.caught(e, "Clustering Thead!");
+            List<ClusteringLearner> learners = new ArrayList<ClusteringLearner>();
+            for (int t = 0; t < threadNum; t++) {
+                learners.add(new ClusteringLearner(this, rateMatrix, conf));
             }
+            LearnerPool.run(learners);
         }
 
         if (this.successor != null) {
@@ -85,7 +80,7 @@ public class ClusteringDpncyChecker extends AbstractDpncyChecker implements Task
      */
     @Override
     public Object map() {
-        synchronized (MAP_MUTEX) {
+        synchronized (clusterDirs) {
             return clusterDirs.poll();
         }
     }
@@ -98,46 +93,50 @@ public class ClusteringDpncyChecker extends AbstractDpncyChecker implements Task
     public void reduce(Object recmmd, AbstractMatrix tnMatrix, AbstractMatrix ttMatrix) {
     }
 
-    protected class ClusteringLearner extends Thread {
-        /** learning task dispatcher*/
-        private TaskMsgDispatcher dispatcher;
-        /** training data*/
-        private SparseMatrix      tnMatrix;
+    /** 
+     * @see code.sma.thread.TaskMsgDispatcher#abort(java.lang.Object)
+     */
+    @Override
+    public void abort(Object recmmd) {
+    }
+
+    protected class ClusteringLearner extends Learner {
+        private static final long serialVersionUID = 1L;
         /** configure information*/
-        private Configures        conf;
+        private final Configures  conf;
+        /** the random seed of all clusterings*/
+        private final long        seed;
 
         public ClusteringLearner(TaskMsgDispatcher dispatcher, SparseMatrix tnMatrix,
                                  Configures conf) {
-            super();
-            this.dispatcher = dispatcher;
-            this.tnMatrix = tnMatrix;
+            super(dispatcher, tnMatrix, null);
             this.conf = conf;
+            this.seed = RandomUtil.seed(conf);
         }
 
         /** 
-         * @see java.lang.Thread#run()
+         * @see code.sma.thread.Learner#learn(java.lang.Object)
          */
         @Override
-        public void run() {
+        protected void learn(Object task) {
             String rootDir = conf.getProperty("ROOT_DIR");
-            String cDirStr = null;
+            String cDirStr = (String) task;
 
             try {
-                while ((cDirStr = (String) dispatcher.map()) != null) {
-                    String[] info = cDirStr.substring(cDirStr.lastIndexOf('/') + 1).split("\\_");
-                    String dstInfo = info[0];
-                    int k = Integer.valueOf(info[1].trim());
-                    int l = Integer.valueOf(info[2].trim());
-
-                    Distance dtncConst = Distance
-                        .valueOf(StringUtil.toUpperCase(dstInfo.substring(0, 2)));
-                    int constrains = Integer.valueOf(dstInfo.substring(2, 3));
-
-                    LoggerUtil.info(normalLogger, "...check...missing: " + cDirStr);
-                    Cluster[][] result = CoclusterUtil.divideWithConjugateAssumption(tnMatrix, k, l,
-                        15, constrains, dtncConst);
-                    ClusterInfoUtil.saveClustering(result, rootDir + cDirStr + File.separator);
-                }
+                String[] info = cDirStr.substring(cDirStr.lastIndexOf('/') + 1).split("\\_");
+                String dstInfo = info[0];
+                int k = Integer.valueOf(info[1].trim());
+                int l = Integer.valueOf(info[2].trim());
+
+                Distance dtncConst = Distance
+                    .valueOf(StringUtil.toUpperCase(dstInfo.substring(0, 2)));
+                int constrains = Integer.valueOf(dstInfo.substring(2, 3));
+
+                LoggerUtil.info(normalLogger, "...check...missing: " + cDirStr);
+                RandomUtil.bind(RandomUtil.stream(seed, cDirStr.hashCode()));
+                Cluster[][] result = CoclusterUtil.divideWithConjugateAssumption(
+                    (SparseMatrix) train, k, l, 15, constrains, dtncConst);
+                ClusterInfoUtil.saveClustering(result, rootDir + cDirStr + File.separator);
             } catch (IOException e) {
                 ExceptionUtil.caught(e, "FILE: " + cDirStr);
             }
@@ -1,6 +1,7 @@
 package code.sma.dpncy;
 
 import java.io.File;
+import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.Files;
 
 import code.sma.core.AbstractIterator;
@@ -32,7 +33,7 @@ public class ModelDpncyChecker extends AbstractDpncyChecker {
         MFRecommender auxRec = null;
 
         if (Files.exists((new File(auxRcmmdPath)).toPath())) {
-            auxRec = (MFRecommender) SerializeUtil.readObject(auxRcmmdPath);
+            auxRec = SerializeUtil.readModel(auxRcmmdPath, MapMode.READ_ONLY);
         }
 
         // failed in reading the object or these object doesn't exist
@@ -41,13 +42,16 @@ public class ModelDpncyChecker extends AbstractDpncyChecker {
 
             String rootDir = conf.getProperty("ROOT_DIR");
             String trainFile = rootDir + "trainingset";
+            boolean writeCache = conf.containsKey("BINARY_CACHE_BOOLEAN")
+                                 && conf.getBoolean("BINARY_CACHE_BOOLEAN");
             AbstractMatrix train = MatrixIOUtil.loadCSRMatrix(trainFile,
-                conf.getInteger("TRAIN_ROW_NUM_VALUE"), conf.getInteger("TRAIN_VAL_NUM_VALUE"));
+                conf.getInteger("TRAIN_ROW_NUM_VALUE"), conf.getInteger("TRAIN_VAL_NUM_VALUE"),
+                writeCache);
 
             auxRec = (MFRecommender) RecommenderFactory.instance(lconf.getProperty("ALG_NAME"),
                 lconf);
             auxRec.buildModel(train, null);
-            SerializeUtil.writeObject(auxRec, auxRcmmdPath);
+            SerializeUtil.writeModel(auxRec, auxRcmmdPath);
         }
 
         // debug information
@@ -60,6 +64,7 @@ public class ModelDpncyChecker extends AbstractDpncyChecker {
             LoggerUtil.debug(normalLogger,
                 String.format("ModelDpncyChecker:%s", auxRec.evaluate(null).printOneLine()));
         }
+        auxRec.releaseFactors();
 
         if (this.successor != null) {
             this.successor.handler(conf);
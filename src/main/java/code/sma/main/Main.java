@@ -1,9 +1,8 @@
 package code.sma.main;
 
 import java.io.IOException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.log4j.Logger;
 
@@ -11,8 +10,10 @@ import code.sma.core.impl.DenseVector;
 import code.sma.core.impl.Tuples;
 import code.sma.dpncy.AbstractDpncyChecker;
 import code.sma.dpncy.ClusteringDpncyChecker;
+import code.sma.thread.LearnerPool;
 import code.sma.thread.SimpleLearner;
 import code.sma.thread.SimpleTaskMsgDispatcherImpl;
+import code.sma.thread.SuccessiveHalvingDispatcherImpl;
 import code.sma.thread.TaskMsgDispatcher;
 import code.sma.util.ConfigureUtil;
 import code.sma.util.ExceptionUtil;
@@ -50,6 +51,8 @@ public class Main {
                 String testFile = rootDir + "testingset";
                 String dconfFile = rootDir + "dConfig.properties";
                 ConfigureUtil.addConfig(conf, dconfFile);
+                boolean writeCache = conf.containsKey("BINARY_CACHE_BOOLEAN")
+                                     && conf.getBoolean("BINARY_CACHE_BOOLEAN");
 
                 String algName = conf.getProperty("ALG_NAME");
                 LoggerUtil.info(logger, "2. running " + algName);
@@ -60,9 +63,9 @@ public class Main {
                     checker.handler(conf);
 
                     Tuples train = MatrixIOUtil.loadTuples(trainFile,
-                        ((Float) conf.get("TRAIN_VAL_NUM_VALUE")).intValue());
+                        ((Float) conf.get("TRAIN_VAL_NUM_VALUE")).intValue(), writeCache);
                     Tuples test = MatrixIOUtil.loadTuples(testFile,
-                        ((Float) conf.get("TEST_VAL_NUM_VALUE")).intValue());
+                        ((Float) conf.get("TEST_VAL_NUM_VALUE")).intValue(), writeCache);
                     Configures lconf = new Configures(conf);
                     RecommenderFactory.instance(algName, lconf).buildModel(train, test);
                 } else if (StringUtil.equalsIgnoreCase(algName, "GBMA")) {
@@ -71,9 +74,9 @@ public class Main {
                     int itemCount = ((Double) conf.get("ITEM_COUNT_VALUE")).intValue();
 
                     Tuples train = MatrixIOUtil.loadTuples(trainFile,
-                        ((Float) conf.get("TRAIN_VAL_NUM_VALUE")).intValue());
+                        ((Float) conf.get("TRAIN_VAL_NUM_VALUE")).intValue(), writeCache);
                     Tuples test = MatrixIOUtil.loadTuples(testFile,
-                        ((Float) conf.get("TEST_VAL_NUM_VALUE")).intValue());
+                        ((Float) conf.get("TEST_VAL_NUM_VALUE")).intValue(), writeCache);
 
                     DenseVector avgUser = new DenseVector(userCount);
                     DenseVector avgItem = new DenseVector(itemCount);
@@ -82,36 +85,29 @@ public class Main {
                     conf.setVector("AVG_ITEM", avgItem);
 
                     TaskMsgDispatcher stkmImpl = new SimpleTaskMsgDispatcherImpl(conf);
-                    try {
-                        ExecutorService exec = Executors.newCachedThreadPool();
-                        for (int t = 0; t < threadNum; t++) {
-                            exec.execute(new SimpleLearner(stkmImpl, train, test));
-                        }
-                        exec.shutdown();
-                        exec.awaitTermination(Integer.MAX_VALUE, TimeUnit.DAYS);
-                    } catch (InterruptedException e) {
-                        ExceptionUtil.caught(e, "Stand-alone model Thead!");
+                    List<SimpleLearner> learners = new ArrayList<SimpleLearner>();
+                    for (int t = 0; t < threadNum; t++) {
+                        learners.add(new SimpleLearner(stkmImpl, train, test));
                     }
+                    LearnerPool.run(learners);
 
                 } else {
-                    TaskMsgDispatcher stkmImpl = new SimpleTaskMsgDispatcherImpl(conf);
+                    boolean halving = conf.containsKey("HALVING_SWEEP_BOOLEAN")
+                                      && conf.getBoolean("HALVING_SWEEP_BOOLEAN");
+                    TaskMsgDispatcher stkmImpl = halving ? new SuccessiveHalvingDispatcherImpl(conf)
+                        : new SimpleTaskMsgDispatcherImpl(conf);
                     int threadNum = ((Double) conf.get("THREAD_NUMBER_VALUE")).intValue();
 
                     Tuples train = MatrixIOUtil.loadTuples(trainFile,
-                        ((Float) conf.get("TRAIN_VAL_NUM_VALUE")).intValue());
+                        ((Float) conf.get("TRAIN_VAL_NUM_VALUE")).intValue(), writeCache);
                     Tuples test = MatrixIOUtil.loadTuples(testFile,
-                        ((Float) conf.get("TEST_VAL_NUM_VALUE")).intValue());
-
-                    try {
-                        ExecutorService exec = Executors.newCachedThreadPool();
-                        for (int t = 0; t < threadNum; t++) {
-                            exec.execute(new SimpleLearner(stkmImpl, train, test));
-                        }
-                        exec.shutdown();
-                        exec.awaitTermination(Integer.MAX_VALUE, TimeUnit.DAYS);
-                    } catch (InterruptedException e) {
-                        ExceptionUtil.caught(e, "Stand-alone model Thead!");
+                        ((Float) conf.get("TEST_VAL_NUM_VALUE")).intValue(), writeCache);
+
+                    List<SimpleLearner> learners = new ArrayList<SimpleLearner>();
+                    for (int t = 0; t < threadNum; t++) {
+                        learners.add(new SimpleLearner(stkmImpl, train, test));
                     }
+                    LearnerPool.run(learners);
                 }
             }
         } catch (IOException e) {
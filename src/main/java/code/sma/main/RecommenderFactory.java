@@ -1,6 +1,7 @@
 package code.sma.main;
 
 import java.io.File;
+import java.nio.channels.FileChannel.MapMode;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Map;
@@ -40,10 +41,10 @@ public final class RecommenderFactory {
                 conf.getProperty("ROOT_DIR") + conf.getProperty("AUXILIARY_RCMMD_MODEL_PATH"));
             checker.handler(conf);
 
-            // Stable Matrix Approximation
+            // Stable Matrix Approximation, where the learners share the pages of the mapped model
             Map<String, Plugin> plugins = new HashMap<String, Plugin>();
-            plugins.put("AUXILIARY_RCMMD_MODEL", (MFRecommender) SerializeUtil
-                .readObject(conf.getProperty("AUXILIARY_RCMMD_MODEL_PATH")));
+            plugins.put("AUXILIARY_RCMMD_MODEL", SerializeUtil
+                .readModel(conf.getProperty("AUXILIARY_RCMMD_MODEL_PATH"), MapMode.READ_ONLY));
 
             return new StableMA(conf, plugins);
         } else if (StringUtil.equalsIgnoreCase(algName, "GSMF")) {
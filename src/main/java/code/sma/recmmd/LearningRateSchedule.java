@@ -0,0 +1,62 @@
+package code.sma.recmmd;
+
+/**
+ * global schedule of the learning rate, adjusted once a round
+ * 
+ * @author Chao.Chen
+ * @version $Id: LearningRateSchedule.java, v 0.1 2017年7月6日 上午11:02:37 Chao.Chen Exp $
+ */
+public enum LearningRateSchedule {
+    // fixed learning rate
+    CONSTANT {
+        @Override
+        public void adjust(RuntimeEnv env) {
+        }
+    },
+    // decay the learning rate every few rounds
+    STEP_DECAY {
+        @Override
+        public void adjust(RuntimeEnv env) {
+            if (env.round % env.lrStep == 0) {
+                env.currLearningRate *= env.lrDecay;
+            }
+        }
+    },
+    // grow the learning rate while the training error decreases, otherwise decay it 
+    // and reject the round, whose factors are rolled back by the model
+    BOLD_DRIVER {
+        @Override
+        public void adjust(RuntimeEnv env) {
+            env.rejected = !(env.currErr < env.prevErr);
+            env.currLearningRate *= env.rejected ? env.lrDecay : env.lrGrowth;
+        }
+
+        @Override
+        public boolean tolerates(RuntimeEnv env) {
+            return env.rejected && env.currLearningRate > env.learningRate * MIN_RATE_SCALE;
+        }
+    };
+
+    /** the smallest learning rate relative to the initial one, below which no rejection is tolerated */
+    static final double MIN_RATE_SCALE = 1e-3d;
+
+    /**
+     * adjust the learning rate at the end of one round
+     * 
+     * @param env   the runtime environment
+     */
+    public abstract void adjust(RuntimeEnv env);
+
+    /**
+     * whether a rejected round is tolerated, i.e., the round is retried from the restored factors 
+     * with a smaller learning rate rather than regarded as convergence. 
+     * Since every rejection decays the learning rate, the retries are bounded by 
+     * MIN_RATE_SCALE as well as the maximum iteration.
+     * 
+     * @param env   the runtime environment
+     * @return      true if training goes on
+     */
+    public boolean tolerates(RuntimeEnv env) {
+        return false;
+    }
+}
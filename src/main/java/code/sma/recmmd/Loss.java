@@ -1,16 +1,63 @@
 package code.sma.recmmd;
 
 /**
- * Loss function
+ * Loss function, where every constant carries its own kernels instead of switching on itself, 
+ * so that the calls in the inner loop of one model are monomorphic
  * 
  * @author Chao.Chen
  * @version $Id: Loss.java, v 0.1 2016年9月29日 下午12:47:44 Chao.Chen Exp $
  */
 public enum Loss {
-                  LOSS_RMSE, //  ROOT MEAN SQUARE ERROR
-                  LOSS_LOG, //   LOGISTIC ERROR
-                  LOSS_EXP, //   EXPONENTIAL ERROR
-                  LOSS_HINGE;//  HINGE LOSS
+    //  ROOT MEAN SQUARE ERROR
+    LOSS_RMSE {
+        @Override
+        public double diff(double realVal, double predVal) {
+            double d = realVal - predVal;
+            return d * d;
+        }
+
+        @Override
+        public double dervWRTPrdctn(double realVal, double predVal) {
+            return predVal - realVal;
+        }
+    },
+    //   LOGISTIC ERROR
+    LOSS_LOG {
+        @Override
+        public double diff(double realVal, double predVal) {
+            return Math.log(1 + Math.exp(-1 * realVal * predVal));
+        }
+
+        @Override
+        public double dervWRTPrdctn(double realVal, double predVal) {
+            // -r * e^(-rp) / (1 + e^(-rp)) with one exponential
+            return -realVal / (1 + Math.exp(realVal * predVal));
+        }
+    },
+    //   EXPONENTIAL ERROR
+    LOSS_EXP {
+        @Override
+        public double diff(double realVal, double predVal) {
+            return Math.exp(-1 * realVal * predVal);
+        }
+
+        @Override
+        public double dervWRTPrdctn(double realVal, double predVal) {
+            return -realVal * Math.exp(-1 * realVal * predVal);
+        }
+    },
+    //  HINGE LOSS
+    LOSS_HINGE {
+        @Override
+        public double diff(double realVal, double predVal) {
+            return realVal * predVal < 1 ? 1 - realVal * predVal : 0.0d;
+        }
+
+        @Override
+        public double dervWRTPrdctn(double realVal, double predVal) {
+            return realVal * predVal < 1 ? -realVal : 0.0d;
+        }
+    };
 
     /**
      * compute the difference between two values
@@ -19,20 +66,7 @@ public enum Loss {
      * @param predVal    predicted value
      * @return      the difference
      */
-    public double diff(double realVal, double predVal) {
-        switch (this) {
-            case LOSS_RMSE:
-                return Math.pow(realVal - predVal, 2.0d);
-            case LOSS_LOG:
-                return Math.log(1 + Math.exp(-1 * realVal * predVal));
-            case LOSS_EXP:
-                return Math.exp(-1 * realVal * predVal);
-            case LOSS_HINGE:
-                return realVal * predVal < 1 ? 1 - realVal * predVal : 0.0d;
-            default:
-                return 0.0d;
-        }
-    }
+    public abstract double diff(double realVal, double predVal);
 
     /**
      * compute the derivative of the difference with respect to the predicted value
@@ -41,19 +75,5 @@ public enum Loss {
      * @param predVal    predicted value
      * @return
      */
-    public double dervWRTPrdctn(double realVal, double predVal) {
-        switch (this) {
-            case LOSS_RMSE:
-                return -realVal + predVal;
-            case LOSS_LOG:
-                return -realVal * Math.exp(-1 * realVal * predVal)
-                       / (1 + Math.exp(-1 * realVal * predVal));
-            case LOSS_EXP:
-                return -realVal * Math.exp(-1 * realVal * predVal);
-            case LOSS_HINGE:
-                return realVal * predVal < 1 ? -realVal : 0.0d;
-            default:
-                return 0.0d;
-        }
-    }
+    public abstract double dervWRTPrdctn(double realVal, double predVal);
 }
@@ -0,0 +1,197 @@
+package code.sma.recmmd;
+
+import code.sma.core.impl.DenseMatrix;
+
+/**
+ * per-parameter update rule of gradient descent, where every constant carries its own kernels 
+ * like {@link Loss} and {@link Regularizer}, and the adaptive state of every latent factor 
+ * lives in {@link OptimizerState} parallel to the factors
+ * 
+ * @author Chao.Chen
+ * @version $Id: Optimizer.java, v 0.1 2017年7月6日 上午9:48:21 Chao.Chen Exp $
+ */
+public enum Optimizer {
+    // plain stochastic gradient descent, without any state
+    SGD {
+        @Override
+        public void step(OptimizerState state, int row, float[] grad, double rate) {
+            for (int s = 0; s < grad.length; s++) {
+                grad[s] = (float) (rate * grad[s]);
+            }
+        }
+    },
+    // heavy-ball momentum, v = momentum * v + g
+    MOMENTUM {
+        @Override
+        public void step(OptimizerState state, int row, float[] grad, double rate) {
+            float[] v = scratch(grad.length)[4];
+            state.m1.getRow(row, v);
+            float momentum = (float) state.momentum;
+            for (int s = 0; s < grad.length; s++) {
+                v[s] = momentum * v[s] + grad[s];
+                grad[s] = (float) (rate * v[s]);
+            }
+            state.m1.setRow(row, v);
+        }
+    },
+    // AdaGrad, G = G + g^2
+    ADAGRAD {
+        @Override
+        public void step(OptimizerState state, int row, float[] grad, double rate) {
+            float[] G = scratch(grad.length)[4];
+            state.m1.getRow(row, G);
+            float r = (float) rate;
+            for (int s = 0; s < grad.length; s++) {
+                G[s] += grad[s] * grad[s];
+                grad[s] = r * grad[s] / ((float) Math.sqrt(G[s]) + EPSILON);
+            }
+            state.m1.setRow(row, G);
+        }
+    },
+    // RMSProp, v = rho * v + (1 - rho) * g^2
+    RMSPROP {
+        @Override
+        public void step(OptimizerState state, int row, float[] grad, double rate) {
+            float[] v = scratch(grad.length)[4];
+            state.m1.getRow(row, v);
+            float r = (float) rate;
+            for (int s = 0; s < grad.length; s++) {
+                v[s] = RHO * v[s] + (1 - RHO) * grad[s] * grad[s];
+                grad[s] = r * grad[s] / ((float) Math.sqrt(v[s]) + EPSILON);
+            }
+            state.m1.setRow(row, v);
+        }
+    },
+    // Adam, whose bias is corrected by the number of updates of every row, 
+    // since rows are updated sparsely
+    ADAM {
+        @Override
+        public double rate(OptimizerState state, int row, double lr) {
+            double beta1t = state.beta1t[row] *= BETA1;
+            double beta2t = state.beta2t[row] *= BETA2;
+            return lr * Math.sqrt(1 - beta2t) / (1 - beta1t);
+        }
+
+        @Override
+        public void step(OptimizerState state, int row, float[] grad, double rate) {
+            float[] m = scratch(grad.length)[4];
+            float[] v = scratch(grad.length)[5];
+            state.m1.getRow(row, m);
+            state.m2.getRow(row, v);
+            float r = (float) rate;
+            for (int s = 0; s < grad.length; s++) {
+                m[s] = BETA1 * m[s] + (1 - BETA1) * grad[s];
+                v[s] = BETA2 * v[s] + (1 - BETA2) * grad[s] * grad[s];
+                grad[s] = r * m[s] / ((float) Math.sqrt(v[s]) + EPSILON);
+            }
+            state.m1.setRow(row, m);
+            state.m2.setRow(row, v);
+        }
+    };
+
+    /** the decay of squared gradients in RMSProp */
+    static final float RHO     = 0.9f;
+    /** the decay of first moments in Adam */
+    static final float BETA1   = 0.9f;
+    /** the decay of second moments in Adam */
+    static final float BETA2   = 0.999f;
+    /** the smoothing term avoiding division by zero */
+    static final float EPSILON = 1e-8f;
+
+    /** the row buffers of every thread, i.e., two factor rows, two gradient rows and two state rows */
+    private static final ThreadLocal<float[][]> SCRATCH = new ThreadLocal<float[][]>();
+
+    /**
+     * the row buffers of the current thread
+     * 
+     * @param featureCount  the number of latent factors
+     * @return              six buffers whose lengths equal featureCount
+     */
+    static float[][] scratch(int featureCount) {
+        float[][] rows = SCRATCH.get();
+        if (rows == null || rows[0].length != featureCount) {
+            rows = new float[6][featureCount];
+            SCRATCH.set(rows);
+        }
+        return rows;
+    }
+
+    /**
+     * whether the update rule keeps a state for every latent factor
+     * 
+     * @return  true if stateful
+     */
+    public boolean isStateful() {
+        return this != SGD;
+    }
+
+    /**
+     * the learning rate of one row, called once before the row is updated
+     * 
+     * @param state     the state of the latent factors
+     * @param row       the row to update
+     * @param lr        the global learning rate
+     * @return          the learning rate of this row
+     */
+    public double rate(OptimizerState state, int row, double lr) {
+        return lr;
+    }
+
+    /**
+     * turn the gradients of one row into the steps in place, which are subtracted from the factors, 
+     * where the state of the row is copied out and back once, 
+     * so that the loop runs over plain arrays
+     * 
+     * @param state     the state of the latent factors
+     * @param row       the row of the factors
+     * @param grad      the gradients of the row, overwritten by the steps
+     * @param rate      the learning rate of this row
+     */
+    public abstract void step(OptimizerState state, int row, float[] grad, double rate);
+
+    /**
+     * update the user row and the item row in one pass, 
+     * where both use the values before update, i.e., <br/>
+     * row_u -= step(deriWRTp * row_i + reg * reg(row_u)), <br/>
+     * row_i -= step(deriWRTp * row_u + reg * reg(row_i))
+     * 
+     * @param ufactors  the user factors
+     * @param u         the user's id
+     * @param ustate    the state of the user factors
+     * @param ifactors  the item factors
+     * @param i         the item's id
+     * @param istate    the state of the item factors
+     * @param regType   the regularizer
+     * @param lr        the learning rate
+     * @param reg       the regularization factor
+     * @param deriWRTp  the derivative of the loss with respect to the prediction
+     */
+    public void update(DenseMatrix ufactors, int u, OptimizerState ustate, DenseMatrix ifactors,
+                       int i, OptimizerState istate, Regularizer regType, double lr, double reg,
+                       double deriWRTp) {
+        double urate = rate(ustate, u, lr);
+        double irate = rate(istate, i, lr);
+
+        int featureCount = ufactors.shape()[1];
+        float[][] rows = scratch(featureCount);
+        float[] urow = rows[0];
+        float[] irow = rows[1];
+        float[] ugrad = rows[2];
+        float[] igrad = rows[3];
+        ufactors.getRow(u, urow);
+        ifactors.getRow(i, irow);
+        for (int s = 0; s < featureCount; s++) {
+            ugrad[s] = (float) (deriWRTp * irow[s] + reg * regType.reg(null, u, urow[s]));
+            igrad[s] = (float) (deriWRTp * urow[s] + reg * regType.reg(null, i, irow[s]));
+        }
+
+        step(ustate, u, ugrad, urate);
+        step(istate, i, igrad, irate);
+        for (int s = 0; s < featureCount; s++) {
+            urow[s] -= ugrad[s];
+            irow[s] -= igrad[s];
+        }
+        ufactors.setRow(u, urow);
+        ifactors.setRow(i, irow);
+    }
+}
@@ -0,0 +1,72 @@
+package code.sma.recmmd;
+
+import java.util.Arrays;
+
+import code.sma.core.impl.DenseMatrix;
+
+/**
+ * the adaptive state of latent factors, packed in matrices of the same shape as the factors, 
+ * so that the state of factor (row, s) is found at (row, s) as well
+ * 
+ * @author Chao.Chen
+ * @version $Id: OptimizerState.java, v 0.1 2017年7月6日 上午10:20:05 Chao.Chen Exp $
+ */
+public final class OptimizerState {
+    /** the update rule*/
+    final Optimizer   optimizer;
+    /** the momentum coefficient*/
+    final double      momentum;
+    /** the first moments, i.e., velocity, sum or average of squared gradients*/
+    final DenseMatrix m1;
+    /** the second moments, used in Adam only*/
+    final DenseMatrix m2;
+    /** the powers of beta1 by the number of updates of every row, used in Adam only*/
+    final double[]    beta1t;
+    /** the powers of beta2 by the number of updates of every row, used in Adam only*/
+    final double[]    beta2t;
+
+    /**
+     * Construction
+     * 
+     * @param optimizer     the update rule
+     * @param rowCount      the number of rows of the factors
+     * @param featureCount  the number of latent factors
+     * @param momentum      the momentum coefficient
+     */
+    public OptimizerState(Optimizer optimizer, int rowCount, int featureCount, double momentum) {
+        this.optimizer = optimizer;
+        this.momentum = momentum;
+        this.m1 = new DenseMatrix(rowCount, featureCount);
+        this.m2 = (optimizer == Optimizer.ADAM) ? new DenseMatrix(rowCount, featureCount) : null;
+        this.beta1t = (optimizer == Optimizer.ADAM) ? ones(rowCount) : null;
+        this.beta2t = (optimizer == Optimizer.ADAM) ? ones(rowCount) : null;
+    }
+
+    private static double[] ones(int rowCount) {
+        double[] powers = new double[rowCount];
+        Arrays.fill(powers, 1.0d);
+        return powers;
+    }
+
+    /**
+     * the learning rate of one row, called once before the row is updated
+     * 
+     * @param row       the row to update
+     * @param lr        the global learning rate
+     * @return          the learning rate of this row
+     */
+    public double rate(int row, double lr) {
+        return optimizer.rate(this, row, lr);
+    }
+
+    /**
+     * turn the gradients of one row into the steps in place, which are subtracted from the factors
+     * 
+     * @param row       the row of the factors
+     * @param grad      the gradients of the row, overwritten by the steps
+     * @param rate      the learning rate of this row
+     */
+    public void step(int row, float[] grad, double rate) {
+        optimizer.step(this, row, grad, rate);
+    }
+}
@@ -0,0 +1,13 @@
+package code.sma.recmmd;
+
+/**
+ * Parallel mode used to train one model
+ *
+ * @author Chao.Chen
+ * @version $Id: ParallelMode.java, v 0.1 2017年6月20日 上午10:12:37 Chao.Chen Exp $
+ */
+public enum ParallelMode {
+                          SERIAL, //   ONE THREAD OVER THE WHOLE DATA
+                          HOGWILD, //  LOCK-FREE UPDATES FROM MULTIPLE WORKERS
+                          DSGD; //     CONFLICT-FREE BLOCKS DISPATCHED TO MULTIPLE WORKERS
+}
@@ -3,6 +3,7 @@ package code.sma.recmmd;
 import java.io.Serializable;
 
 import code.sma.core.AbstractMatrix;
+import code.sma.core.DataElem;
 import code.sma.util.EvaluationMetrics;
 
 /**
@@ -50,6 +51,38 @@ public abstract class Recommender implements Serializable {
      */
     public abstract double predict(int u, int i);
 
+    /**
+     * return the predicted ratings of one user's data in batch
+     * 
+     * @param e     user-grouped data, i.e., one-user's data
+     * @param preds the predicted rating of each item, whose length is at least the number of items
+     */
+    public void predict(DataElem e, double[] preds) {
+        short num_ifactor = e.getNum_ifacotr();
+
+        int u = e.getIndex_user(0);
+        for (int f = 0; f < num_ifactor; f++) {
+            preds[f] = predict(u, e.getIndex_item(f));
+        }
+    }
+
+    /**
+     * return the scores of the given users over all items in batch, which rank the items, 
+     * where models may leave the scores unclipped to the range of ratings to avoid ties
+     * 
+     * @param users     the given user indices
+     * @param num_user  the number of given users
+     * @param scores    the scores in row-major, whose length is at least num_user * itemCount
+     */
+    public void predict(int[] users, int num_user, float[] scores) {
+        int itemCount = runtimes.itemCount;
+        for (int r = 0; r < num_user; r++) {
+            for (int i = 0; i < itemCount; i++) {
+                scores[r * itemCount + i] = (float) predict(users[r], i);
+            }
+        }
+    }
+
     /** 
      * @see java.lang.Object#toString()
      */
@@ -1,17 +1,55 @@
 package code.sma.recmmd;
 
+import code.sma.core.impl.DenseMatrix;
 import code.sma.recmmd.stats.Accumulator;
 
 /**
- * regularizer
+ * regularizer, where every constant carries its own kernels instead of switching on itself, 
+ * so that the calls in the inner loop of one model are monomorphic
  * 
  * @author Chao.Chen
  * @version $Id: Regularizer.java, v 0.1 2017年3月9日 下午1:55:44 Chao.Chen Exp $
  */
 public enum Regularizer {
-                         L1, //L1-norm
-                         L2, // L2-norm
-                         L12; // Group-sparse norm
+    //L1-norm, whose sub-gradient sign(x) is smoothed by x / sqrt(x^2 + eps^2)
+    L1 {
+        @Override
+        public double reg(Accumulator accFactr, int accId, double factrVal) {
+            return factrVal / Math.sqrt(factrVal * factrVal + L1_EPSILON * L1_EPSILON);
+        }
+
+        @Override
+        public void update(DenseMatrix ufactors, int u, DenseMatrix ifactors, int i, double lr,
+                           double reg, double deriWRTp) {
+            ufactors.sgdUpdateL1(u, ifactors, i, lr * reg, -lr * deriWRTp,
+                L1_EPSILON * L1_EPSILON);
+        }
+    },
+    // L2-norm
+    L2 {
+        @Override
+        public double reg(Accumulator accFactr, int accId, double factrVal) {
+            return factrVal;
+        }
+
+        @Override
+        public void update(DenseMatrix ufactors, int u, DenseMatrix ifactors, int i, double lr,
+                           double reg, double deriWRTp) {
+            ufactors.sgdUpdate(u, ifactors, i, 1 - lr * reg, -lr * deriWRTp, 1 - lr * reg,
+                -lr * deriWRTp);
+        }
+    },
+    // Group-sparse norm
+    L12 {
+        @Override
+        public double reg(Accumulator accFactr, int accId, double factrVal) {
+            return factrVal / accFactr.rs(accId);
+        }
+    };
+
+    /** the smoothing width of L1-norm, whose slope at zero equals that of 
+     *  the former 1/(1+e^(-ax)) - 1/(1+e^(ax)) with a = 10^6 */
+    private static final double L1_EPSILON = 2.0 / (1000.0 * 1000.0);
 
     /**
      * compute the regularization of the given parameter
@@ -21,20 +59,34 @@ public enum Regularizer {
      * @param factrVal      the value of the latent factor
      * @return
      */
-    public double reg(Accumulator accFactr, int accId, double factrVal) {
-        switch (this) {
-            case L1:
-                double alpha = 1000.0 * 1000.0;
-                return 1.0 / (1.0 + Math.exp(-1.0 * alpha * factrVal))
-                       - 1.0 / (1.0 + Math.exp(1.0 * alpha * factrVal));
-            case L2:
-                return factrVal;
-            case L12:
-                return factrVal / accFactr.rs(accId);
-            default:
-                return 0.0d;
-        }
+    public abstract double reg(Accumulator accFactr, int accId, double factrVal);
 
-    }
+    /**
+     * update the user row and the item row in one pass with gradient descent, 
+     * where both use the values before update, i.e., <br/>
+     * row_u += lr * (-deriWRTp * row_i - reg * reg(row_u)), <br/>
+     * row_i += lr * (-deriWRTp * row_u - reg * reg(row_i))
+     * 
+     * @param ufactors  the user factors
+     * @param u         the user's id
+     * @param ifactors  the item factors
+     * @param i         the item's id
+     * @param lr        the learning rate
+     * @param reg       the regularization factor
+     * @param deriWRTp  the derivative of the loss with respect to the prediction
+     */
+    public void update(DenseMatrix ufactors, int u, DenseMatrix ifactors, int i, double lr,
+                       double reg, double deriWRTp) {
+        int featureCount = ufactors.shape()[1];
+        for (int s = 0; s < featureCount; s++) {
+            double Fus = ufactors.floatValue(u, s);
+            double Gis = ifactors.floatValue(i, s);
+
+            double regFus = reg(null, u, Fus);
+            double regGis = reg(null, i, Gis);
 
+            ufactors.setValue(u, s, (float) (Fus + lr * (-deriWRTp * Gis - reg * regFus)));
+            ifactors.setValue(i, s, (float) (Gis + lr * (-deriWRTp * Fus - reg * regGis)));
+        }
+    }
 }
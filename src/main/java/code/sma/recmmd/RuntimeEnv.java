@@ -10,12 +10,15 @@ import code.sma.core.AbstractIterator;
 import code.sma.main.Configures;
 import code.sma.plugin.Plugin;
 import code.sma.recmmd.stats.Accumulator;
+import code.sma.util.RandomUtil;
 import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 
 /**
  * The runtime environment: <br/>
  * <b>BASICS</b>  <br/>
+ * <b>OPTIMIZER:</b> per-parameter update rule, and global schedule of the learning rate <br/>
+ * <b>THREAD:</b> learner threads, parallel mode and workers of one model <br/>
  * <b>ERROR:</b> round, prevErr, currErr <br/>
  * <b>CLUSTERING:</b> accessible user features (acc_ufeature), accessible item features (acc_ifeature) <br/>
  * <b>DATA:</b> training data, testing data <br/>
@@ -38,21 +41,47 @@ public final class RuntimeEnv implements Serializable {
     public double                        momentum;
     public int                           maxIter;
     public boolean                       showProgress;
+    public int                           topN;
     public Loss                          lossFunction;
     public Regularizer                   regType;
+    public long                          seed;
+    public boolean                       rowUpdate;
+    public boolean                       offHeap;
+
+    // OPTIMIZER
+    public Optimizer                     optimizer;
+    public LearningRateSchedule          lrSchedule;
+    public double                        currLearningRate;
+    public double                        lrDecay;
+    public double                        lrGrowth;
+    public int                           lrStep;
 
     // THREAD
     public int                           threadNum;
     public int                           threadId         = 0;
+    public ParallelMode                  parallelMode;
+    public int                           workerNum;
 
     // ERROR
     public int                           round            = 0;
     public double                        prevErr          = 99999;
     public double                        currErr          = 9999;
     public double                        sumErr           = 0.0d;
+    public boolean                       rejected         = false;
     public DoubleArrayList               trainErr;
     public DoubleArrayList               testErr;
 
+    // EARLY STOPPING
+    public int                           patience;
+    public int                           validInterval;
+    public double                        validRatio;
+    public long                          validSeed;
+    public int                           numBadValid      = 0;
+    public int                           bestRound        = 0;
+    public double                        bestValidErr     = Double.MAX_VALUE;
+    public boolean                       earlyStopped     = false;
+    public int                           pauseRound       = 0;
+
     //CLUSTERING
     public boolean[]                     acc_uf_indicator;        //user feature accessible indicator
     public boolean[]                     acc_if_indicator;        //item feature accessible indicator
@@ -63,6 +92,7 @@ public final class RuntimeEnv implements Serializable {
     public int                           nnz;
     public transient AbstractIterator    itrain;
     public transient AbstractIterator    itest;
+    public transient AbstractIterator    ivalid;
 
     // Weight/Importance for each feature, e.g., rating, user, item
     public double[]                      tnWs;
@@ -74,6 +104,7 @@ public final class RuntimeEnv implements Serializable {
     public IntArrayList                  ints;
 
     // ACCUMULATORS
+    public boolean                       halfAccumulator;
     public transient List<Accumulator>   acumltors;
 
     // PLUGINS
@@ -100,19 +131,79 @@ public final class RuntimeEnv implements Serializable {
             this.regularizer = conf.getFloat("REGULAIZED_VALUE");
         if (conf.containsKey("MAX_ITERATION_VALUE"))
             this.maxIter = conf.getInteger("MAX_ITERATION_VALUE");
+        this.momentum = conf.containsKey("MOMENTUM_VALUE") ? conf.getDouble("MOMENTUM_VALUE")
+            : 0.9d;
 
         this.userCount = conf.getInteger("USER_COUNT_VALUE");
         this.itemCount = conf.getInteger("ITEM_COUNT_VALUE");
         this.maxValue = conf.getFloat("MAX_RATING_VALUE");
         this.minValue = conf.getFloat("MIN_RATING_VALUE");
         this.showProgress = conf.getBoolean("VERBOSE_BOOLEAN");
+        this.topN = conf.containsKey("TOP_N_VALUE") ? conf.getInteger("TOP_N_VALUE") : 0;
 
         this.threadNum = conf.getInteger("THREAD_NUMBER_VALUE");
+        this.parallelMode = conf.containsKey("PARALLEL_MODE")
+            ? ParallelMode.valueOf(conf.getProperty("PARALLEL_MODE").trim()) : ParallelMode.SERIAL;
+        this.workerNum = conf.containsKey("WORKER_NUMBER_VALUE")
+            ? conf.getInteger("WORKER_NUMBER_VALUE") : Runtime.getRuntime().availableProcessors();
+
+        this.lossFunction = conf.containsKey("LOSS_FUNCTION")
+            ? Loss.valueOf(conf.getProperty("LOSS_FUNCTION").trim()) : Loss.LOSS_RMSE;
+        this.regType = conf.containsKey("REG_TYPE")
+            ? Regularizer.valueOf(conf.getProperty("REG_TYPE").trim()) : Regularizer.L2;
+        this.seed = RandomUtil.seed(conf);
+        this.rowUpdate = conf.containsKey("ROW_UPDATE_BOOLEAN")
+                         && conf.getBoolean("ROW_UPDATE_BOOLEAN");
+        if (rowUpdate && parallelMode == ParallelMode.DSGD && workerNum > 1) {
+            // DSGD workers visit single entries of the blocks, never the whole row of a user
+            throw new RuntimeException("ROW_UPDATE_BOOLEAN is not supported in DSGD mode!");
+        }
+        this.offHeap = conf.containsKey("OFF_HEAP_BOOLEAN") && conf.getBoolean("OFF_HEAP_BOOLEAN");
+
+        this.optimizer = conf.containsKey("OPTIMIZER")
+            ? Optimizer.valueOf(conf.getProperty("OPTIMIZER").trim()) : Optimizer.SGD;
+        this.lrSchedule = conf.containsKey("LR_SCHEDULE")
+            ? LearningRateSchedule.valueOf(conf.getProperty("LR_SCHEDULE").trim())
+            : LearningRateSchedule.CONSTANT;
+        this.currLearningRate = this.learningRate;
+        this.lrDecay = conf.containsKey("LR_DECAY_VALUE") ? conf.getDouble("LR_DECAY_VALUE") : 0.5d;
+        this.lrGrowth = conf.containsKey("LR_GROWTH_VALUE") ? conf.getDouble("LR_GROWTH_VALUE")
+            : 1.05d;
+        this.lrStep = conf.containsKey("LR_STEP_VALUE")
+            ? Math.max(1, conf.getInteger("LR_STEP_VALUE")) : 10;
+
+        this.patience = conf.containsKey("EARLY_STOP_PATIENCE_VALUE")
+            ? conf.getInteger("EARLY_STOP_PATIENCE_VALUE") : 0;
+        this.validInterval = conf.containsKey("VALID_INTERVAL_VALUE")
+            ? Math.max(1, conf.getInteger("VALID_INTERVAL_VALUE")) : 1;
+        boolean halving = conf.containsKey("HALVING_SWEEP_BOOLEAN")
+                          && conf.getBoolean("HALVING_SWEEP_BOOLEAN");
+        this.validRatio = conf.containsKey("VALID_RATIO_VALUE")
+            ? conf.getDouble("VALID_RATIO_VALUE") : ((patience > 0 || halving) ? 0.1d : 0.0d);
+        this.validSeed = conf.containsKey("VALID_SEED_VALUE")
+            ? (long) conf.getDouble("VALID_SEED_VALUE") : seed;
+        this.halfAccumulator = conf.containsKey("HALF_ACCUMULATOR_BOOLEAN")
+                               && conf.getBoolean("HALF_ACCUMULATOR_BOOLEAN");
+    }
+
+    /**
+     * whether the training error has converged, 
+     * where a round rejected by the schedule of the learning rate is not regarded as convergence
+     * 
+     * @return  true if converged
+     */
+    public boolean isConverged() {
+        return prevErr - currErr <= 0.0001 && !lrSchedule.tolerates(this);
+    }
 
-        this.lossFunction = conf.contains("LOSS_FUNCTION")
-            ? Loss.valueOf(conf.getProperty("LOSS_FUNCTION")) : Loss.LOSS_RMSE;
-        this.regType = conf.contains("REG_TYPE") ? Regularizer.valueOf(conf.getProperty("REG_TYPE"))
-            : Regularizer.L2;
+    /**
+     * whether training pauses at the current round, so as to be resumed later, 
+     * where pauseRound is 0 if never
+     * 
+     * @return  true if paused
+     */
+    public boolean isPaused() {
+        return pauseRound > 0 && round >= pauseRound;
     }
 
     public double bestTrainErr() {
@@ -1,24 +1,25 @@
 package code.sma.recmmd.ensemble;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.AtomicDoubleArray;
 
 import code.sma.core.AbstractIterator;
 import code.sma.core.AbstractMatrix;
 import code.sma.core.DataElem;
-import code.sma.core.impl.SparseMatrix;
 import code.sma.main.Configures;
 import code.sma.plugin.Plugin;
 import code.sma.recmmd.Recommender;
 import code.sma.recmmd.RuntimeEnv;
 import code.sma.recmmd.standalone.MFRecommender;
+import code.sma.thread.LearnerPool;
 import code.sma.thread.TaskMsgDispatcher;
 import code.sma.thread.WeakLearner;
 import code.sma.util.EvaluationMetrics;
-import code.sma.util.ExceptionUtil;
 import code.sma.util.LoggerUtil;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
 
 /**
  * Ensemble-based Matrix Approximation method
@@ -28,24 +29,19 @@ import code.sma.util.LoggerUtil;
  */
 public abstract class EnsembleMFRecommender extends MFRecommender implements TaskMsgDispatcher {
     /** SerialVersionNum */
-    protected static final long serialVersionUID = 1L;
-    /** cumulative prediction */
-    protected SparseMatrix      cumPrediction    = null;
-    /** cumulative weights */
-    protected SparseMatrix      cumWeight        = null;
-
-    /** mutex using in map procedure*/
-    protected static Object     MAP_MUTEX        = new Object();
-    /** mutex using in reduce procedure*/
-    protected static Object     REDUCE_MUTEX     = new Object();
+    protected static final long   serialVersionUID = 1L;
+    /** cumulative prediction of each testing entry, indexed by its position in testing data */
+    protected AtomicDoubleArray   cumPrediction    = null;
+    /** cumulative weights of each testing entry, indexed by its position in testing data */
+    protected AtomicDoubleArray   cumWeight        = null;
+    /** the position of each (user, item)-entry in testing data */
+    protected Long2IntOpenHashMap testIndex        = null;
 
     /*========================================
      * Constructors
      *========================================*/
     public EnsembleMFRecommender(Configures conf, Map<String, Plugin> plugins) {
         super(conf, plugins);
-        cumPrediction = new SparseMatrix(runtimes.userCount, runtimes.itemCount);
-        cumWeight = new SparseMatrix(runtimes.userCount, runtimes.itemCount);
     }
 
     /** 
@@ -57,17 +53,29 @@ public abstract class EnsembleMFRecommender extends MFRecommender implements Tas
         runtimes.itrain = (AbstractIterator) train.iterator();
         runtimes.itest = (AbstractIterator) test.iterator();
 
-        // run learning threads
-        try {
-            ExecutorService exec = Executors.newCachedThreadPool();
-            for (int t = 0; t < runtimes.threadNum; t++) {
-                exec.execute(new WeakLearner(this, train, test));
+        // the accumulations are aligned with the entries of testing data
+        cumPrediction = new AtomicDoubleArray(test.getNum_val());
+        cumWeight = new AtomicDoubleArray(test.getNum_val());
+        testIndex = new Long2IntOpenHashMap(test.num_ifactor);
+        testIndex.defaultReturnValue(-1);
+
+        AbstractIterator iDataElem = runtimes.itest.refresh();
+        while (iDataElem.hasNext()) {
+            DataElem e = iDataElem.next();
+            short num_ifactor = e.getNum_ifacotr();
+
+            int u = e.getIndex_user(0);
+            for (int f = 0; f < num_ifactor; f++) {
+                testIndex.put(entryKey(u, e.getIndex_item(f)), e.getValue_ifactor().position(f));
             }
-            exec.shutdown();
-            exec.awaitTermination(Integer.MAX_VALUE, TimeUnit.DAYS);
-        } catch (InterruptedException e) {
-            ExceptionUtil.caught(e, "Ensemble Recmmd Thead!");
         }
+
+        // run learning threads
+        List<WeakLearner> learners = new ArrayList<WeakLearner>();
+        for (int t = 0; t < runtimes.threadNum; t++) {
+            learners.add(new WeakLearner(this, train, test));
+        }
+        LearnerPool.run(learners);
     }
 
     /** 
@@ -75,32 +83,28 @@ public abstract class EnsembleMFRecommender extends MFRecommender implements Tas
      */
     @Override
     public void reduce(Object recmmd, AbstractMatrix train, AbstractMatrix test) {
-        // update approximated model
-        synchronized (REDUCE_MUTEX) {
-            AbstractIterator iDataElem = ((MFRecommender) recmmd).runtimes.itest.refresh();
-            while (iDataElem.hasNext()) {
-                DataElem e = iDataElem.next();
-                short num_ifactor = e.getNum_ifacotr();
-
-                int u = e.getIndex_user(0);
-                for (int f = 0; f < num_ifactor; f++) {
-                    int i = e.getIndex_item(f);
-
-                    // update global approximation model
-                    if (((MFRecommender) recmmd).userDenseFeatures.getRowRef(u) == null
-                        || ((MFRecommender) recmmd).itemDenseFeatures.getRowRef(i) == null) {
-                        continue;
-                    }
-
-                    double prediction = ((Recommender) recmmd).predict(u, i);
-                    double weight = ensnblWeight(u, i, prediction);
-
-                    double newCumPrediction = prediction * weight + cumPrediction.getValue(u, i);
-                    double newCumWeight = weight + cumWeight.getValue(u, i);
-
-                    cumPrediction.setValue(u, i, newCumPrediction);
-                    cumWeight.setValue(u, i, newCumWeight);
+        // update approximated model, where learners add into the entries without locks
+        AbstractIterator iDataElem = ((MFRecommender) recmmd).runtimes.itest.refresh();
+        while (iDataElem.hasNext()) {
+            DataElem e = iDataElem.next();
+            short num_ifactor = e.getNum_ifacotr();
+
+            int u = e.getIndex_user(0);
+            for (int f = 0; f < num_ifactor; f++) {
+                int i = e.getIndex_item(f);
+
+                // update global approximation model
+                if (!((MFRecommender) recmmd).userDenseFeatures.hasRow(u)
+                    || !((MFRecommender) recmmd).itemDenseFeatures.hasRow(i)) {
+                    continue;
                 }
+
+                double prediction = ((Recommender) recmmd).predict(u, i);
+                double weight = ensnblWeight(u, i, prediction);
+
+                int pos = e.getValue_ifactor().position(f);
+                cumPrediction.addAndGet(pos, prediction * weight);
+                cumWeight.addAndGet(pos, weight);
             }
         }
 
@@ -118,18 +122,80 @@ public abstract class EnsembleMFRecommender extends MFRecommender implements Tas
     }
 
     /** 
-     * @see code.sma.recmmd.standalone.MFRecommender#predict(int, int)
+     * the failed model is left out of the ensemble
+     * 
+     * @see code.sma.thread.TaskMsgDispatcher#abort(java.lang.Object)
+     */
+    @Override
+    public void abort(Object recmmd) {
+    }
+
+    /**
+     * evaluate the predicted ratings only, since the ensemble predicts the testing entries alone
+     * and cannot rank the other items
+     * 
+     * @see code.sma.recmmd.standalone.MFRecommender#evaluate(code.sma.core.AbstractMatrix)
+     */
+    @Override
+    public EvaluationMetrics evaluate(AbstractMatrix testMatrix) {
+        return new EvaluationMetrics(this);
+    }
+
+    /** 
+     * @see code.sma.recmmd.standalone.MFRecommender#score(int, int)
+     */
+    @Override
+    protected double score(int u, int i) {
+        return predictAt(testIndex.get(entryKey(u, i)));
+    }
+
+    /**
+     * @see code.sma.recmmd.standalone.MFRecommender#predict(code.sma.core.DataElem, double[])
+     */
+    @Override
+    public void predict(DataElem e, double[] preds) {
+        short num_ifactor = e.getNum_ifacotr();
+
+        for (int f = 0; f < num_ifactor; f++) {
+            preds[f] = predictAt(e.getValue_ifactor().position(f));
+        }
+    }
+
+    /**
+     * @see code.sma.recmmd.standalone.MFRecommender#isFactorProduct()
      */
     @Override
-    public double predict(int u, int i) {
+    protected boolean isFactorProduct() {
+        return false;
+    }
+
+    /**
+     * return the predicted rating of the entry at the given position in testing data
+     * 
+     * @param pos   the position in testing data, negative if absent
+     * @return      the predicted rating
+     */
+    protected double predictAt(int pos) {
         double maxValue = runtimes.maxValue;
         double minValue = runtimes.minValue;
 
-        double prediction = (cumWeight.getValue(u, i) == 0.0) ? ((maxValue + minValue) / 2)
-            : (cumPrediction.getValue(u, i) / cumWeight.getValue(u, i));
+        double weight = (pos < 0) ? 0.0d : cumWeight.get(pos);
+        double prediction = (weight == 0.0) ? ((maxValue + minValue) / 2)
+            : (cumPrediction.get(pos) / weight);
         return Math.max(minValue, Math.min(prediction, maxValue));
     }
 
+    /**
+     * the key of the (user, item)-entry
+     * 
+     * @param u the given user index
+     * @param i the given item index
+     * @return  the key
+     */
+    protected static long entryKey(int u, int i) {
+        return ((long) u << 32) | (i & 0xFFFFFFFFL);
+    }
+
     /**
      * return the weight of which the prediction
      * 
@@ -1,21 +1,24 @@
 package code.sma.recmmd.ensemble;
 
 import java.io.IOException;
-import java.util.LinkedList;
 import java.util.Map;
 import java.util.Queue;
 
 import code.sma.core.AbstractIterator;
 import code.sma.core.AbstractMatrix;
+import code.sma.core.impl.CSRMatrix;
+import code.sma.core.impl.CoclusterIndex;
 import code.sma.main.Configures;
 import code.sma.plugin.Discretizer;
 import code.sma.plugin.Plugin;
 import code.sma.recmmd.Recommender;
 import code.sma.recmmd.standalone.MFRecommender;
 import code.sma.recmmd.standalone.WeigtedSVD;
+import code.sma.thread.LearningTaskQueue;
 import code.sma.thread.TaskMsgDispatcher;
 import code.sma.util.ClusterInfoUtil;
 import code.sma.util.ExceptionUtil;
+import code.sma.util.SplitRandom;
 
 /**
  * The task dispatcher used in WEMAREC
@@ -32,8 +35,12 @@ public class WEMAREC extends EnsembleMFRecommender implements TaskMsgDispatcher
 
     /** the arrays containing various clusterings*/
     protected transient Queue<String>      clusterDirList;
-    /** the learning task buffer*/
+    /** the learning task buffer, the largest block first*/
     protected transient Queue<Recommender> recmmdsBuffer;
+    /** the training data shared by all learners*/
+    protected transient AbstractMatrix     trainData;
+    /** the testing data shared by all learners*/
+    protected transient AbstractMatrix     testData;
 
     /*========================================
      * Constructors
@@ -45,7 +52,7 @@ public class WEMAREC extends EnsembleMFRecommender implements TaskMsgDispatcher
         runtimes.doubles.add(conf.getDouble("BETA2_VALUE"));
 
         clusterDirList = clusterDirs;
-        recmmdsBuffer = new LinkedList<Recommender>();
+        recmmdsBuffer = new LearningTaskQueue();
     }
 
     /** 
@@ -59,6 +66,8 @@ public class WEMAREC extends EnsembleMFRecommender implements TaskMsgDispatcher
         runtimes.ensmblUWs = ensmbleWs[0];
         runtimes.ensmblIWs = ensmbleWs[1];
 
+        trainData = train;
+        testData = test;
         super.buildModel(train, test);
     }
 
@@ -67,7 +76,7 @@ public class WEMAREC extends EnsembleMFRecommender implements TaskMsgDispatcher
      */
     @Override
     public Recommender map() {
-        synchronized (MAP_MUTEX) {
+        synchronized (recmmdsBuffer) {
 
             if (!recmmdsBuffer.isEmpty()) {
                 return recmmdsBuffer.poll();
@@ -82,12 +91,24 @@ public class WEMAREC extends EnsembleMFRecommender implements TaskMsgDispatcher
                     boolean[][] uf_indicator = acc_features[0];
                     boolean[][] if_indicator = acc_features[1];
 
+                    // index the data once, shared by all learners of this clustering
+                    CoclusterIndex[] indices = index(uf_indicator, if_indicator);
+
                     for (int ufi = 0; ufi < uf_indicator.length; ufi++) {
                         for (int ifi = 0; ifi < if_indicator.length; ifi++) {
                             MFRecommender wsvd = new WeigtedSVD(runtimes.conf, runtimes.plugins);
                             wsvd.runtimes.acc_uf_indicator = uf_indicator[ufi];
                             wsvd.runtimes.acc_if_indicator = if_indicator[ifi];
                             wsvd.runtimes.threadId = runtimes.threadId++;
+                            if (indices != null) {
+                                wsvd.runtimes.itrain = indices[0].iteratorJion(ufi, ifi);
+                                wsvd.runtimes.itest = indices[1].iteratorJion(ufi, ifi);
+                                if (indices[2] != null) {
+                                    AbstractIterator ivalid = indices[2].iteratorJion(ufi, ifi);
+                                    wsvd.runtimes.ivalid = (ivalid.get_num_ifactor() == 0) ? null
+                                        : ivalid;
+                                }
+                            }
                             recmmdsBuffer.add(wsvd);
                         }
                     }
@@ -102,6 +123,41 @@ public class WEMAREC extends EnsembleMFRecommender implements TaskMsgDispatcher
         }
     }
 
+    /**
+     * build the co-clustering indices of training and testing data
+     * 
+     * @param uf_indicator  indicator whether user feature is accessible, [clustering id][user id]
+     * @param if_indicator  indicator whether item feature is accessible, [clustering id][item id]
+     * @return              the indices of training, testing and validation data, 
+     *                      where the validation split is held out from the training data as in 
+     *                      {@link MFRecommender#prepare_validation}, and is null if not required, 
+     *                      or null if the clusters overlap
+     */
+    protected CoclusterIndex[] index(boolean[][] uf_indicator, boolean[][] if_indicator) {
+        int[] raf = CoclusterIndex.assignment(uf_indicator);
+        int[] caf = CoclusterIndex.assignment(if_indicator);
+        if (raf == null || caf == null || !(trainData instanceof CSRMatrix)
+            || !(testData instanceof CSRMatrix)) {
+            return null;
+        }
+
+        CSRMatrix fit = (CSRMatrix) trainData;
+        CoclusterIndex valid = null;
+        if (runtimes.validRatio > 0.0d) {
+            AbstractMatrix[] parts = trainData.split(runtimes.validRatio,
+                new SplitRandom(runtimes.validSeed));
+            fit = (CSRMatrix) parts[0];
+            valid = new CoclusterIndex((CSRMatrix) parts[1], raf, caf, uf_indicator.length,
+                if_indicator.length);
+        }
+
+        return new CoclusterIndex[] {
+                new CoclusterIndex(fit, raf, caf, uf_indicator.length, if_indicator.length),
+                new CoclusterIndex((CSRMatrix) testData, raf, caf, uf_indicator.length,
+                    if_indicator.length),
+                valid };
+    }
+
     /** 
      * @see code.sma.recmmd.ensemble.EnsembleMFRecommender#ensnblWeight(int, int, double)
      */
@@ -1,12 +1,15 @@
 package code.sma.recmmd.standalone;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import code.sma.core.AbstractIterator;
 import code.sma.core.AbstractMatrix;
 import code.sma.core.AbstractVector;
 import code.sma.core.DataElem;
+import code.sma.core.impl.BlockTuples;
 import code.sma.core.impl.DenseMatrix;
 import code.sma.core.impl.DenseVector;
 import code.sma.main.Configures;
@@ -14,6 +17,7 @@ import code.sma.plugin.Discretizer;
 import code.sma.plugin.NetflixMovieLensDiscretizer;
 import code.sma.plugin.Plugin;
 import code.sma.recmmd.Loss;
+import code.sma.recmmd.ParallelMode;
 import code.sma.recmmd.Regularizer;
 import code.sma.recmmd.stats.Accumulator;
 import code.sma.recmmd.stats.StatsOperator;
@@ -35,6 +39,8 @@ public class GLOMA extends MFRecommender {
     private double[]                lambda;
     /** Previously-trained model*/
     private transient MFRecommender auxRec;
+    /** copies of the local rows and gradients of one entry, [workerId][4][featureCount]*/
+    private transient float[][][]   rowCopies;
 
     /*========================================
      * Constructors
@@ -62,27 +68,96 @@ public class GLOMA extends MFRecommender {
         boolean[] acc_ufi = runtimes.acc_uf_indicator;
         boolean[] acc_ifi = runtimes.acc_if_indicator;
 
-        userDenseFeatures = new DenseMatrix(userCount, featureCount);
-        itemDenseFeatures = new DenseMatrix(itemCount, featureCount);
+        prepare_factors();
+        prepare_optimizer();
 
-        runtimes.itrain = (acc_ufi == null && acc_ifi == null) ? (AbstractIterator) train.iterator()
-            : (AbstractIterator) train.iteratorUion(acc_ufi, acc_ifi);
-        runtimes.itest = (test == null) ? null
-            : ((acc_ufi == null && acc_ifi == null) ? (AbstractIterator) test.iterator()
-                : (AbstractIterator) test.iteratorJion(acc_ufi, acc_ifi));
+        // iterators might be pre-built over the shared co-clustering index
+        if (runtimes.itrain == null) {
+            AbstractMatrix fit = prepare_validation(train);
+            runtimes.itrain = (acc_ufi == null && acc_ifi == null)
+                ? (AbstractIterator) fit.iterator()
+                : (AbstractIterator) fit.iteratorUion(acc_ufi, acc_ifi);
+        }
+        if (runtimes.itest == null) {
+            runtimes.itest = (test == null) ? null
+                : ((acc_ufi == null && acc_ifi == null) ? (AbstractIterator) test.iterator()
+                    : (AbstractIterator) test.iteratorJion(acc_ufi, acc_ifi));
+        }
         runtimes.nnz = runtimes.itrain.get_num_global();
 
+        boolean half = runtimes.halfAccumulator;
         runtimes.acumltors = new ArrayList<Accumulator>();
-        runtimes.acumltors.add(new Accumulator(1, runtimes.itrain.get_num_global())); // accumulator to record difference between real and predicted value
-        runtimes.acumltors.add(new Accumulator(1, runtimes.itrain.get_num_ufactor()));
-        runtimes.acumltors.add(new Accumulator(1, runtimes.itrain.get_num_ifactor()));
-        runtimes.acumltors.add(new Accumulator(userCount, featureCount)); // accumulator to record value of user latent factors
-        runtimes.acumltors.add(new Accumulator(itemCount, featureCount)); // accumulator to record value of item latent factors
+        runtimes.acumltors.add(new Accumulator(1, runtimes.itrain.get_num_global(), half, 1)); // accumulator to record difference between real and predicted value
+        runtimes.acumltors.add(new Accumulator(1, runtimes.itrain.get_num_ufactor(), half, 1));
+        runtimes.acumltors.add(new Accumulator(1, runtimes.itrain.get_num_ifactor(), half, 1));
+        runtimes.acumltors.add(new Accumulator(userCount, featureCount, half, 1)); // accumulator to record value of user latent factors
+        runtimes.acumltors.add(new Accumulator(itemCount, featureCount, half, 1)); // accumulator to record value of item latent factors
 
         Discretizer dctzr = (Discretizer) runtimes.plugins.get("DISCRETIZER");
         runtimes.tnWs = dctzr.cmpTrainWs(runtimes.itrain);
     }
 
+    /** 
+     * prepare the DSGD workers over the row blocks of the union iterator, where in every stratum
+     * each worker owns the local factors of its users and items, thus the epochs are conflict-free,
+     * where HOGWILD mode falls back to DSGD
+     * 
+     * @see code.sma.recmmd.standalone.MFRecommender#prepare_workers()
+     */
+    @Override
+    protected void prepare_workers() {
+        int featureCount = runtimes.featureCount;
+        if (runtimes.parallelMode == ParallelMode.SERIAL || runtimes.workerNum <= 1) {
+            rowCopies = new float[1][4][featureCount];
+            return;
+        } else if (runtimes.parallelMode != ParallelMode.DSGD) {
+            // lock-free workers would race on the local rows and on the difference accumulators
+            LoggerUtil.info(runningLogger, String.format(
+                "%s is not conflict-free in GLOMA, trained in DSGD mode", runtimes.parallelMode));
+            runtimes.parallelMode = ParallelMode.DSGD;
+        }
+
+        boolean[] acc_ufi = runtimes.acc_uf_indicator;
+        boolean[] acc_ifi = runtimes.acc_if_indicator;
+        Accumulator acum_ufactor = runtimes.acumltors.get(3);
+        Accumulator acum_ifactor = runtimes.acumltors.get(4);
+
+        // workers cannot initialize absent factors, which is done in the same order as in serial
+        int num_entry = 0;
+        AbstractIterator iDataElem = runtimes.itrain.refresh();
+        while (iDataElem.hasNext()) {
+            DataElem e = iDataElem.next();
+            short num_ifactor = e.getNum_ifacotr();
+
+            int u = e.getIndex_user(0);
+            if ((acc_ufi == null || acc_ufi[u]) && num_ifactor != 0) {
+                StatsOperator.getVectorRef(userDenseFeatures, u, acum_ufactor);
+            }
+            for (int f = 0; f < num_ifactor; f++) {
+                int i = e.getIndex_item(f);
+                if (acc_ifi == null || acc_ifi[i]) {
+                    StatsOperator.getVectorRef(itemDenseFeatures, i, acum_ifactor);
+                }
+            }
+            num_entry += num_ifactor;
+        }
+
+        // differences are recorded at the sequence ids of entries, in the stripe of each worker
+        int workerNum = runtimes.workerNum;
+        boolean half = runtimes.halfAccumulator;
+        for (int n = 0; n < 3; n++) {
+            runtimes.acumltors.set(n, new Accumulator(1, num_entry, half, workerNum));
+        }
+
+        BlockTuples blocks = new BlockTuples(runtimes.itrain, runtimes.userCount,
+            runtimes.itemCount, workerNum);
+        workers = new ArrayList<Callable<Double>>(workerNum);
+        for (int w = 0; w < workerNum; w++) {
+            workers.add(new DSGDWorker(this, blocks, w));
+        }
+        rowCopies = new float[workerNum][4][featureCount];
+    }
+
     /** 
      * @see code.sma.recmmd.standalone.MFRecommender#update_inner(code.sma.core.AbstractIterator)
      */
@@ -104,20 +179,58 @@ public class GLOMA extends MFRecommender {
         }
     }
 
+    /**
+     * @see code.sma.recmmd.standalone.MFRecommender#update_barrier()
+     */
+    @Override
+    protected void update_barrier() {
+        for (Accumulator acumltor : runtimes.acumltors) {
+            acumltor.merge();
+        }
+    }
+
     protected void collab_update(AbstractIterator iDataElem) {
-        boolean[] acc_ufi = runtimes.acc_uf_indicator;
-        boolean[] acc_ifi = runtimes.acc_if_indicator;
+        if (workers != null) {
+            update_parallel();
+            return;
+        }
+
+        assert runtimes.acumltors.get(0).cursor_vId == 0 : "Check it! At every begin, cursor shouble be at 0";
+        assert runtimes.acumltors.get(1).cursor_vId == 0 : "Check it! At every begin, cursor shouble be at 0";
+        assert runtimes.acumltors.get(2).cursor_vId == 0 : "Check it! At every begin, cursor shouble be at 0";
+
+        int rid = 0;
+        iDataElem.refresh();
+        while (iDataElem.hasNext()) {
+            DataElem e = iDataElem.next();
+            short num_ifactor = e.getNum_ifacotr();
+
+            int u = e.getIndex_user(0);
+            for (int f = 0; f < num_ifactor; f++) {
+                update_one(u, e.getIndex_item(f), e.getValue_ifactor(f), rid + f, 0);
+            }
+            rid += num_ifactor;
+        }
+    }
+
+    /**
+     * update the local factors with one entry, where only the local rows written back are copied,
+     * and LuLi, LuGi and GuLi are computed in one pass over the features
+     * 
+     * @see code.sma.recmmd.standalone.MFRecommender#update_one(int, int, double, int, int)
+     */
+    @Override
+    protected double update_one(int u, int i, double AuiReal, int rid, int wid) {
+        boolean accU = runtimes.acc_uf_indicator == null || runtimes.acc_uf_indicator[u];
+        boolean accI = runtimes.acc_if_indicator == null || runtimes.acc_if_indicator[i];
 
         int featureCount = runtimes.featureCount;
-        double learningRate = runtimes.learningRate;
+        double learningRate = runtimes.currLearningRate;
         double regularizer = runtimes.regularizer;
 
         Accumulator acum_diff_LuLi = runtimes.acumltors.get(0);
-        assert acum_diff_LuLi.cursor_vId == 0 : "Check it! At every begin, cursor shouble be at 0";
         Accumulator acum_diff_LuGi = runtimes.acumltors.get(1);
-        assert acum_diff_LuGi.cursor_vId == 0 : "Check it! At every begin, cursor shouble be at 0";
         Accumulator acum_diff_GuLi = runtimes.acumltors.get(2);
-        assert acum_diff_GuLi.cursor_vId == 0 : "Check it! At every begin, cursor shouble be at 0";
         Accumulator acum_ufactor = runtimes.acumltors.get(3);
         Accumulator acum_ifactor = runtimes.acumltors.get(4);
 
@@ -125,82 +238,155 @@ public class GLOMA extends MFRecommender {
         Loss lossFunction = runtimes.lossFunction;
         Discretizer dctzr = (Discretizer) runtimes.plugins.get("DISCRETIZER");
 
-        iDataElem.refresh();
-        while (iDataElem.hasNext()) {
-            DataElem e = iDataElem.next();
-            short num_ifactor = e.getNum_ifacotr();
-            int u = e.getIndex_user(0);
-
-            DenseVector lref_ufactor = null;
-            DenseVector gref_ufactor = auxRec.userDenseFeatures.getRowRef(u);
-            for (int f = 0; f < num_ifactor; f++) {
+        // the squared factors are only read by the group-sparse norm
+        Accumulator acum_uf = (regType == Regularizer.L12) ? acum_ufactor : null;
+        Accumulator acum_if = (regType == Regularizer.L12) ? acum_ifactor : null;
+
+        // copies of the local rows written back, where the absent rows are zeros,
+        // and the global rows are read in place
+        float[][] copies = rowCopies[wid];
+        float[] lufactor = copies[0];
+        float[] lifactor = copies[1];
+        float[] ugrad = copies[2];
+        float[] igrad = copies[3];
+        DenseMatrix gufactors = auxRec.userDenseFeatures;
+        DenseMatrix gifactors = auxRec.itemDenseFeatures;
+        if (accU) {
+            if (!userDenseFeatures.hasRow(u)) {
+                StatsOperator.getVectorRef(userDenseFeatures, u, acum_ufactor);
+            }
+            userDenseFeatures.getRow(u, lufactor);
+        } else {
+            Arrays.fill(lufactor, 0.0f);
+        }
+        if (accI) {
+            if (!itemDenseFeatures.hasRow(i)) {
+                StatsOperator.getVectorRef(itemDenseFeatures, i, acum_ifactor);
+            }
+            itemDenseFeatures.getRow(i, lifactor);
+        } else {
+            Arrays.fill(lifactor, 0.0f);
+        }
 
-                int i = e.getIndex_item(f);
-                DenseVector lref_ifactor = null;
-                DenseVector gref_ifactor = auxRec.itemDenseFeatures.getRowRef(i);
+        double LuLi = 0.0d;
+        double LuGi = 0.0d;
+        double GuLi = 0.0d;
+        for (int s = 0; s < featureCount; s++) {
+            LuLi += lufactor[s] * lifactor[s];
+            LuGi += lufactor[s] * gifactors.floatValue(i, s);
+            GuLi += gufactors.floatValue(u, s) * lifactor[s];
+        }
 
-                double AuiReal = e.getValue_ifactor(f);
+        double diffLuLi = lossFunction.diff(AuiReal, LuLi);
+        if (accU && accI) {
+            record(acum_diff_LuLi, diffLuLi, rid, wid);
+        }
+        if (accU) {
+            record(acum_diff_LuGi, lossFunction.diff(AuiReal, LuGi), rid, wid);
+        }
+        if (accI) {
+            record(acum_diff_GuLi, lossFunction.diff(AuiReal, GuLi), rid, wid);
+        }
 
-                double LuLi = 0.0d;
-                if (acc_ufi[u] && acc_ifi[i]) {
-                    lref_ufactor = StatsOperator.getVectorRef(userDenseFeatures, u, acum_ufactor);
-                    lref_ifactor = StatsOperator.getVectorRef(itemDenseFeatures, i, acum_ifactor);
-                    LuLi = StatsOperator.innerProduct(lref_ufactor, lref_ifactor, lossFunction,
-                        AuiReal, acum_diff_LuLi);
+        double RMELuLi = rm(acum_diff_LuLi, wid);
+        double RMELuGi = rm(acum_diff_LuGi, wid);
+        double RMEGuli = rm(acum_diff_GuLi, wid);
+
+        double deriWRTpLuLi = lossFunction.dervWRTPrdctn(AuiReal, LuLi) / RMELuLi;
+        double deriWRTpLuGi = lossFunction.dervWRTPrdctn(AuiReal, LuGi) / RMELuGi;
+        double deriWRTpGuLi = lossFunction.dervWRTPrdctn(AuiReal, GuLi) / RMEGuli;
+
+        double tnW = 1 + 0.4 * runtimes.tnWs[dctzr.convert(AuiReal)];
+        double urate = (userOptState != null && accU) ? userOptState.rate(u, learningRate)
+            : learningRate;
+        double irate = (itemOptState != null && accI) ? itemOptState.rate(i, learningRate)
+            : learningRate;
+        for (int s = 0; s < featureCount; s++) {
+            double Fus = lufactor[s];
+            double fus = gufactors.floatValue(u, s);
+            double Gis = lifactor[s];
+            double gis = gifactors.floatValue(i, s);
+
+            if (accU) {
+                double update_uf = accI
+                    ? (-deriWRTpLuLi * Gis * lambda[0] * tnW - deriWRTpLuGi * gis * lambda[1] * tnW
+                       - regularizer * regType.reg(acum_ufactor, u, Fus))
+                    : (-deriWRTpLuGi * gis * 3.0
+                       - regularizer * Regularizer.L2.reg(acum_ufactor, u, Fus));
+                if (userOptState == null) {
+                    updateFactor(lufactor, s, urate * update_uf, acum_uf, u);
+                } else {
+                    ugrad[s] = (float) -update_uf;
                 }
+            }
 
-                double LuGi = 0.0d;
-                if (acc_ufi[u]) {
-                    lref_ufactor = StatsOperator.getVectorRef(userDenseFeatures, u, acum_ufactor);
-                    LuGi = StatsOperator.innerProduct(lref_ufactor, gref_ifactor, lossFunction,
-                        AuiReal, acum_diff_LuGi);
+            if (accI) {
+                double update_if = accU
+                    ? (-deriWRTpLuLi * Fus * lambda[0] * tnW - deriWRTpGuLi * fus * lambda[2] * tnW
+                       - regularizer * regType.reg(acum_ifactor, i, Gis))
+                    : (-deriWRTpGuLi * fus * 0.8
+                       - regularizer * Regularizer.L2.reg(acum_ifactor, i, Gis));
+                if (itemOptState == null) {
+                    updateFactor(lifactor, s, irate * update_if, acum_if, i);
+                } else {
+                    igrad[s] = (float) -update_if;
                 }
+            }
+        }
 
-                double GuLi = 0.0d;
-                if (acc_ifi[i]) {
-                    lref_ifactor = StatsOperator.getVectorRef(itemDenseFeatures, i, acum_ifactor);
-                    GuLi = StatsOperator.innerProduct(gref_ufactor, lref_ifactor, lossFunction,
-                        AuiReal, acum_diff_GuLi);
+        // the steps of all factors are taken after their gradients use the old values
+        if (accU) {
+            if (userOptState != null) {
+                userOptState.step(u, ugrad, urate);
+                for (int s = 0; s < featureCount; s++) {
+                    updateFactor(lufactor, s, -ugrad[s], acum_uf, u);
                 }
-
-                double RMELuLi = acum_diff_LuLi.rm();
-                double RMELuGi = acum_diff_LuGi.rm();
-                double RMEGuli = acum_diff_GuLi.rm();
-
-                double deriWRTpLuLi = lossFunction.dervWRTPrdctn(AuiReal, LuLi) / RMELuLi;
-                double deriWRTpLuGi = lossFunction.dervWRTPrdctn(AuiReal, LuGi) / RMELuGi;
-                double deriWRTpGuLi = lossFunction.dervWRTPrdctn(AuiReal, GuLi) / RMEGuli;
-
-                double tnW = 1 + 0.4 * runtimes.tnWs[dctzr.convert(AuiReal)];
+            }
+            userDenseFeatures.setRow(u, lufactor);
+        }
+        if (accI) {
+            if (itemOptState != null) {
+                itemOptState.step(i, igrad, irate);
                 for (int s = 0; s < featureCount; s++) {
-                    double Fus = acc_ufi[u] ? lref_ufactor.floatValue(s) : 0.0d;
-                    double fus = gref_ufactor.floatValue(s);
-                    double Gis = acc_ifi[i] ? lref_ifactor.floatValue(s) : 0.0d;
-                    double gis = gref_ifactor.floatValue(s);
-
-                    if (acc_ufi[u]) {
-                        double update_uf = acc_ifi[i]
-                            ? (-deriWRTpLuLi * Gis * lambda[0] * tnW
-                               - deriWRTpLuGi * gis * lambda[1] * tnW
-                               - regularizer * regType.reg(acum_ufactor, u, Fus))
-                            : (-deriWRTpLuGi * gis * 3.0
-                               - regularizer * Regularizer.L2.reg(acum_ufactor, u, Fus));
-                        StatsOperator.updateVector(lref_ufactor, s, learningRate * update_uf,
-                            acum_ufactor, u, s);
-                    }
-
-                    if (acc_ifi[i]) {
-                        double update_if = acc_ufi[u]
-                            ? (-deriWRTpLuLi * Fus * lambda[0] * tnW
-                               - deriWRTpGuLi * fus * lambda[2] * tnW
-                               - regularizer * regType.reg(acum_ifactor, i, Gis))
-                            : (-deriWRTpGuLi * fus * 0.8
-                               - regularizer * Regularizer.L2.reg(acum_ifactor, i, Gis));
-                        StatsOperator.updateVector(lref_ifactor, s, learningRate * update_if,
-                            acum_ifactor, i, s);
-                    }
+                    updateFactor(lifactor, s, -igrad[s], acum_if, i);
                 }
             }
+            itemDenseFeatures.setRow(i, lifactor);
+        }
+        return (accU && accI) ? diffLuLi : 0.0d;
+    }
+
+    /**
+     * record the difference of the entry, in the stripe of the worker if trained in parallel
+     */
+    private void record(Accumulator acum_diff, double diff, int rid, int wid) {
+        if (workers == null) {
+            acum_diff.traverse(diff);
+        } else {
+            acum_diff.exchange(wid, 0, rid, diff);
+        }
+    }
+
+    /**
+     * the root mean difference, including the stripe of the worker if trained in parallel
+     */
+    private double rm(Accumulator acum_diff, int wid) {
+        return (workers == null) ? acum_diff.rm() : acum_diff.rm(wid, 0);
+    }
+
+    /**
+     * update the copy of the factor, whose row is owned by the worker if trained in parallel
+     */
+    private void updateFactor(float[] factor, int s, double up, Accumulator acum_factor, int row) {
+        double fVal = factor[s] + up;
+        factor[s] = (float) fVal;
+
+        if (acum_factor == null) {
+            return;
+        } else if (workers == null) {
+            acum_factor.update(row, s, fVal * fVal);
+        } else {
+            acum_factor.updateOwned(row, s, fVal * fVal);
         }
     }
 
@@ -209,7 +395,7 @@ public class GLOMA extends MFRecommender {
         boolean[] acc_ifi = runtimes.acc_if_indicator;
 
         int featureCount = runtimes.featureCount;
-        double learningRate = runtimes.learningRate;
+        double learningRate = runtimes.currLearningRate;
 
         Accumulator acum_diff = runtimes.acumltors.get(0);
         Accumulator acum_ufactor = runtimes.acumltors.get(3);
@@ -218,6 +404,8 @@ public class GLOMA extends MFRecommender {
         Loss lossFunction = runtimes.lossFunction;
         Discretizer dctzr = (Discretizer) runtimes.plugins.get("DISCRETIZER");
 
+        // trained in serial, where the differences go to the first stripe if prepared in parallel
+        int rid = 0;
         iDataElem.refresh();
         while (iDataElem.hasNext()) {
             DataElem e = iDataElem.next();
@@ -228,17 +416,17 @@ public class GLOMA extends MFRecommender {
             for (int f = 0; f < num_ifactor; f++) {
                 int i = e.getIndex_item(f);
 
-                if (!acc_ufi[u] || !acc_ifi[i]) {
+                if ((acc_ufi != null && !acc_ufi[u]) || (acc_ifi != null && !acc_ifi[i])) {
                     continue;
                 }
 
                 DenseVector lref_ifactor = itemDenseFeatures.getRowRef(i);
 
                 double AuiReal = e.getValue_ifactor(f);
-                double LuLi = (acc_ufi[u] && acc_ifi[i]) ? StatsOperator.innerProduct(lref_ufactor,
-                    lref_ifactor, lossFunction, AuiReal, acum_diff) : 0.0d;
+                double LuLi = lref_ufactor.innerProduct(lref_ifactor);
+                record(acum_diff, lossFunction.diff(AuiReal, LuLi), rid + f, 0);
 
-                double RMELuLi = acum_diff.rm(0);
+                double RMELuLi = (workers == null) ? acum_diff.rm(0) : acum_diff.rm(0, 0);
                 double deriWRTpLuLi = lossFunction.dervWRTPrdctn(AuiReal, LuLi) / RMELuLi;
                 double tnW = 1 + 0.4 * runtimes.tnWs[dctzr.convert(AuiReal)];
                 for (int s = 0; s < featureCount; s++) {
@@ -256,6 +444,11 @@ public class GLOMA extends MFRecommender {
                         acum_ifactor, i, s);
                 }
             }
+            rid += num_ifactor;
+        }
+
+        if (workers != null) {
+            update_barrier();
         }
     }
 
@@ -270,9 +463,10 @@ public class GLOMA extends MFRecommender {
 
         runtimes.round++;
         runtimes.sumErr = 0.0;
+        runtimes.lrSchedule.adjust(runtimes);
 
         if (runtimes.showProgress && (runtimes.round % 5 == 0 || runtimes.round >= runtimes.maxIter)
-            && runtimes.itest != null) {
+            && runtimes.itest != null && runtimes.ivalid == null) {
             EvaluationMetrics metric = new EvaluationMetrics(this);
             LoggerUtil.info(runningLogger, String.format("%d\t%.6f [%s]", runtimes.round,
                 runtimes.currErr, metric.printOneLine()));
@@ -285,35 +479,37 @@ public class GLOMA extends MFRecommender {
     }
 
     /** 
-     * @see code.sma.recmmd.standalone.MFRecommender#predict(int, int)
+     * @see code.sma.recmmd.standalone.MFRecommender#score(int, int)
      */
     @Override
-    public double predict(int u, int i) {
+    protected double score(int u, int i) {
         assert (userDenseFeatures != null
                 && itemDenseFeatures != null) : "Feature matrix cannot be null";
 
-        double maxValue = runtimes.maxValue;
-        double minValue = runtimes.minValue;
-        double prediction = 0.0;
-
         AbstractVector ufactors = userDenseFeatures.getRowRef(u);
         AbstractVector ifactors = itemDenseFeatures.getRowRef(i);
         if (ufactors == null || ifactors == null) {
-            prediction += (maxValue + minValue) / 2;
             LoggerUtil.debug(runningLogger,
                 String.format("null latent factors for (%d,%d)-entry", u, i));
-        } else {
-            DenseVector gref_ufactor = auxRec.userDenseFeatures.getRowRef(u);
-            DenseVector gref_ifactor = auxRec.itemDenseFeatures.getRowRef(i);
-
-            double LuLi = ufactors.innerProduct(ifactors);
-            double LuGi = ufactors.innerProduct(gref_ifactor);
-            double GuLi = gref_ufactor.innerProduct(ifactors);
-            double GuGi = gref_ufactor.innerProduct(gref_ifactor);
-            prediction += (LuLi + LuGi + GuLi + GuGi) / 4.0d;
+            return (runtimes.maxValue + runtimes.minValue) / 2;
         }
 
-        return Math.max(minValue, Math.min(prediction, maxValue));
+        DenseVector gref_ufactor = auxRec.userDenseFeatures.getRowRef(u);
+        DenseVector gref_ifactor = auxRec.itemDenseFeatures.getRowRef(i);
+
+        double LuLi = ufactors.innerProduct(ifactors);
+        double LuGi = ufactors.innerProduct(gref_ifactor);
+        double GuLi = gref_ufactor.innerProduct(ifactors);
+        double GuGi = gref_ufactor.innerProduct(gref_ifactor);
+        return (LuLi + LuGi + GuLi + GuGi) / 4.0d;
+    }
+
+    /**
+     * @see code.sma.recmmd.standalone.MFRecommender#isFactorProduct()
+     */
+    @Override
+    protected boolean isFactorProduct() {
+        return false;
     }
 
     /** 
@@ -1,42 +1,64 @@
 package code.sma.recmmd.standalone;
 
+import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import code.sma.core.AbstractIterator;
 import code.sma.core.AbstractMatrix;
 import code.sma.core.DataElem;
-import code.sma.core.impl.UJMPDenseMatrix;
-import code.sma.core.impl.UJMPDenseVector;
+import code.sma.core.linalg.Blas;
+import code.sma.core.linalg.Cholesky;
 import code.sma.main.Configures;
 import code.sma.plugin.Plugin;
 import code.sma.recmmd.Loss;
 import code.sma.util.EvaluationMetrics;
 import code.sma.util.LoggerUtil;
-import it.unimi.dsi.fastutil.ints.IntArrayList;
+import code.sma.util.RandomUtil;
+import code.sma.util.SplitRandom;
 
 /**
  * This is a class implementing GroupSparse Matrix Factorization (GSMF)
  * Technical detail of the algorithm can be found in
  * Ting Yuan, Recommendation by Mining Multiple User Behaviors with Group Sparsity
  * Proceedings of AAAI, 2014
+ * <br/>
+ * The alternating least squares are solved row by row in parallel over a fork-join pool, 
+ * where every task accumulates the normal equations of its rows in place 
+ * and solves them by Cholesky factorization, reusing its own buffers.
  * 
  * @author Chao Chen
  * @version $Id: GSMF.java, v 0.1 Jan 28, 2016 1:05:24 PM Exp $
  */
 public class GroupSparsityMF extends MFRecommender {
     /**  SerialVersionNum */
-    private static final long        serialVersionUID = 1L;
+    private static final long         serialVersionUID = 1L;
+    /** the pool shared by all models solving the least squares, whose threads are daemons */
+    private static final ForkJoinPool POOL             = new ForkJoinPool();
+    /** the number of rows solved by one task at most */
+    private static final int          ROWS_PER_TASK    = 64;
+    /** the number of ratings gathered into one panel of the rank-k updates */
+    private static final int          PANEL_WIDTH      = 128;
 
     /** Number of item clusters*/
-    private int                      L;
-    /** User profile in low-rank matrix form. */
-    private UJMPDenseMatrix          userUJMPFeatures;
-    /** Item profile in low-rank matrix form. */
-    private UJMPDenseMatrix          itemUJMPFeatures;
-    /** The Indicator matrix indexed by user id*/
-    private transient IntArrayList[] IijIndxU;
-    /** The Indicator matrix indexed by item id*/
-    private transient IntArrayList[] IijIndxI;
+    private int                       L;
+    /** User profile in row-major order, i.e., [u * featureCount + f]*/
+    private double[]                  userFeatures;
+    /** Item profile in row-major order, i.e., [i * featureCount + f]*/
+    private double[]                  itemFeatures;
+    /** The beginning of the ratings of every user*/
+    private transient int[]           userPtr;
+    /** The items rated by every user*/
+    private transient int[]           userItems;
+    /** The ratings grouped by user*/
+    private transient float[]         userVals;
+    /** The beginning of the ratings of every item*/
+    private transient int[]           itemPtr;
+    /** The users rating every item*/
+    private transient int[]           itemUsers;
+    /** The ratings grouped by item*/
+    private transient float[]         itemVals;
 
     /*========================================
      * Constructors
@@ -58,7 +80,7 @@ public class GroupSparsityMF extends MFRecommender {
      */
     @Override
     protected void prepare_runtimes(AbstractMatrix train, AbstractMatrix test) {
-        runtimes.itrain = (AbstractIterator) train.iterator();
+        runtimes.itrain = (AbstractIterator) prepare_validation(train).iterator();
         runtimes.itest = test == null ? null : (AbstractIterator) test.iterator();
         runtimes.nnz = runtimes.itrain.get_num_ifactor();
 
@@ -66,39 +88,54 @@ public class GroupSparsityMF extends MFRecommender {
         int itemCount = runtimes.itemCount;
         int featureCount = runtimes.featureCount;
 
+        SplitRandom ran = RandomUtil.current();
         {
             //user features
-            userUJMPFeatures = new UJMPDenseMatrix(userCount, featureCount);
-            for (int u = 0; u < userCount; u++) {
-                for (int f = 0; f < featureCount; f++) {
-                    double rdm = Math.random() / featureCount;
-                    userUJMPFeatures.setValue(u, f, rdm);
-                }
+            userFeatures = new double[userCount * featureCount];
+            for (int n = 0; n < userFeatures.length; n++) {
+                userFeatures[n] = ran.nextDouble() / featureCount;
             }
 
             //item features
-            itemUJMPFeatures = new UJMPDenseMatrix(featureCount, itemCount);
-            for (int i = 0; i < itemCount; i++) {
-                for (int f = 0; f < featureCount; f++) {
-                    double rdm = Math.random() / featureCount;
-                    itemUJMPFeatures.setValue(f, i, rdm);
-                }
+            itemFeatures = new double[itemCount * featureCount];
+            for (int n = 0; n < itemFeatures.length; n++) {
+                itemFeatures[n] = ran.nextDouble() / featureCount;
             }
         }
 
         // dividing rating matrix into $L$ pieces
-        IijIndxU = new IntArrayList[userCount];
-        IijIndxI = new IntArrayList[itemCount];
-        for (int u = 0; u < userCount; u++) {
-            IijIndxU[u] = new IntArrayList();
+        for (int i = 0; i < itemCount; i++) {
+            runtimes.ia_func[i] = (short) ran.nextInt(L);
         }
 
+        // index the ratings by user and by item
+        int nnz = runtimes.nnz;
+        userPtr = new int[userCount + 1];
+        itemPtr = new int[itemCount + 1];
+        AbstractIterator iDataElem = runtimes.itrain.refresh();
+        while (iDataElem.hasNext()) {
+            DataElem e = iDataElem.next();
+            short num_ifactor = e.getNum_ifacotr();
+
+            userPtr[e.getIndex_user(0) + 1] += num_ifactor;
+            for (int f = 0; f < num_ifactor; f++) {
+                itemPtr[e.getIndex_item(f) + 1]++;
+            }
+        }
+        for (int u = 0; u < userCount; u++) {
+            userPtr[u + 1] += userPtr[u];
+        }
         for (int i = 0; i < itemCount; i++) {
-            IijIndxI[i] = new IntArrayList();
-            runtimes.ia_func[i] = (short) (Math.random() * L);
+            itemPtr[i + 1] += itemPtr[i];
         }
 
-        AbstractIterator iDataElem = runtimes.itrain.refresh();
+        userItems = new int[nnz];
+        userVals = new float[nnz];
+        itemUsers = new int[nnz];
+        itemVals = new float[nnz];
+        int[] uCursor = Arrays.copyOf(userPtr, userCount);
+        int[] iCursor = Arrays.copyOf(itemPtr, itemCount);
+        iDataElem.refresh();
         while (iDataElem.hasNext()) {
             DataElem e = iDataElem.next();
             short num_ifactor = e.getNum_ifacotr();
@@ -106,69 +143,57 @@ public class GroupSparsityMF extends MFRecommender {
             int u = e.getIndex_user(0);
             for (int f = 0; f < num_ifactor; f++) {
                 int i = e.getIndex_item(f);
+                float Rui = e.getValue_ifactor(f);
 
-                IijIndxU[u].add(i);
-                IijIndxI[i].add(u);
+                userItems[uCursor[u]] = i;
+                userVals[uCursor[u]++] = Rui;
+                itemUsers[iCursor[i]] = u;
+                itemVals[iCursor[i]++] = Rui;
             }
-
         }
     }
 
+    /** 
+     * @see code.sma.recmmd.standalone.MFRecommender#prepare_workers()
+     */
+    @Override
+    protected void prepare_workers() {
+        // the rows are solved in parallel over the shared pool
+    }
+
     /** 
      * @see code.sma.recmmd.standalone.MFRecommender#update_inner(code.sma.core.AbstractIterator)
      */
     @Override
     protected void update_inner(AbstractIterator iDataElem) {
         // a) update U features
-        updateU(iDataElem);
+        updateU();
 
         // b) update V features
-        updateI(iDataElem);
+        updateI();
 
         // c) training error
         update_runtimes();
     }
 
-    protected void updateU(AbstractIterator iDataElem) {
-        int userCount = runtimes.userCount;
-        int featureCount = runtimes.featureCount;
-
+    /**
+     * follow Equation (7), i.e., 
+     * U_u = (lambda * I + alpha * sum_j V_j V_j^T)^-1 * alpha * sum_j R_uj V_j
+     */
+    protected void updateU() {
         double alpha = runtimes.doubles.getDouble(0);
         double lambda = runtimes.doubles.getDouble(2);
 
-        // the right vector term for every user
-        UJMPDenseMatrix rightSideMtx = new UJMPDenseMatrix(userCount, featureCount);
-        iDataElem.refresh();
-        while (iDataElem.hasNext()) {
-            DataElem e = iDataElem.next();
-            short num_ifactor = e.getNum_ifacotr();
-
-            int u = e.getIndex_user(0);
-            for (int f = 0; f < num_ifactor; f++) {
-                int i = e.getIndex_item(f);
-
-                double Rui = e.getValue_ifactor(f);
-                rightSideMtx.plusInRow(u, itemUJMPFeatures.getCol(i).scale(alpha * Rui));
-            }
-        }
-
-        for (int i = 0; i < userCount; i++) {
-            // left matrix term, which will be inversed
-            UJMPDenseMatrix leftSideMtx = UJMPDenseMatrix.makeIdentity(featureCount).scale(lambda);
-            for (int ratedItemIndx : IijIndxU[i]) {
-                UJMPDenseVector Vj = itemUJMPFeatures.getCol(ratedItemIndx);
-                leftSideMtx = leftSideMtx.plus(Vj.outerProduct(Vj).scale(alpha));
-            }
-
-            // follow Equation (7)
-            UJMPDenseVector Ui = leftSideMtx.inverse().times(rightSideMtx.getRow(i));
-            for (int fcIndx = 0; fcIndx < featureCount; fcIndx++) {
-                userUJMPFeatures.setValue(i, fcIndx, Ui.getValue(fcIndx));
-            }
-        }
+        POOL.invoke(new SolveTask(userFeatures, itemFeatures, userPtr, userItems, userVals,
+            runtimes.featureCount, alpha, lambda, null, null, 0, runtimes.userCount));
     }
 
-    protected void updateI(AbstractIterator iDataElem) {
+    /**
+     * follow Equation (5), i.e., 
+     * V_j = (lambda / alpha * I + D^b + sum_u U_u U_u^T)^-1 * sum_u R_uj U_u, 
+     * where D^b is the diagonal group-sparsity term of the item cluster of V_j
+     */
+    protected void updateI() {
         int itemCount = runtimes.itemCount;
         int featureCount = runtimes.featureCount;
 
@@ -178,53 +203,122 @@ public class GroupSparsityMF extends MFRecommender {
 
         short[] ia_func = runtimes.ia_func;
 
-        // the right vector term for every item
-        UJMPDenseMatrix rightSideMtx = new UJMPDenseMatrix(itemCount, featureCount);
-        iDataElem.refresh();
-        while (iDataElem.hasNext()) {
-            DataElem e = iDataElem.next();
-            short num_ifactor = e.getNum_ifacotr();
-
-            int u = e.getIndex_user(0);
-            for (int f = 0; f < num_ifactor; f++) {
-                int i = e.getIndex_item(f);
-
-                double Rui = e.getValue_ifactor(f);
-                rightSideMtx.plusInRow(i, userUJMPFeatures.getRow(u).scale(Rui));
+        // compute D^b
+        double[][] Ds = new double[L][featureCount];
+        for (int j = 0; j < itemCount; j++) {
+            double[] Dl = Ds[ia_func[j]];
+            int jOff = j * featureCount;
+            for (int t = 0; t < featureCount; t++) {
+                Dl[t] += itemFeatures[jOff + t] * itemFeatures[jOff + t];
             }
         }
-
-        // compute D^b
-        UJMPDenseMatrix[] Ds = new UJMPDenseMatrix[L];
         for (int l = 0; l < L; l++) {
-            Ds[l] = new UJMPDenseMatrix(featureCount, featureCount);
-        }
-        for (int t = 0; t < featureCount; t++) {
-            double[] Dtt = new double[L];
-            for (int j = 0; j < itemCount; j++) {
-                Dtt[ia_func[j]] += Math.pow(itemUJMPFeatures.getValue(t, j), 2.0d);
-            }
-
-            for (int l = 0; l < L; l++) {
-                Ds[l].setValue(t, t, beta / Math.sqrt(Dtt[l]));
+            for (int t = 0; t < featureCount; t++) {
+                Ds[l][t] = beta / Math.sqrt(Ds[l][t]);
             }
         }
 
-        // update V
-        for (int j = 0; j < itemCount; j++) {
-            // left matrix term, which will be inversed
-            UJMPDenseMatrix leftSideMtx = UJMPDenseMatrix.makeIdentity(featureCount)
-                .scale(lambda / alpha).plus(Ds[ia_func[j]]);
+        POOL.invoke(new SolveTask(itemFeatures, userFeatures, itemPtr, itemUsers, itemVals,
+            featureCount, 1.0d, lambda / alpha, Ds, ia_func, 0, itemCount));
+    }
+
+    /**
+     * Task solving the least squares of a range of rows, i.e., 
+     * x_r = (ridge * I + D_r + gain * sum_p v_p v_p^T)^-1 * gain * sum_p R_p v_p, 
+     * where p runs over the ratings of row r, and v_p is the fixed factor of the other side
+     */
+    protected static class SolveTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        /** the factors to solve*/
+        private final double[]    dst;
+        /** the fixed factors of the other side*/
+        private final double[]    src;
+        /** the ratings of every row, and the rows of the other side*/
+        private final int[]       ptr;
+        private final int[]       idx;
+        private final float[]     vals;
+        /** the number of latent factors*/
+        private final int         featureCount;
+        /** the scale of both the Gram matrix and the right-hand side*/
+        private final double      gain;
+        /** the diagonal ridge term*/
+        private final double      ridge;
+        /** the diagonal terms of clusters, and the cluster of every row, or null if absent*/
+        private final double[][]  diags;
+        private final short[]     assign;
+        /** the range of rows*/
+        private final int         lo;
+        private final int         hi;
+
+        SolveTask(double[] dst, double[] src, int[] ptr, int[] idx, float[] vals,
+                  int featureCount, double gain, double ridge, double[][] diags, short[] assign,
+                  int lo, int hi) {
+            this.dst = dst;
+            this.src = src;
+            this.ptr = ptr;
+            this.idx = idx;
+            this.vals = vals;
+            this.featureCount = featureCount;
+            this.gain = gain;
+            this.ridge = ridge;
+            this.diags = diags;
+            this.assign = assign;
+            this.lo = lo;
+            this.hi = hi;
+        }
 
-            for (int usrRatedIndx : IijIndxI[j]) {
-                UJMPDenseVector Vj = userUJMPFeatures.getRow(usrRatedIndx);
-                leftSideMtx = leftSideMtx.plus(Vj.outerProduct(Vj));
+        /**
+         * @see java.util.concurrent.RecursiveAction#compute()
+         */
+        @Override
+        protected void compute() {
+            if (hi - lo > ROWS_PER_TASK) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(
+                    new SolveTask(dst, src, ptr, idx, vals, featureCount, gain, ridge, diags,
+                        assign, lo, mid),
+                    new SolveTask(dst, src, ptr, idx, vals, featureCount, gain, ridge, diags,
+                        assign, mid, hi));
+                return;
             }
 
-            // follow Equation (5)
-            UJMPDenseVector Vj = leftSideMtx.inverse().times(rightSideMtx.getRow(j));
-            for (int fcIndx = 0; fcIndx < featureCount; fcIndx++) {
-                itemUJMPFeatures.setValue(fcIndx, j, Vj.getValue(fcIndx));
+            // buffers of the normal equations, reused by all rows of this task
+            int K = featureCount;
+            double[] gram = new double[K * K];
+            double[] rhs = new double[K];
+            double[] panel = new double[K * PANEL_WIDTH];
+            double[] rates = new double[PANEL_WIDTH];
+            for (int r = lo; r < hi; r++) {
+                Arrays.fill(gram, 0.0d);
+                Arrays.fill(rhs, 0.0d);
+
+                // rank-k updates of the lower triangle over panels of the rated factors,
+                // gathered as K-by-w matrices so that the inner products run along the ratings
+                for (int p0 = ptr[r]; p0 < ptr[r + 1]; p0 += PANEL_WIDTH) {
+                    int w = Math.min(PANEL_WIDTH, ptr[r + 1] - p0);
+                    for (int p = 0; p < w; p++) {
+                        int vOff = idx[p0 + p] * K;
+                        for (int a = 0; a < K; a++) {
+                            panel[a * w + p] = src[vOff + a];
+                        }
+                        rates[p] = vals[p0 + p];
+                    }
+
+                    Blas.syrk(K, w, gain, panel, gram);
+                    Blas.gemv(K, w, gain, panel, rates, 1.0d, rhs);
+                }
+
+                double[] diag = (diags == null) ? null : diags[assign[r]];
+                for (int a = 0; a < K; a++) {
+                    gram[a * K + a] += ridge + (diag == null ? 0.0d : diag[a]);
+                }
+
+                // rows whose system is singular keep their previous factors
+                if (Cholesky.factor(gram, K)) {
+                    Cholesky.solve(gram, K, rhs);
+                    System.arraycopy(rhs, 0, dst, r * K, K);
+                }
             }
         }
     }
@@ -236,26 +330,21 @@ public class GroupSparsityMF extends MFRecommender {
     protected void update_runtimes() {
         Loss lossfunc = runtimes.lossFunction;
 
-        AbstractIterator iDataElem = runtimes.itrain;
-        iDataElem.refresh();
-        while (iDataElem.hasNext()) {
-            DataElem e = iDataElem.next();
-            short num_ifactor = e.getNum_ifacotr();
-
-            int u = e.getIndex_user(0);
-            for (int f = 0; f < num_ifactor; f++) {
-                int i = e.getIndex_item(f);
-
-                double Rui = e.getValue_ifactor(f);
-                runtimes.sumErr += lossfunc.diff(Rui, predict(u, i));
+        int userCount = runtimes.userCount;
+        for (int u = 0; u < userCount; u++) {
+            for (int p = userPtr[u]; p < userPtr[u + 1]; p++) {
+                runtimes.sumErr += lossfunc.diff(userVals[p], predict(u, userItems[p]));
             }
         }
 
         runtimes.prevErr = runtimes.currErr;
         runtimes.currErr = Math.sqrt(runtimes.sumErr / runtimes.nnz);
+        runtimes.trainErr.add(runtimes.currErr);
         runtimes.round++;
+        runtimes.sumErr = 0.0;
 
-        if (runtimes.showProgress && (runtimes.round % 5 == 0) && runtimes.itest != null) {
+        if (runtimes.showProgress && (runtimes.round % 5 == 0) && runtimes.itest != null
+            && runtimes.ivalid == null) {
             EvaluationMetrics metric = new EvaluationMetrics(this);
             LoggerUtil.info(runningLogger, String.format("%d\t%.6f [%s]", runtimes.round,
                 runtimes.currErr, metric.printOneLine()));
@@ -267,15 +356,26 @@ public class GroupSparsityMF extends MFRecommender {
     }
 
     /** 
-     * @see MFRecommender.tongji.ml.matrix.MatrixFactorizationRecommender#predict(int, int)
+     * @see code.sma.recmmd.standalone.MFRecommender#score(int, int)
      */
     @Override
-    public double predict(int u, int i) {
-        double maxValue = runtimes.maxValue;
-        double minValue = runtimes.minValue;
+    protected double score(int u, int i) {
+        int featureCount = runtimes.featureCount;
+        int uOff = u * featureCount;
+        int iOff = i * featureCount;
+        double prediction = 0.0d;
+        for (int f = 0; f < featureCount; f++) {
+            prediction += userFeatures[uOff + f] * itemFeatures[iOff + f];
+        }
+        return prediction;
+    }
 
-        double prediction = userUJMPFeatures.getRow(u).innerProduct(itemUJMPFeatures.getCol(i));
-        return Math.max(minValue, Math.min(prediction, maxValue));
+    /**
+     * @see code.sma.recmmd.standalone.MFRecommender#isFactorProduct()
+     */
+    @Override
+    protected boolean isFactorProduct() {
+        return false;
     }
 
     /** 
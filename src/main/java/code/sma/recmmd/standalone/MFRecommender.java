@@ -1,21 +1,39 @@
 package code.sma.recmmd.standalone;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
 
 import code.sma.core.AbstractIterator;
 import code.sma.core.AbstractMatrix;
-import code.sma.core.AbstractVector;
 import code.sma.core.DataElem;
+import code.sma.core.impl.BlockTuples;
 import code.sma.core.impl.DenseMatrix;
+import code.sma.core.impl.OffHeapDenseMatrix;
 import code.sma.main.Configures;
 import code.sma.plugin.Plugin;
+import code.sma.recmmd.LearningRateSchedule;
+import code.sma.recmmd.OptimizerState;
+import code.sma.recmmd.ParallelMode;
 import code.sma.recmmd.Recommender;
+import code.sma.recmmd.Regularizer;
 import code.sma.recmmd.RuntimeEnv;
+import code.sma.recmmd.stats.Accumulator;
+import code.sma.recmmd.stats.StatsOperator;
 import code.sma.util.EvaluationMetrics;
+import code.sma.util.ExceptionUtil;
 import code.sma.util.LoggerDefineConstant;
 import code.sma.util.LoggerUtil;
+import code.sma.util.RandomUtil;
+import code.sma.util.SplitRandom;
 
 /**
  * This is an abstract class implementing four matrix-factorization-based methods
@@ -27,17 +45,46 @@ import code.sma.util.LoggerUtil;
  */
 public abstract class MFRecommender extends Recommender implements Plugin {
     /** SerialVersionNum */
-    protected static final long             serialVersionUID = 1L;
+    protected static final long                serialVersionUID = 1L;
 
     /** User profile in low-rank matrix form. */
-    public DenseMatrix                      userDenseFeatures;
+    public DenseMatrix                         userDenseFeatures;
     /** Item profile in low-rank matrix form. */
-    public DenseMatrix                      itemDenseFeatures;
+    public DenseMatrix                         itemDenseFeatures;
+
+    /** thread pool running the workers of parallel training */
+    protected transient ExecutorService        workerPool;
+    /** workers of parallel training, each of which owns one data partition */
+    protected transient List<Callable<Double>> workers;
+    /** the stratum being trained by DSGD workers */
+    protected transient int                    stratum;
+    /** the order of strata in one epoch, permuted every epoch */
+    protected transient int[]                  strata;
+    /** the user rows buffered by workers in user-grouped updates */
+    protected transient float[][]              rowBufs;
+    /** the user gradients accumulated by workers in user-grouped updates */
+    protected transient double[][]             gradBufs;
+    /** whether the runtime environment has been prepared, after which training resumes */
+    protected transient boolean                prepared;
+    /** snapshot of user profile with the best validation error */
+    protected transient DenseMatrix            bestUserFeatures;
+    /** snapshot of item profile with the best validation error */
+    protected transient DenseMatrix            bestItemFeatures;
+    /** copy of user profile of the last round accepted by the schedule of the learning rate */
+    protected transient DenseMatrix            lastUserFeatures;
+    /** copy of item profile of the last round accepted by the schedule of the learning rate */
+    protected transient DenseMatrix            lastItemFeatures;
+    /** copy of the accumulators of the last round accepted by the schedule of the learning rate */
+    protected transient List<Accumulator>      lastAcumltors;
+    /** adaptive state of user profile, null for plain SGD */
+    protected transient OptimizerState         userOptState;
+    /** adaptive state of item profile, null for plain SGD */
+    protected transient OptimizerState         itemOptState;
 
     /** logger */
-    protected final static transient Logger runningLogger    = Logger
+    protected final static transient Logger    runningLogger    = Logger
         .getLogger(LoggerDefineConstant.SERVICE_CORE);
-    protected final static transient Logger resultLogger     = Logger
+    protected final static transient Logger    resultLogger     = Logger
         .getLogger(LoggerDefineConstant.SERVICE_NORMAL);
 
     /*========================================
@@ -61,60 +108,532 @@ public abstract class MFRecommender extends Recommender implements Plugin {
      * Model Builder
      *========================================*/
     /**
+     * build the model, where the runtime environment is prepared in the first call only. 
+     * If training is paused at {@link RuntimeEnv#pauseRound}, 
+     * the next call resumes from the current factors.
+     * 
      * @see code.sma.recmmd.Recommender#buildModel(code.sma.core.AbstractMatrix, code.sma.core.AbstractMatrix)
      */
     @Override
     public void buildModel(AbstractMatrix train, AbstractMatrix test) {
-        LoggerUtil.info(runningLogger, this);
+        // draw random numbers from the stream of this model
+        RandomUtil.bind(RandomUtil.stream(runtimes.seed, runtimes.threadId));
 
         // prepare runtime environment
-        prepare_runtimes(train, test);
+        if (!prepared) {
+            LoggerUtil.info(runningLogger, this);
+
+            prepare_runtimes(train, test);
+            prepare_workers();
+            if (runtimes.rowUpdate) {
+                int num_worker = (workers == null) ? 1 : workers.size();
+                rowBufs = new float[num_worker][runtimes.featureCount];
+                gradBufs = new double[num_worker][runtimes.featureCount];
+            }
+            prepared = true;
+        }
+        if (workers != null) {
+            workerPool = Executors.newFixedThreadPool(workers.size());
+        }
 
         // update model
-        AbstractIterator iDataElem = runtimes.itrain;
-        while (runtimes.prevErr - runtimes.currErr > 0.0001 && runtimes.round < runtimes.maxIter) {
-            update_inner(iDataElem);
+        try {
+            AbstractIterator iDataElem = runtimes.itrain;
+            while (!runtimes.isConverged() && runtimes.round < runtimes.maxIter && !runtimes.earlyStopped
+                   && !runtimes.isPaused()) {
+                update_inner(iDataElem);
+                update_rejection();
+                update_validation();
+            }
+
+            if (!runtimes.isPaused()) {
+                restore_factors();
+                release(lastUserFeatures);
+                release(lastItemFeatures);
+                lastUserFeatures = null;
+                lastItemFeatures = null;
+                lastAcumltors = null;
+            }
+        } finally {
+            if (workerPool != null) {
+                workerPool.shutdown();
+                workerPool = null;
+            }
         }
     }
 
     protected void prepare_runtimes(AbstractMatrix train, AbstractMatrix test) {
         assert train != null : "Training data cannot be null.";
 
-        int userCount = runtimes.userCount;
-        int itemCount = runtimes.itemCount;
-        int featureCount = runtimes.featureCount;
-
         boolean[] acc_ufi = runtimes.acc_uf_indicator;
         boolean[] acc_ifi = runtimes.acc_if_indicator;
 
-        userDenseFeatures = new DenseMatrix(userCount, featureCount);
-        itemDenseFeatures = new DenseMatrix(itemCount, featureCount);
+        prepare_factors();
+        prepare_optimizer();
 
-        runtimes.itrain = (acc_ufi == null && acc_ifi == null) ? (AbstractIterator) train.iterator()
-            : (AbstractIterator) train.iteratorJion(acc_ufi, acc_ifi);
-        runtimes.itest = (test == null) ? null
-            : ((acc_ufi == null && acc_ifi == null) ? (AbstractIterator) test.iterator()
-                : (AbstractIterator) test.iteratorJion(acc_ufi, acc_ifi));
+        // iterators might be pre-built over the shared co-clustering index, 
+        // with the validation split held out alike
+        if (runtimes.itrain == null) {
+            AbstractMatrix fit = prepare_validation(train);
+            runtimes.itrain = (acc_ufi == null && acc_ifi == null)
+                ? (AbstractIterator) fit.iterator()
+                : (AbstractIterator) fit.iteratorJion(acc_ufi, acc_ifi);
+        }
+        if (runtimes.itest == null) {
+            runtimes.itest = (test == null) ? null
+                : ((acc_ufi == null && acc_ifi == null) ? (AbstractIterator) test.iterator()
+                    : (AbstractIterator) test.iteratorJion(acc_ufi, acc_ifi));
+        }
         runtimes.nnz = runtimes.itrain.get_num_ifactor();
     }
 
-    protected void update_inner(AbstractIterator iDataElem) {
-        iDataElem.refresh();
+    /**
+     * hold out a random split of the training data for validation if required, 
+     * so that the test data are left untouched until the final evaluation, 
+     * where the split is drawn from its own seed, thus the models of one sweep share the split
+     * 
+     * @param train the training data
+     * @return      the data to fit, i.e., the training data except the held-out split
+     */
+    protected AbstractMatrix prepare_validation(AbstractMatrix train) {
+        if (runtimes.validRatio <= 0.0d) {
+            return train;
+        }
+
+        AbstractMatrix[] parts = train.split(runtimes.validRatio,
+            new SplitRandom(runtimes.validSeed));
+        if (parts[1].getNum_row() == 0) {
+            return train;
+        }
+
+        boolean[] acc_ufi = runtimes.acc_uf_indicator;
+        boolean[] acc_ifi = runtimes.acc_if_indicator;
+        runtimes.ivalid = (acc_ufi == null && acc_ifi == null)
+            ? (AbstractIterator) parts[1].iterator()
+            : (AbstractIterator) parts[1].iteratorJion(acc_ufi, acc_ifi);
+        LoggerUtil.info(runningLogger, String.format("hold out %d ratings for validation",
+            runtimes.ivalid.get_num_ifactor()));
+        return parts[0];
+    }
+
+    /**
+     * create the latent factors, unless the factors in place fit the model, 
+     * e.g., the factors read or mapped from a model file, so that training warm-starts from them
+     */
+    protected void prepare_factors() {
+        if (fits(userDenseFeatures, runtimes.userCount)
+            && fits(itemDenseFeatures, runtimes.itemCount)) {
+            return;
+        }
+
+        releaseFactors();
+        userDenseFeatures = create_factors(runtimes.userCount, runtimes.featureCount);
+        itemDenseFeatures = create_factors(runtimes.itemCount, runtimes.featureCount);
+    }
+
+    private boolean fits(DenseMatrix factors, int rowCount) {
+        return factors != null && factors.shape()[0] == rowCount
+               && factors.shape()[1] == runtimes.featureCount;
+    }
+
+    /**
+     * create the latent factors, which live outside the Java heap if required
+     * 
+     * @param rowCount      the number of rows
+     * @param featureCount  the number of latent factors
+     * @return              the latent factors with all rows uninitialized
+     */
+    protected DenseMatrix create_factors(int rowCount, int featureCount) {
+        return runtimes.offHeap ? new OffHeapDenseMatrix(rowCount, featureCount)
+            : new DenseMatrix(rowCount, featureCount);
+    }
+
+    /**
+     * create the adaptive state parallel to the latent factors, if the update rule is stateful
+     */
+    protected void prepare_optimizer() {
+        if (!runtimes.optimizer.isStateful()) {
+            userOptState = null;
+            itemOptState = null;
+            return;
+        }
+
+        int featureCount = runtimes.featureCount;
+        userOptState = new OptimizerState(runtimes.optimizer, runtimes.userCount, featureCount,
+            runtimes.momentum);
+        itemOptState = new OptimizerState(runtimes.optimizer, runtimes.itemCount, featureCount,
+            runtimes.momentum);
+    }
+
+    /**
+     * release the latent factors living outside the Java heap at once, 
+     * after which the model cannot be used anymore
+     */
+    public void releaseFactors() {
+        release(userDenseFeatures);
+        release(itemDenseFeatures);
+    }
+
+    private static void release(DenseMatrix factors) {
+        if (factors instanceof OffHeapDenseMatrix) {
+            ((OffHeapDenseMatrix) factors).close();
+        }
+    }
+
+    /**
+     * prepare the workers used in parallel training, where in HOGWILD mode every worker takes 
+     * a contiguous range of rows with about the same number of ratings, and in DSGD mode every worker takes 
+     * one block of the gridded data in each stratum
+     */
+    protected void prepare_workers() {
+        if (runtimes.parallelMode == ParallelMode.SERIAL || runtimes.workerNum <= 1) {
+            return;
+        }
+
+        // lock-free updates require every latent factor to exist before the workers start, 
+        // and the rows are cut into the ranges of workers in the same pass
+        int workerNum = runtimes.workerNum;
+        int[] rowPtr = new int[workerNum + 1];
+        int[] ridPtr = new int[workerNum + 1];
+        int row = 0;
+        int rid = 0;
+        int cut = 1;
+        AbstractIterator iDataElem = runtimes.itrain.refresh();
+        long nnz = iDataElem.get_num_ifactor();
         while (iDataElem.hasNext()) {
             DataElem e = iDataElem.next();
-            update_each(e);
+            short num_ifactor = e.getNum_ifacotr();
+
+            StatsOperator.initRow(userDenseFeatures, e.getIndex_user(0));
+            for (int f = 0; f < num_ifactor; f++) {
+                StatsOperator.initRow(itemDenseFeatures, e.getIndex_item(f));
+            }
+
+            row++;
+            rid += num_ifactor;
+            for (; cut < workerNum && (long) rid * workerNum >= nnz * cut; cut++) {
+                rowPtr[cut] = row;
+                ridPtr[cut] = rid;
+            }
+        }
+        for (; cut <= workerNum; cut++) {
+            rowPtr[cut] = row;
+            ridPtr[cut] = rid;
+        }
+
+        workers = new ArrayList<Callable<Double>>(workerNum);
+        switch (runtimes.parallelMode) {
+            case HOGWILD:
+                for (int w = 0; w < workerNum; w++) {
+                    workers.add(new HogwildWorker(this, runtimes.itrain.clone(), w, rowPtr[w],
+                        rowPtr[w + 1], ridPtr[w]));
+                }
+                break;
+            case DSGD:
+                BlockTuples blocks = new BlockTuples(runtimes.itrain, runtimes.userCount,
+                    runtimes.itemCount, workerNum);
+                for (int w = 0; w < workerNum; w++) {
+                    workers.add(new DSGDWorker(this, blocks, w));
+                }
+                break;
+            default:
+                throw new RuntimeException(
+                    String.format("%s is not supported in parallel training!", runtimes.parallelMode));
+        }
+    }
+
+    protected void update_inner(AbstractIterator iDataElem) {
+        if (workers == null) {
+            int rid = 0;
+
+            iDataElem.refresh();
+            while (iDataElem.hasNext()) {
+                DataElem e = iDataElem.next();
+                runtimes.sumErr += update_each(e, rid, 0);
+                rid += e.getNum_ifacotr();
+            }
+            update_barrier();
+        } else {
+            runtimes.sumErr += update_parallel();
         }
 
         // update runtime environment
         update_runtimes();
     }
 
+    /**
+     * run one epoch over all workers, and merge their errors. 
+     * In DSGD mode, one epoch consists of one stage per stratum in a random order drawn every epoch, 
+     * otherwise one stage only.
+     * 
+     * @return  the sum of errors produced by all workers
+     */
+    protected double update_parallel() {
+        int num_stage = (runtimes.parallelMode == ParallelMode.DSGD) ? workers.size() : 1;
+        if (strata == null || strata.length != num_stage) {
+            strata = new int[num_stage];
+            for (int s = 0; s < num_stage; s++) {
+                strata[s] = s;
+            }
+        }
+
+        // Fisher-Yates shuffle by the stream of the learner, thus repeatable under a fixed seed
+        SplitRandom ran = RandomUtil.current();
+        for (int s = num_stage - 1; s > 0; s--) {
+            int t = ran.nextInt(s + 1);
+            int swap = strata[s];
+            strata[s] = strata[t];
+            strata[t] = swap;
+        }
+
+        double sumErr = 0.0d;
+        try {
+            for (int s = 0; s < num_stage; s++) {
+                stratum = strata[s];
+                for (Future<Double> f : workerPool.invokeAll(workers)) {
+                    sumErr += f.get();
+                }
+                update_barrier();
+            }
+        } catch (InterruptedException e) {
+            ExceptionUtil.caught(e, "Parallel training Thead!");
+        } catch (ExecutionException e) {
+            ExceptionUtil.caught(e, "Parallel training Thead!");
+        }
+        return sumErr;
+    }
+
+    /**
+     * synchronize the state shared by workers, once all workers finish one stage
+     */
+    protected void update_barrier() {
+        // no state shared by default
+    }
+
     /**
      * update based on one-user's 
      * 
-     * @param e user-grouped data, i.e., one-user's data
+     * @param e     user-grouped data, i.e., one-user's data
+     * @param rid   the sequence id of the user's first entry
+     * @param wid   the id of the worker doing the update
+     * @return      the sum of errors of this user's data
+     */
+    protected double update_each(DataElem e, int rid, int wid) {
+        double sumErr = 0.0d;
+        short num_ifactor = e.getNum_ifacotr();
+
+        int u = e.getIndex_user(0);
+        for (int f = 0; f < num_ifactor; f++) {
+            sumErr += update_one(u, e.getIndex_item(f), e.getValue_ifactor(f), rid + f, wid);
+        }
+        return sumErr;
+    }
+
+    /**
+     * update based on one-user's data in a user-grouped way, where the user row is loaded into 
+     * the worker's buffer once, the item rows are updated against the buffered row, and 
+     * the accumulated user gradient is written back once. Hence the user side is updated as 
+     * a mini-batch of this user's entries, and only the L2 regularizer is supported.
+     * 
+     * @param e     user-grouped data, i.e., one-user's data
+     * @param wid   the id of the worker doing the update
+     * @return      the sum of errors of this user's data
      */
-    protected void update_each(DataElem e) {
+    protected double update_row(DataElem e, int wid) {
+        double lr = runtimes.currLearningRate;
+        double reg = runtimes.regularizer;
+        float[] ufactor = rowBufs[wid];
+        double[] ugrad = gradBufs[wid];
+
+        int u = e.getIndex_user(0);
+        StatsOperator.initRow(userDenseFeatures, u);
+        userDenseFeatures.getRow(u, ufactor);
+        Arrays.fill(ugrad, 0.0d);
+
+        double sumErr = 0.0d;
+        double decay = 1 - lr * reg;
+        short num_ifactor = e.getNum_ifacotr();
+        for (int f = 0; f < num_ifactor; f++) {
+            int i = e.getIndex_item(f);
+            double AuiReal = e.getValue_ifactor(f);
+            StatsOperator.initRow(itemDenseFeatures, i);
+
+            double AuiEst = itemDenseFeatures.innerProduct(i, ufactor);
+            double deriWRTp = runtimes.lossFunction.dervWRTPrdctn(AuiReal, AuiEst)
+                              * weight_one(AuiReal);
+            itemDenseFeatures.sgdUpdate(i, ufactor, decay, -lr * deriWRTp, deriWRTp, ugrad);
+            sumErr += runtimes.lossFunction.diff(AuiReal, AuiEst);
+        }
+
+        // write the user row back once, decayed as often as by the per-entry updates
+        double udecay = Math.pow(decay, num_ifactor);
+        for (int s = 0; s < ufactor.length; s++) {
+            ufactor[s] = (float) (udecay * ufactor[s] - lr * ugrad[s]);
+        }
+        userDenseFeatures.setRow(u, ufactor);
+        return sumErr;
+    }
+
+    /**
+     * update the user row and the item row in one pass, 
+     * with plain SGD or the adaptive update rule
+     * 
+     * @param u         the user's id
+     * @param i         the item's id
+     * @param regType   the regularizer
+     * @param lr        the learning rate
+     * @param reg       the regularization factor
+     * @param deriWRTp  the derivative of the loss with respect to the prediction
+     */
+    protected void update_factors(int u, int i, Regularizer regType, double lr, double reg,
+                                  double deriWRTp) {
+        if (userOptState == null) {
+            regType.update(userDenseFeatures, u, itemDenseFeatures, i, lr, reg, deriWRTp);
+        } else {
+            runtimes.optimizer.update(userDenseFeatures, u, userOptState, itemDenseFeatures, i,
+                itemOptState, regType, lr, reg, deriWRTp);
+        }
+    }
+
+    /**
+     * the weight of one entry in user-grouped updates
+     * 
+     * @param AuiReal   the real value
+     * @return          the weight of this entry
+     */
+    protected double weight_one(double AuiReal) {
+        return 1.0d;
+    }
+
+    /**
+     * update based on one entry
+     * 
+     * @param u         the user's id
+     * @param i         the item's id
+     * @param AuiReal   the real value
+     * @param rid       the sequence id of this entry in training data
+     * @param wid       the id of the worker doing the update
+     * @return          the error of this entry
+     */
+    protected double update_one(int u, int i, double AuiReal, int rid, int wid) {
+        return 0.0d;
+    }
+
+    /**
+     * validate on the held-out split of the training data every few rounds if early stopping is enabled, 
+     * where the factors with the best validation error are kept as a snapshot, 
+     * and training stops once the validation error has not improved for 
+     * the given number of validations, or becomes non-finite
+     */
+    protected void update_validation() {
+        if (runtimes.patience <= 0 || runtimes.ivalid == null
+            || runtimes.round % runtimes.validInterval != 0) {
+            return;
+        }
+
+        double validErr = new EvaluationMetrics(this, runtimes.ivalid).getRMSE();
+        if (Double.isNaN(validErr) || Double.isInfinite(validErr)) {
+            runtimes.earlyStopped = true;
+        } else if (validErr < runtimes.bestValidErr) {
+            runtimes.bestValidErr = validErr;
+            runtimes.bestRound = runtimes.round;
+            runtimes.numBadValid = 0;
+            snapshot_factors();
+        } else if (++runtimes.numBadValid >= runtimes.patience) {
+            runtimes.earlyStopped = true;
+        }
+
+        LoggerUtil.info(runningLogger, String.format("%d\tvalid %.6f, best %.6f at %d%s",
+            runtimes.round, validErr, runtimes.bestValidErr, runtimes.bestRound,
+            runtimes.earlyStopped ? ", stopped" : ""));
+    }
+
+    /**
+     * keep a copy of the factors and accumulators of every round accepted by BOLD_DRIVER, 
+     * and roll back to it once a round is rejected, together with the training error, 
+     * where the error recorded for the rejected round is that of the restored factors, 
+     * which is skipped by models whose factors live elsewhere. 
+     * NOTE: the states of adaptive optimizers are not rolled back.
+     */
+    protected void update_rejection() {
+        if (runtimes.lrSchedule != LearningRateSchedule.BOLD_DRIVER || userDenseFeatures == null
+            || itemDenseFeatures == null) {
+            return;
+        }
+
+        if (!runtimes.rejected) {
+            if (lastUserFeatures == null) {
+                lastUserFeatures = create_factors(userDenseFeatures.shape()[0],
+                    runtimes.featureCount);
+                lastItemFeatures = create_factors(itemDenseFeatures.shape()[0],
+                    runtimes.featureCount);
+            }
+            userDenseFeatures.copyTo(lastUserFeatures);
+            itemDenseFeatures.copyTo(lastItemFeatures);
+
+            List<Accumulator> acumltors = runtimes.acumltors;
+            if (acumltors != null && lastAcumltors == null) {
+                lastAcumltors = new ArrayList<Accumulator>(acumltors.size());
+                for (Accumulator acumltor : acumltors) {
+                    lastAcumltors.add(acumltor.copy());
+                }
+            } else if (acumltors != null) {
+                for (int n = 0; n < acumltors.size(); n++) {
+                    acumltors.get(n).copyTo(lastAcumltors.get(n));
+                }
+            }
+        } else if (lastUserFeatures != null) {
+            lastUserFeatures.copyTo(userDenseFeatures);
+            lastItemFeatures.copyTo(itemDenseFeatures);
+            if (lastAcumltors != null) {
+                for (int n = 0; n < lastAcumltors.size(); n++) {
+                    lastAcumltors.get(n).copyTo(runtimes.acumltors.get(n));
+                }
+            }
+            runtimes.currErr = runtimes.prevErr;
+            runtimes.trainErr.set(runtimes.trainErr.size() - 1, runtimes.currErr);
+            LoggerUtil.info(runningLogger, String.format("%d	reject, learning rate %.6f",
+                runtimes.round, runtimes.currLearningRate));
+        }
+    }
+
+    /**
+     * keep a copy of the current factors, 
+     * which is skipped by models whose factors live elsewhere
+     */
+    protected void snapshot_factors() {
+        if (userDenseFeatures == null || itemDenseFeatures == null) {
+            return;
+        }
+
+        if (bestUserFeatures == null) {
+            bestUserFeatures = create_factors(userDenseFeatures.shape()[0], runtimes.featureCount);
+            bestItemFeatures = create_factors(itemDenseFeatures.shape()[0], runtimes.featureCount);
+        }
+        userDenseFeatures.copyTo(bestUserFeatures);
+        itemDenseFeatures.copyTo(bestItemFeatures);
+    }
+
+    /**
+     * roll back to the snapshot if it is better than the current factors, and drop the snapshot
+     */
+    protected void restore_factors() {
+        if (bestUserFeatures == null) {
+            return;
+        }
+
+        if (runtimes.bestRound < runtimes.round) {
+            releaseFactors();
+            userDenseFeatures = bestUserFeatures;
+            itemDenseFeatures = bestItemFeatures;
+            LoggerUtil.info(runningLogger,
+                String.format("restore the factors at round %d", runtimes.bestRound));
+        } else {
+            release(bestUserFeatures);
+            release(bestItemFeatures);
+        }
+        bestUserFeatures = null;
+        bestItemFeatures = null;
     }
 
     protected void update_runtimes() {
@@ -124,8 +643,11 @@ public abstract class MFRecommender extends Recommender implements Plugin {
 
         runtimes.round++;
         runtimes.sumErr = 0.0;
+        runtimes.lrSchedule.adjust(runtimes);
 
-        if (runtimes.showProgress && (runtimes.round % 5 == 0) && runtimes.itest != null) {
+        // the progress is shown by the validation instead, if early stopping is enabled
+        if (runtimes.showProgress && (runtimes.round % 5 == 0) && runtimes.itest != null
+            && runtimes.ivalid == null) {
             EvaluationMetrics metric = new EvaluationMetrics(this);
             LoggerUtil.info(runningLogger, String.format("%d\t%.6f [%s]", runtimes.round,
                 runtimes.currErr, metric.printOneLine()));
@@ -144,7 +666,8 @@ public abstract class MFRecommender extends Recommender implements Plugin {
      */
     @Override
     public EvaluationMetrics evaluate(AbstractMatrix testMatrix) {
-        return new EvaluationMetrics(this);
+        return (runtimes.topN > 0 && runtimes.itrain != null)
+            ? new EvaluationMetrics(this, runtimes.topN) : new EvaluationMetrics(this);
     }
 
     /**
@@ -152,24 +675,179 @@ public abstract class MFRecommender extends Recommender implements Plugin {
      */
     @Override
     public double predict(int u, int i) {
+        return Math.max(runtimes.minValue, Math.min(score(u, i), runtimes.maxValue));
+    }
+
+    /**
+     * return the score of the entry before it is clipped into the range of ratings,
+     * which ranks items without ties at the boundaries
+     * 
+     * @param u the given user index
+     * @param i the given item index
+     * @return  the unclipped score
+     */
+    protected double score(int u, int i) {
         assert (userDenseFeatures != null
                 && itemDenseFeatures != null) : "Feature matrix cannot be null";
 
+        if (!userDenseFeatures.hasRow(u) || !itemDenseFeatures.hasRow(i)) {
+            LoggerUtil.debug(runningLogger,
+                String.format("null latent factors for (%d,%d)-entry", u, i));
+            return (runtimes.maxValue + runtimes.minValue) / 2;
+        }
+        return userDenseFeatures.innerProduct(u, i, itemDenseFeatures);
+    }
+
+    /**
+     * @see code.sma.recmmd.Recommender#predict(code.sma.core.DataElem, double[])
+     */
+    @Override
+    public void predict(DataElem e, double[] preds) {
+        if (!isFactorProduct()) {
+            super.predict(e, preds);
+            return;
+        }
+
         double maxValue = runtimes.maxValue;
         double minValue = runtimes.minValue;
-        double prediction = 0.0;
+        double defaultValue = (maxValue + minValue) / 2;
+        short num_ifactor = e.getNum_ifacotr();
 
-        AbstractVector ufactors = userDenseFeatures.getRowRef(u);
-        AbstractVector ifactors = itemDenseFeatures.getRowRef(i);
-        if (ufactors == null || ifactors == null) {
-            prediction += (maxValue + minValue) / 2;
-            LoggerUtil.debug(runningLogger,
-                String.format("null latent factors for (%d,%d)-entry", u, i));
-        } else {
-            prediction += ufactors.innerProduct(ifactors);
+        int u = e.getIndex_user(0);
+        boolean hasUser = userDenseFeatures.hasRow(u);
+        for (int f = 0; f < num_ifactor; f++) {
+            int i = e.getIndex_item(f);
+
+            double prediction = (hasUser && itemDenseFeatures.hasRow(i))
+                ? userDenseFeatures.innerProduct(u, i, itemDenseFeatures) : defaultValue;
+            preds[f] = Math.max(minValue, Math.min(prediction, maxValue));
+        }
+    }
+
+    /**
+     * @see code.sma.recmmd.Recommender#predict(int[], int, float[])
+     */
+    @Override
+    public void predict(int[] users, int num_user, float[] scores) {
+        int itemCount = runtimes.itemCount;
+        if (!isFactorProduct()) {
+            for (int r = 0; r < num_user; r++) {
+                for (int i = 0; i < itemCount; i++) {
+                    scores[r * itemCount + i] = (float) score(users[r], i);
+                }
+            }
+            return;
+        }
+
+        float defaultValue = (float) (runtimes.maxValue + runtimes.minValue) / 2;
+        userDenseFeatures.multiply(users, num_user, itemDenseFeatures, scores);
+        for (int r = 0; r < num_user; r++) {
+            boolean hasUser = userDenseFeatures.hasRow(users[r]);
+            int offset = r * itemCount;
+            for (int i = 0; i < itemCount; i++) {
+                if (!hasUser || !itemDenseFeatures.hasRow(i)) {
+                    scores[offset + i] = defaultValue;
+                }
+            }
+        }
+    }
+
+    /**
+     * whether the prediction is the inner product of the dense latent factors,
+     * so that batch prediction runs as one matrix product;
+     * otherwise batch prediction calls {@link #score(int, int)} entry by entry
+     * 
+     * @return  false if the model overrides {@link #score(int, int)}
+     */
+    protected boolean isFactorProduct() {
+        return true;
+    }
+
+    /**
+     * Hogwild-style worker which updates the shared latent factors without locks, 
+     * going over its own contiguous range of rows
+     * 
+     * @author Chao.Chen
+     * @version $Id: MFRecommender.java, v 0.1 2017年6月20日 上午10:40:12 Chao.Chen Exp $
+     */
+    protected static class HogwildWorker implements Callable<Double> {
+        /** the model to update*/
+        private MFRecommender    recmmd;
+        /** the worker's own iterator over training data*/
+        private AbstractIterator iDataElem;
+        /** the worker's id*/
+        private int              workerId;
+        /** the range of rows*/
+        private int              rowBegin;
+        private int              rowEnd;
+        /** the sequence id of the first entry of the range*/
+        private int              ridBegin;
+
+        public HogwildWorker(MFRecommender recmmd, AbstractIterator iDataElem, int workerId,
+                             int rowBegin, int rowEnd, int ridBegin) {
+            this.recmmd = recmmd;
+            this.iDataElem = iDataElem;
+            this.workerId = workerId;
+            this.rowBegin = rowBegin;
+            this.rowEnd = rowEnd;
+            this.ridBegin = ridBegin;
         }
 
-        return Math.max(minValue, Math.min(prediction, maxValue));
+        /** 
+         * @see java.util.concurrent.Callable#call()
+         */
+        @Override
+        public Double call() throws Exception {
+            double sumErr = 0.0d;
+
+            int rid = ridBegin;
+            iDataElem.refresh();
+            iDataElem.skip(rowBegin);
+            for (int row = rowBegin; row < rowEnd; row++) {
+                DataElem e = iDataElem.next();
+                sumErr += recmmd.update_each(e, rid, workerId);
+                rid += e.getNum_ifacotr();
+            }
+            return sumErr;
+        }
+    }
+
+    /**
+     * DSGD-style worker which updates the block of its own user group in each stratum,
+     * so that no two workers touch the same latent factor at the same time
+     * 
+     * @author Chao.Chen
+     * @version $Id: MFRecommender.java, v 0.1 2017年6月21日 下午3:05:27 Chao.Chen Exp $
+     */
+    protected static class DSGDWorker implements Callable<Double> {
+        /** the model to update*/
+        private MFRecommender recmmd;
+        /** the gridded training data*/
+        private BlockTuples   blocks;
+        /** the worker's id*/
+        private int           workerId;
+
+        public DSGDWorker(MFRecommender recmmd, BlockTuples blocks, int workerId) {
+            this.recmmd = recmmd;
+            this.blocks = blocks;
+            this.workerId = workerId;
+        }
+
+        /** 
+         * @see java.util.concurrent.Callable#call()
+         */
+        @Override
+        public Double call() throws Exception {
+            double sumErr = 0.0d;
+
+            int blockId = blocks.blockId(workerId, recmmd.stratum);
+            int end = blocks.blockEnd(blockId);
+            for (int pos = blocks.blockBegin(blockId); pos < end; pos++) {
+                sumErr += recmmd.update_one(blocks.rowIndx(pos), blocks.colIndx(pos),
+                    blocks.vals(pos), blocks.rIds(pos), workerId);
+            }
+            return sumErr;
+        }
     }
 
 }
@@ -3,9 +3,10 @@ package code.sma.recmmd.standalone;
 import java.util.Map;
 
 import code.sma.core.DataElem;
-import code.sma.core.impl.DenseVector;
 import code.sma.main.Configures;
 import code.sma.plugin.Plugin;
+import code.sma.recmmd.Optimizer;
+import code.sma.recmmd.Regularizer;
 import code.sma.recmmd.stats.StatsOperator;
 
 /**
@@ -38,37 +39,32 @@ public class RegSVD extends MFRecommender {
      * Model Builder
      *========================================*/
     /** 
-     * @see code.sma.recmmd.standalone.MFRecommender#update_each(code.sma.core.DataElem)
+     * @see code.sma.recmmd.standalone.MFRecommender#update_each(code.sma.core.DataElem, int, int)
      */
     @Override
-    protected void update_each(DataElem e) {
-        double lr = runtimes.learningRate;
-        double reg = runtimes.regularizer;
-        short num_ifactor = e.getNum_ifacotr();
-
-        int u = e.getIndex_user(0);
-        for (int f = 0; f < num_ifactor; f++) {
-            int i = e.getIndex_item(f);
+    protected double update_each(DataElem e, int rid, int wid) {
+        boolean byRow = runtimes.rowUpdate && runtimes.regType == Regularizer.L2
+                        && runtimes.optimizer == Optimizer.SGD;
+        return byRow ? update_row(e, wid) : super.update_each(e, rid, wid);
+    }
 
-            DenseVector ref_ufactor = StatsOperator.getVectorRef(userDenseFeatures, u);
-            DenseVector ref_ifactor = StatsOperator.getVectorRef(itemDenseFeatures, i);
+    /** 
+     * @see code.sma.recmmd.standalone.MFRecommender#update_one(int, int, double, int, int)
+     */
+    @Override
+    protected double update_one(int u, int i, double AuiReal, int rid, int wid) {
+        double lr = runtimes.currLearningRate;
+        double reg = runtimes.regularizer;
 
-            double AuiReal = e.getValue_ifactor(f);
-            double AuiEst = ref_ufactor.innerProduct(ref_ifactor);
-            runtimes.sumErr += runtimes.lossFunction.diff(AuiReal, AuiEst);
+        StatsOperator.initRow(userDenseFeatures, u);
+        StatsOperator.initRow(itemDenseFeatures, i);
 
-            double deriWRTp = runtimes.lossFunction.dervWRTPrdctn(AuiReal, AuiEst);
-            for (int s = 0; s < runtimes.featureCount; s++) {
-                double Fus = ref_ufactor.floatValue(s);
-                double Gis = ref_ifactor.floatValue(s);
+        double AuiEst = userDenseFeatures.innerProduct(u, i, itemDenseFeatures);
+        double deriWRTp = runtimes.lossFunction.dervWRTPrdctn(AuiReal, AuiEst);
 
-                //global model updates
-                ref_ufactor.setValue(s,
-                    Fus + lr * (-deriWRTp * Gis - reg * runtimes.regType.reg(null, u, Fus)));
-                ref_ifactor.setValue(s,
-                    Gis + lr * (-deriWRTp * Fus - reg * runtimes.regType.reg(null, i, Gis)));
-            }
-        }
+        //global model updates in one pass
+        update_factors(u, i, runtimes.regType, lr, reg, deriWRTp);
+        return runtimes.lossFunction.diff(AuiReal, AuiEst);
     }
 
     /** 
@@ -6,11 +6,12 @@ import java.util.Map;
 import code.sma.core.AbstractIterator;
 import code.sma.core.AbstractMatrix;
 import code.sma.core.DataElem;
-import code.sma.core.impl.DenseVector;
 import code.sma.main.Configures;
 import code.sma.plugin.Plugin;
 import code.sma.recmmd.stats.Accumulator;
 import code.sma.recmmd.stats.StatsOperator;
+import code.sma.util.RandomUtil;
+import code.sma.util.SplitRandom;
 
 /**
  * This is a class implementing SMA (Stable Matrix Approximation).
@@ -23,9 +24,13 @@ import code.sma.recmmd.stats.StatsOperator;
  */
 public class StableMA extends MFRecommender {
     /** SerialVersionNum */
-    private static final long serialVersionUID = 1L;
-    /** the indicator of hard-predictive set, where true means in the set*/
-    private boolean[][]       hps_indicator;
+    private static final long    serialVersionUID = 1L;
+    /** the hard-predictive subsets containing every entry, where bit h of the field of entry rid,
+     *  i.e., bit (rid * hps_width + h) of the words, means the entry is in subset h*/
+    private long[]               hps_bits;
+    /** the width of the field of every entry, i.e., the number of subsets rounded up 
+     *  to a power of two, or to a multiple of 64*/
+    private int                  hps_width;
 
     /*========================================
      * Constructors
@@ -46,14 +51,16 @@ public class StableMA extends MFRecommender {
 
         int num_hps = runtimes.ints.getInt(0); // number of hard-predictive subsets
         int nnz = runtimes.nnz;
-        hps_indicator = new boolean[num_hps][nnz];
+        hps_width = (num_hps > 64) ? ((num_hps + 63) >>> 6) << 6
+            : (num_hps <= 1 ? 1 : Integer.highestOneBit(num_hps - 1) << 1);
+        hps_bits = new long[(int) (((long) nnz * hps_width + 63) >>> 6)];
 
-        int[] num_en = new int[num_hps]; // number of chosen entries in each  hard-predictive subsets
         {
             MFRecommender auxRec = (MFRecommender) runtimes.plugins.remove("AUXILIARY_RCMMD_MODEL");
             double bestRMSE = auxRec.runtimes.bestTrainErr();
 
             int id_en = 0;
+            SplitRandom ran = RandomUtil.current();
 
             AbstractIterator iDataElem = runtimes.itrain.refresh();
             while (iDataElem.hasNext()) {
@@ -69,91 +76,91 @@ public class StableMA extends MFRecommender {
 
                     // choose hard-predictive subsets at random
                     double chosen_prob = Math.abs(AuiReal - AuiEstm) > bestRMSE ? 0.55 : 0.75;
+                    long pos = (long) id_en * hps_width;
                     for (int h = 0; h < num_hps; h++) {
-                        if (Math.random() > chosen_prob) {
+                        if (ran.nextDouble() > chosen_prob) {
                             continue;
                         }
 
-                        hps_indicator[h][id_en] = true;
-                        num_en[h]++;
+                        hps_bits[(int) ((pos + h) >>> 6)] |= 1L << ((pos + h) & 63);
                     }
 
                     id_en++;
                 }
             }
+            auxRec.releaseFactors();
         }
+    }
 
+    /** 
+     * @see code.sma.recmmd.standalone.MFRecommender#prepare_workers()
+     */
+    @Override
+    protected void prepare_workers() {
+        super.prepare_workers();
+
+        // the last difference of every entry, and the sum of differences in every subset, 
+        // where every worker records its changes in its own stripe
+        int num_hps = runtimes.ints.getInt(0);
+        int num_worker = (workers == null) ? 1 : workers.size();
         runtimes.acumltors = new ArrayList<Accumulator>();
-        runtimes.acumltors.add(new Accumulator(1, nnz));
-        for (int h = 0; h < num_hps; h++) {
-            runtimes.acumltors.add(new Accumulator(1, num_en[h]));
-        }
+        runtimes.acumltors.add(
+            new Accumulator(1, runtimes.nnz, runtimes.halfAccumulator, num_worker));
+        runtimes.acumltors.add(new Accumulator(num_hps, 0, false, num_worker));
     }
 
     /** 
-     * @see code.sma.recmmd.standalone.MFRecommender#update_inner(code.sma.core.AbstractIterator)
+     * @see code.sma.recmmd.standalone.MFRecommender#update_one(int, int, double, int, int)
      */
     @Override
-    protected void update_inner(AbstractIterator iDataElem) {
-        double lr = runtimes.learningRate;
+    protected double update_one(int u, int i, double AuiReal, int rid, int wid) {
+        double lr = runtimes.currLearningRate;
         double reg = runtimes.regularizer;
 
         int num_hps = runtimes.ints.getInt(0);
-        Accumulator[] acumltor = new Accumulator[num_hps + 1];
-        acumltor[0] = runtimes.acumltors.get(0);
-
-        int rid = 0;
-
-        iDataElem.refresh();
-        while (iDataElem.hasNext()) {
-            DataElem e = iDataElem.next();
-            short num_ifactor = e.getNum_ifacotr();
-
-            int u = e.getIndex_user(0);
-            for (int f = 0; f < num_ifactor; f++) {
-                int i = e.getIndex_item(f);
-
-                DenseVector ref_ufactor = StatsOperator.getVectorRef(userDenseFeatures, u);
-                DenseVector ref_ifactor = StatsOperator.getVectorRef(itemDenseFeatures, i);
-
-                for (int h = 1; h <= num_hps; h++) {
-                    acumltor[h] = hps_indicator[h - 1][rid] ? runtimes.acumltors.get(h) : null;
-                }
-
-                double AuiReal = e.getValue_ifactor(f);
-                double AuiEst = StatsOperator.innerProduct(ref_ufactor, ref_ifactor,
-                    runtimes.lossFunction, AuiReal, acumltor);
-                runtimes.sumErr += runtimes.lossFunction.diff(AuiReal, AuiEst);
+        Accumulator acum_entry = runtimes.acumltors.get(0);
+        Accumulator acum_hps = runtimes.acumltors.get(1);
+
+        StatsOperator.initRow(userDenseFeatures, u);
+        StatsOperator.initRow(itemDenseFeatures, i);
+
+        double AuiEst = userDenseFeatures.innerProduct(u, i, itemDenseFeatures);
+        double diff = runtimes.lossFunction.diff(AuiReal, AuiEst);
+
+        // record the difference in the whole set, and compute its RMSE
+        int dltCount = acum_entry.has(0, rid) ? 0 : 1;
+        double dltDiff = acum_entry.exchange(wid, 0, rid, diff);
+        double rm = acum_entry.rm(wid, 0);
+        double tnW = 1 / rm + 1 / (2 * num_hps * rm);
+
+        // the same for the hard-predictive subsets containing the entry, visiting only the set bits
+        long mask = (hps_width >= 64) ? -1L : (1L << hps_width) - 1;
+        long pos = (long) rid * hps_width;
+        for (int base = 0; base < num_hps; base += 64, pos += 64) {
+            long bits = (hps_bits[(int) (pos >>> 6)] >>> (pos & 63)) & mask;
+            for (; bits != 0; bits &= bits - 1) {
+                int h = base + Long.numberOfTrailingZeros(bits);
+                acum_hps.merge(wid, h, dltDiff, dltCount);
+                tnW += 1 / (2 * num_hps * acum_hps.rm(wid, h));
+            }
+        }
 
-                // compute RMSEs
-                double tnW = 1 / acumltor[0].rm();
-                for (int h = 0; h <= num_hps; h++) {
-                    if (acumltor[h] != null) {
-                        tnW += 1 / (2 * num_hps * acumltor[h].rm());
-                    }
-                }
+        // stochastic gradient descend
+        double deriWRTp = runtimes.lossFunction.dervWRTPrdctn(AuiReal, AuiEst);
 
-                // stochastic gradient descend
-                double deriWRTp = runtimes.lossFunction.dervWRTPrdctn(AuiReal, AuiEst);
-                for (int s = 0; s < runtimes.featureCount; s++) {
-                    double Fus = ref_ufactor.floatValue(s);
-                    double Gis = ref_ifactor.floatValue(s);
-
-                    //global model updates
-                    ref_ufactor.setValue(s,
-                        Fus + lr
-                              * (-deriWRTp * Gis * tnW - reg * runtimes.regType.reg(null, u, Fus)));
-                    ref_ifactor.setValue(s,
-                        Gis + lr
-                              * (-deriWRTp * Fus * tnW - reg * runtimes.regType.reg(null, i, Gis)));
-                }
+        //global model updates in one pass
+        update_factors(u, i, runtimes.regType, lr, reg, deriWRTp * tnW);
+        return diff;
+    }
 
-                rid++;
-            }
+    /** 
+     * @see code.sma.recmmd.standalone.MFRecommender#update_barrier()
+     */
+    @Override
+    protected void update_barrier() {
+        for (Accumulator acumltor : runtimes.acumltors) {
+            acumltor.merge();
         }
-
-        // update runtime environment
-        update_runtimes();
     }
 
     /** 
@@ -4,10 +4,11 @@ import java.util.Map;
 
 import code.sma.core.AbstractMatrix;
 import code.sma.core.DataElem;
-import code.sma.core.impl.DenseVector;
 import code.sma.main.Configures;
 import code.sma.plugin.Discretizer;
 import code.sma.plugin.Plugin;
+import code.sma.recmmd.Optimizer;
+import code.sma.recmmd.Regularizer;
 import code.sma.recmmd.stats.StatsOperator;
 
 /**
@@ -47,41 +48,47 @@ public class WeigtedSVD extends MFRecommender {
     }
 
     /** 
-     * @see code.sma.recmmd.standalone.MFRecommender#update_each(code.sma.core.DataElem)
+     * @see code.sma.recmmd.standalone.MFRecommender#update_each(code.sma.core.DataElem, int, int)
      */
     @Override
-    protected void update_each(DataElem e) {
-        double learningRate = runtimes.learningRate;
-        double regularizer = runtimes.regularizer;
-        short num_ifactor = e.getNum_ifacotr();
+    protected double update_each(DataElem e, int rid, int wid) {
+        boolean byRow = runtimes.rowUpdate && runtimes.optimizer == Optimizer.SGD;
+        return byRow ? update_row(e, wid) : super.update_each(e, rid, wid);
+    }
 
+    /** 
+     * @see code.sma.recmmd.standalone.MFRecommender#weight_one(double)
+     */
+    @Override
+    protected double weight_one(double AuiReal) {
         Discretizer dctzr = (Discretizer) runtimes.plugins.get("DISCRETIZER");
-        double beta0 = runtimes.doubles.getDouble(0);
-
-        int u = e.getIndex_user(0);
-        for (int f = 0; f < num_ifactor; f++) {
-            int i = e.getIndex_item(f);
+        return 1 + runtimes.doubles.getDouble(0) * runtimes.tnWs[dctzr.convert(AuiReal)];
+    }
 
-            DenseVector ref_ufactor = StatsOperator.getVectorRef(userDenseFeatures, u);
-            DenseVector ref_ifactor = StatsOperator.getVectorRef(itemDenseFeatures, i);
+    /** 
+     * @see code.sma.recmmd.standalone.MFRecommender#update_one(int, int, double, int, int)
+     */
+    @Override
+    protected double update_one(int u, int i, double AuiReal, int rid, int wid) {
+        double learningRate = runtimes.currLearningRate;
+        double regularizer = runtimes.regularizer;
 
-            double AuiReal = e.getValue_ifactor(f);
-            double AuiEst = ref_ufactor.innerProduct(ref_ifactor);
-            runtimes.sumErr += runtimes.lossFunction.diff(AuiReal, AuiEst);
+        StatsOperator.initRow(userDenseFeatures, u);
+        StatsOperator.initRow(itemDenseFeatures, i);
 
-            double deriWRTp = runtimes.lossFunction.dervWRTPrdctn(AuiReal, AuiEst);
-            double tnW = 1 + beta0 * runtimes.tnWs[dctzr.convert(AuiReal)];
-            for (int s = 0; s < runtimes.featureCount; s++) {
-                double Fus = ref_ufactor.floatValue(s);
-                double Gis = ref_ifactor.floatValue(s);
+        double AuiEst = userDenseFeatures.innerProduct(u, i, itemDenseFeatures);
+        double deriWRTp = runtimes.lossFunction.dervWRTPrdctn(AuiReal, AuiEst);
+        double tnW = weight_one(AuiReal);
 
-                //global model updates
-                ref_ufactor.setValue(s,
-                    Fus + learningRate * (-deriWRTp * Gis * tnW - regularizer * Fus));
-                ref_ifactor.setValue(s,
-                    Gis + learningRate * (-deriWRTp * Fus * tnW - regularizer * Gis));
-            }
+        //global model updates
+        if (userOptState != null) {
+            update_factors(u, i, Regularizer.L2, learningRate, regularizer, deriWRTp * tnW);
+            return runtimes.lossFunction.diff(AuiReal, AuiEst);
         }
+        double decay = 1 - learningRate * regularizer;
+        double step = -learningRate * deriWRTp * tnW;
+        userDenseFeatures.sgdUpdate(u, itemDenseFeatures, i, decay, step, decay, step);
+        return runtimes.lossFunction.diff(AuiReal, AuiEst);
     }
 
     /** 
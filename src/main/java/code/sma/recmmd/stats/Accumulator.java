@@ -1,78 +1,262 @@
 package code.sma.recmmd.stats;
 
-import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
- * 
+ * Accumulator of squared values, where each calculator keeps the running sum and number of its values,
+ * and the last value of every slot is stored in one flat array, in single or half precision,
+ * with a bit set telling which slots hold a value. <br/>
+ * The mean over calculators is kept up to date with every change, thus {@link #rm()} is O(1). <br/>
+ * Parallel trainers record their changes in their own stripes by using {@link #exchange(int, int, int, double)}
+ * and {@link #merge(int, int, double, int)}, or update the calculators they own by using
+ * {@link #updateOwned(int, int, double)}, which are merged at barriers by using {@link #merge()}.
+ *
  * @author Chao.Chen
  * @version $Id: Accumulator.java, v 0.1 2017年3月1日 下午1:55:02 Chao.Chen Exp $
  */
 public class Accumulator {
-    float[][]  indvdlVal;
-    double[]   accVal;      // accumulated value
-    int[]      accNum;      // number of values in each calculator
+    /** the number of calculators*/
+    private final int             num;
+    /** the number of values in each calculator, 0 if only the sum is recorded*/
+    private final int             dimnsn;
+    /** the last value of every slot in single precision, [accId * dimnsn + vId]*/
+    private final float[]         lastVal;
+    /** the last value of every slot in half precision, [accId * dimnsn + vId]*/
+    private final short[]         lastHalf;
+    /** the bit set of slots holding a value*/
+    private final AtomicLongArray filled;
 
-    public int cursor_vId;
-    public int cursor_accId;
+    double[]                      accVal;      // accumulated value
+    int[]                         accNum;      // number of values in each calculator
+
+    /** the mean value of each calculator*/
+    private final double[]        accMean;
+    /** the sum of mean values of calculators holding values*/
+    private double                sumMean;
+    /** the number of calculators holding values*/
+    private int                   availNum;
+
+    /** unmerged changes of the accumulated values, [stripe][accId]*/
+    private final double[][]      stripeVal;
+    /** unmerged changes of the number of values, [stripe][accId]*/
+    private final int[][]         stripeNum;
+
+    public int                    cursor_vId;
+    public int                    cursor_accId;
 
     public Accumulator(int num, int dimnsn) {
-        accVal = new double[num];
-        accNum = new int[num];
+        this(num, dimnsn, false, 1);
+    }
+
+    /**
+     * accumulator recording only the sum and the number of values,
+     * whose changes are merged by using {@link #merge(int, int, double, int)}
+     *
+     * @param num   number of calculators
+     */
+    public Accumulator(int num) {
+        this(num, 0, false, 1);
+    }
+
+    /**
+     * @param num           number of calculators
+     * @param dimnsn        number of values in each calculator, 0 if only the sum is recorded
+     * @param halfPrecision whether to store the last values in half precision,
+     *                      where the sums are made of the rounded values
+     * @param stripes       number of stripes, i.e., parallel workers
+     */
+    public Accumulator(int num, int dimnsn, boolean halfPrecision, int stripes) {
+        this.num = num;
+        this.dimnsn = dimnsn;
 
-        indvdlVal = new float[num][dimnsn];
-        for (float[] iv : indvdlVal) {
-            Arrays.fill(iv, Float.NaN);
+        long num_slot = (long) num * dimnsn;
+        if (num_slot > Integer.MAX_VALUE) {
+            throw new RuntimeException(String.format("Too many slots: %d x %d", num, dimnsn));
         }
+        lastVal = (dimnsn == 0 || halfPrecision) ? null : new float[(int) num_slot];
+        lastHalf = (dimnsn == 0 || !halfPrecision) ? null : new short[(int) num_slot];
+        filled = (dimnsn == 0) ? null : new AtomicLongArray((int) ((num_slot + 63) >>> 6));
+
+        accVal = new double[num];
+        accNum = new int[num];
+        accMean = new double[num];
+        stripeVal = new double[stripes][num];
+        stripeNum = new int[stripes][num];
 
         cursor_vId = 0;
         cursor_accId = 0;
     }
 
     /**
-     * WARN: Please carefully use this method, 
-     * which recurrently update the values one-by-one 
+     * WARN: Please carefully use this method,
+     * which recurrently update the values one-by-one
      * from 0-th value of different calculator to the last one.
-     * 
+     *
      * @param value the value to update
      */
     public void traverse(double value) {
         update(cursor_accId, cursor_vId, value);
 
         // update cursor
-        int num_cal = indvdlVal.length;
-        int dimnsn = indvdlVal[0].length;
-
         cursor_accId++;
-        if (cursor_accId == num_cal) {
-            cursor_vId++;
+        if (cursor_accId == num) {
+            cursor_accId = 0;
+            cursor_vId = (cursor_vId + 1 == dimnsn) ? 0 : cursor_vId + 1;
         }
-        cursor_accId %= num_cal;
-
-        int num_val = accNum[cursor_accId];
-        cursor_vId = cursor_vId < dimnsn ? (cursor_vId % (num_val + 1)) : 0;
     }
 
     /**
      * update the value which exists in the accumulator
-     * 
+     *
      * @param accId the accumulator's ID
      * @param vId   the index of the updated value
      * @param value the value to update
      */
     public void update(int accId, int vId, double value) {
-        if (Double.isNaN(indvdlVal[accId][vId])) {
-            accVal[accId] += value;
-            accNum[accId]++;
-        } else {
-            accVal[accId] += value - indvdlVal[accId][vId];
+        int slot = accId * dimnsn + vId;
+        boolean isNew = fill(slot);
+        double prev = isNew ? 0.0d : load(slot);
+        add(accId, store(slot, value) - prev, isNew ? 1 : 0);
+    }
+
+    /**
+     * update the value of a calculator which no other worker touches until {@link #merge()},
+     * where the accumulated value is kept exact, and the mean over calculators is left to {@link #merge()}
+     *
+     * @param accId the accumulator's ID, owned by the calling worker
+     * @param vId   the index of the updated value
+     * @param value the value to update
+     */
+    public void updateOwned(int accId, int vId, double value) {
+        int slot = accId * dimnsn + vId;
+        boolean isNew = fill(slot);
+        double prev = isNew ? 0.0d : load(slot);
+        accVal[accId] += store(slot, value) - prev;
+        accNum[accId] += isNew ? 1 : 0;
+    }
+
+    /**
+     * whether the slot holds a value
+     *
+     * @param accId the accumulator's ID
+     * @param vId   the index of the value
+     * @return      true if the slot holds a value
+     */
+    public boolean has(int accId, int vId) {
+        int slot = accId * dimnsn + vId;
+        return (filled.get(slot >>> 6) & (1L << slot)) != 0;
+    }
+
+    /**
+     * replace the value, and record the change in the given stripe,
+     * which is left to {@link #merge()}
+     *
+     * @param stripe    the stripe of the calling worker
+     * @param accId     the accumulator's ID
+     * @param vId       the index of the updated value
+     * @param value     the value to update
+     * @return          the change of the accumulated value
+     */
+    public double exchange(int stripe, int accId, int vId, double value) {
+        int slot = accId * dimnsn + vId;
+        boolean isNew = fill(slot);
+        double prev = isNew ? 0.0d : load(slot);
+        double dltVal = store(slot, value) - prev;
+
+        stripeVal[stripe][accId] += dltVal;
+        stripeNum[stripe][accId] += isNew ? 1 : 0;
+        return dltVal;
+    }
+
+    /**
+     * record the changes in the given stripe, which is left to {@link #merge()}
+     *
+     * @param stripe    the stripe of the calling worker
+     * @param accId     the accumulator's ID
+     * @param dltVal    the change of the accumulated value
+     * @param dltNum    the change of the number of values
+     */
+    public void merge(int stripe, int accId, double dltVal, int dltNum) {
+        stripeVal[stripe][accId] += dltVal;
+        stripeNum[stripe][accId] += dltNum;
+    }
+
+    /**
+     * merge the changes of all stripes into the accumulated values,
+     * which is called when no worker is running
+     */
+    public void merge() {
+        for (int s = 0; s < stripeVal.length; s++) {
+            for (int accId = 0; accId < num; accId++) {
+                accVal[accId] += stripeVal[s][accId];
+                accNum[accId] += stripeNum[s][accId];
+                stripeVal[s][accId] = 0.0d;
+                stripeNum[s][accId] = 0;
+            }
+        }
+
+        // recompute the mean over calculators, dropping the rounding errors of running updates
+        sumMean = 0.0d;
+        availNum = 0;
+        for (int accId = 0; accId < num; accId++) {
+            accMean[accId] = (accNum[accId] == 0) ? 0.0d : accVal[accId] / accNum[accId];
+            sumMean += accMean[accId];
+            availNum += (accNum[accId] == 0) ? 0 : 1;
         }
+    }
 
-        indvdlVal[accId][vId] = (float) value;
+    /**
+     * create an accumulator of the same shape holding the same values, 
+     * e.g., to roll back a rejected round
+     *
+     * @return  the copy
+     */
+    public Accumulator copy() {
+        Accumulator dst = new Accumulator(num, dimnsn, lastHalf != null, stripeVal.length);
+        copyTo(dst);
+        return dst;
     }
 
-    /** 
+    /**
+     * overwrite the given accumulator of the same shape with the values of this one
+     *
+     * @param dst   the accumulator to overwrite
+     */
+    public void copyTo(Accumulator dst) {
+        if (dst.num != num || dst.dimnsn != dimnsn || dst.stripeVal.length != stripeVal.length
+            || (dst.lastHalf == null) != (lastHalf == null)) {
+            throw new RuntimeException("Accumulators of different shapes cannot be copied!");
+        }
+
+        if (lastVal != null) {
+            System.arraycopy(lastVal, 0, dst.lastVal, 0, lastVal.length);
+        }
+        if (lastHalf != null) {
+            System.arraycopy(lastHalf, 0, dst.lastHalf, 0, lastHalf.length);
+        }
+        if (filled != null) {
+            for (int w = 0; w < filled.length(); w++) {
+                dst.filled.set(w, filled.get(w));
+            }
+        }
+
+        System.arraycopy(accVal, 0, dst.accVal, 0, num);
+        System.arraycopy(accNum, 0, dst.accNum, 0, num);
+        System.arraycopy(accMean, 0, dst.accMean, 0, num);
+        dst.sumMean = sumMean;
+        dst.availNum = availNum;
+        for (int s = 0; s < stripeVal.length; s++) {
+            System.arraycopy(stripeVal[s], 0, dst.stripeVal[s], 0, num);
+            System.arraycopy(stripeNum[s], 0, dst.stripeNum[s], 0, num);
+        }
+
+        dst.cursor_vId = cursor_vId;
+        dst.cursor_accId = cursor_accId;
+    }
+
+    /**
      * get the root sum of the given accumulator's ID
-     * 
+     *
      * @param accId the accumulator's ID
      * @return
      */
@@ -82,7 +266,7 @@ public class Accumulator {
 
     /**
      * get the root mean value of the given accumulator's ID
-     * 
+     *
      * @param accId the accumulator's ID
      * @return      root mean value
      */
@@ -90,20 +274,144 @@ public class Accumulator {
         return Math.sqrt(accVal[accId] / accNum[accId]);
     }
 
+    /**
+     * get the root mean value of the given accumulator's ID,
+     * including the changes of the given stripe not merged yet
+     *
+     * @param stripe    the stripe of the calling worker
+     * @param accId     the accumulator's ID
+     * @return          root mean value
+     */
+    public double rm(int stripe, int accId) {
+        return Math.sqrt((accVal[accId] + stripeVal[stripe][accId])
+                         / (accNum[accId] + stripeNum[stripe][accId]));
+    }
+
     /**
      * get the root mean value of overall data
-     * 
+     *
      * @return  root mean value
      */
     public double rm() {
-        double sse = 0.0d;
-        int availNum = 0;
-        for (int accId = 0; accId < accVal.length; accId++) {
-            if (accNum[accId] != 0) {
-                sse += accVal[accId] / accNum[accId];
-                availNum++;
+        return Math.sqrt(sumMean / availNum);
+    }
+
+    /**
+     * apply the changes to the accumulated value, and to the mean over calculators
+     *
+     * @param accId     the accumulator's ID
+     * @param dltVal    the change of the accumulated value
+     * @param dltNum    the change of the number of values
+     */
+    private void add(int accId, double dltVal, int dltNum) {
+        availNum += (accNum[accId] == 0) ? 1 : 0;
+        accVal[accId] += dltVal;
+        accNum[accId] += dltNum;
+
+        double mean = accVal[accId] / accNum[accId];
+        sumMean += mean - accMean[accId];
+        accMean[accId] = mean;
+    }
+
+    /**
+     * mark the slot as holding a value
+     *
+     * @param slot  the slot
+     * @return      true if the slot held no value before
+     */
+    private boolean fill(int slot) {
+        int w = slot >>> 6;
+        long bit = 1L << slot;
+        long word = filled.get(w);
+        while ((word & bit) == 0) {
+            if (filled.compareAndSet(w, word, word | bit)) {
+                return true;
             }
+            word = filled.get(w);
+        }
+        return false;
+    }
+
+    private double load(int slot) {
+        return (lastVal != null) ? lastVal[slot] : fromHalf(lastHalf[slot]);
+    }
+
+    /**
+     * store the value in the slot
+     *
+     * @param slot  the slot
+     * @param value the value
+     * @return      the stored value, rounded to the precision of the store
+     */
+    private double store(int slot, double value) {
+        if (lastVal != null) {
+            float v = (float) value;
+            lastVal[slot] = v;
+            return v;
+        }
+
+        short h = toHalf((float) value);
+        lastHalf[slot] = h;
+        return fromHalf(h);
+    }
+
+    /**
+     * convert the float to half precision, rounding to the nearest even
+     *
+     * @param f     the float value
+     * @return      the bits of the half-precision value
+     */
+    static short toHalf(float f) {
+        int bits = Float.floatToRawIntBits(f);
+        int sign = (bits >>> 16) & 0x8000;
+        int val = bits & 0x7fffffff;
+
+        if (val >= 0x477ff000) {
+            // NaN, or infinity including values rounded beyond 65504
+            return (short) (sign | ((val > 0x7f800000) ? 0x7e00 : 0x7c00));
+        } else if (val < 0x38800000) {
+            // subnormal or zero in half precision
+            if (val < 0x33000000) {
+                return (short) sign;
+            }
+            int exp = val >>> 23;
+            int mant = (val & 0x7fffff) | 0x800000;
+            int shift = 126 - exp;
+            int h = mant >>> shift;
+            int rem = mant & ((1 << shift) - 1);
+            int half = 1 << (shift - 1);
+            if (rem > half || (rem == half && (h & 1) != 0)) {
+                h++;
+            }
+            return (short) (sign | h);
+        }
+
+        int h = (val - 0x38000000) >>> 13;
+        int rem = val & 0x1fff;
+        if (rem > 0x1000 || (rem == 0x1000 && (h & 1) != 0)) {
+            h++;
+        }
+        return (short) (sign | h);
+    }
+
+    /**
+     * convert the half-precision value to float
+     *
+     * @param h     the bits of the half-precision value
+     * @return      the float value
+     */
+    static float fromHalf(short h) {
+        int bits = h & 0xffff;
+        int sign = (bits & 0x8000) << 16;
+        int exp = (bits >>> 10) & 0x1f;
+        int mant = bits & 0x3ff;
+
+        if (exp == 0x1f) {
+            return Float.intBitsToFloat(sign | 0x7f800000 | (mant << 13));
+        } else if (exp == 0) {
+            float sub = mant * 0x1p-24f;
+            return (sign == 0) ? sub : -sub;
         }
-        return Math.sqrt(sse / availNum);
+        return Float.intBitsToFloat(sign | ((exp + 112) << 23) | (mant << 13));
     }
 }
@@ -4,6 +4,8 @@ import code.sma.core.AbstractVector;
 import code.sma.core.impl.DenseMatrix;
 import code.sma.core.impl.DenseVector;
 import code.sma.recmmd.Loss;
+import code.sma.util.RandomUtil;
+import code.sma.util.SplitRandom;
 
 /**
  * 1D-Tensor operator with mean, variance estimator
@@ -29,15 +31,12 @@ public final class StatsOperator {
 
         int[] shape = factor.shape();
         assert row < shape[0] : String.format("%d should be less than %d", row, shape[0]);
-        DenseVector vec = factor.getRowRef(row);
-
-        if (vec == null) {
-
-            vec = new DenseVector(shape[1]);
 
+        if (!factor.hasRow(row)) {
+            SplitRandom ran = RandomUtil.current();
             for (int n = 0; n < shape[1]; n++) {
-                float r = (float) (Math.random() / shape[1]);
-                vec.setValue(n, r);
+                float r = (float) (ran.nextDouble() / shape[1]);
+                factor.setValue(row, n, r);
 
                 if (acumltor != null) {
                     for (Accumulator acr : acumltor) {
@@ -47,9 +46,21 @@ public final class StatsOperator {
                     }
                 }
             }
-            factor.setRowRef(row, vec);
         }
-        return vec;
+        return factor.getRowRef(row);
+    }
+
+    /**
+     * initialize the row of DenseMatrix at random if absent,
+     * which is used in the inner loop instead of the vararg version
+     * 
+     * @param factor        the dense matrix
+     * @param row           row Id
+     */
+    public static void initRow(DenseMatrix factor, int row) {
+        if (!factor.hasRow(row)) {
+            factor.initRow(row, true);
+        }
     }
 
     /**
@@ -0,0 +1,74 @@
+package code.sma.thread;
+
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.log4j.Logger;
+
+import code.sma.core.AbstractMatrix;
+import code.sma.util.LoggerDefineConstant;
+import code.sma.util.LoggerUtil;
+
+/**
+ * The learner pulling tasks from the dispatcher until no task is left or it is cancelled,
+ * which runs in the LearnerPool. The tasks failed in training are aborted in the dispatcher,
+ * and the learner goes on with the next task.
+ * 
+ * @author Chao.Chen
+ * @version $Id: Learner.java, v 0.1 2017年7月5日 上午10:12:40 Chao.Chen Exp $
+ */
+public abstract class Learner extends RecursiveAction {
+    private static final long       serialVersionUID = 1L;
+    /** logger */
+    protected final static Logger   normalLogger     = Logger
+        .getLogger(LoggerDefineConstant.SERVICE_NORMAL);
+
+    /** learning task dispatcher*/
+    protected final TaskMsgDispatcher dispatcher;
+    /** training data*/
+    protected final AbstractMatrix  train;
+    /** testing data*/
+    protected final AbstractMatrix  test;
+    /** whether to stop pulling tasks*/
+    private volatile boolean        cancelled;
+
+    /**
+     * @param dispatcher    learning task dispatcher
+     * @param train         training data
+     * @param test          testing data
+     */
+    protected Learner(TaskMsgDispatcher dispatcher, AbstractMatrix train, AbstractMatrix test) {
+        super();
+        this.dispatcher = dispatcher;
+        this.train = train;
+        this.test = test;
+    }
+
+    /** 
+     * @see java.util.concurrent.RecursiveAction#compute()
+     */
+    @Override
+    protected void compute() {
+        Object task = null;
+        while (!cancelled && (task = dispatcher.map()) != null) {
+            long start = System.currentTimeMillis();
+            learn(task);
+            LoggerUtil.info(normalLogger, String.format("%s: %s finished in %d ms",
+                Thread.currentThread().getName(), task, System.currentTimeMillis() - start));
+        }
+    }
+
+    /**
+     * learn one task dispatched
+     * 
+     * @param task  the task from the dispatcher
+     */
+    protected abstract void learn(Object task);
+
+    /**
+     * stop pulling tasks, while the task in learning is finished
+     */
+    public void cancelLearning() {
+        cancelled = true;
+    }
+
+}
@@ -0,0 +1,78 @@
+package code.sma.thread;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The common training runtime of learners, backed by one work-stealing pool shared by all runs,
+ * rather than an unbounded cached pool, where at most as many learners as the parallelism of the pool
+ * run at once, and the learners blocked in waiting for tasks are compensated by the pool.
+ * Once one learner fails, the others stop pulling tasks and the failure is rethrown.
+ * 
+ * @author Chao.Chen
+ * @version $Id: LearnerPool.java, v 0.1 2017年7月5日 上午10:36:18 Chao.Chen Exp $
+ */
+public class LearnerPool {
+    /** the work-stealing pool shared by all runs*/
+    private static final ForkJoinPool     POOL = new ForkJoinPool();
+    /** the learners in running*/
+    private final List<? extends Learner> learners;
+
+    /**
+     * Construction
+     * 
+     * @param learners  the learners to run
+     */
+    public LearnerPool(List<? extends Learner> learners) {
+        this.learners = learners;
+    }
+
+    /**
+     * run all learners, and wait until they finish
+     */
+    public void invoke() {
+        try {
+            for (Learner learner : learners) {
+                POOL.execute(learner);
+            }
+
+            RuntimeException failure = null;
+            for (Learner learner : learners) {
+                try {
+                    learner.join();
+                } catch (RuntimeException e) {
+                    if (failure == null) {
+                        failure = e;
+                        cancel();
+                    }
+                }
+            }
+
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            // an Error skips the joins above, so the other learners are stopped here as well
+            cancel();
+        }
+    }
+
+    /**
+     * stop all learners from pulling tasks
+     */
+    public void cancel() {
+        for (Learner learner : learners) {
+            learner.cancelLearning();
+        }
+    }
+
+    /**
+     * run learners in a pool, and wait until they finish
+     * 
+     * @param learners  the learners to run
+     */
+    public static void run(List<? extends Learner> learners) {
+        new LearnerPool(learners).invoke();
+    }
+
+}
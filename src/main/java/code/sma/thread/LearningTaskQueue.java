@@ -0,0 +1,126 @@
+package code.sma.thread;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+import code.sma.recmmd.Recommender;
+import code.sma.recmmd.RuntimeEnv;
+
+/**
+ * The thread-safe queue of learning tasks, where the largest task is polled first,
+ * i.e., longest-processing-time-first, so that no large task is left to the end
+ * while the other threads are idle. Tasks of the same size are polled in order of insertion.
+ * 
+ * @author Chao.Chen
+ * @version $Id: LearningTaskQueue.java, v 0.1 2017年7月5日 上午11:03:52 Chao.Chen Exp $
+ */
+public class LearningTaskQueue extends AbstractQueue<Recommender> {
+    /** the tasks ordered by size*/
+    private final PriorityQueue<Task> tasks;
+    /** the number of training entries of the tasks without pre-built training iterators*/
+    private final long                num_train;
+    /** the number of tasks inserted*/
+    private long                      num_inserted;
+
+    public LearningTaskQueue() {
+        this(1);
+    }
+
+    /**
+     * Construction
+     * 
+     * @param num_train the number of entries of the training data shared by the tasks
+     */
+    public LearningTaskQueue(long num_train) {
+        this.tasks = new PriorityQueue<Task>();
+        this.num_train = Math.max(1, num_train);
+    }
+
+    /**
+     * estimate the size of the task, i.e., #entries * #features * #rounds, 
+     * where the tasks without pre-built training iterators are trained on the shared training data
+     * 
+     * @param recmmd    the learning task
+     * @return          the estimated size
+     */
+    protected long sizeOf(Recommender recmmd) {
+        RuntimeEnv runtimes = recmmd.runtimes;
+        long nnz = (runtimes.itrain == null) ? num_train
+            : Math.max(1, runtimes.itrain.get_num_ifactor());
+        return nnz * Math.max(1, runtimes.featureCount) * Math.max(1, runtimes.maxIter);
+    }
+
+    /** 
+     * @see java.util.Queue#offer(java.lang.Object)
+     */
+    @Override
+    public synchronized boolean offer(Recommender recmmd) {
+        return tasks.offer(new Task(recmmd, sizeOf(recmmd), num_inserted++));
+    }
+
+    /** 
+     * @see java.util.Queue#poll()
+     */
+    @Override
+    public synchronized Recommender poll() {
+        Task task = tasks.poll();
+        return (task == null) ? null : task.recmmd;
+    }
+
+    /** 
+     * @see java.util.Queue#peek()
+     */
+    @Override
+    public synchronized Recommender peek() {
+        Task task = tasks.peek();
+        return (task == null) ? null : task.recmmd;
+    }
+
+    /** 
+     * @see java.util.AbstractCollection#size()
+     */
+    @Override
+    public synchronized int size() {
+        return tasks.size();
+    }
+
+    /** 
+     * iterate over a snapshot of the tasks, in no particular order
+     * 
+     * @see java.util.AbstractCollection#iterator()
+     */
+    @Override
+    public synchronized Iterator<Recommender> iterator() {
+        ArrayList<Recommender> snapshot = new ArrayList<Recommender>(tasks.size());
+        for (Task task : tasks) {
+            snapshot.add(task.recmmd);
+        }
+        return snapshot.iterator();
+    }
+
+    private static final class Task implements Comparable<Task> {
+        private final Recommender recmmd;
+        private final long        size;
+        private final long        seq;
+
+        Task(Recommender recmmd, long size, long seq) {
+            this.recmmd = recmmd;
+            this.size = size;
+            this.seq = seq;
+        }
+
+        /** 
+         * @see java.lang.Comparable#compareTo(java.lang.Object)
+         */
+        @Override
+        public int compareTo(Task o) {
+            if (size != o.size) {
+                return size > o.size ? -1 : 1;
+            }
+            return seq < o.seq ? -1 : (seq == o.seq ? 0 : 1);
+        }
+    }
+
+}
@@ -2,6 +2,7 @@ package code.sma.thread;
 
 import code.sma.core.AbstractMatrix;
 import code.sma.recmmd.Recommender;
+import code.sma.util.ExceptionUtil;
 
 /**
  * the general thread learner for recommender system
@@ -9,36 +10,40 @@ import code.sma.recmmd.Recommender;
  * @author Chao.Chen
  * @version $Id: SimpleLearner.java, v 0.1 2016年7月21日 下午1:05:21 Chao.Chen Exp $
  */
-public class SimpleLearner extends Thread {
-    /** learning task dispatcher*/
-    private TaskMsgDispatcher dispatcher;
-    /** training data*/
-    private AbstractMatrix    trainMatrix;
-    /** testing data*/
-    private AbstractMatrix    testMatrix;
+public class SimpleLearner extends Learner {
+    private static final long serialVersionUID = 1L;
 
     /**
-     * @param recmmnd       cf learner
+     * @param dispatcher    learning task dispatcher
      * @param trainMatrix   training data
      * @param testMatrix    testing data
      */
     public SimpleLearner(TaskMsgDispatcher dispatcher, AbstractMatrix trainMatrix,
                          AbstractMatrix testMatrix) {
-        super();
-        this.dispatcher = dispatcher;
-        this.trainMatrix = trainMatrix;
-        this.testMatrix = testMatrix;
+        super(dispatcher, trainMatrix, testMatrix);
     }
 
     /** 
-     * @see java.lang.Thread#run()
+     * @see code.sma.thread.Learner#learn(java.lang.Object)
      */
     @Override
-    public void run() {
-        Recommender recmmnd = null;
-        while ((recmmnd = (Recommender) dispatcher.map()) != null) {
-            recmmnd.buildModel(trainMatrix, testMatrix);
-            dispatcher.reduce(recmmnd, trainMatrix, testMatrix);
+    protected void learn(Object task) {
+        Recommender recmmnd = (Recommender) task;
+        boolean built = false;
+        try {
+            recmmnd.buildModel(train, test);
+            built = true;
+        } catch (RuntimeException e) {
+            // the failed task is dropped, while the other tasks are still learned
+            ExceptionUtil.caught(e, recmmnd + ": failed in training");
+        } finally {
+            if (!built) {
+                dispatcher.abort(recmmnd);
+            }
+        }
+
+        if (built) {
+            dispatcher.reduce(recmmnd, train, test);
         }
     }
 
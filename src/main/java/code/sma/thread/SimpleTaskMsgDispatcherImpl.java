@@ -1,7 +1,6 @@
 package code.sma.thread;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
 
@@ -12,8 +11,10 @@ import code.sma.core.impl.DenseVector;
 import code.sma.main.Configures;
 import code.sma.main.RecommenderFactory;
 import code.sma.recmmd.Recommender;
+import code.sma.recmmd.RuntimeEnv;
 import code.sma.util.LoggerDefineConstant;
 import code.sma.util.LoggerUtil;
+import code.sma.util.RandomUtil;
 import code.sma.util.StringUtil;
 
 /**
@@ -24,14 +25,9 @@ import code.sma.util.StringUtil;
  */
 public class SimpleTaskMsgDispatcherImpl implements TaskMsgDispatcher {
 
-    /** the learning task buffer*/
+    /** the learning task buffer, the largest task first*/
     protected Queue<Recommender>  recmmdsBuffer;
 
-    /** mutex using in map procedure*/
-    protected static Object       MAP_MUTEX    = new Object();
-    /** mutex using in reduce procedure*/
-    protected static Object       REDUCE_MUTEX = new Object();
-
     protected final static Logger normalLogger = Logger
         .getLogger(LoggerDefineConstant.SERVICE_NORMAL);
 
@@ -43,10 +39,15 @@ public class SimpleTaskMsgDispatcherImpl implements TaskMsgDispatcher {
      */
     public SimpleTaskMsgDispatcherImpl(Configures conf) {
         super();
-        recmmdsBuffer = new LinkedList<Recommender>();
+        recmmdsBuffer = new LearningTaskQueue(
+            conf.containsKey("TRAIN_VAL_NUM_VALUE") ? conf.getInteger("TRAIN_VAL_NUM_VALUE") : 1);
 
         String algName = conf.getProperty("ALG_NAME");
 
+        // all configures hold out the same validation data, so that they are compared on it
+        double validSeed = conf.containsKey("VALID_SEED_VALUE") ? conf.getDouble("VALID_SEED_VALUE")
+            : (double) RandomUtil.seed(conf);
+
         List<String> suffArrKeys = new ArrayList<String>();
         List<DenseVector> suffArrVals = new ArrayList<DenseVector>();
         for (Object k : conf.keySet()) {
@@ -75,6 +76,7 @@ public class SimpleTaskMsgDispatcherImpl implements TaskMsgDispatcher {
                 // store all possible configures
                 for (int l = 0; l < lastLayerWidth; l++) {
                     Configures rce = new Configures(conf);
+                    rce.setDouble("VALID_SEED_VALUE", validSeed);
                     for (int c = 0; c < maxLayer - 1; c++) {
                         rce.setDouble(suffArrKeys.get(c),
                             (double) suffArrVals.get(c).floatValue(nodes.get(c)));
@@ -101,6 +103,7 @@ public class SimpleTaskMsgDispatcherImpl implements TaskMsgDispatcher {
             }
         } else {
             Configures lconf = new Configures(conf);
+            lconf.setDouble("VALID_SEED_VALUE", validSeed);
             recmmdsBuffer.add(RecommenderFactory.instance(algName, lconf));
         }
 
@@ -111,9 +114,7 @@ public class SimpleTaskMsgDispatcherImpl implements TaskMsgDispatcher {
      */
     @Override
     public Recommender map() {
-        synchronized (MAP_MUTEX) {
-            return recmmdsBuffer.poll();
-        }
+        return recmmdsBuffer.poll();
     }
 
     /** 
@@ -121,8 +122,21 @@ public class SimpleTaskMsgDispatcherImpl implements TaskMsgDispatcher {
      */
     @Override
     public void reduce(Object recmmd, AbstractMatrix train, AbstractMatrix test) {
-        LoggerUtil.info(normalLogger, (new StringBuilder(recmmd.toString())).append(": ")
-            .append((((Recommender) recmmd).evaluate(test)).printOneLine()));
+        RuntimeEnv runtimes = ((Recommender) recmmd).runtimes;
+        StringBuilder msg = (new StringBuilder(recmmd.toString())).append(": ")
+            .append((((Recommender) recmmd).evaluate(test)).printOneLine());
+        if (runtimes.patience > 0) {
+            msg.append(String.format(" Round(%d) Best(%d)", runtimes.round, runtimes.bestRound));
+        }
+        LoggerUtil.info(normalLogger, msg);
+    }
+
+    /** 
+     * @see code.sma.thread.TaskMsgDispatcher#abort(java.lang.Object)
+     */
+    @Override
+    public void abort(Object recmmd) {
+        LoggerUtil.info(normalLogger, recmmd + ": failed");
     }
 
 }
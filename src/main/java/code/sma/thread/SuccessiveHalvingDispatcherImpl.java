@@ -0,0 +1,236 @@
+package code.sma.thread;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import code.sma.core.AbstractIterator;
+import code.sma.core.AbstractMatrix;
+import code.sma.main.Configures;
+import code.sma.recmmd.Recommender;
+import code.sma.recmmd.standalone.MFRecommender;
+import code.sma.util.EvaluationMetrics;
+import code.sma.util.ExceptionUtil;
+import code.sma.util.LoggerUtil;
+
+/**
+ * Task Message Dispatcher sweeping the configures by successive halving,
+ * where all configures are trained for a small number of rounds first,
+ * and only the best 1/eta of them by validation RMSE are resumed from their factors
+ * with eta times the rounds, until one configure is left or the maximum iteration is reached.
+ * The validation data are held out from the training data by each model, 
+ * while the configures failed in training are dropped.
+ * <br/>
+ * $HALVING_MIN_ROUND_VALUE: the number of rounds of the first rung, 1 by default <br/>
+ * $HALVING_ETA_VALUE: the reduction factor between two rungs, 3 by default
+ *
+ * @author Chao.Chen
+ * @version $Id: SuccessiveHalvingDispatcherImpl.java, v 0.1 2017年7月3日 上午10:21:37 Chao.Chen Exp $
+ */
+public class SuccessiveHalvingDispatcherImpl extends SimpleTaskMsgDispatcherImpl {
+    /** the reduction factor between two rungs*/
+    private final int                 eta;
+    /** the maximum number of rounds*/
+    private final int                 maxIter;
+    /** the number of rounds models in the current rung are trained to*/
+    private int                       budget;
+    /** the id of the current rung*/
+    private int                       rung;
+    /** the number of models of the current rung in training*/
+    private int                       num_running;
+    /** the models of the current rung that have been trained*/
+    private final List<Recommender>   trained;
+    /** the validation RMSE of the trained models*/
+    private final List<Double>        validErrs;
+    /** whether the final rung has been trained*/
+    private boolean                   finished;
+    /** the waiting for the current rung, compensated by the pool of learners*/
+    private final RungBlocker         rungBlocker = new RungBlocker();
+
+    /**
+     * Construction
+     *
+     * @param conf      the configures, where ARR-end entries are swept
+     */
+    public SuccessiveHalvingDispatcherImpl(Configures conf) {
+        super(conf);
+        eta = conf.containsKey("HALVING_ETA_VALUE")
+            ? Math.max(2, conf.getInteger("HALVING_ETA_VALUE")) : 3;
+        maxIter = conf.getInteger("MAX_ITERATION_VALUE");
+        budget = conf.containsKey("HALVING_MIN_ROUND_VALUE")
+            ? Math.max(1, conf.getInteger("HALVING_MIN_ROUND_VALUE")) : 1;
+        trained = new ArrayList<Recommender>();
+        validErrs = new ArrayList<Double>();
+
+        for (Recommender recmmd : recmmdsBuffer) {
+            if (!(recmmd instanceof MFRecommender)) {
+                throw new RuntimeException(
+                    recmmd.getClass().getSimpleName() + " cannot be resumed by successive halving!");
+            }
+        }
+        start_rung();
+    }
+
+    /**
+     * pause the models in the buffer at the budget of this rung,
+     * or train them to the end in the final rung
+     */
+    private void start_rung() {
+        boolean last = recmmdsBuffer.size() <= 1 || budget >= maxIter;
+        for (Recommender recmmd : recmmdsBuffer) {
+            recmmd.runtimes.pauseRound = last ? 0 : budget;
+        }
+        finished = last;
+
+        LoggerUtil.info(normalLogger, String.format("rung %d: %d models to %s rounds", rung,
+            recmmdsBuffer.size(), last ? "all" : String.valueOf(budget)));
+    }
+
+    /**
+     * @see code.sma.thread.SimpleTaskMsgDispatcherImpl#map()
+     */
+    @Override
+    public synchronized Recommender map() {
+        // models of the next rung are known once the current rung is trained
+        try {
+            ForkJoinPool.managedBlock(rungBlocker);
+        } catch (InterruptedException e) {
+            ExceptionUtil.caught(e, "Successive halving Thead!");
+            return null;
+        }
+
+        Recommender recmmd = recmmdsBuffer.poll();
+        if (recmmd != null) {
+            num_running++;
+        }
+        return recmmd;
+    }
+
+    /**
+     * @see code.sma.thread.SimpleTaskMsgDispatcherImpl#reduce(java.lang.Object, code.sma.core.AbstractMatrix, code.sma.core.AbstractMatrix)
+     */
+    @Override
+    public synchronized void reduce(Object recmmd, AbstractMatrix train, AbstractMatrix test) {
+        try {
+            if (finished) {
+                super.reduce(recmmd, train, test);
+            } else {
+                Recommender rcmmd = (Recommender) recmmd;
+                double validErr = validate(rcmmd);
+                trained.add(rcmmd);
+                validErrs.add(validErr);
+            }
+        } finally {
+            finish_task();
+        }
+    }
+
+    /**
+     * drop the configure failed in training, so that the rung completes without it
+     * 
+     * @see code.sma.thread.SimpleTaskMsgDispatcherImpl#abort(java.lang.Object)
+     */
+    @Override
+    public synchronized void abort(Object recmmd) {
+        try {
+            LoggerUtil.info(normalLogger,
+                String.format("rung %d: %s: failed, dropped", rung, recmmd));
+            ((MFRecommender) recmmd).releaseFactors();
+        } finally {
+            finish_task();
+        }
+    }
+
+    /**
+     * count one model of the current rung out, and promote the next rung 
+     * once all models of the current rung are done, waking up the waiting learners
+     */
+    private void finish_task() {
+        num_running--;
+        if (num_running == 0 && recmmdsBuffer.isEmpty()) {
+            try {
+                if (!finished) {
+                    promote();
+                }
+            } finally {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * the RMSE on the validation data held out from the training data, 
+     * or the training RMSE if nothing is held out
+     * 
+     * @param recmmd    the trained model
+     * @return          the validation RMSE
+     */
+    private double validate(Recommender recmmd) {
+        AbstractIterator ivalid = recmmd.runtimes.ivalid;
+        return (ivalid == null) ? recmmd.runtimes.currErr
+            : new EvaluationMetrics(recmmd, ivalid).getRMSE();
+    }
+
+    /**
+     * keep the best 1/eta of the trained models as the next rung, and release the others
+     */
+    private void promote() {
+        List<Integer> order = new ArrayList<Integer>(trained.size());
+        for (int n = 0; n < trained.size(); n++) {
+            order.add(n);
+        }
+        Collections.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Double.compare(validErrs.get(a), validErrs.get(b));
+            }
+        });
+
+        int num_keep = Math.max(1, trained.size() / eta);
+        for (int n = 0; n < order.size(); n++) {
+            Recommender recmmd = trained.get(order.get(n));
+            LoggerUtil.info(normalLogger, String.format("rung %d: %s: RMSE(%.6f) %s", rung,
+                recmmd, validErrs.get(order.get(n)), n < num_keep ? "kept" : "dropped"));
+
+            if (n < num_keep) {
+                recmmdsBuffer.add(recmmd);
+            } else {
+                ((MFRecommender) recmmd).releaseFactors();
+            }
+        }
+        trained.clear();
+        validErrs.clear();
+
+        rung++;
+        budget = (int) Math.min(maxIter, (long) budget * eta);
+        start_rung();
+    }
+
+    /**
+     * The blocker of learners waiting for the current rung, 
+     * which is only called with the lock of the dispatcher held.
+     */
+    private class RungBlocker implements ForkJoinPool.ManagedBlocker {
+
+        /**
+         * @see java.util.concurrent.ForkJoinPool.ManagedBlocker#block()
+         */
+        @Override
+        public boolean block() throws InterruptedException {
+            while (!isReleasable()) {
+                SuccessiveHalvingDispatcherImpl.this.wait();
+            }
+            return true;
+        }
+
+        /**
+         * @see java.util.concurrent.ForkJoinPool.ManagedBlocker#isReleasable()
+         */
+        @Override
+        public boolean isReleasable() {
+            return !recmmdsBuffer.isEmpty() || num_running == 0;
+        }
+    }
+}
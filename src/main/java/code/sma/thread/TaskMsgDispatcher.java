@@ -26,4 +26,11 @@ public interface TaskMsgDispatcher {
      */
     public void reduce(Object recmmd, AbstractMatrix tnMatrix, AbstractMatrix ttMatrix);
 
+    /**
+     * give up the task failed in learning, instead of merging its result
+     * 
+     * @param recmmd    the failed recommender model
+     */
+    public void abort(Object recmmd);
+
 }
@@ -2,6 +2,7 @@ package code.sma.thread;
 
 import code.sma.core.AbstractMatrix;
 import code.sma.recmmd.Recommender;
+import code.sma.util.ExceptionUtil;
 
 /**
  * the general thread learner for recommender system
@@ -9,34 +10,38 @@ import code.sma.recmmd.Recommender;
  * @author Chao.Chen
  * @version $Id: WeakLearner.java, v 0.1 2016年7月21日 下午1:05:21 Chao.Chen Exp $
  */
-public class WeakLearner extends Thread {
-    /** learning task dispatcher*/
-    private TaskMsgDispatcher dispatcher;
-    /** training data*/
-    private AbstractMatrix    train;
-    /** testing data*/
-    private AbstractMatrix    test;
+public class WeakLearner extends Learner {
+    private static final long serialVersionUID = 1L;
 
     /**
-     * @param recmmnd       cf learner
+     * @param dispatcher    learning task dispatcher
      * @param train   training data
      * @param test    testing data
      */
     public WeakLearner(TaskMsgDispatcher dispatcher, AbstractMatrix train, AbstractMatrix test) {
-        super();
-        this.dispatcher = dispatcher;
-        this.train = train;
-        this.test = test;
+        super(dispatcher, train, test);
     }
 
     /** 
-     * @see java.lang.Thread#run()
+     * @see code.sma.thread.Learner#learn(java.lang.Object)
      */
     @Override
-    public void run() {
-        Recommender recmmnd = null;
-        while ((recmmnd = (Recommender) dispatcher.map()) != null) {
+    protected void learn(Object task) {
+        Recommender recmmnd = (Recommender) task;
+        boolean built = false;
+        try {
             recmmnd.buildModel(train, test);
+            built = true;
+        } catch (RuntimeException e) {
+            // the failed task is dropped, while the other tasks are still learned
+            ExceptionUtil.caught(e, recmmnd + ": failed in training");
+        } finally {
+            if (!built) {
+                dispatcher.abort(recmmnd);
+            }
+        }
+
+        if (built) {
             dispatcher.reduce(recmmnd, train, test);
         }
     }
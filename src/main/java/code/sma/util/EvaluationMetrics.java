@@ -1,9 +1,13 @@
 package code.sma.util;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
 import code.sma.core.AbstractIterator;
 import code.sma.core.AbstractMatrix;
 import code.sma.core.DataElem;
 import code.sma.recmmd.Recommender;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 
 /**
  * This is a unified class providing evaluation metrics,
@@ -13,137 +17,115 @@ import code.sma.recmmd.Recommender;
  * @version $Id: EvaluationMetrics.java, v 0.1 2016年9月29日 下午2:09:04 Chao.Chen Exp $
  */
 public class EvaluationMetrics {
+    /** the pool shared by all evaluations, whose threads are daemons */
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+
     /** Top-N recommendations*/
-    private int    N = -1;
+    private int                       N = -1;
     /** Mean Absoulte Error (MAE) */
-    private double mae;
+    private double                    mae;
     /** Mean Squared Error (MSE) */
-    private double mse;
+    private double                    mse;
     /** Rank-based Normalized Discounted Cumulative Gain (NDCG) */
-    private double ndcg;
-    private double recall;
+    private double                    ndcg;
+    private double                    recall;
     /** Average Precision */
-    private double avgPrecision;
+    private double                    avgPrecision;
 
     public EvaluationMetrics(Recommender recmmd) {
-        build(recmmd);
+        build(recmmd, recmmd.runtimes.itest);
+    }
+
+    /**
+     * evaluate the predicted ratings on the given data, 
+     * e.g., the validation data held out from the training data
+     * 
+     * @param recmmd    the model to evaluate
+     * @param idata     the data to evaluate on
+     */
+    public EvaluationMetrics(Recommender recmmd, AbstractIterator idata) {
+        build(recmmd, idata);
     }
 
     public EvaluationMetrics(Recommender recmmd, AbstractMatrix train, AbstractMatrix test, int N) {
         this.N = N;
-        //        build(train, test);
+        if (recmmd.runtimes.itest != null) {
+            build(recmmd, recmmd.runtimes.itest);
+        }
+        build(recmmd, (AbstractIterator) test.iterator(), (AbstractIterator) train.iterator());
     }
 
     /**
-     * compute all the evaluations
+     * evaluate both the predicted ratings and the Top-N recommendations 
+     * on the training and testing data of the runtime environment, 
+     * where the validation data held out from training are excluded as well, 
+     * and the metrics are left empty if there are no testing data
      * 
-     * @param ttMatrix  test data
+     * @param recmmd    the model to evaluate
+     * @param N         the number of recommendations
      */
-    protected void build(Recommender recmmd) {
-        // Rating Prediction evaluation
-        mae = 0.0d;
-        mse = 0.0d;
+    public EvaluationMetrics(Recommender recmmd, int N) {
+        this.N = N;
+        if (recmmd.runtimes.itest == null) {
+            return;
+        }
+        build(recmmd, recmmd.runtimes.itest);
 
-        int nnz = 0;
-        AbstractIterator iDataElem = recmmd.runtimes.itest.clone();
-        while (iDataElem.hasNext()) {
+        AbstractIterator itrain = recmmd.runtimes.itrain.clone();
+        AbstractIterator ivalid = recmmd.runtimes.ivalid;
+        if (ivalid == null) {
+            build(recmmd, recmmd.runtimes.itest.clone(), itrain);
+        } else {
+            build(recmmd, recmmd.runtimes.itest.clone(), itrain, ivalid.clone());
+        }
+    }
 
-            DataElem e = iDataElem.next();
-            short num_ifactor = e.getNum_ifacotr();
+    /**
+     * compute the rating evaluations
+     * 
+     * @param recmmd    the model to evaluate
+     * @param idata     the data to evaluate on
+     */
+    protected void build(Recommender recmmd, AbstractIterator idata) {
+        // Rating Prediction evaluation, where the rows are partitioned across the pool
+        int num_task = POOL.getParallelism();
+        double[] sums = POOL.invoke(new EvalTask(recmmd, idata, 0, num_task, num_task));
 
-            int u = e.getIndex_user(0);
-            for (int f = 0; f < num_ifactor; f++) {
-                int i = e.getIndex_item(f);
+        mae = sums[0] / sums[2];
+        mse = sums[1] / sums[2];
+    }
 
-                double realVal = e.getValue_ifactor(f);
-                double predVal = recmmd.predict(u, i);
+    /**
+     * compute the Top-N evaluations, where the users are scored block by block,
+     * the training items are excluded and the N best items of each user are kept in a bounded heap.
+     * Only the users with at least N testing items are evaluated.
+     * 
+     * @param recmmd    the model to evaluate
+     * @param test      test data
+     * @param train     training data, whose items are excluded
+     */
+    protected void build(Recommender recmmd, AbstractIterator test, AbstractIterator... train) {
+        int userCount = recmmd.runtimes.userCount;
+        UserItems trainItems = new UserItems(userCount, train);
+        UserItems testItems = new UserItems(userCount, test);
 
-                mae += Math.abs(realVal - predVal);
-                mse += Math.pow(realVal - predVal, 2.0d);
-                nnz++;
+        IntArrayList users = new IntArrayList();
+        for (int u = 0; u < userCount; u++) {
+            if (testItems.size(u) >= N) {
+                users.add(u);
             }
-
         }
-        mae /= nnz;
-        mse /= nnz;
-
-        // Top-N evaluation
-        //        if (N > 0) {
-        //            int userCount = recmmd.userCount;
-        //            int itemCount = recmmd.itemCount;
-        //            DynIntArr[] dArr = new DynIntArr[userCount];
-        //            for (int numSeq = 0; numSeq < totlCount; numSeq++) {
-        //                if (dArr[uIndx[numSeq]] == null) {
-        //                    dArr[uIndx[numSeq]] = new DynIntArr(N);
-        //                }
-        //                dArr[uIndx[numSeq]].addValue(numSeq);
-        //            }
-        //
-        //            SparseMatrix trainMatrix = trMatrix.toSparseMatrix(userCount, itemCount);
-        //
-        //            int avgPEffectiveUserCount = 0;
-        //            for (int u = 0; u < userCount; u++) {
-        //                if (dArr[u] == null || dArr[u].size() < N) {
-        //                    continue;
-        //                }
-        //                avgPEffectiveUserCount++;
-        //
-        //                // get Top-N recommendations
-        //                int[] topNRcmdn = new int[N];
-        //                {
-        //                    MinMaxPriorityQueue<Pair<Integer, Double>> fpQue = MinMaxPriorityQueue
-        //                        .orderedBy(new Comparator<Pair<Integer, Double>>() {
-        //                            @Override
-        //                            public int compare(Pair<Integer, Double> o1, Pair<Integer, Double> o2) {
-        //                                return (int) Math.signum(o2.getValue() - o1.getValue());
-        //                            }
-        //
-        //                        }).maximumSize(N).create();
-        //
-        //                    // filtering training data
-        //                    for (int i = 0; i < itemCount; i++) {
-        //                        if (trainMatrix.getValue(u, i) != 0.0d) {
-        //                            continue;
-        //                        }
-        //
-        //                        Pair<Integer, Double> uidVSratg = new ImmutablePair<Integer, Double>(i,
-        //                            recmmd.predict(u, i));
-        //                        fpQue.add(uidVSratg);
-        //                    }
-        //
-        //                    for (int s = 0; s < N; s++) {
-        //                        topNRcmdn[s] = fpQue.poll().getKey();
-        //                    }
-        //                }
-        //
-        //                // get user real ratings
-        //
-        //                SparseVector realVs = new SparseVector(itemCount);
-        //                for (int n : dArr[u].getArr()) {
-        //                    realVs.setValue(iIndx[n], Auis[n]);
-        //
-        //                }
-        //
-        //                double lRecl = 0.0d;
-        //                for (int s = 0; s < N; s++) {
-        //                    int rcmmdtn = topNRcmdn[s];
-        //                    if (realVs.floatValue(rcmmdtn) != 0.0d) {
-        //                        avgPrecision++;
-        //                        lRecl++;
-        //                        ndcg += 1 / MathUtil.log2(s + 2);
-        //                    }
-        //                }
-        //                recall += lRecl / realVs.length();
-        //            }
-        //
-        //            double iNDCG = 0.0d;
-        //            for (int s = 0; s < N; s++) {
-        //                iNDCG += 1 / MathUtil.log2(s + 2);
-        //            }
-        //            recall /= avgPEffectiveUserCount;
-        //            ndcg /= iNDCG * avgPEffectiveUserCount;
-        //            avgPrecision /= N * avgPEffectiveUserCount;
-        //        }
+        if (users.isEmpty()) {
+            return;
+        }
+
+        int num_task = POOL.getParallelism();
+        double[] sums = POOL.invoke(new RankTask(recmmd, trainItems, testItems,
+            users.toIntArray(), N, 0, num_task, num_task));
+
+        ndcg = sums[0] / users.size();
+        recall = sums[1] / users.size();
+        avgPrecision = sums[2] / users.size();
     }
 
     public double getRecall() {
@@ -196,4 +178,368 @@ public class EvaluationMetrics {
             this.getMAE(), this.getRMSE(), N, this.getNDCG(), this.getAvgPrecision(),
             this.getRecall());
     }
+
+    /**
+     * task evaluating the contiguous range of test rows of its id, out of as many equal ranges as tasks,
+     * which returns the partial sums of absolute errors, squared errors and the number of entries
+     *
+     * @author Chao.Chen
+     * @version $Id: EvaluationMetrics.java, v 0.1 2017年6月27日 上午9:42:18 Chao.Chen Exp $
+     */
+    protected static class EvalTask extends RecursiveTask<double[]> {
+        private static final long serialVersionUID = 1L;
+
+        /** the model to evaluate*/
+        private final Recommender      recmmd;
+        /** the data to evaluate on*/
+        private final AbstractIterator idata;
+        /** the range of task ids*/
+        private final int              lo;
+        private final int              hi;
+        /** the number of tasks*/
+        private final int              num_task;
+
+        EvalTask(Recommender recmmd, AbstractIterator idata, int lo, int hi, int num_task) {
+            this.recmmd = recmmd;
+            this.idata = idata;
+            this.lo = lo;
+            this.hi = hi;
+            this.num_task = num_task;
+        }
+
+        /**
+         * @see java.util.concurrent.RecursiveTask#compute()
+         */
+        @Override
+        protected double[] compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                EvalTask left = new EvalTask(recmmd, idata, lo, mid, num_task);
+                left.fork();
+                double[] sums = new EvalTask(recmmd, idata, mid, hi, num_task).compute();
+                double[] lSums = left.join();
+                for (int n = 0; n < sums.length; n++) {
+                    sums[n] += lSums[n];
+                }
+                return sums;
+            }
+
+            double absErr = 0.0d;
+            double sqrErr = 0.0d;
+            int nnz = 0;
+            double[] preds = new double[64];
+
+            AbstractIterator iDataElem = idata.clone();
+            int num_row = iDataElem.get_num_row();
+            int begin = (int) ((long) num_row * lo / num_task);
+            int end = (int) ((long) num_row * (lo + 1) / num_task);
+            iDataElem.skip(begin);
+            for (int row = begin; row < end; row++) {
+                DataElem e = iDataElem.next();
+                short num_ifactor = e.getNum_ifacotr();
+                if (preds.length < num_ifactor) {
+                    preds = new double[num_ifactor];
+                }
+                recmmd.predict(e, preds);
+
+                for (int f = 0; f < num_ifactor; f++) {
+                    double diff = e.getValue_ifactor(f) - preds[f];
+                    absErr += Math.abs(diff);
+                    sqrErr += diff * diff;
+                }
+                nnz += num_ifactor;
+            }
+            return new double[] { absErr, sqrErr, nnz };
+        }
+    }
+
+    /**
+     * task ranking the blocks of users whose sequence id modulo the number of tasks equals its id,
+     * which returns the partial sums of NDCG, recall and average precision
+     *
+     * @author Chao.Chen
+     * @version $Id: EvaluationMetrics.java, v 0.1 2017年6月27日 下午3:16:52 Chao.Chen Exp $
+     */
+    protected static class RankTask extends RecursiveTask<double[]> {
+        private static final long serialVersionUID = 1L;
+        /** the number of users scored at once*/
+        private static final int  BLOCK_SIZE       = 64;
+
+        /** the model to evaluate*/
+        private final Recommender recmmd;
+        /** the training items of each user*/
+        private final UserItems   trainItems;
+        /** the testing items of each user*/
+        private final UserItems   testItems;
+        /** the users to evaluate*/
+        private final int[]       users;
+        /** Top-N recommendations*/
+        private final int         N;
+        /** the range of task ids*/
+        private final int         lo;
+        private final int         hi;
+        /** the number of tasks*/
+        private final int         num_task;
+
+        RankTask(Recommender recmmd, UserItems trainItems, UserItems testItems, int[] users,
+                 int N, int lo, int hi, int num_task) {
+            this.recmmd = recmmd;
+            this.trainItems = trainItems;
+            this.testItems = testItems;
+            this.users = users;
+            this.N = N;
+            this.lo = lo;
+            this.hi = hi;
+            this.num_task = num_task;
+        }
+
+        /**
+         * @see java.util.concurrent.RecursiveTask#compute()
+         */
+        @Override
+        protected double[] compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                RankTask left = new RankTask(recmmd, trainItems, testItems, users, N, lo, mid,
+                    num_task);
+                left.fork();
+                double[] sums = new RankTask(recmmd, trainItems, testItems, users, N, mid, hi,
+                    num_task).compute();
+                double[] lSums = left.join();
+                for (int n = 0; n < sums.length; n++) {
+                    sums[n] += lSums[n];
+                }
+                return sums;
+            }
+
+            int itemCount = recmmd.runtimes.itemCount;
+            int[] block = new int[BLOCK_SIZE];
+            float[] scores = new float[BLOCK_SIZE * itemCount];
+            long[] bitmap = new long[(itemCount + 63) >>> 6];
+            TopKHeap heap = new TopKHeap(N);
+
+            // discount of each position
+            double[] discount = new double[N];
+            for (int s = 0; s < N; s++) {
+                discount[s] = Math.log(2) / Math.log(s + 2);
+            }
+
+            double ndcg = 0.0d;
+            double recall = 0.0d;
+            double avgPrecision = 0.0d;
+            int num_block = (users.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            for (int b = lo; b < num_block; b += num_task) {
+                int num_user = Math.min(BLOCK_SIZE, users.length - b * BLOCK_SIZE);
+                System.arraycopy(users, b * BLOCK_SIZE, block, 0, num_user);
+                recmmd.predict(block, num_user, scores);
+
+                for (int r = 0; r < num_user; r++) {
+                    int u = block[r];
+                    int offset = r * itemCount;
+
+                    // get Top-N recommendations, filtering training data
+                    heap.clear();
+                    trainItems.mark(u, bitmap, true);
+                    for (int i = 0; i < itemCount; i++) {
+                        if ((bitmap[i >>> 6] & (1L << i)) == 0) {
+                            heap.offer(i, scores[offset + i]);
+                        }
+                    }
+                    trainItems.mark(u, bitmap, false);
+                    heap.sort();
+
+                    // compare with user real ratings
+                    testItems.mark(u, bitmap, true);
+                    double dcg = 0.0d;
+                    double sumPrecision = 0.0d;
+                    int hits = 0;
+                    for (int s = 0; s < heap.size; s++) {
+                        int i = heap.ids[s];
+                        if ((bitmap[i >>> 6] & (1L << i)) != 0) {
+                            hits++;
+                            dcg += discount[s];
+                            sumPrecision += (double) hits / (s + 1);
+                        }
+                    }
+                    testItems.mark(u, bitmap, false);
+
+                    int num_rel = testItems.size(u);
+                    int num_ideal = Math.min(N, num_rel);
+                    double idcg = 0.0d;
+                    for (int s = 0; s < num_ideal; s++) {
+                        idcg += discount[s];
+                    }
+                    ndcg += dcg / idcg;
+                    recall += (double) hits / num_rel;
+                    avgPrecision += sumPrecision / num_ideal;
+                }
+            }
+            return new double[] { ndcg, recall, avgPrecision };
+        }
+    }
+
+    /**
+     * items of each user in CSR format, which can be marked in a bitmap over items
+     *
+     * @author Chao.Chen
+     * @version $Id: EvaluationMetrics.java, v 0.1 2017年6月27日 下午3:40:05 Chao.Chen Exp $
+     */
+    protected static final class UserItems {
+        /** points to the beginning and ends of each user, size(ptr)=userCount+1*/
+        private final int[] ptr;
+        /** array of item id*/
+        private final int[] items;
+
+        UserItems(int userCount, AbstractIterator... iDataElems) {
+            ptr = new int[userCount + 1];
+
+            for (AbstractIterator iDataElem : iDataElems) {
+                iDataElem.refresh();
+                while (iDataElem.hasNext()) {
+                    DataElem e = iDataElem.next();
+                    ptr[e.getIndex_user(0) + 1] += e.getNum_ifacotr();
+                }
+            }
+            for (int u = 0; u < userCount; u++) {
+                ptr[u + 1] += ptr[u];
+            }
+
+            items = new int[ptr[userCount]];
+            int[] cursor = new int[userCount];
+            System.arraycopy(ptr, 0, cursor, 0, userCount);
+            for (AbstractIterator iDataElem : iDataElems) {
+                iDataElem.refresh();
+                while (iDataElem.hasNext()) {
+                    DataElem e = iDataElem.next();
+                    short num_ifactor = e.getNum_ifacotr();
+
+                    int u = e.getIndex_user(0);
+                    for (int f = 0; f < num_ifactor; f++) {
+                        items[cursor[u]++] = e.getIndex_item(f);
+                    }
+                }
+            }
+        }
+
+        /**
+         * the number of items of the given user
+         * 
+         * @param u the user's id
+         * @return  the number of items
+         */
+        int size(int u) {
+            return ptr[u + 1] - ptr[u];
+        }
+
+        /**
+         * set or clear the bits of the given user's items
+         * 
+         * @param u         the user's id
+         * @param bitmap    the bitmap over items
+         * @param value     true to set, false to clear
+         */
+        void mark(int u, long[] bitmap, boolean value) {
+            for (int p = ptr[u]; p < ptr[u + 1]; p++) {
+                int i = items[p];
+                if (value) {
+                    bitmap[i >>> 6] |= 1L << i;
+                } else {
+                    bitmap[i >>> 6] &= ~(1L << i);
+                }
+            }
+        }
+    }
+
+    /**
+     * bounded min-heap keeping the K best items in primitive arrays,
+     * where the item with smaller id is better in case of ties
+     *
+     * @author Chao.Chen
+     * @version $Id: EvaluationMetrics.java, v 0.1 2017年6月27日 下午4:02:31 Chao.Chen Exp $
+     */
+    protected static final class TopKHeap {
+        /** the item ids*/
+        final int[]   ids;
+        /** the scores of the items*/
+        final float[] scores;
+        /** the number of kept items*/
+        int           size;
+
+        TopKHeap(int K) {
+            ids = new int[K];
+            scores = new float[K];
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        /**
+         * keep the item if it is better than the worst kept one
+         * 
+         * @param id    the item's id
+         * @param score the item's score
+         */
+        void offer(int id, float score) {
+            if (size < ids.length) {
+                // sift up
+                int k = size++;
+                while (k > 0) {
+                    int parent = (k - 1) >>> 1;
+                    if (worse(ids[parent], scores[parent], id, score)) {
+                        break;
+                    }
+                    ids[k] = ids[parent];
+                    scores[k] = scores[parent];
+                    k = parent;
+                }
+                ids[k] = id;
+                scores[k] = score;
+            } else if (worse(ids[0], scores[0], id, score)) {
+                siftDown(id, score, size);
+            }
+        }
+
+        /**
+         * sort the kept items in descending order of scores
+         */
+        void sort() {
+            for (int k = size - 1; k > 0; k--) {
+                int id = ids[k];
+                float score = scores[k];
+                ids[k] = ids[0];
+                scores[k] = scores[0];
+                siftDown(id, score, k);
+            }
+        }
+
+        /**
+         * put the item at the root, and sift it down within the first n items
+         */
+        private void siftDown(int id, float score, int n) {
+            int k = 0;
+            int child;
+            while ((child = 2 * k + 1) < n) {
+                if (child + 1 < n
+                    && worse(ids[child + 1], scores[child + 1], ids[child], scores[child])) {
+                    child++;
+                }
+                if (worse(id, score, ids[child], scores[child])) {
+                    break;
+                }
+                ids[k] = ids[child];
+                scores[k] = scores[child];
+                k = child;
+            }
+            ids[k] = id;
+            scores[k] = score;
+        }
+
+        /**
+         * whether the first item is worse than the second one
+         */
+        private static boolean worse(int id1, float score1, int id2, float score2) {
+            return score1 < score2 || (score1 == score2 && id1 > id2);
+        }
+    }
 }
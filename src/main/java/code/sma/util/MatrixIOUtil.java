@@ -5,8 +5,14 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
 
 import code.sma.core.AbstractMatrix;
 import code.sma.core.impl.CSRMatrix;
@@ -20,6 +26,27 @@ import code.sma.core.impl.Tuples;
  * @version $Id: MatrixFileUtil.java, v 0.1 2014-10-16 下午2:32:09 chench Exp $
  */
 public final class MatrixIOUtil {
+    /** suffix of the binary file of CSRMatrix */
+    public static final String CSR_BINARY_SUFFIX    = ".csr.bin";
+    /** suffix of the binary file of Tuples */
+    public static final String TUPLES_BINARY_SUFFIX = ".tpl.bin";
+
+    /** magic number of the binary file, i.e., "SMAB" */
+    private static final int   BINARY_MAGIC         = 0x534D4142;
+    /** version of the binary format */
+    private static final int   BINARY_VERSION       = 1;
+    /** type of CSRMatrix in the binary header */
+    private static final int   TYPE_CSR             = 1;
+    /** type of Tuples in the binary header */
+    private static final int   TYPE_TUPLES          = 2;
+    /** header: magic, version, type, num_row, num_val, num_global, num_ufactor, num_ifactor */
+    private static final int   HEADER_SIZE          = 8 * 4;
+    /** the maximum number of bytes mapped at once */
+    private static final long  MAP_WINDOW           = 1L << 30;
+
+    /** the logger instance*/
+    private static final Logger logger               = Logger
+        .getLogger(LoggerDefineConstant.SERVICE_NORMAL);
 
     /**
      * forbid construction method
@@ -28,21 +55,288 @@ public final class MatrixIOUtil {
         //forbid construction method
     }
 
+    //=============================================
+    //      Write methods
+    //=============================================
+    /**
+     * write CSRMatrix into the binary file, 
+     * where columns are stored as raw little-endian int/float arrays after the header
+     * 
+     * @param csm       the matrix
+     * @param binPath   the binary file
+     */
+    public static void writeBinary(CSRMatrix csm, String binPath) {
+        int num_row = csm.getNum_row();
+        int num_val = csm.getNum_val();
+
+        File tmpFile = new File(binPath + ".tmp");
+        boolean isDone = false;
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(tmpFile, "rw");
+            raf.setLength(0);
+            FileChannel channel = raf.getChannel();
+
+            writeHeader(channel, TYPE_CSR, csm);
+            long position = HEADER_SIZE;
+            position = writeFloats(channel, position, csm.getRow_label(), num_row);
+            position = writeInts(channel, position, csm.getRow_ptr(), 3 * num_row + 1);
+            position = writeInts(channel, position, csm.getFeat_index(), num_val);
+            position = writeFloats(channel, position, csm.getFeat_value(), num_val);
+            isDone = true;
+        } catch (IOException e) {
+            ExceptionUtil.caught(e, "File Path: " + binPath);
+        } finally {
+            IOUtils.closeQuietly(raf);
+        }
+        publish(tmpFile, binPath, isDone);
+    }
+
+    /**
+     * write Tuples into the binary file, 
+     * where columns are stored as raw little-endian int/float arrays after the header
+     * 
+     * @param tupl      the matrix
+     * @param binPath   the binary file
+     */
+    public static void writeBinary(Tuples tupl, String binPath) {
+        int num_row = tupl.getNum_row();
+        int num_val = tupl.getNum_val();
+
+        File tmpFile = new File(binPath + ".tmp");
+        boolean isDone = false;
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(tmpFile, "rw");
+            raf.setLength(0);
+            FileChannel channel = raf.getChannel();
+
+            writeHeader(channel, TYPE_TUPLES, tupl);
+            long position = HEADER_SIZE;
+            position = writeInts(channel, position, tupl.getRow_ptr(), num_row + 1);
+            position = writeInts(channel, position, tupl.getRowIndx(), num_val);
+            position = writeInts(channel, position, tupl.getColIndx(), num_val);
+            position = writeFloats(channel, position, tupl.getVals(), num_val);
+            isDone = true;
+        } catch (IOException e) {
+            ExceptionUtil.caught(e, "File Path: " + binPath);
+        } finally {
+            IOUtils.closeQuietly(raf);
+        }
+        publish(tmpFile, binPath, isDone);
+    }
+
+    /**
+     * move the completely written file to its destination, so that readers never see a partial file
+     * 
+     * @param tmpFile   the written file
+     * @param binPath   the destination
+     * @param isDone    whether the file is completely written
+     */
+    private static void publish(File tmpFile, String binPath, boolean isDone) {
+        File binFile = new File(binPath);
+        if (!isDone || (binFile.exists() && !binFile.delete()) || !tmpFile.renameTo(binFile)) {
+            tmpFile.delete();
+        }
+    }
+
+    private static void writeHeader(FileChannel channel, int type,
+                                    AbstractMatrix matrix) throws IOException {
+        int[] header = new int[] { BINARY_MAGIC, BINARY_VERSION, type, matrix.getNum_row(),
+                                   matrix.getNum_val(), matrix.num_global, matrix.num_ufactor,
+                                   matrix.num_ifactor };
+        writeInts(channel, 0, header, header.length);
+    }
+
+    private static long writeInts(FileChannel channel, long position, int[] src,
+                                  int num) throws IOException {
+        int cursor = 0;
+        while (cursor < num) {
+            int len = (int) Math.min(num - cursor, MAP_WINDOW / 4);
+            MappedByteBuffer buffer = channel.map(MapMode.READ_WRITE, position, len * 4L);
+            buffer.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().put(src, cursor, len);
+
+            cursor += len;
+            position += len * 4L;
+        }
+        return position;
+    }
+
+    private static long writeFloats(FileChannel channel, long position, float[] src,
+                                    int num) throws IOException {
+        int cursor = 0;
+        while (cursor < num) {
+            int len = (int) Math.min(num - cursor, MAP_WINDOW / 4);
+            MappedByteBuffer buffer = channel.map(MapMode.READ_WRITE, position, len * 4L);
+            buffer.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().put(src, cursor, len);
+
+            cursor += len;
+            position += len * 4L;
+        }
+        return position;
+    }
+
     //=============================================
     //      Read methods
     //=============================================
+    /**
+     * load CSRMatrix, which must fit in the given numbers
+     * 
+     * @param filePath  the text file
+     * @param num_row   maximum number of rows
+     * @param num_val   maximum number of features
+     * @return          the matrix
+     * @see #loadCSRMatrix(String, int, int, boolean)
+     */
     public static CSRMatrix loadCSRMatrix(String filePath, int num_row, int num_val) {
-        CSRMatrix csm = new CSRMatrix(num_row, num_val);
-        loadData(filePath, csm);
+        return loadCSRMatrix(filePath, num_row, num_val, false);
+    }
+
+    /**
+     * load CSRMatrix, which must fit in the given numbers
+     * 
+     * @param filePath      the text file
+     * @param num_row       maximum number of rows
+     * @param num_val       maximum number of features
+     * @param writeCache    whether to write the binary file next to the text file after parsing
+     * @return              the matrix
+     * @see #loadCSRMatrix(String, boolean)
+     */
+    public static CSRMatrix loadCSRMatrix(String filePath, int num_row, int num_val,
+                                          boolean writeCache) {
+        CSRMatrix csm = loadCSRMatrix(filePath, writeCache);
+        checkSize(filePath, csm, num_row, num_val);
+        return csm;
+    }
+
+    /**
+     * load CSRMatrix without writing the binary file
+     * 
+     * @param filePath  the text file
+     * @return          the matrix
+     * @see #loadCSRMatrix(String, boolean)
+     */
+    public static CSRMatrix loadCSRMatrix(String filePath) {
+        return loadCSRMatrix(filePath, false);
+    }
+
+    /**
+     * load CSRMatrix from the binary file next to the text file if it is up to date, 
+     * otherwise parse the text file in parallel
+     * 
+     * @param filePath      the text file
+     * @param writeCache    whether to write the binary file after parsing, for later use
+     * @return              the matrix
+     */
+    public static CSRMatrix loadCSRMatrix(String filePath, boolean writeCache) {
+        String binPath = filePath + CSR_BINARY_SUFFIX;
+        CSRMatrix bin = isUpToDate(binPath, filePath) ? loadBinaryCSRMatrix(binPath) : null;
+        if (bin != null) {
+            return bin;
+        }
+
+        CSRMatrix csm = null;
+        try {
+            csm = TextChunkParser.parseCSRMatrix(filePath);
+        } catch (IOException e) {
+            ExceptionUtil.caught(e, "File Path: " + filePath);
+            return null;
+        }
+
+        if (writeCache && isWritable(binPath)) {
+            writeBinary(csm, binPath);
+        }
         return csm;
     }
 
+    /**
+     * load Tuples, which must fit in the given number
+     * 
+     * @param filePath  the text file
+     * @param num_val   maximum number of entries
+     * @return          the matrix
+     * @see #loadTuples(String, int, boolean)
+     */
     public static Tuples loadTuples(String filePath, int num_val) {
-        Tuples tupl = new Tuples(num_val);
-        loadData(filePath, tupl);
+        return loadTuples(filePath, num_val, false);
+    }
+
+    /**
+     * load Tuples, which must fit in the given number
+     * 
+     * @param filePath      the text file
+     * @param num_val       maximum number of entries
+     * @param writeCache    whether to write the binary file next to the text file after parsing
+     * @return              the matrix
+     * @see #loadTuples(String, boolean)
+     */
+    public static Tuples loadTuples(String filePath, int num_val, boolean writeCache) {
+        Tuples tupl = loadTuples(filePath, writeCache);
+        checkSize(filePath, tupl, Integer.MAX_VALUE, num_val);
         return tupl;
     }
 
+    /**
+     * load Tuples without writing the binary file
+     * 
+     * @param filePath  the text file
+     * @return          the matrix
+     * @see #loadTuples(String, boolean)
+     */
+    public static Tuples loadTuples(String filePath) {
+        return loadTuples(filePath, false);
+    }
+
+    /**
+     * load Tuples from the binary file next to the text file if it is up to date, 
+     * otherwise parse the text file in parallel
+     * 
+     * @param filePath      the text file
+     * @param writeCache    whether to write the binary file after parsing, for later use
+     * @return              the matrix
+     */
+    public static Tuples loadTuples(String filePath, boolean writeCache) {
+        String binPath = filePath + TUPLES_BINARY_SUFFIX;
+        Tuples bin = isUpToDate(binPath, filePath) ? loadBinaryTuples(binPath) : null;
+        if (bin != null) {
+            return bin;
+        }
+
+        Tuples tupl = null;
+        try {
+            tupl = TextChunkParser.parseTuples(filePath);
+        } catch (IOException e) {
+            ExceptionUtil.caught(e, "File Path: " + filePath);
+            return null;
+        }
+
+        if (writeCache && isWritable(binPath)) {
+            writeBinary(tupl, binPath);
+        }
+        return tupl;
+    }
+
+    /**
+     * check the loaded matrix against the numbers given by the dataset configure
+     * 
+     * @param filePath  the text file
+     * @param matrix    the loaded matrix, or null if failed
+     * @param num_row   maximum number of rows
+     * @param num_val   maximum number of values
+     */
+    private static void checkSize(String filePath, AbstractMatrix matrix, int num_row,
+                                  int num_val) {
+        if (matrix == null) {
+            return;
+        }
+
+        if (matrix.getNum_row() > num_row || matrix.getNum_val() > num_val) {
+            throw new RuntimeException(String.format(
+                "%s has %d rows and %d values, more than the configured %d rows and %d values",
+                filePath, matrix.getNum_row(), matrix.getNum_val(), num_row, num_val));
+        }
+    }
+
     public static SparseMatrix loadSparseMatrix(String filePath, int num_row, int num_colum) {
         SparseMatrix sm = new SparseMatrix(num_row, num_colum);
         loadData(filePath, sm);
@@ -68,4 +362,176 @@ public final class MatrixIOUtil {
         }
     }
 
+    /**
+     * load CSRMatrix from the memory-mapped binary file
+     * 
+     * @param binPath   the binary file
+     * @return          the matrix, or null if failed
+     */
+    public static CSRMatrix loadBinaryCSRMatrix(String binPath) {
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(binPath, "r");
+            FileChannel channel = raf.getChannel();
+
+            int[] header = readHeader(channel, TYPE_CSR);
+            int num_row = header[3];
+            int num_val = header[4];
+
+            float[] row_label = new float[num_row];
+            int[] row_ptr = new int[3 * num_row + 1];
+            int[] feat_index = new int[num_val];
+            float[] feat_value = new float[num_val];
+
+            long position = HEADER_SIZE;
+            position = readFloats(channel, position, row_label);
+            position = readInts(channel, position, row_ptr);
+            position = readInts(channel, position, feat_index);
+            position = readFloats(channel, position, feat_value);
+
+            CSRMatrix csm = new CSRMatrix(row_label, row_ptr, feat_index, feat_value, num_row,
+                num_val);
+            csm.num_global = header[5];
+            csm.num_ufactor = header[6];
+            csm.num_ifactor = header[7];
+            return csm;
+        } catch (IOException e) {
+            ExceptionUtil.caught(e, "File Path: " + binPath);
+        } finally {
+            IOUtils.closeQuietly(raf);
+        }
+        return null;
+    }
+
+    /**
+     * load Tuples from the memory-mapped binary file
+     * 
+     * @param binPath   the binary file
+     * @return          the matrix, or null if failed
+     */
+    public static Tuples loadBinaryTuples(String binPath) {
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(binPath, "r");
+            FileChannel channel = raf.getChannel();
+
+            int[] header = readHeader(channel, TYPE_TUPLES);
+            int num_row = header[3];
+            int num_val = header[4];
+
+            int[] row_ptr = new int[num_row + 1];
+            int[] rowIndx = new int[num_val];
+            int[] colIndx = new int[num_val];
+            float[] vals = new float[num_val];
+
+            long position = HEADER_SIZE;
+            position = readInts(channel, position, row_ptr);
+            position = readInts(channel, position, rowIndx);
+            position = readInts(channel, position, colIndx);
+            position = readFloats(channel, position, vals);
+
+            Tuples tupl = new Tuples(row_ptr, rowIndx, colIndx, vals, num_row, num_val);
+            tupl.num_global = header[5];
+            tupl.num_ufactor = header[6];
+            tupl.num_ifactor = header[7];
+            return tupl;
+        } catch (IOException e) {
+            ExceptionUtil.caught(e, "File Path: " + binPath);
+        } finally {
+            IOUtils.closeQuietly(raf);
+        }
+        return null;
+    }
+
+    /**
+     * convert the text file into the binary file of CSRMatrix
+     * 
+     * @param filePath  the text file
+     */
+    public static void convertCSRMatrix(String filePath) {
+        try {
+            writeBinary(TextChunkParser.parseCSRMatrix(filePath), filePath + CSR_BINARY_SUFFIX);
+        } catch (IOException e) {
+            ExceptionUtil.caught(e, "File Path: " + filePath);
+        }
+    }
+
+    /**
+     * convert the text file into the binary file of Tuples
+     * 
+     * @param filePath  the text file
+     */
+    public static void convertTuples(String filePath) {
+        try {
+            writeBinary(TextChunkParser.parseTuples(filePath), filePath + TUPLES_BINARY_SUFFIX);
+        } catch (IOException e) {
+            ExceptionUtil.caught(e, "File Path: " + filePath);
+        }
+    }
+
+    /**
+     * whether the binary file exists and is newer than the text file
+     * 
+     * @param binPath   the binary file
+     * @param filePath  the text file
+     * @return          true if the binary file can be used
+     */
+    private static boolean isUpToDate(String binPath, String filePath) {
+        File binFile = new File(binPath);
+        return binFile.isFile() && binFile.lastModified() >= new File(filePath).lastModified();
+    }
+
+    /**
+     * whether the binary file can be written, e.g., the dataset is not on a read-only directory
+     * 
+     * @param binPath   the binary file
+     * @return          true if the directory of the binary file is writable
+     */
+    private static boolean isWritable(String binPath) {
+        File dir = new File(binPath).getAbsoluteFile().getParentFile();
+        if (dir == null || !dir.canWrite()) {
+            LoggerUtil.info(logger, "...skip caching, read-only directory: " + dir);
+            return false;
+        }
+        return true;
+    }
+
+    private static int[] readHeader(FileChannel channel, int type) throws IOException {
+        int[] header = new int[HEADER_SIZE / 4];
+        readInts(channel, 0, header);
+
+        if (header[0] != BINARY_MAGIC || header[1] != BINARY_VERSION || header[2] != type) {
+            throw new IOException(
+                String.format("Unknown binary header: %x-%d-%d", header[0], header[1], header[2]));
+        }
+        return header;
+    }
+
+    private static long readInts(FileChannel channel, long position, int[] dst) throws IOException {
+        int cursor = 0;
+        while (cursor < dst.length) {
+            int len = (int) Math.min(dst.length - cursor, MAP_WINDOW / 4);
+            MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, position, len * 4L);
+            buffer.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(dst, cursor, len);
+
+            cursor += len;
+            position += len * 4L;
+        }
+        return position;
+    }
+
+    private static long readFloats(FileChannel channel, long position,
+                                   float[] dst) throws IOException {
+        int cursor = 0;
+        while (cursor < dst.length) {
+            int len = (int) Math.min(dst.length - cursor, MAP_WINDOW / 4);
+            MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, position, len * 4L);
+            buffer.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(dst, cursor, len);
+
+            cursor += len;
+            position += len * 4L;
+        }
+        return position;
+    }
+
 }
@@ -0,0 +1,88 @@
+package code.sma.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import code.sma.main.Configures;
+
+/**
+ * The random service used by all model code, where every thread draws from its own stream, 
+ * so that threads never contend on one generator. 
+ * Streams bound by {@link #bind(SplitRandom)} are derived from the configured seed 
+ * (<tt>RANDOM_SEED_VALUE</tt>) and the id of the learner, which makes runs repeatable, 
+ * whereas threads without any bound stream draw from a stream seeded at random.
+ * 
+ * @author Chao.Chen
+ * @version $Id: RandomUtil.java, v 0.1 2017年6月29日 上午10:02:47 Chao.Chen Exp $
+ */
+public final class RandomUtil {
+    /** the source of seeds when no seed is configured */
+    private static final AtomicLong               SEEDER  = new AtomicLong(System.nanoTime());
+
+    /** the stream of every thread */
+    private static final ThreadLocal<SplitRandom> STREAMS = new ThreadLocal<SplitRandom>() {
+        @Override
+        protected SplitRandom initialValue() {
+            return new SplitRandom(randomSeed());
+        }
+    };
+
+    /**
+     * forbid construction
+     */
+    private RandomUtil() {
+        //forbid construction
+    }
+
+    /**
+     * the seed in the configures, or a random seed if absent
+     * 
+     * @param conf  the configures
+     * @return      the seed
+     */
+    public static long seed(Configures conf) {
+        return (conf != null && conf.containsKey("RANDOM_SEED_VALUE"))
+            ? (long) conf.getDouble("RANDOM_SEED_VALUE") : randomSeed();
+    }
+
+    /**
+     * the stream determined by the seed and the id of the learner
+     * 
+     * @param seed  the seed
+     * @param id    the id of the learner
+     * @return      the stream
+     */
+    public static SplitRandom stream(long seed, long id) {
+        return new SplitRandom(seed).fork(id);
+    }
+
+    /**
+     * bind the stream to the current thread
+     * 
+     * @param stream    the stream
+     */
+    public static void bind(SplitRandom stream) {
+        STREAMS.set(stream);
+    }
+
+    /**
+     * the stream of the current thread, which should not be shared with other threads
+     * 
+     * @return  the stream
+     */
+    public static SplitRandom current() {
+        return STREAMS.get();
+    }
+
+    /**
+     * the next double value in [0, 1) from the stream of the current thread
+     * 
+     * @return  the value
+     */
+    public static double nextDouble() {
+        return STREAMS.get().nextDouble();
+    }
+
+    private static long randomSeed() {
+        return new SplitRandom(SEEDER.getAndAdd(0x9e3779b97f4a7c15L)).nextLong();
+    }
+}
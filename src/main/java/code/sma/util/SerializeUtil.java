@@ -7,9 +7,24 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
 
 import org.apache.commons.io.IOUtils;
 
+import code.sma.core.impl.DenseMatrix;
+import code.sma.core.impl.OffHeapDenseMatrix;
+import code.sma.main.Configures;
+import code.sma.main.RecommenderFactory;
+import code.sma.recmmd.Recommender;
+import code.sma.recmmd.RuntimeEnv;
+import code.sma.recmmd.standalone.MFRecommender;
+
 /**
  * The SerializeUtil is used to simplify the way to Read/Write the Object from/to file
  * 
@@ -17,6 +32,15 @@ import org.apache.commons.io.IOUtils;
  * @version $Id: SerializeUtil.java, v 0.1 2015-4-27 上午10:44:52 Exp $
  */
 public final class SerializeUtil {
+    /** magic number of the model file, i.e., "SMAM" */
+    private static final int  MODEL_MAGIC   = 0x534D414D;
+    /** version of the model format */
+    private static final int  MODEL_VERSION = 1;
+    /** header: magic, version, userCount, itemCount, featureCount, maxIter, round, num_trainErr,
+     *  num_testErr, num_algName, maxValue, minValue, learningRate, regularizer */
+    private static final int  HEADER_SIZE   = 10 * 4 + 4 * 8;
+    /** the maximum number of bytes mapped at once */
+    private static final long MAP_WINDOW    = 1L << 30;
 
     /**
      * 禁用构造函数
@@ -73,4 +97,273 @@ public final class SerializeUtil {
 
         return null;
     }
+
+    /**
+     * Write the model into the binary file, where the little-endian header is followed by
+     * the user and item factor blocks, each of which consists of the initialized indicators
+     * and the raw row-major factors
+     * 
+     * @param recmmd        the model to write
+     * @param outputFile    the binary file
+     */
+    public static void writeModel(MFRecommender recmmd, String outputFile) {
+        RuntimeEnv env = recmmd.runtimes;
+        String algName = (env.conf != null && env.conf.containsKey("ALG_NAME"))
+            ? env.conf.getProperty("ALG_NAME").trim() : recmmd.getClass().getSimpleName();
+        byte[] alg = algName.getBytes(StandardCharsets.UTF_8);
+
+        RandomAccessFile raf = null;
+        try {
+            File file = new File(outputFile);
+            if (file.exists()) {
+                file.delete();
+            }
+            file.getParentFile().mkdirs();
+
+            raf = new RandomAccessFile(file, "rw");
+            FileChannel channel = raf.getChannel();
+
+            // header
+            int num_trainErr = env.trainErr.size();
+            int num_testErr = env.testErr.size();
+            ByteBuffer header = ByteBuffer
+                .allocate(HEADER_SIZE + alg.length + 8 * (num_trainErr + num_testErr))
+                .order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MODEL_MAGIC).putInt(MODEL_VERSION).putInt(env.userCount)
+                .putInt(env.itemCount).putInt(env.featureCount).putInt(env.maxIter)
+                .putInt(env.round).putInt(num_trainErr).putInt(num_testErr).putInt(alg.length);
+            header.putDouble(env.maxValue).putDouble(env.minValue).putDouble(env.learningRate)
+                .putDouble(env.regularizer);
+            header.put(alg);
+            for (int n = 0; n < num_trainErr; n++) {
+                header.putDouble(env.trainErr.getDouble(n));
+            }
+            for (int n = 0; n < num_testErr; n++) {
+                header.putDouble(env.testErr.getDouble(n));
+            }
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+
+            // factors
+            long position = align(header.limit(), 8);
+            position = writeFactors(channel, position, recmmd.userDenseFeatures);
+            position = writeFactors(channel, position, recmmd.itemDenseFeatures);
+        } catch (IOException e) {
+            ExceptionUtil.caught(e, outputFile + " IO crushed.");
+        } finally {
+            IOUtils.closeQuietly(raf);
+        }
+    }
+
+    /**
+     * Read the model from the binary file, where the factor blocks are memory-mapped
+     * and copied into the factor matrices in bulk
+     * 
+     * @param intputFile    the binary file
+     * @return              the model, or null if failed
+     */
+    public static MFRecommender readModel(String intputFile) {
+        return readModel(intputFile, null);
+    }
+
+    /**
+     * Read the model from the binary file, where the factor blocks are either copied into 
+     * the factor matrices on the heap, or mapped as the factor matrices outside the heap 
+     * for fast warm starts
+     * 
+     * @param intputFile    the binary file
+     * @param mode          null to copy the factors, otherwise the mode to map the factors, 
+     *                      i.e., READ_ONLY, READ_WRITE where updates go to the file, 
+     *                      or PRIVATE where updates are copy-on-write
+     * @return              the model, or null if failed
+     */
+    public static MFRecommender readModel(String intputFile, MapMode mode) {
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(intputFile,
+                (mode == null || mode == MapMode.READ_ONLY) ? "r" : "rw");
+            FileChannel channel = raf.getChannel();
+
+            // header
+            ByteBuffer header = channel.map(MapMode.READ_ONLY, 0, HEADER_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+            int magic = header.getInt();
+            int version = header.getInt();
+            if (magic != MODEL_MAGIC || version != MODEL_VERSION) {
+                throw new IOException(String.format("Unknown model header: %x-%d", magic, version));
+            }
+            int userCount = header.getInt();
+            int itemCount = header.getInt();
+            int featureCount = header.getInt();
+            int maxIter = header.getInt();
+            int round = header.getInt();
+            int num_trainErr = header.getInt();
+            int num_testErr = header.getInt();
+            int num_algName = header.getInt();
+
+            Configures conf = new Configures();
+            conf.setDouble("USER_COUNT_VALUE", (double) userCount);
+            conf.setDouble("ITEM_COUNT_VALUE", (double) itemCount);
+            conf.setDouble("FEATURE_COUNT_VALUE", (double) featureCount);
+            conf.setDouble("MAX_ITERATION_VALUE", (double) maxIter);
+            conf.setDouble("MAX_RATING_VALUE", header.getDouble());
+            conf.setDouble("MIN_RATING_VALUE", header.getDouble());
+            conf.setDouble("LEARNING_RATE_VALUE", header.getDouble());
+            conf.setDouble("REGULAIZED_VALUE", header.getDouble());
+            conf.setDouble("THREAD_NUMBER_VALUE", 1.0d);
+            conf.put("VERBOSE_BOOLEAN", false);
+
+            ByteBuffer extra = channel
+                .map(MapMode.READ_ONLY, HEADER_SIZE, num_algName + 8L * (num_trainErr + num_testErr))
+                .order(ByteOrder.LITTLE_ENDIAN);
+            byte[] alg = new byte[num_algName];
+            extra.get(alg);
+            String algName = new String(alg, StandardCharsets.UTF_8);
+            conf.put("ALG_NAME", algName);
+
+            Recommender rcmmd = RecommenderFactory.instance(algName, conf);
+            if (!(rcmmd instanceof MFRecommender)) {
+                throw new IOException("Unknown model algorithm: " + algName);
+            }
+            MFRecommender recmmd = (MFRecommender) rcmmd;
+            RuntimeEnv env = recmmd.runtimes;
+            env.round = round;
+            for (int n = 0; n < num_trainErr; n++) {
+                env.trainErr.add(extra.getDouble());
+            }
+            for (int n = 0; n < num_testErr; n++) {
+                env.testErr.add(extra.getDouble());
+            }
+
+            // factors
+            long position = align(HEADER_SIZE + extra.limit(), 8);
+            if (mode == null) {
+                recmmd.userDenseFeatures = new DenseMatrix(userCount, featureCount);
+                position = readFactors(channel, position, recmmd.userDenseFeatures);
+                recmmd.itemDenseFeatures = new DenseMatrix(itemCount, featureCount);
+                position = readFactors(channel, position, recmmd.itemDenseFeatures);
+            } else {
+                env.offHeap = true;
+                recmmd.userDenseFeatures = mapFactors(channel, position, userCount, featureCount,
+                    mode);
+                position = align(position + userCount, 4) + 4L * userCount * featureCount;
+                recmmd.itemDenseFeatures = mapFactors(channel, position, itemCount, featureCount,
+                    mode);
+            }
+            return recmmd;
+        } catch (IOException e) {
+            ExceptionUtil.caught(e, intputFile + " IO crushed.");
+        } finally {
+            IOUtils.closeQuietly(raf);
+        }
+
+        return null;
+    }
+
+    /**
+     * write the factor block, i.e., one byte per row indicating whether the row is initialized,
+     * followed by the raw row-major factors aligned to 4 bytes
+     * 
+     * @param channel   the file channel
+     * @param position  the position of the block
+     * @param matrix    the factors
+     * @return          the position after the block
+     * @throws IOException
+     */
+    private static long writeFactors(FileChannel channel, long position,
+                                     DenseMatrix matrix) throws IOException {
+        int M = matrix.shape()[0];
+        int N = matrix.shape()[1];
+
+        for (int i = 0; i < M;) {
+            int len = (int) Math.min(M - i, MAP_WINDOW);
+            MappedByteBuffer buffer = channel.map(MapMode.READ_WRITE, position, len);
+            for (int n = 0; n < len; n++) {
+                buffer.put(matrix.hasRow(i + n) ? (byte) 1 : (byte) 0);
+            }
+
+            i += len;
+            position += len;
+        }
+        position = align(position, 4);
+
+        int rowWindow = (int) Math.max(1, MAP_WINDOW / (4L * N));
+        for (int i = 0; i < M;) {
+            int len = Math.min(M - i, rowWindow);
+            MappedByteBuffer buffer = channel.map(MapMode.READ_WRITE, position, 4L * len * N);
+            matrix.getRows(i, len, buffer.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer());
+
+            i += len;
+            position += 4L * len * N;
+        }
+        return position;
+    }
+
+    /**
+     * read the factor block written by {@link #writeFactors(FileChannel, long, DenseMatrix)}
+     * 
+     * @param channel   the file channel
+     * @param position  the position of the block
+     * @param matrix    the factors to fill
+     * @return          the position after the block
+     * @throws IOException
+     */
+    private static long readFactors(FileChannel channel, long position,
+                                    DenseMatrix matrix) throws IOException {
+        int M = matrix.shape()[0];
+        int N = matrix.shape()[1];
+
+        boolean[] inited = new boolean[M];
+        for (int i = 0; i < M;) {
+            int len = (int) Math.min(M - i, MAP_WINDOW);
+            MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, position, len);
+            for (int n = 0; n < len; n++) {
+                inited[i + n] = buffer.get() != 0;
+            }
+
+            i += len;
+            position += len;
+        }
+        position = align(position, 4);
+
+        int rowWindow = (int) Math.max(1, MAP_WINDOW / (4L * N));
+        for (int i = 0; i < M;) {
+            int len = Math.min(M - i, rowWindow);
+            MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, position, 4L * len * N);
+            matrix.setRows(i, len, buffer.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer());
+
+            i += len;
+            position += 4L * len * N;
+        }
+
+        for (int i = 0; i < M; i++) {
+            if (!inited[i]) {
+                matrix.setRowRef(i, null);
+            }
+        }
+        return position;
+    }
+
+    /**
+     * map the factor block written by {@link #writeFactors(FileChannel, long, DenseMatrix)}, 
+     * where the mapping stays valid after the channel is closed
+     * 
+     * @param channel       the file channel
+     * @param position      the position of the block
+     * @param M             the number of rows
+     * @param N             the number of columns
+     * @param mode          the mode to map the block
+     * @return              the factors outside the heap
+     * @throws IOException
+     */
+    private static OffHeapDenseMatrix mapFactors(FileChannel channel, long position, int M, int N,
+                                                 MapMode mode) throws IOException {
+        return new OffHeapDenseMatrix(channel, position, align(position + M, 4), M, N, mode);
+    }
+
+    private static long align(long position, int alignment) {
+        return (position + alignment - 1) / alignment * alignment;
+    }
 }
@@ -0,0 +1,99 @@
+package code.sma.util;
+
+/**
+ * Splittable pseudo-random generator based on SplitMix64, 
+ * i.e., the same algorithm as java.util.SplittableRandom of Java 8. 
+ * One instance is not thread-safe, so every thread is supposed to own its stream, 
+ * and independent streams are derived by {@link #split()} or {@link #fork(long)}.
+ * 
+ * @author Chao.Chen
+ * @version $Id: SplitRandom.java, v 0.1 2017年6月29日 上午9:36:12 Chao.Chen Exp $
+ */
+public final class SplitRandom {
+    /** the default gamma, i.e., the odd integer closest to 2^64/phi */
+    private static final long   GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    /** the unit of the least significant bit of a double in [0, 1) */
+    private static final double DOUBLE_UNIT  = 0x1.0p-53;
+
+    /** the current seed */
+    private long                seed;
+    /** the step of the seed, which is always odd */
+    private final long          gamma;
+
+    /**
+     * @param seed  the initial seed
+     */
+    public SplitRandom(long seed) {
+        this(seed, GOLDEN_GAMMA);
+    }
+
+    private SplitRandom(long seed, long gamma) {
+        this.seed = seed;
+        this.gamma = gamma;
+    }
+
+    /**
+     * the next pseudo-random long value
+     * 
+     * @return  the value
+     */
+    public long nextLong() {
+        return mix64(seed += gamma);
+    }
+
+    /**
+     * the next pseudo-random double value in [0, 1)
+     * 
+     * @return  the value
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * DOUBLE_UNIT;
+    }
+
+    /**
+     * the next pseudo-random int value in [0, bound)
+     * 
+     * @param bound the upper bound, which should be positive
+     * @return      the value
+     */
+    public int nextInt(int bound) {
+        return (int) (((nextLong() >>> 33) * bound) >>> 31);
+    }
+
+    /**
+     * a new generator whose stream is independent of the rest of this one, 
+     * which advances this generator
+     * 
+     * @return  the new generator
+     */
+    public SplitRandom split() {
+        return new SplitRandom(nextLong(), mixGamma(seed += gamma));
+    }
+
+    /**
+     * a new generator whose stream is determined by the current seed and the given id, 
+     * which does not advance this generator
+     * 
+     * @param id    the id of the stream
+     * @return      the new generator
+     */
+    public SplitRandom fork(long id) {
+        long idSeed = seed + mix64(id + GOLDEN_GAMMA);
+        return new SplitRandom(mix64(idSeed), mixGamma(idSeed + gamma));
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        // avoid gammas with too few bit transitions
+        int n = Long.bitCount(z ^ (z >>> 1));
+        return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+    }
+}
@@ -0,0 +1,470 @@
+package code.sma.util;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.commons.io.IOUtils;
+
+import code.sma.core.impl.CSRMatrix;
+import code.sma.core.impl.Tuples;
+import it.unimi.dsi.fastutil.floats.FloatArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+/**
+ * Parallel parser of the libSVM-style text files, e.g., <br/>
+ * [LABEL] #GLOBAL_FEAT #USER_FEAT #ITEM_FEAT {gIndex:gVal} {uIndex:uVal} {iIndex:iVal} <br/>
+ * The file is split into byte ranges aligned on newlines, every range is parsed from bytes
+ * on a fork-join pool, and the results are merged with prefix-summed offsets.
+ * Thus, the number of rows and values need not be known up front.
+ *
+ * @author Chao.Chen
+ * @version $Id: TextChunkParser.java, v 0.1 2017年6月23日 上午10:21:36 Chao.Chen Exp $
+ */
+public final class TextChunkParser {
+    /** the minimum number of bytes in one chunk */
+    private static final long MIN_CHUNK_SIZE = 8L << 20;
+    /** the maximum number of bytes in one chunk, which must be mapped at once */
+    private static final long MAX_CHUNK_SIZE = 1L << 30;
+    /** powers of ten used in parsing floats */
+    private static final double[] POW10 = new double[19];
+
+    static {
+        POW10[0] = 1.0d;
+        for (int n = 1; n < POW10.length; n++) {
+            POW10[n] = POW10[n - 1] * 10.0d;
+        }
+    }
+
+    /**
+     * forbid construction method
+     */
+    private TextChunkParser() {
+        //forbid construction method
+    }
+
+    /**
+     * parse the text file into CSRMatrix
+     *
+     * @param filePath      the text file
+     * @return              the matrix
+     * @throws IOException
+     */
+    public static CSRMatrix parseCSRMatrix(String filePath) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            return parseCSRMatrix(pool, filePath);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * parse the text file into Tuples,
+     * where the first feature of each row is the user, and the others are the items
+     *
+     * @param filePath      the text file
+     * @return              the matrix
+     * @throws IOException
+     */
+    public static Tuples parseTuples(String filePath) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            return parseTuples(pool, filePath);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static CSRMatrix parseCSRMatrix(ForkJoinPool pool,
+                                            String filePath) throws IOException {
+        final Chunk[] chunks = parse(pool, filePath);
+        int num_chunk = chunks.length;
+
+        // prefix-summed offsets of every chunk
+        final int[] rowOffset = new int[num_chunk + 1];
+        final int[] valOffset = new int[num_chunk + 1];
+        for (int k = 0; k < num_chunk; k++) {
+            rowOffset[k + 1] = rowOffset[k] + chunks[k].num_row;
+            valOffset[k + 1] = valOffset[k] + chunks[k].indices.size();
+        }
+
+        int num_row = rowOffset[num_chunk];
+        int num_val = valOffset[num_chunk];
+        final float[] row_label = new float[num_row];
+        final int[] row_ptr = new int[3 * num_row + 1];
+        final int[] feat_index = new int[num_val];
+        final float[] feat_value = new float[num_val];
+
+        pool.invoke(new ChunkTask(new ChunkAction() {
+            @Override
+            public void apply(int k) {
+                Chunk chunk = chunks[k];
+                int rOff = rowOffset[k];
+                int vOff = valOffset[k];
+
+                int[] counts = chunk.counts.elements();
+                int ptr = vOff;
+                for (int r = 0; r < chunk.num_row; r++) {
+                    row_label[rOff + r] = chunk.labels.getFloat(r);
+                    for (int c = 0; c < 3; c++) {
+                        ptr += counts[3 * r + c];
+                        row_ptr[3 * (rOff + r) + c + 1] = ptr;
+                    }
+                }
+                System.arraycopy(chunk.indices.elements(), 0, feat_index, vOff,
+                    chunk.indices.size());
+                System.arraycopy(chunk.values.elements(), 0, feat_value, vOff,
+                    chunk.values.size());
+            }
+        }, 0, num_chunk));
+
+        CSRMatrix csm = new CSRMatrix(row_label, row_ptr, feat_index, feat_value, num_row,
+            num_val);
+        for (Chunk chunk : chunks) {
+            csm.num_global += chunk.num_global;
+            csm.num_ufactor += chunk.num_ufactor;
+            csm.num_ifactor += chunk.num_ifactor;
+        }
+        return csm;
+    }
+
+    private static Tuples parseTuples(ForkJoinPool pool, String filePath) throws IOException {
+        final Chunk[] chunks = parse(pool, filePath);
+        int num_chunk = chunks.length;
+
+        // prefix-summed offsets of every chunk
+        final int[] rowOffset = new int[num_chunk + 1];
+        final int[] valOffset = new int[num_chunk + 1];
+        for (int k = 0; k < num_chunk; k++) {
+            rowOffset[k + 1] = rowOffset[k] + chunks[k].num_row;
+            valOffset[k + 1] = valOffset[k] + chunks[k].indices.size() - chunks[k].num_row;
+        }
+
+        int num_row = rowOffset[num_chunk];
+        int num_val = valOffset[num_chunk];
+        final int[] row_ptr = new int[num_row + 1];
+        final int[] rowIndx = new int[num_val];
+        final int[] colIndx = new int[num_val];
+        final float[] vals = new float[num_val];
+
+        pool.invoke(new ChunkTask(new ChunkAction() {
+            @Override
+            public void apply(int k) {
+                Chunk chunk = chunks[k];
+                int rOff = rowOffset[k];
+
+                int[] npairs = chunk.npairs.elements();
+                int[] indices = chunk.indices.elements();
+                float[] values = chunk.values.elements();
+
+                int src = 0;
+                int dst = valOffset[k];
+                for (int r = 0; r < chunk.num_row; r++) {
+                    assert npairs[r] > 0 : "The user feature in each row should not be missing";
+
+                    int uId = indices[src];
+                    for (int p = 1; p < npairs[r]; p++) {
+                        rowIndx[dst] = uId;
+                        colIndx[dst] = indices[src + p];
+                        vals[dst] = values[src + p];
+                        dst++;
+                    }
+                    src += npairs[r];
+                    row_ptr[rOff + r + 1] = dst;
+                }
+            }
+        }, 0, num_chunk));
+
+        Tuples tupl = new Tuples(row_ptr, rowIndx, colIndx, vals, num_row, num_val);
+        for (Chunk chunk : chunks) {
+            tupl.num_global += chunk.num_global;
+            tupl.num_ufactor += chunk.num_ufactor;
+            tupl.num_ifactor += chunk.num_ifactor;
+        }
+        return tupl;
+    }
+
+    /**
+     * split the file into chunks aligned on newlines, and parse them in parallel
+     *
+     * @param pool          the fork-join pool
+     * @param filePath      the text file
+     * @return              the parsed chunks in order
+     * @throws IOException
+     */
+    private static Chunk[] parse(ForkJoinPool pool, final String filePath) throws IOException {
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(filePath, "r");
+            final FileChannel channel = raf.getChannel();
+            long size = channel.size();
+
+            int num_chunk = (int) Math.max((size + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE,
+                Math.min(4L * pool.getParallelism(), size / MIN_CHUNK_SIZE));
+            num_chunk = Math.max(num_chunk, 1);
+
+            // align the boundaries on newlines
+            final long[] bounds = new long[num_chunk + 1];
+            bounds[num_chunk] = size;
+            for (int k = 1; k < num_chunk; k++) {
+                bounds[k] = nextLine(channel, Math.max(bounds[k - 1], size / num_chunk * k), size);
+            }
+
+            final Chunk[] chunks = new Chunk[num_chunk];
+            pool.invoke(new ChunkTask(new ChunkAction() {
+                @Override
+                public void apply(int k) {
+                    try {
+                        MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, bounds[k],
+                            bounds[k + 1] - bounds[k]);
+                        chunks[k] = new Chunk();
+                        chunks[k].parse(buffer);
+                    } catch (IOException e) {
+                        throw new RuntimeException("Failed to map the chunk of " + filePath, e);
+                    }
+                }
+            }, 0, num_chunk));
+            return chunks;
+        } finally {
+            IOUtils.closeQuietly(raf);
+        }
+    }
+
+    /**
+     * find the beginning of the line following the given position
+     *
+     * @param channel   the file
+     * @param position  the position to start with
+     * @param size      the size of the file
+     * @return          the position after the next newline, or the size of the file
+     * @throws IOException
+     */
+    private static long nextLine(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        while (position < size) {
+            buffer.clear();
+            int len = channel.read(buffer, position);
+            for (int n = 0; n < len; n++) {
+                if (buffer.get(n) == '\n') {
+                    return position + n + 1;
+                }
+            }
+            position += Math.max(len, 0);
+        }
+        return size;
+    }
+
+    /**
+     * the action applied to one chunk
+     */
+    private interface ChunkAction {
+        void apply(int k);
+    }
+
+    /**
+     * the task applying the action to every chunk in the given range,
+     * where the range is recursively split in halves
+     */
+    private static class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ChunkAction action;
+        private final int         lo;
+        private final int         hi;
+
+        ChunkTask(ChunkAction action, int lo, int hi) {
+            this.action = action;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        /**
+         * @see java.util.concurrent.RecursiveAction#compute()
+         */
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new ChunkTask(action, lo, mid), new ChunkTask(action, mid, hi));
+            } else if (hi > lo) {
+                action.apply(lo);
+            }
+        }
+    }
+
+    /**
+     * the rows parsed from one chunk
+     */
+    private static class Chunk {
+        int            num_row;
+        int            num_global;
+        int            num_ufactor;
+        int            num_ifactor;
+
+        /** label of each row */
+        FloatArrayList labels  = new FloatArrayList();
+        /** number of global, user and item features of each row */
+        IntArrayList   counts  = new IntArrayList();
+        /** number of index:value pairs of each row */
+        IntArrayList   npairs  = new IntArrayList();
+        /** index of each pair */
+        IntArrayList   indices = new IntArrayList();
+        /** value of each pair */
+        FloatArrayList values  = new FloatArrayList();
+
+        /** the position being parsed */
+        private int    pos;
+        /** the end of the buffer */
+        private int    end;
+
+        void parse(ByteBuffer buffer) {
+            pos = 0;
+            end = buffer.limit();
+
+            while (skipBlank(buffer)) {
+                labels.add(parseFloat(buffer));
+
+                int num_g = parseInt(buffer);
+                int num_u = parseInt(buffer);
+                int num_i = parseInt(buffer);
+                counts.add(num_g);
+                counts.add(num_u);
+                counts.add(num_i);
+                num_global += num_g;
+                num_ufactor += num_u;
+                num_ifactor += num_i;
+
+                int num_pair = 0;
+                while (skipSpace(buffer)) {
+                    indices.add(parseInt(buffer));
+                    if (pos >= end || buffer.get(pos) != ':') {
+                        throw new RuntimeException("Missing ':' in the row " + num_row);
+                    }
+                    pos++;
+                    values.add(parseFloat(buffer));
+                    num_pair++;
+                }
+                npairs.add(num_pair);
+                num_row++;
+            }
+        }
+
+        /**
+         * skip blank lines and spaces
+         *
+         * @return true if there is another row
+         */
+        private boolean skipBlank(ByteBuffer buffer) {
+            while (pos < end) {
+                byte b = buffer.get(pos);
+                if (b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+                    return true;
+                }
+                pos++;
+            }
+            return false;
+        }
+
+        /**
+         * skip spaces within one line
+         *
+         * @return true if there is another token in this line
+         */
+        private boolean skipSpace(ByteBuffer buffer) {
+            while (pos < end) {
+                byte b = buffer.get(pos);
+                if (b == '\n') {
+                    return false;
+                } else if (b != ' ' && b != '\t' && b != '\r') {
+                    return true;
+                }
+                pos++;
+            }
+            return false;
+        }
+
+        private int parseInt(ByteBuffer buffer) {
+            skipSpace(buffer);
+
+            boolean negative = false;
+            if (pos < end && buffer.get(pos) == '-') {
+                negative = true;
+                pos++;
+            }
+
+            int start = pos;
+            int value = 0;
+            while (pos < end) {
+                int d = buffer.get(pos) - '0';
+                if (d < 0 || d > 9) {
+                    break;
+                }
+                value = value * 10 + d;
+                pos++;
+            }
+
+            if (pos == start) {
+                throw new RuntimeException("Missing integer in the row " + num_row);
+            }
+            return negative ? -value : value;
+        }
+
+        private float parseFloat(ByteBuffer buffer) {
+            skipSpace(buffer);
+
+            int start = pos;
+            boolean negative = false;
+            if (pos < end && (buffer.get(pos) == '-' || buffer.get(pos) == '+')) {
+                negative = buffer.get(pos) == '-';
+                pos++;
+            }
+
+            long mantissa = 0L;
+            int num_digit = 0;
+            int scale = 0;
+            boolean isFraction = false;
+            while (pos < end) {
+                byte b = buffer.get(pos);
+                if (b >= '0' && b <= '9') {
+                    mantissa = mantissa * 10 + (b - '0');
+                    num_digit++;
+                    scale += isFraction ? 1 : 0;
+                } else if (b == '.' && !isFraction) {
+                    isFraction = true;
+                } else {
+                    break;
+                }
+                pos++;
+            }
+
+            int exponent = 0;
+            if (pos < end && (buffer.get(pos) == 'e' || buffer.get(pos) == 'E')) {
+                pos++;
+                exponent = parseInt(buffer);
+            }
+
+            if (num_digit == 0) {
+                throw new RuntimeException("Missing float in the row " + num_row);
+            }
+
+            // rare case beyond the exact range of long and double, then fall back to the JDK
+            int power = exponent - scale;
+            if (num_digit >= POW10.length || Math.abs(power) >= POW10.length) {
+                byte[] token = new byte[pos - start];
+                for (int n = 0; n < token.length; n++) {
+                    token[n] = buffer.get(start + n);
+                }
+                return Float.parseFloat(new String(token));
+            }
+
+            double value = power >= 0 ? mantissa * POW10[power] : mantissa / POW10[-power];
+            return (float) (negative ? -value : value);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package code.sma.core.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import code.sma.core.AbstractIterator;
+import code.sma.core.DataElem;
+
+/**
+ *
+ * @author Chao.Chen
+ * @version $Id: CSRMatrixTest.java, v 0.1 2017年7月19日 上午11:05:18 Chao.Chen Exp $
+ */
+public class CSRMatrixTest {
+
+    @Test
+    public void testSeekAgainstNext() {
+        CSRMatrix mtx = new CSRMatrix(4, 16);
+        mtx.loadNext("3.5 1 1 2 0:0.5 7:1 2:4 5:3");
+        mtx.loadNext("1 0 1 0 3:1");
+        mtx.loadNext("2 0 1 3 1:1 0:1 4:2 6:5");
+        mtx.loadNext("4 1 1 1 1:0.25 2:1 9:2");
+
+        String[] rows = new String[4];
+        CSRMatrix.Iter iter = mtx.new Iter();
+        for (int r = 0; r < 4; r++) {
+            rows[r] = row(iter.next());
+        }
+        assertFalse(iter.hasNext());
+
+        // random access in any order, overwriting the reused element
+        Random rand = new Random(20170719L);
+        for (int trial = 0; trial < 50; trial++) {
+            int r = rand.nextInt(4);
+            assertEquals(rows[r], row(iter.seek(r)));
+
+            // the sequential access continues after the sought row
+            assertEquals(r < 3, iter.hasNext());
+            if (r < 3) {
+                assertEquals(rows[r + 1], row(iter.next()));
+            }
+        }
+    }
+
+    @Test
+    public void testSeekKeepsRowBoundaries() {
+        CSRMatrix mtx = new CSRMatrix(2, 6);
+        mtx.loadNext("5 0 1 2 0:1 3:4 8:2");
+        mtx.loadNext("1 0 1 1 1:1 3:5");
+
+        CSRMatrix.Iter iter = mtx.new Iter();
+        DataElem e = iter.seek(1);
+        assertEquals(1, e.getNum_ifacotr());
+        assertEquals(1, e.getIndex_user(0));
+        assertEquals(3, e.getIndex_item(0));
+        assertEquals(5.0f, e.getValue_ifactor(0), 0.0f);
+
+        e = iter.seek(0);
+        assertEquals(2, e.getNum_ifacotr());
+        assertEquals(8, e.getIndex_item(1));
+        assertEquals(2.0f, e.getValue_ifactor(1), 0.0f);
+        assertTrue(iter.hasNext());
+    }
+
+    @Test
+    public void testSkipAgainstNext() {
+        CSRMatrix mtx = new CSRMatrix(4, 16);
+        mtx.loadNext("3.5 1 1 2 0:0.5 7:1 2:4 5:3");
+        mtx.loadNext("1 0 1 0 3:1");
+        mtx.loadNext("2 0 1 3 1:1 0:1 4:2 6:5");
+        mtx.loadNext("4 1 1 1 1:0.25 2:1 9:2");
+
+        AbstractIterator iter = (AbstractIterator) mtx.iterator();
+        assertEquals(4, iter.get_num_row());
+        String[] rows = new String[4];
+        for (int r = 0; r < 4; r++) {
+            rows[r] = row(iter.next());
+        }
+
+        // the same rows as walking over the skipped ones
+        for (int begin = 0; begin < 4; begin++) {
+            iter.refresh();
+            assertEquals(begin, iter.skip(begin));
+            assertEquals(rows[begin], row(iter.next()));
+        }
+
+        // skipping stops at the end
+        iter.refresh();
+        iter.next();
+        assertEquals(3, iter.skip(5));
+        assertFalse(iter.hasNext());
+    }
+
+    /**
+     * all features of the row, by group
+     */
+    private static String row(DataElem e) {
+        StringBuilder row = new StringBuilder().append(e.getLabel());
+        row.append(" |");
+        for (int f = 0; f < e.getNum_global(); f++) {
+            row.append(' ').append(e.getIndex_global(f)).append('=').append(e.getValue_global(f));
+        }
+        row.append(" |");
+        for (int f = 0; f < e.getNum_ufactor(); f++) {
+            row.append(' ').append(e.getIndex_user(f)).append('=').append(e.getValue_ufactor(f));
+        }
+        row.append(" |");
+        for (int f = 0; f < e.getNum_ifacotr(); f++) {
+            row.append(' ').append(e.getIndex_item(f)).append('=').append(e.getValue_ifactor(f));
+        }
+        return row.toString();
+    }
+}
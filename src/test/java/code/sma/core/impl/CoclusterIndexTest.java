@@ -0,0 +1,140 @@
+package code.sma.core.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import code.sma.core.AbstractIterator;
+import code.sma.core.DataElem;
+
+/**
+ *
+ * @author Chao.Chen
+ * @version $Id: CoclusterIndexTest.java, v 0.1 2017年7月19日 上午10:26:43 Chao.Chen Exp $
+ */
+public class CoclusterIndexTest {
+    private static final int USER_COUNT = 60;
+    private static final int ITEM_COUNT = 40;
+
+    @Test
+    public void testBlocksAgainstIndicators() {
+        Random rand = new Random(20170719L);
+        CSRMatrix mtx = randomMatrix(rand);
+
+        for (int trial = 0; trial < 5; trial++) {
+            int K = 1 + rand.nextInt(4);
+            int L = 1 + rand.nextInt(4);
+            // -1 leaves some rows and columns out of all clusters
+            int[] raf = randomAssignment(rand, USER_COUNT, K);
+            int[] caf = randomAssignment(rand, ITEM_COUNT, L);
+            CoclusterIndex index = new CoclusterIndex(mtx, raf, caf, K, L);
+
+            for (int k = 0; k < K; k++) {
+                for (int l = 0; l < L; l++) {
+                    boolean[] acc_ufi = indicator(raf, k);
+                    boolean[] acc_ifi = indicator(caf, l);
+
+                    assertSameEntries((AbstractIterator) mtx.iteratorJion(acc_ufi, acc_ifi),
+                        index.iteratorJion(k, l));
+                    assertSameEntries((AbstractIterator) mtx.iteratorUion(acc_ufi, acc_ifi),
+                        index.iteratorUion(k, l));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRefreshAndClone() {
+        Random rand = new Random(20170720L);
+        CSRMatrix mtx = randomMatrix(rand);
+        CoclusterIndex index = new CoclusterIndex(mtx, randomAssignment(rand, USER_COUNT, 3),
+            randomAssignment(rand, ITEM_COUNT, 2), 3, 2);
+
+        AbstractIterator iter = index.iteratorUion(1, 0);
+        List<String> first = entries(iter);
+        assertEquals(first, entries(iter));
+        assertEquals(first, entries(iter.clone()));
+    }
+
+    @Test
+    public void testAssignment() {
+        boolean[][] acc_feature = { { true, false, false, true }, { false, true, false, false } };
+        assertArrayEquals(new int[] { 0, 1, -1, 0 }, CoclusterIndex.assignment(acc_feature));
+
+        acc_feature[1][3] = true;
+        assertNull(CoclusterIndex.assignment(acc_feature));
+    }
+
+    private static void assertSameEntries(AbstractIterator expected, AbstractIterator actual) {
+        assertEquals(expected.get_num_global(), actual.get_num_global());
+        assertEquals(expected.get_num_ufactor(), actual.get_num_ufactor());
+        assertEquals(expected.get_num_ifactor(), actual.get_num_ifactor());
+        assertEquals(entries(expected), entries(actual));
+    }
+
+    /**
+     * the rows in order, with the items and values of each row in order
+     */
+    private static List<String> entries(AbstractIterator iter) {
+        List<String> rows = new ArrayList<String>();
+        iter.refresh();
+        while (iter.hasNext()) {
+            DataElem e = iter.next();
+            StringBuilder row = new StringBuilder().append(e.getIndex_user(0)).append(':');
+            for (int f = 0; f < e.getNum_ifacotr(); f++) {
+                row.append(' ').append(e.getIndex_item(f)).append('=')
+                    .append(e.getValue_ifactor(f));
+            }
+            rows.add(row.toString());
+        }
+        return rows;
+    }
+
+    private static boolean[] indicator(int[] af, int c) {
+        boolean[] acc = new boolean[af.length];
+        for (int j = 0; j < af.length; j++) {
+            acc[j] = af[j] == c;
+        }
+        return acc;
+    }
+
+    private static int[] randomAssignment(Random rand, int count, int num_clusters) {
+        int[] af = new int[count];
+        for (int j = 0; j < count; j++) {
+            af[j] = rand.nextInt(num_clusters + 1) - 1;
+        }
+        return af;
+    }
+
+    /**
+     * one row per user with a random subset of items, where some users rate nothing
+     */
+    private static CSRMatrix randomMatrix(Random rand) {
+        List<String> lines = new ArrayList<String>();
+        int num_val = 0;
+        for (int u = 0; u < USER_COUNT; u++) {
+            StringBuilder items = new StringBuilder();
+            int num_ifactor = 0;
+            for (int i = 0; i < ITEM_COUNT; i++) {
+                if (rand.nextInt(4) == 0) {
+                    items.append(' ').append(i).append(':').append(1 + rand.nextInt(5));
+                    num_ifactor++;
+                }
+            }
+            lines.add(String.format("0 0 1 %d %d:1%s", num_ifactor, u, items));
+            num_val += 1 + num_ifactor;
+        }
+
+        CSRMatrix mtx = new CSRMatrix(USER_COUNT, num_val);
+        for (String line : lines) {
+            mtx.loadNext(line);
+        }
+        return mtx;
+    }
+}
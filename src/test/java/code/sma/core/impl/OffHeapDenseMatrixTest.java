@@ -0,0 +1,63 @@
+package code.sma.core.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * 
+ * @author Chao.Chen
+ * @version $Id: OffHeapDenseMatrixTest.java, v 0.1 2017年7月18日 下午4:37:26 Chao.Chen Exp $
+ */
+public class OffHeapDenseMatrixTest {
+    private static final int M = 7;
+    private static final int N = 5;
+
+    @Test
+    public void testMixedLayouts() {
+        DenseMatrix[] heaps = new DenseMatrix[] { filled(new DenseMatrix(M, N), 1L),
+                                                  filled(new DenseMatrix(M, N), 2L) };
+        DenseMatrix[] mixed = new DenseMatrix[] { filled(new OffHeapDenseMatrix(M, N), 1L),
+                                                  filled(new DenseMatrix(M, N), 2L) };
+        DenseMatrix[] flipped = new DenseMatrix[] { filled(new DenseMatrix(M, N), 1L),
+                                                    filled(new OffHeapDenseMatrix(M, N), 2L) };
+
+        for (DenseMatrix[] pair : new DenseMatrix[][] { heaps, mixed, flipped }) {
+            pair[0].axpy(1, 0.5d, pair[1], 2);
+            pair[0].sgdUpdate(3, pair[1], 4, 0.9d, 0.1d, 0.8d, 0.2d);
+            pair[0].sgdUpdateL1(5, pair[1], 6, 0.01d, 0.1d, 1e-4d);
+        }
+
+        int[] rows = new int[] { 0, 1, 3, 5 };
+        float[] expected = new float[rows.length * M];
+        heaps[0].multiply(rows, rows.length, heaps[1], expected);
+        for (DenseMatrix[] pair : new DenseMatrix[][] { mixed, flipped }) {
+            for (int i = 0; i < M; i++) {
+                for (int n = 0; n < N; n++) {
+                    assertEquals(heaps[0].floatValue(i, n), pair[0].floatValue(i, n), 1e-6f);
+                    assertEquals(heaps[1].floatValue(i, n), pair[1].floatValue(i, n), 1e-6f);
+                }
+                assertEquals(heaps[0].innerProduct(i, 6 - i, heaps[1]),
+                    pair[0].innerProduct(i, 6 - i, pair[1]), 1e-6d);
+            }
+
+            float[] out = new float[rows.length * M];
+            pair[0].multiply(rows, rows.length, pair[1], out);
+            for (int k = 0; k < out.length; k++) {
+                assertEquals(expected[k], out[k], 1e-6f);
+            }
+        }
+    }
+
+    private static DenseMatrix filled(DenseMatrix matrix, long seed) {
+        Random rand = new Random(seed);
+        for (int i = 0; i < M; i++) {
+            for (int n = 0; n < N; n++) {
+                matrix.setValue(i, n, (float) rand.nextGaussian());
+            }
+        }
+        return matrix;
+    }
+}
@@ -0,0 +1,85 @@
+package code.sma.core.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Chao.Chen
+ * @version $Id: SparseMatrixTest.java, v 0.1 2017年7月19日 下午6:47:12 Chao.Chen Exp $
+ */
+public class SparseMatrixTest {
+    /** the values are stored in single precision*/
+    private static final double DELTA = 1e-5d;
+
+    @Test
+    public void testInverse() {
+        Random rand = new Random(20170719L);
+        int n = 6;
+        SparseMatrix A = new SparseMatrix(n, n);
+        for (int i = 0; i < n; i++) {
+            A.setValue(i, i, 4.0d + rand.nextDouble());
+            // one more entry per row, leaving the matrix sparse and asymmetric
+            A.setValue(i, (i + 2) % n, rand.nextDouble());
+        }
+
+        assertIdentity(A.times(A.inverse()), n);
+        assertIdentity(A.inverse().times(A), n);
+    }
+
+    @Test
+    public void testInverseOfSingular() {
+        SparseMatrix A = new SparseMatrix(2, 2);
+        A.setValue(0, 0, 2.0d);
+        A.setValue(0, 1, 1.0d);
+
+        // the partially eliminated matrix is returned, rather than thrown
+        SparseMatrix inv = A.inverse();
+        assertEquals(0.5d, inv.getValue(0, 0), DELTA);
+        assertEquals(0.0d, inv.getValue(0, 1), DELTA);
+        assertEquals(0.0d, inv.getValue(1, 0), DELTA);
+        assertEquals(1.0d, inv.getValue(1, 1), DELTA);
+    }
+
+    @Test
+    public void testCholesky() {
+        int n = 4;
+        SparseMatrix A = new SparseMatrix(n, n);
+        double[][] vals = { { 4.0d, 2.0d, 0.0d, 0.0d }, { 2.0d, 5.0d, 1.0d, 0.0d },
+                            { 0.0d, 1.0d, 3.0d, -1.0d }, { 0.0d, 0.0d, -1.0d, 2.0d } };
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (vals[i][j] != 0.0d) {
+                    A.setValue(i, j, vals[i][j]);
+                }
+            }
+        }
+
+        // the upper factor R, where R^T * R = A
+        SparseMatrix R = A.cholesky();
+        SparseMatrix RtR = R.transpose().times(R);
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (j < i) {
+                    assertEquals(0.0d, R.getValue(i, j), 0.0d);
+                }
+                assertEquals(vals[i][j], RtR.getValue(i, j), DELTA);
+            }
+        }
+
+        A.setValue(3, 3, 0.0d);
+        assertNull(A.cholesky());
+    }
+
+    private static void assertIdentity(SparseMatrix C, int n) {
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                assertEquals((i == j) ? 1.0d : 0.0d, C.getValue(i, j), DELTA);
+            }
+        }
+    }
+}
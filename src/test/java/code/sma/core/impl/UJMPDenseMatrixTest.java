@@ -0,0 +1,129 @@
+package code.sma.core.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.ujmp.core.Matrix;
+
+/**
+ *
+ * @author Chao.Chen
+ * @version $Id: UJMPDenseMatrixTest.java, v 0.1 2017年7月19日 下午6:21:40 Chao.Chen Exp $
+ */
+public class UJMPDenseMatrixTest {
+    private static final double DELTA = 1e-9d;
+
+    @Test
+    public void testTimesAndPlus() {
+        Random rand = new Random(20170719L);
+        UJMPDenseMatrix A = random(rand, 6, 4);
+        UJMPDenseMatrix B = random(rand, 4, 3);
+        UJMPDenseMatrix C = random(rand, 6, 4);
+        UJMPDenseVector x = new UJMPDenseVector(4);
+        for (int j = 0; j < 4; j++) {
+            x.setValue(j, rand.nextDouble());
+        }
+
+        // against the generic operations of UJMP
+        assertSame(A.getMatrix().mtimes(B.getMatrix()), A.times(B));
+        assertSame(A.getMatrix().plus(C.getMatrix()), A.plus(C));
+        Matrix y = A.getMatrix().mtimes(x.getVector());
+        UJMPDenseVector Ax = A.times(x);
+        assertEquals(6, Ax.length());
+        for (int i = 0; i < 6; i++) {
+            assertEquals(y.getAsDouble(i, 0), Ax.getValue(i), DELTA);
+        }
+    }
+
+    @Test
+    public void testOuterProduct() {
+        UJMPDenseVector a = new UJMPDenseVector(3);
+        UJMPDenseVector b = new UJMPDenseVector(2);
+        for (int i = 0; i < 3; i++) {
+            a.setValue(i, i + 1.0d);
+        }
+        b.setValue(0, -1.0d);
+        b.setValue(1, 0.5d);
+
+        UJMPDenseMatrix ab = a.outerProduct(b);
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 2; j++) {
+                assertEquals(a.getValue(i) * b.getValue(j), ab.getValue(i, j), 0.0d);
+            }
+        }
+    }
+
+    @Test
+    public void testInverse() {
+        Random rand = new Random(20170720L);
+        UJMPDenseMatrix A = random(rand, 5, 5);
+        for (int i = 0; i < 5; i++) {
+            A.setValue(i, i, A.getValue(i, i) + 5.0d);
+        }
+        // an asymmetric matrix, so that a transposed inverse is caught
+        A.setValue(0, 4, 3.0d);
+
+        assertSame(A.getMatrix().inv(), A.inverse());
+        assertSame(UJMPDenseMatrix.makeIdentity(5).getMatrix(), A.times(A.inverse()));
+    }
+
+    @Test
+    public void testInverseOfSingular() {
+        UJMPDenseMatrix A = new UJMPDenseMatrix(2, 2);
+        A.setValue(0, 0, 1.0d);
+        A.setValue(0, 1, 2.0d);
+        A.setValue(1, 0, 2.0d);
+        A.setValue(1, 1, 4.0d);
+
+        // as UJMP does
+        try {
+            A.inverse();
+            fail("Singular matrix is inverted");
+        } catch (RuntimeException e) {
+            assertEquals("Matrix is singular", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testCholesky() {
+        Random rand = new Random(20170721L);
+        UJMPDenseMatrix B = random(rand, 6, 6);
+        UJMPDenseMatrix A = B.times(B.transpose()).plus(UJMPDenseMatrix.makeIdentity(6));
+
+        // the upper factor R, where R^T * R = A
+        UJMPDenseMatrix R = A.cholesky();
+        for (int i = 0; i < 6; i++) {
+            for (int j = 0; j < i; j++) {
+                assertEquals(0.0d, R.getValue(i, j), 0.0d);
+            }
+        }
+        assertSame(A.getMatrix(), R.transpose().times(R));
+
+        A.setValue(2, 2, -1.0d);
+        assertNull(A.cholesky());
+    }
+
+    private static void assertSame(Matrix expected, UJMPDenseMatrix actual) {
+        int m = (int) expected.getRowCount();
+        int n = (int) expected.getColumnCount();
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j < n; j++) {
+                assertEquals(expected.getAsDouble(i, j), actual.getValue(i, j), DELTA);
+            }
+        }
+    }
+
+    private static UJMPDenseMatrix random(Random rand, int m, int n) {
+        UJMPDenseMatrix A = new UJMPDenseMatrix(m, n);
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j < n; j++) {
+                A.setValue(i, j, rand.nextDouble() * 2.0d - 1.0d);
+            }
+        }
+        return A;
+    }
+}
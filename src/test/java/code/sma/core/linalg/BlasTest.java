@@ -0,0 +1,197 @@
+package code.sma.core.linalg;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Chao.Chen
+ * @version $Id: BlasTest.java, v 0.1 2017年7月19日 下午5:14:27 Chao.Chen Exp $
+ */
+public class BlasTest {
+    private static final double DELTA = 1e-10d;
+
+    @Test
+    public void testGemm() {
+        Random rand = new Random(20170719L);
+        // sizes across the row, column and inner blocks, and with odd remainders
+        int[][] sizes = { { 1, 1, 1 }, { 3, 5, 2 }, { 70, 260, 130 }, { 65, 257, 129 } };
+        for (int[] size : sizes) {
+            int m = size[0];
+            int n = size[1];
+            int k = size[2];
+            double[] a = random(rand, m * k);
+            double[] b = random(rand, k * n);
+            double[] c = random(rand, m * n);
+
+            double[] expected = new double[m * n];
+            for (int i = 0; i < m; i++) {
+                for (int j = 0; j < n; j++) {
+                    double s = 0.0d;
+                    for (int p = 0; p < k; p++) {
+                        s += a[i * k + p] * b[p * n + j];
+                    }
+                    expected[i * n + j] = 0.5d * s - 2.0d * c[i * n + j];
+                }
+            }
+
+            Blas.gemm(m, n, k, 0.5d, a, b, -2.0d, c);
+            assertArrayEquals(expected, c, DELTA);
+        }
+    }
+
+    @Test
+    public void testGemmIgnoresCWhenBetaIsZero() {
+        double[] a = { 1.0d, 2.0d, 3.0d, 4.0d };
+        double[] b = { 5.0d, 6.0d, 7.0d, 8.0d };
+        double[] c = { Double.NaN, Double.NaN, Double.NaN, Double.NaN };
+
+        Blas.gemm(2, 2, 2, 1.0d, a, b, 0.0d, c);
+        assertArrayEquals(new double[] { 19.0d, 22.0d, 43.0d, 50.0d }, c, 0.0d);
+    }
+
+    @Test
+    public void testGemvAndGemvT() {
+        Random rand = new Random(20170720L);
+        int m = 7;
+        int n = 5;
+        double[] a = random(rand, m * n);
+        double[] x = random(rand, n);
+        double[] xT = random(rand, m);
+        double[] y = random(rand, m);
+        double[] yT = random(rand, n);
+
+        double[] expected = new double[m];
+        for (int i = 0; i < m; i++) {
+            double s = 0.0d;
+            for (int j = 0; j < n; j++) {
+                s += a[i * n + j] * x[j];
+            }
+            expected[i] = 1.5d * s + 0.5d * y[i];
+        }
+        double[] expectedT = new double[n];
+        for (int j = 0; j < n; j++) {
+            double s = 0.0d;
+            for (int i = 0; i < m; i++) {
+                s += a[i * n + j] * xT[i];
+            }
+            expectedT[j] = -1.0d * s + 2.0d * yT[j];
+        }
+
+        Blas.gemv(m, n, 1.5d, a, x, 0.5d, y);
+        Blas.gemvT(m, n, -1.0d, a, xT, 2.0d, yT);
+        assertArrayEquals(expected, y, DELTA);
+        assertArrayEquals(expectedT, yT, DELTA);
+
+        // y is overwritten, not read, when beta is zero
+        double[] y0 = { Double.NaN, Double.NaN };
+        Blas.gemv(2, 1, 1.0d, new double[] { 2.0d, 3.0d }, new double[] { 4.0d }, 0.0d, y0);
+        assertArrayEquals(new double[] { 8.0d, 12.0d }, y0, 0.0d);
+        double[] yT0 = { Double.NaN };
+        Blas.gemvT(2, 1, 1.0d, new double[] { 2.0d, 3.0d }, new double[] { 4.0d, 5.0d }, 0.0d,
+            yT0);
+        assertArrayEquals(new double[] { 23.0d }, yT0, 0.0d);
+    }
+
+    @Test
+    public void testGer() {
+        Random rand = new Random(20170721L);
+        int m = 4;
+        int n = 6;
+        double[] x = random(rand, m);
+        double[] y = random(rand, n);
+        double[] a = random(rand, m * n);
+
+        double[] expected = new double[m * n];
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j < n; j++) {
+                expected[i * n + j] = a[i * n + j] + 0.25d * x[i] * y[j];
+            }
+        }
+
+        Blas.ger(m, n, 0.25d, x, y, a);
+        assertArrayEquals(expected, a, DELTA);
+    }
+
+    @Test
+    public void testSyrkLowerTriangle() {
+        Random rand = new Random(20170722L);
+        // even and odd orders, and inner dimensions across the block
+        int[][] sizes = { { 1, 3 }, { 2, 1 }, { 5, 7 }, { 8, 129 }, { 11, 300 } };
+        for (int[] size : sizes) {
+            int n = size[0];
+            int k = size[1];
+            double[] a = random(rand, n * k);
+            double[] c = random(rand, n * n);
+            double[] expected = c.clone();
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j <= i; j++) {
+                    double s = 0.0d;
+                    for (int p = 0; p < k; p++) {
+                        s += a[i * k + p] * a[j * k + p];
+                    }
+                    expected[i * n + j] += 2.0d * s;
+                }
+            }
+
+            // the upper triangle is left untouched
+            Blas.syrk(n, k, 2.0d, a, c);
+            assertArrayEquals(expected, c, DELTA);
+        }
+    }
+
+    @Test
+    public void testTriangularSolves() {
+        Random rand = new Random(20170723L);
+        int n = 9;
+        // the upper triangle is garbage, which must not be read
+        double[] l = random(rand, n * n);
+        for (int i = 0; i < n; i++) {
+            l[i * n + i] = 1.0d + Math.abs(l[i * n + i]);
+        }
+        double[] x = random(rand, n);
+
+        double[] b = new double[n];
+        double[] bT = new double[n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j <= i; j++) {
+                b[i] += l[i * n + j] * x[j];
+                bT[j] += l[i * n + j] * x[i];
+            }
+        }
+
+        Blas.trsvLower(n, l, b);
+        Blas.trsvLowerT(n, l, bT);
+        assertArrayEquals(x, b, DELTA);
+        assertArrayEquals(x, bT, DELTA);
+    }
+
+    @Test
+    public void testAxpyAndScale() {
+        double[] x = { 1.0d, 2.0d, 3.0d, 4.0d };
+        double[] y = { 10.0d, 20.0d, 30.0d, 40.0d };
+        Blas.axpy(2, 0.5d, x, 1, y, 2);
+        assertArrayEquals(new double[] { 10.0d, 20.0d, 31.0d, 41.5d }, y, 0.0d);
+
+        Blas.scale(3, 2.0d, x);
+        assertArrayEquals(new double[] { 2.0d, 4.0d, 6.0d, 4.0d }, x, 0.0d);
+
+        // zero clears even non-finite values
+        double[] z = { Double.NaN, Double.POSITIVE_INFINITY };
+        Blas.scale(2, 0.0d, z);
+        assertEquals(0.0d, z[0], 0.0d);
+        assertEquals(0.0d, z[1], 0.0d);
+    }
+
+    private static double[] random(Random rand, int len) {
+        double[] x = new double[len];
+        for (int j = 0; j < len; j++) {
+            x[j] = rand.nextDouble() * 2.0d - 1.0d;
+        }
+        return x;
+    }
+}
@@ -0,0 +1,107 @@
+package code.sma.core.linalg;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Chao.Chen
+ * @version $Id: CholeskyTest.java, v 0.1 2017年7月19日 下午5:42:03 Chao.Chen Exp $
+ */
+public class CholeskyTest {
+    private static final double DELTA = 1e-9d;
+
+    @Test
+    public void testFactor() {
+        Random rand = new Random(20170719L);
+        for (int n : new int[] { 1, 2, 7, 20 }) {
+            double[] a = positiveDefinite(rand, n);
+            double[] l = a.clone();
+            assertTrue(Cholesky.factor(l, n));
+
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    if (j > i) {
+                        // the upper triangle is untouched
+                        assertEquals(a[i * n + j], l[i * n + j], 0.0d);
+                        continue;
+                    }
+
+                    // L * L^T = A, on the lower triangle
+                    double s = 0.0d;
+                    for (int p = 0; p <= j; p++) {
+                        s += l[i * n + p] * l[j * n + p];
+                    }
+                    assertEquals(a[i * n + j], s, DELTA);
+                }
+                assertTrue(l[i * n + i] > 0.0d);
+            }
+        }
+    }
+
+    @Test
+    public void testFactorReadsOnlyLowerTriangle() {
+        double[] a = { 4.0d, Double.NaN, 2.0d, 5.0d };
+        assertTrue(Cholesky.factor(a, 2));
+        assertArrayEquals(new double[] { 2.0d, Double.NaN, 1.0d, 2.0d }, a, DELTA);
+    }
+
+    @Test
+    public void testNotPositiveDefinite() {
+        // eigenvalues 3 and -1
+        assertFalse(Cholesky.factor(new double[] { 1.0d, 2.0d, 2.0d, 1.0d }, 2));
+        // singular
+        assertFalse(Cholesky.factor(new double[] { 1.0d, 1.0d, 1.0d, 1.0d }, 2));
+        assertFalse(Cholesky.factor(new double[] { Double.NaN }, 1));
+    }
+
+    @Test
+    public void testSolve() {
+        Random rand = new Random(20170720L);
+        int n = 12;
+        double[] a = positiveDefinite(rand, n);
+        double[] x = new double[n];
+        for (int j = 0; j < n; j++) {
+            x[j] = rand.nextDouble() * 2.0d - 1.0d;
+        }
+        double[] b = new double[n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                b[i] += a[i * n + j] * x[j];
+            }
+        }
+
+        double[] l = a.clone();
+        assertTrue(Cholesky.factor(l, n));
+        Cholesky.solve(l, n, b);
+        assertArrayEquals(x, b, DELTA);
+    }
+
+    /**
+     * B * B^T + I, with a random n-by-n B
+     */
+    private static double[] positiveDefinite(Random rand, int n) {
+        double[] b = new double[n * n];
+        for (int j = 0; j < n * n; j++) {
+            b[j] = rand.nextDouble() * 2.0d - 1.0d;
+        }
+
+        double[] a = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                double s = (i == j) ? 1.0d : 0.0d;
+                for (int p = 0; p < n; p++) {
+                    s += b[i * n + p] * b[j * n + p];
+                }
+                a[i * n + j] = s;
+            }
+        }
+        return a;
+    }
+}
@@ -0,0 +1,80 @@
+package code.sma.core.linalg;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Chao.Chen
+ * @version $Id: GaussJordanTest.java, v 0.1 2017年7月19日 下午5:58:46 Chao.Chen Exp $
+ */
+public class GaussJordanTest {
+    private static final double DELTA = 1e-9d;
+
+    @Test
+    public void testInvert() {
+        Random rand = new Random(20170719L);
+        for (int n : new int[] { 1, 2, 6, 25 }) {
+            double[] a = new double[n * n];
+            for (int j = 0; j < n * n; j++) {
+                a[j] = rand.nextDouble() * 2.0d - 1.0d;
+            }
+            for (int i = 0; i < n; i++) {
+                a[i * n + i] += n;
+            }
+
+            double[] inv = new double[n * n];
+            assertTrue(GaussJordan.invert(a.clone(), n, inv));
+            assertIdentity(multiply(a, inv, n), n);
+            assertIdentity(multiply(inv, a, n), n);
+        }
+    }
+
+    @Test
+    public void testInvertNeedsPivoting() {
+        // a zero on the diagonal, which is only invertible by swapping rows
+        double[] a = { 0.0d, 2.0d, 0.0d, 1.0d, 0.0d, 0.0d, 0.0d, 0.0d, 4.0d };
+        double[] inv = new double[9];
+        assertTrue(GaussJordan.invert(a.clone(), 3, inv));
+        assertArrayEquals(new double[] { 0.0d, 1.0d, 0.0d, 0.5d, 0.0d, 0.0d, 0.0d, 0.0d, 0.25d },
+            inv, DELTA);
+    }
+
+    @Test
+    public void testSingular() {
+        // the second row is twice the first, eliminated without rounding
+        double[] a = { 1.0d, 2.0d, 3.0d, 2.0d, 4.0d, 6.0d, 0.0d, 1.0d, 1.0d };
+        double[] inv = new double[9];
+        assertFalse(GaussJordan.invert(a, 3, inv));
+
+        // a zero column
+        double[] b = { 1.0d, 0.0d, 2.0d, 0.0d };
+        assertFalse(GaussJordan.invert(b, 2, new double[4]));
+    }
+
+    private static double[] multiply(double[] a, double[] b, int n) {
+        double[] c = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                for (int p = 0; p < n; p++) {
+                    c[i * n + j] += a[i * n + p] * b[p * n + j];
+                }
+            }
+        }
+        return c;
+    }
+
+    private static void assertIdentity(double[] c, int n) {
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                assertEquals((i == j) ? 1.0d : 0.0d, c[i * n + j], DELTA);
+            }
+        }
+    }
+}
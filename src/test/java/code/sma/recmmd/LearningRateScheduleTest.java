@@ -0,0 +1,100 @@
+package code.sma.recmmd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import code.sma.main.Configures;
+
+/**
+ *
+ * @author Chao.Chen
+ * @version $Id: LearningRateScheduleTest.java, v 0.1 2017年7月19日 下午3:02:46 Chao.Chen Exp $
+ */
+public class LearningRateScheduleTest {
+    /** the configures keep the rates in float precision*/
+    private static final double DELTA = 1e-6d;
+
+    @Test
+    public void testStepDecay() {
+        RuntimeEnv env = runtimes("STEP_DECAY");
+        for (env.round = 1; env.round <= 25; env.round++) {
+            env.lrSchedule.adjust(env);
+        }
+        assertEquals(0.1d * 0.25d, env.currLearningRate, DELTA);
+    }
+
+    @Test
+    public void testBoldDriverRejectsRises() {
+        RuntimeEnv env = runtimes("BOLD_DRIVER");
+
+        // a fall is accepted, and the rate grows
+        env.prevErr = 1.0d;
+        env.currErr = 0.9d;
+        env.lrSchedule.adjust(env);
+        assertFalse(env.rejected);
+        assertEquals(0.1d * 1.05d, env.currLearningRate, DELTA);
+        assertFalse(env.isConverged());
+
+        // a rise is rejected, and retried with a smaller rate rather than converged
+        env.prevErr = 0.9d;
+        env.currErr = 0.95d;
+        env.lrSchedule.adjust(env);
+        assertTrue(env.rejected);
+        assertEquals(0.1d * 1.05d * 0.5d, env.currLearningRate, DELTA);
+        env.currErr = env.prevErr;
+        assertTrue(env.lrSchedule.tolerates(env));
+        assertFalse(env.isConverged());
+
+        // a small fall after the retry converges
+        env.prevErr = 0.9d;
+        env.currErr = 0.89999d;
+        env.lrSchedule.adjust(env);
+        assertFalse(env.rejected);
+        assertTrue(env.isConverged());
+    }
+
+    @Test
+    public void testBoldDriverRetriesAreBounded() {
+        RuntimeEnv env = runtimes("BOLD_DRIVER");
+
+        int retries = 0;
+        env.prevErr = 0.9d;
+        do {
+            env.currErr = 1.0d;
+            env.lrSchedule.adjust(env);
+            env.currErr = env.prevErr;
+            retries++;
+        } while (!env.isConverged());
+
+        // 0.5^10 < 1e-3 < 0.5^9
+        assertEquals(10, retries);
+        assertTrue(env.currLearningRate < 0.1d * LearningRateSchedule.MIN_RATE_SCALE);
+    }
+
+    @Test
+    public void testNonFiniteErrorIsRejected() {
+        RuntimeEnv env = runtimes("BOLD_DRIVER");
+        env.prevErr = 0.9d;
+        env.currErr = Double.NaN;
+        env.lrSchedule.adjust(env);
+        assertTrue(env.rejected);
+    }
+
+    private static RuntimeEnv runtimes(String schedule) {
+        Configures conf = new Configures();
+        conf.setDouble("USER_COUNT_VALUE", 10.0d);
+        conf.setDouble("ITEM_COUNT_VALUE", 10.0d);
+        conf.setDouble("MAX_RATING_VALUE", 5.0d);
+        conf.setDouble("MIN_RATING_VALUE", 1.0d);
+        conf.setDouble("THREAD_NUMBER_VALUE", 1.0d);
+        conf.setDouble("LEARNING_RATE_VALUE", 0.1d);
+        conf.setDouble("LR_GROWTH_VALUE", 1.05d);
+        conf.setDouble("LR_DECAY_VALUE", 0.5d);
+        conf.put("VERBOSE_BOOLEAN", false);
+        conf.setProperty("LR_SCHEDULE", schedule);
+        return new RuntimeEnv(conf);
+    }
+}
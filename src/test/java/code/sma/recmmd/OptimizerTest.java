@@ -0,0 +1,138 @@
+package code.sma.recmmd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import code.sma.core.impl.DenseMatrix;
+
+/**
+ *
+ * @author Chao.Chen
+ * @version $Id: OptimizerTest.java, v 0.1 2017年7月19日 下午2:12:08 Chao.Chen Exp $
+ */
+public class OptimizerTest {
+    private static final float DELTA = 1e-5f;
+
+    @Test
+    public void testSGD() {
+        float[] grad = { 0.5f, -2.0f };
+        Optimizer.SGD.step(null, 0, grad, 0.1d);
+        assertEquals(0.05f, grad[0], DELTA);
+        assertEquals(-0.2f, grad[1], DELTA);
+        assertFalse(Optimizer.SGD.isStateful());
+    }
+
+    @Test
+    public void testMomentum() {
+        OptimizerState state = new OptimizerState(Optimizer.MOMENTUM, 2, 2, 0.9d);
+        assertTrue(Optimizer.MOMENTUM.isStateful());
+
+        float[] grad = { 1.0f, -2.0f };
+        state.step(1, grad, 0.1d);
+        assertEquals(0.1f, grad[0], DELTA);
+        assertEquals(-0.2f, grad[1], DELTA);
+
+        // v = 0.9 * g + g
+        grad = new float[] { 1.0f, -2.0f };
+        state.step(1, grad, 0.1d);
+        assertEquals(0.19f, grad[0], DELTA);
+        assertEquals(-0.38f, grad[1], DELTA);
+
+        // the velocity of the other row is untouched
+        grad = new float[] { 1.0f, -2.0f };
+        state.step(0, grad, 0.1d);
+        assertEquals(0.1f, grad[0], DELTA);
+    }
+
+    @Test
+    public void testAdaGrad() {
+        OptimizerState state = new OptimizerState(Optimizer.ADAGRAD, 1, 2, 0.0d);
+
+        float[] grad = { 3.0f, -0.5f };
+        state.step(0, grad, 0.1d);
+        assertEquals(0.1f, grad[0], DELTA);
+        assertEquals(-0.1f, grad[1], DELTA);
+
+        // G = 9 + 16, 0.25 + 0.25
+        grad = new float[] { 4.0f, 0.5f };
+        state.step(0, grad, 0.1d);
+        assertEquals(0.1f * 4.0f / 5.0f, grad[0], DELTA);
+        assertEquals(0.1f * 0.5f / (float) Math.sqrt(0.5d), grad[1], DELTA);
+    }
+
+    @Test
+    public void testRMSProp() {
+        OptimizerState state = new OptimizerState(Optimizer.RMSPROP, 1, 1, 0.0d);
+
+        // v = 0.1 * g^2
+        float[] grad = { 2.0f };
+        state.step(0, grad, 0.1d);
+        assertEquals(0.1f * 2.0f / (float) Math.sqrt(0.4d), grad[0], DELTA);
+
+        // v = 0.9 * 0.4 + 0.1 * 1
+        grad = new float[] { 1.0f };
+        state.step(0, grad, 0.1d);
+        assertEquals(0.1f / (float) Math.sqrt(0.46d), grad[0], DELTA);
+    }
+
+    @Test
+    public void testAdam() {
+        OptimizerState state = new OptimizerState(Optimizer.ADAM, 2, 1, 0.0d);
+        double beta1 = Optimizer.BETA1;
+        double beta2 = Optimizer.BETA2;
+
+        // the bias-corrected first step is lr * sign(g)
+        double rate = state.rate(0, 0.1d);
+        assertEquals(0.1d * Math.sqrt(1 - beta2) / (1 - beta1), rate, 1e-12d);
+        float[] grad = { -3.0f };
+        state.step(0, grad, rate);
+        assertEquals(-0.1f, grad[0], DELTA);
+
+        // the bias of every row is corrected by its own number of updates
+        double rate2 = state.rate(0, 0.1d);
+        assertEquals(0.1d * Math.sqrt(1 - beta2 * beta2) / (1 - beta1 * beta1), rate2, 1e-12d);
+        assertEquals(rate, state.rate(1, 0.1d), 1e-12d);
+
+        // m = 0.9 * (-0.3) + 0.1 * 1, v = 0.999 * 0.009 + 0.001 * 1
+        grad = new float[] { 1.0f };
+        state.step(0, grad, rate2);
+        double m = beta1 * (1 - beta1) * -3.0d + (1 - beta1);
+        double v = beta2 * (1 - beta2) * 9.0d + (1 - beta2);
+        assertEquals((float) (rate2 * m / Math.sqrt(v)), grad[0], DELTA);
+    }
+
+    @Test
+    public void testUpdateAgainstSGD() {
+        float[][] uvals = { { 0.1f, 0.2f }, { 0.3f, -0.4f } };
+        float[][] ivals = { { 0.5f, -0.6f }, { 0.7f, 0.8f } };
+        DenseMatrix ufactors = matrix(uvals);
+        DenseMatrix ifactors = matrix(ivals);
+        double lr = 0.1d;
+        double reg = 0.05d;
+        double deriWRTp = -0.7d;
+
+        Optimizer.SGD.update(ufactors, 1, null, ifactors, 0, null, Regularizer.L2, lr, reg,
+            deriWRTp);
+
+        // both rows are updated with the values before update
+        for (int s = 0; s < 2; s++) {
+            float pu = uvals[1][s];
+            float qi = ivals[0][s];
+            assertEquals(pu - lr * (deriWRTp * qi + reg * pu), ufactors.getValue(1, s), DELTA);
+            assertEquals(qi - lr * (deriWRTp * pu + reg * qi), ifactors.getValue(0, s), DELTA);
+        }
+        assertEquals(0.1f, ufactors.getValue(0, 0), 0.0f);
+        assertEquals(0.7f, ifactors.getValue(1, 0), 0.0f);
+    }
+
+    private static DenseMatrix matrix(float[][] vals) {
+        DenseMatrix mtx = new DenseMatrix(vals.length, vals[0].length);
+        for (int r = 0; r < vals.length; r++) {
+            mtx.setRow(r, vals[r]);
+        }
+        return mtx;
+    }
+}
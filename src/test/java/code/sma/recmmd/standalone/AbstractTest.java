@@ -1,20 +1,19 @@
 package code.sma.recmmd.standalone;
 
 import java.io.IOException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.log4j.Logger;
 import org.junit.Test;
 
 import code.sma.core.AbstractMatrix;
 import code.sma.main.Configures;
+import code.sma.thread.LearnerPool;
 import code.sma.thread.SimpleLearner;
 import code.sma.thread.SimpleTaskMsgDispatcherImpl;
 import code.sma.thread.TaskMsgDispatcher;
 import code.sma.util.ConfigureUtil;
-import code.sma.util.ExceptionUtil;
 import code.sma.util.LoggerDefineConstant;
 import code.sma.util.LoggerUtil;
 import code.sma.util.MatrixIOUtil;
@@ -65,16 +64,11 @@ public abstract class AbstractTest {
                 new_conf.getInteger("TEST_ROW_NUM_VALUE"),
                 new_conf.getInteger("TEST_VAL_NUM_VALUE"));
 
-            try {
-                ExecutorService exec = Executors.newCachedThreadPool();
-                for (int t = 0; t < threadNum; t++) {
-                    exec.execute(new SimpleLearner(stkmImpl, train, test));
-                }
-                exec.shutdown();
-                exec.awaitTermination(Integer.MAX_VALUE, TimeUnit.DAYS);
-            } catch (InterruptedException e) {
-                ExceptionUtil.caught(e, "Stand-alone model Thead!");
+            List<SimpleLearner> learners = new ArrayList<SimpleLearner>();
+            for (int t = 0; t < threadNum; t++) {
+                learners.add(new SimpleLearner(stkmImpl, train, test));
             }
+            LearnerPool.run(learners);
         }
     }
 }
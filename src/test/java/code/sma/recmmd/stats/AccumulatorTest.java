@@ -0,0 +1,208 @@
+package code.sma.recmmd.stats;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author Chao.Chen
+ * @version $Id: AccumulatorTest.java, v 0.1 2017年7月19日 下午4:08:35 Chao.Chen Exp $
+ */
+public class AccumulatorTest {
+    private static final int NUM    = 5;
+    private static final int DIMNSN = 7;
+
+    @Test
+    public void testHalfKnownValues() {
+        assertEquals((short) 0x0000, Accumulator.toHalf(0.0f));
+        assertEquals((short) 0x8000, Accumulator.toHalf(-0.0f));
+        assertEquals((short) 0x3c00, Accumulator.toHalf(1.0f));
+        assertEquals((short) 0xc000, Accumulator.toHalf(-2.0f));
+        assertEquals((short) 0x7bff, Accumulator.toHalf(65504.0f));
+        assertEquals((short) 0x0400, Accumulator.toHalf(0x1p-14f));
+        assertEquals((short) 0x0001, Accumulator.toHalf(0x1p-24f));
+
+        // ties round to the nearest even
+        assertEquals((short) 0x3c00, Accumulator.toHalf(1.0f + 0x1p-11f));
+        assertEquals((short) 0x3c02, Accumulator.toHalf(1.0f + 0x3p-11f));
+        assertEquals((short) 0x0000, Accumulator.toHalf(0x1p-25f));
+        assertEquals((short) 0x0002, Accumulator.toHalf(0x3p-25f));
+
+        // overflow, infinity and NaN
+        assertEquals((short) 0x7c00, Accumulator.toHalf(65520.0f));
+        assertEquals((short) 0x7c00, Accumulator.toHalf(Float.POSITIVE_INFINITY));
+        assertEquals((short) 0xfc00, Accumulator.toHalf(Float.NEGATIVE_INFINITY));
+        assertTrue(Float.isNaN(Accumulator.fromHalf(Accumulator.toHalf(Float.NaN))));
+    }
+
+    @Test
+    public void testHalfRoundTrip() {
+        for (int bits = 0; bits <= 0xffff; bits++) {
+            short h = (short) bits;
+            float f = Accumulator.fromHalf(h);
+            if (Float.isNaN(f)) {
+                assertTrue((bits & 0x7c00) == 0x7c00 && (bits & 0x3ff) != 0);
+                continue;
+            }
+            assertEquals(h, Accumulator.toHalf(f));
+        }
+    }
+
+    @Test
+    public void testHalfRoundsToNearest() {
+        Random rand = new Random(20170719L);
+        for (int trial = 0; trial < 100000; trial++) {
+            // positive values from subnormals to the largest finite half
+            float f = (float) Math.pow(2.0d, -26.0d + rand.nextDouble() * 42.0d);
+            if (f > 65504.0f) {
+                continue;
+            }
+
+            short h = Accumulator.toHalf(f);
+            double err = Math.abs(Accumulator.fromHalf(h) - f);
+            if (h > 0) {
+                assertTrue(err <= Math.abs(Accumulator.fromHalf((short) (h - 1)) - f));
+            }
+            if (h < 0x7bff) {
+                assertTrue(err <= Math.abs(Accumulator.fromHalf((short) (h + 1)) - f));
+            }
+        }
+    }
+
+    @Test
+    public void testStripesMergeAsUpdates() {
+        for (boolean halfPrecision : new boolean[] { false, true }) {
+            Random rand = new Random(20170720L);
+            Accumulator serial = new Accumulator(NUM, DIMNSN, halfPrecision, 1);
+            Accumulator striped = new Accumulator(NUM, DIMNSN, halfPrecision, 3);
+            int[] merged = new int[NUM];
+
+            for (int round = 0; round < 4; round++) {
+                for (int k = 0; k < 40; k++) {
+                    int stripe = rand.nextInt(3);
+                    int accId = rand.nextInt(NUM);
+                    int vId = rand.nextInt(DIMNSN);
+                    double value = rand.nextDouble() * 4.0d;
+
+                    serial.update(accId, vId, value);
+                    striped.exchange(stripe, accId, vId, value);
+                }
+
+                // nothing is visible before the barrier
+                assertArrayEquals(merged, striped.accNum);
+
+                striped.merge();
+                assertSameSums(serial, striped);
+                assertEquals(serial.rm(), striped.rm(), 1e-9d);
+                merged = striped.accNum.clone();
+            }
+        }
+    }
+
+    @Test
+    public void testStripeRootMeanBeforeMerge() {
+        Accumulator acc = new Accumulator(2, 3, false, 2);
+        acc.exchange(0, 1, 0, 1.0d);
+        acc.exchange(0, 1, 2, 4.0d);
+        acc.exchange(1, 1, 1, 9.0d);
+
+        // each stripe sees only its own unmerged changes
+        assertEquals(Math.sqrt(2.5d), acc.rm(0, 1), 1e-12d);
+        assertEquals(3.0d, acc.rm(1, 1), 1e-12d);
+
+        acc.merge();
+        assertEquals(Math.sqrt(14.0d / 3.0d), acc.rm(1), 1e-12d);
+        assertEquals(Math.sqrt(14.0d / 3.0d), acc.rm(), 1e-12d);
+
+        // replacing a value changes the sum, but not the number of values
+        assertEquals(-3.0d, acc.exchange(1, 1, 2, 1.0d), 1e-12d);
+        acc.merge();
+        assertEquals(11.0d, acc.accVal[1], 1e-12d);
+        assertEquals(3, acc.accNum[1]);
+    }
+
+    @Test
+    public void testMergeOfSums() {
+        Accumulator acc = new Accumulator(3, 0, false, 2);
+        acc.merge(0, 0, 2.0d, 1);
+        acc.merge(1, 0, 6.0d, 2);
+        acc.merge(1, 2, 5.0d, 1);
+        acc.merge();
+
+        assertEquals(8.0d, acc.accVal[0], 0.0d);
+        assertEquals(3, acc.accNum[0]);
+        assertEquals(0, acc.accNum[1]);
+        assertEquals(Math.sqrt(5.0d), acc.rs(2), 1e-12d);
+
+        // the overall mean skips calculators holding no value
+        assertEquals(Math.sqrt((8.0d / 3.0d + 5.0d) / 2.0d), acc.rm(), 1e-12d);
+
+        // the stripes are cleared by the merge
+        acc.merge();
+        assertEquals(8.0d, acc.accVal[0], 0.0d);
+        assertEquals(3, acc.accNum[0]);
+    }
+
+    @Test
+    public void testHalfPrecisionSumsRoundedValues() {
+        Accumulator acc = new Accumulator(1, 2, true, 1);
+        acc.update(0, 0, 0.1d);
+        acc.update(0, 1, 1.0d / 3.0d);
+
+        double expected = Accumulator.fromHalf(Accumulator.toHalf(0.1f))
+                          + Accumulator.fromHalf(Accumulator.toHalf(1.0f / 3.0f));
+        assertEquals(expected, acc.accVal[0], 0.0d);
+
+        // replacing the values leaves no rounding residue behind
+        acc.update(0, 0, 0.0d);
+        acc.update(0, 1, 0.0d);
+        assertEquals(0.0d, acc.accVal[0], 0.0d);
+        assertEquals(2, acc.accNum[0]);
+    }
+
+    @Test
+    public void testCopyRollsBack() {
+        for (boolean halfPrecision : new boolean[] { false, true }) {
+            Random rand = new Random(20170721L);
+            Accumulator acc = new Accumulator(NUM, DIMNSN, halfPrecision, 2);
+            for (int k = 0; k < 20; k++) {
+                acc.exchange(rand.nextInt(2), rand.nextInt(NUM), rand.nextInt(DIMNSN),
+                    rand.nextDouble());
+            }
+            acc.merge();
+            Accumulator snapshot = acc.copy();
+            Accumulator expected = acc.copy();
+
+            // the changes after the snapshot are undone by copying it back
+            for (int k = 0; k < 20; k++) {
+                acc.exchange(rand.nextInt(2), rand.nextInt(NUM), rand.nextInt(DIMNSN),
+                    rand.nextDouble() * 4.0d);
+            }
+            acc.merge();
+            snapshot.copyTo(acc);
+            assertSameSums(expected, acc);
+            assertEquals(expected.rm(), acc.rm(), 0.0d);
+
+            // and the same updates afterwards lead to the same values
+            acc.update(1, 2, 3.0d);
+            expected.update(1, 2, 3.0d);
+            assertSameSums(expected, acc);
+            assertEquals(expected.rm(), acc.rm(), 0.0d);
+        }
+    }
+
+    private static void assertSameSums(Accumulator expected, Accumulator actual) {
+        for (int accId = 0; accId < NUM; accId++) {
+            assertEquals(expected.accNum[accId], actual.accNum[accId]);
+            assertEquals(expected.accVal[accId], actual.accVal[accId], 1e-9d);
+            for (int vId = 0; vId < DIMNSN; vId++) {
+                assertEquals(expected.has(accId, vId), actual.has(accId, vId));
+            }
+        }
+    }
+}
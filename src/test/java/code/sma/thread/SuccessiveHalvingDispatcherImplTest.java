@@ -0,0 +1,146 @@
+package code.sma.thread;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import code.sma.core.AbstractMatrix;
+import code.sma.core.impl.CSRMatrix;
+import code.sma.core.impl.DenseVector;
+import code.sma.main.Configures;
+import code.sma.recmmd.Recommender;
+
+/**
+ *
+ * @author Chao.Chen
+ * @version $Id: SuccessiveHalvingDispatcherImplTest.java, v 0.1 2017年7月20日 上午10:12:36 Chao.Chen Exp $
+ */
+public class SuccessiveHalvingDispatcherImplTest {
+    private static final int USER_COUNT = 40;
+    private static final int ITEM_COUNT = 30;
+
+    @Test
+    public void testFailedConfigureIsDropped() {
+        Random rand = new Random(20170720L);
+        AbstractMatrix train = randomMatrix(rand);
+        AbstractMatrix test = randomMatrix(rand);
+
+        final List<Recommender> reduced = Collections.synchronizedList(new ArrayList<Recommender>());
+        final List<Recommender> aborted = Collections.synchronizedList(new ArrayList<Recommender>());
+        TaskMsgDispatcher dispatcher = new SuccessiveHalvingDispatcherImpl(conf()) {
+            @Override
+            public synchronized void reduce(Object recmmd, AbstractMatrix tnMatrix,
+                                            AbstractMatrix ttMatrix) {
+                reduced.add((Recommender) recmmd);
+                super.reduce(recmmd, tnMatrix, ttMatrix);
+            }
+
+            @Override
+            public synchronized void abort(Object recmmd) {
+                aborted.add((Recommender) recmmd);
+                super.abort(recmmd);
+            }
+        };
+
+        List<SimpleLearner> learners = new ArrayList<SimpleLearner>();
+        for (int t = 0; t < 2; t++) {
+            learners.add(new SimpleLearner(dispatcher, train, test) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected void learn(Object task) {
+                    // the configure of the largest learning rate fails in the first rung
+                    Recommender recmmd = (Recommender) task;
+                    if (recmmd.runtimes.learningRate > 0.035f && recmmd.runtimes.round == 0) {
+                        recmmd.runtimes.lrSchedule = null;
+                    }
+                    super.learn(task);
+                }
+            });
+        }
+        LearnerPool.run(learners);
+
+        // the failed configure is dropped, and the others complete the first rung
+        assertEquals(1, aborted.size());
+        assertFalse(reduced.contains(aborted.get(0)));
+        assertEquals(4, reduced.size());
+
+        // the best of the three is promoted, and trained beyond the first rung
+        Recommender last = reduced.get(reduced.size() - 1);
+        assertTrue(last.runtimes.round > 1);
+        assertEquals(2, Collections.frequency(reduced, last));
+    }
+
+    @Test
+    public void testConfiguresShareValidationSplit() {
+        Configures conf = conf();
+        conf.remove("RANDOM_SEED_VALUE");
+        SuccessiveHalvingDispatcherImpl dispatcher = new SuccessiveHalvingDispatcherImpl(conf);
+
+        // the models draw their own seeds, but hold out the data by the same seed
+        Recommender first = dispatcher.map();
+        for (int n = 1; n < 4; n++) {
+            Recommender recmmd = dispatcher.map();
+            assertEquals(first.runtimes.validSeed, recmmd.runtimes.validSeed);
+            assertTrue(first.runtimes.seed != recmmd.runtimes.seed);
+        }
+    }
+
+    private static Configures conf() {
+        Configures conf = new Configures();
+        conf.setProperty("ALG_NAME", "RegSVD");
+        conf.setDouble("USER_COUNT_VALUE", (double) USER_COUNT);
+        conf.setDouble("ITEM_COUNT_VALUE", (double) ITEM_COUNT);
+        conf.setDouble("MAX_RATING_VALUE", 5.0d);
+        conf.setDouble("MIN_RATING_VALUE", 1.0d);
+        conf.setDouble("THREAD_NUMBER_VALUE", 1.0d);
+        conf.setDouble("FEATURE_COUNT_VALUE", 4.0d);
+        conf.setDouble("REGULAIZED_VALUE", 0.01d);
+        conf.setDouble("MAX_ITERATION_VALUE", 6.0d);
+        conf.setDouble("RANDOM_SEED_VALUE", 42.0d);
+        conf.setDouble("HALVING_ETA_VALUE", 3.0d);
+        conf.put("HALVING_SWEEP_BOOLEAN", true);
+        conf.put("VERBOSE_BOOLEAN", false);
+
+        DenseVector rates = new DenseVector(4);
+        rates.setValue(0, 0.01f);
+        rates.setValue(1, 0.02f);
+        rates.setValue(2, 0.03f);
+        rates.setValue(3, 0.04f);
+        conf.setVector("LEARNING_RATE_ARR", rates);
+        return conf;
+    }
+
+    /**
+     * one row per user with a random subset of items
+     */
+    private static CSRMatrix randomMatrix(Random rand) {
+        List<String> lines = new ArrayList<String>();
+        int num_val = 0;
+        for (int u = 0; u < USER_COUNT; u++) {
+            StringBuilder items = new StringBuilder();
+            int num_ifactor = 0;
+            for (int i = 0; i < ITEM_COUNT; i++) {
+                if (rand.nextInt(3) == 0) {
+                    items.append(' ').append(i).append(':').append(1 + rand.nextInt(5));
+                    num_ifactor++;
+                }
+            }
+            lines.add(String.format("0 0 1 %d %d:1%s", num_ifactor, u, items));
+            num_val += 1 + num_ifactor;
+        }
+
+        CSRMatrix mtx = new CSRMatrix(USER_COUNT, num_val);
+        for (String line : lines) {
+            mtx.loadNext(line);
+        }
+        return mtx;
+    }
+}
@@ -0,0 +1,100 @@
+package code.sma.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.io.Files;
+
+import code.sma.core.impl.CSRMatrix;
+import code.sma.core.impl.Tuples;
+
+/**
+ * 
+ * @author Chao.Chen
+ * @version $Id: MatrixIOUtilTest.java, v 0.1 2017年7月18日 上午10:12:37 Chao.Chen Exp $
+ */
+public class MatrixIOUtilTest {
+    /** label, number of global/user/item factors, user factor, item factors */
+    private static final String  RATINGS = "5 0 1 2 0:1 3:1.0 7:0.5\n"
+                                           + "4 0 1 1 1:1 2:1.0\n"
+                                           + "3 0 1 3 2:1 0:1.0 3:1.0 8:0.25\n";
+
+    @Rule
+    public final TemporaryFolder folder  = new TemporaryFolder();
+
+    private File                 textFile;
+
+    @Before
+    public void setUp() throws IOException {
+        textFile = folder.newFile("trainingset");
+        Files.write(RATINGS, textFile, Charset.forName("UTF-8"));
+    }
+
+    @Test
+    public void testCSRMatrixRoundTrip() {
+        CSRMatrix csm = MatrixIOUtil.loadCSRMatrix(textFile.getPath());
+        String binPath = textFile.getPath() + MatrixIOUtil.CSR_BINARY_SUFFIX;
+        MatrixIOUtil.writeBinary(csm, binPath);
+
+        CSRMatrix bin = MatrixIOUtil.loadBinaryCSRMatrix(binPath);
+        assertEquals(3, bin.getNum_row());
+        assertEquals(csm.getNum_val(), bin.getNum_val());
+        assertEquals(csm.num_global, bin.num_global);
+        assertEquals(csm.num_ufactor, bin.num_ufactor);
+        assertEquals(csm.num_ifactor, bin.num_ifactor);
+        assertArrayEquals(csm.getRow_label(), bin.getRow_label(), 0.0f);
+        assertArrayEquals(csm.getRow_ptr(), bin.getRow_ptr());
+        assertArrayEquals(csm.getFeat_index(), bin.getFeat_index());
+        assertArrayEquals(csm.getFeat_value(), bin.getFeat_value(), 0.0f);
+    }
+
+    @Test
+    public void testTuplesRoundTrip() {
+        Tuples tupl = MatrixIOUtil.loadTuples(textFile.getPath());
+        String binPath = textFile.getPath() + MatrixIOUtil.TUPLES_BINARY_SUFFIX;
+        MatrixIOUtil.writeBinary(tupl, binPath);
+
+        Tuples bin = MatrixIOUtil.loadBinaryTuples(binPath);
+        assertEquals(6, bin.getNum_val());
+        assertArrayEquals(tupl.getRow_ptr(), bin.getRow_ptr());
+        assertArrayEquals(tupl.getRowIndx(), bin.getRowIndx());
+        assertArrayEquals(tupl.getColIndx(), bin.getColIndx());
+        assertArrayEquals(tupl.getVals(), bin.getVals(), 0.0f);
+        assertArrayEquals(new int[] { 0, 0, 1, 2, 2, 2 }, bin.getRowIndx());
+    }
+
+    @Test
+    public void testCacheIsOptIn() {
+        File binFile = new File(textFile.getPath() + MatrixIOUtil.TUPLES_BINARY_SUFFIX);
+
+        MatrixIOUtil.loadTuples(textFile.getPath());
+        assertFalse(binFile.exists());
+
+        Tuples tupl = MatrixIOUtil.loadTuples(textFile.getPath(), true);
+        assertTrue(binFile.exists());
+        assertArrayEquals(tupl.getVals(), MatrixIOUtil.loadTuples(textFile.getPath()).getVals(),
+            0.0f);
+    }
+
+    @Test
+    public void testSizeWithinConfigure() {
+        assertEquals(6, MatrixIOUtil.loadTuples(textFile.getPath(), 6).getNum_val());
+        assertEquals(3, MatrixIOUtil.loadCSRMatrix(textFile.getPath(), 4, 10).getNum_row());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testSizeBeyondConfigure() {
+        MatrixIOUtil.loadCSRMatrix(textFile.getPath(), 2, 10);
+    }
+}
@@ -0,0 +1,82 @@
+package code.sma.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+/**
+ * 
+ * @author Chao.Chen
+ * @version $Id: SplitRandomTest.java, v 0.1 2017年7月18日 下午3:21:14 Chao.Chen Exp $
+ */
+public class SplitRandomTest {
+
+    @Test
+    public void testSameAsSplittableRandom() {
+        SplitRandom rand = new SplitRandom(20170629L);
+        SplittableRandom ref = new SplittableRandom(20170629L);
+        for (int n = 0; n < 100; n++) {
+            assertEquals(ref.nextLong(), rand.nextLong());
+            assertEquals(ref.nextDouble(), rand.nextDouble(), 0.0d);
+        }
+
+        SplitRandom child = rand.split();
+        SplittableRandom refChild = ref.split();
+        for (int n = 0; n < 100; n++) {
+            assertEquals(refChild.nextLong(), child.nextLong());
+            assertEquals(ref.nextLong(), rand.nextLong());
+        }
+    }
+
+    @Test
+    public void testForkIsRepeatable() {
+        SplitRandom rand = new SplitRandom(42L);
+        SplitRandom s1 = rand.fork(3);
+        SplitRandom s2 = rand.fork(3);
+        SplitRandom other = rand.fork(4);
+
+        // forking does not advance the parent
+        assertEquals(new SplitRandom(42L).nextLong(), rand.nextLong());
+
+        long first = s1.nextLong();
+        assertEquals(first, s2.nextLong());
+        assertNotEquals(first, other.nextLong());
+        for (int n = 0; n < 100; n++) {
+            assertEquals(s1.nextLong(), s2.nextLong());
+        }
+
+        assertEquals(RandomUtil.stream(42L, 3).nextLong(), new SplitRandom(42L).fork(3).nextLong());
+    }
+
+    @Test
+    public void testNextIntWithinBound() {
+        SplitRandom rand = new SplitRandom(7L);
+        int bound = 10;
+        int[] counts = new int[bound];
+        for (int n = 0; n < 100000; n++) {
+            int v = rand.nextInt(bound);
+            assertTrue(v >= 0 && v < bound);
+            counts[v]++;
+        }
+        for (int v = 0; v < bound; v++) {
+            assertEquals(10000, counts[v], 500);
+        }
+        assertEquals(0, new SplitRandom(7L).nextInt(1));
+    }
+
+    @Test
+    public void testNextDoubleInUnitInterval() {
+        SplitRandom rand = new SplitRandom(11L);
+        double sum = 0.0d;
+        for (int n = 0; n < 100000; n++) {
+            double v = rand.nextDouble();
+            assertTrue(v >= 0.0d && v < 1.0d);
+            sum += v;
+        }
+        assertEquals(0.5d, sum / 100000, 0.01d);
+    }
+}
@@ -0,0 +1,83 @@
+package code.sma.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.io.Files;
+
+import code.sma.core.impl.CSRMatrix;
+import code.sma.core.impl.Tuples;
+
+/**
+ * 
+ * @author Chao.Chen
+ * @version $Id: TextChunkParserTest.java, v 0.1 2017年7月18日 上午10:48:05 Chao.Chen Exp $
+ */
+public class TextChunkParserTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testParseAgainstLoadNext() throws IOException {
+        String[] lines = new String[] { "5 0 1 2 0:1 3:1.0 7:0.5", "-1.5 0 1 1 1:1 2:+2.5E-1",
+                                        "3 0 1 3 2:1 0:1e2 3:-0.125 8:.75" };
+        File textFile = write("ratings", lines[0] + "\r\n\r\n" + lines[1] + "\n   \n" + lines[2]);
+
+        CSRMatrix csm = TextChunkParser.parseCSRMatrix(textFile.getPath());
+        CSRMatrix ref = new CSRMatrix(lines.length, 9);
+        for (String line : lines) {
+            ref.loadNext(line);
+        }
+
+        assertEquals(ref.getNum_row(), csm.getNum_row());
+        assertEquals(ref.getNum_val(), csm.getNum_val());
+        assertEquals(ref.num_global, csm.num_global);
+        assertEquals(ref.num_ufactor, csm.num_ufactor);
+        assertEquals(ref.num_ifactor, csm.num_ifactor);
+        assertArrayEquals(ref.getRow_label(), csm.getRow_label(), 0.0f);
+        assertArrayEquals(ref.getRow_ptr(), csm.getRow_ptr());
+        assertArrayEquals(ref.getFeat_index(), csm.getFeat_index());
+        assertArrayEquals(ref.getFeat_value(), csm.getFeat_value(), 1e-7f);
+    }
+
+    @Test
+    public void testTuplesAcrossChunks() throws IOException {
+        // beyond two minimum chunks, so that rows are merged across the boundaries
+        int num_row = 800000;
+        StringBuilder text = new StringBuilder();
+        for (int u = 0; u < num_row; u++) {
+            text.append("1 0 1 1 ").append(u).append(":1 ").append(u % 1000).append(':')
+                .append(u % 5 + 1).append(".5\n");
+        }
+        File textFile = write("trainingset", text.toString());
+
+        Tuples tupl = TextChunkParser.parseTuples(textFile.getPath());
+        assertEquals(num_row, tupl.getNum_row());
+        assertEquals(num_row, tupl.getNum_val());
+        for (int u = 0; u < num_row; u++) {
+            assertEquals(u + 1, tupl.getRow_ptr()[u + 1]);
+            assertEquals(u, tupl.getRowIndx()[u]);
+            assertEquals(u % 1000, tupl.getColIndx()[u]);
+            assertEquals(u % 5 + 1.5f, tupl.getVals()[u], 0.0f);
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testMissingColon() throws IOException {
+        TextChunkParser.parseCSRMatrix(write("broken", "5 0 1 1 0:1 3 1.0\n").getPath());
+    }
+
+    private File write(String name, String text) throws IOException {
+        File file = folder.newFile(name);
+        Files.write(text, file, Charset.forName("UTF-8"));
+        return file;
+    }
+}
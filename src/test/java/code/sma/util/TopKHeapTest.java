@@ -0,0 +1,72 @@
+package code.sma.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import org.junit.Test;
+
+import code.sma.util.EvaluationMetrics.TopKHeap;
+
+/**
+ * 
+ * @author Chao.Chen
+ * @version $Id: TopKHeapTest.java, v 0.1 2017年7月18日 下午2:05:41 Chao.Chen Exp $
+ */
+public class TopKHeapTest {
+
+    @Test
+    public void testAgainstSorting() {
+        Random rand = new Random(20170718L);
+        int K = 10;
+        TopKHeap heap = new TopKHeap(K);
+
+        for (int trial = 0; trial < 50; trial++) {
+            int itemCount = 1 + rand.nextInt(200);
+            final float[] scores = new float[itemCount];
+            Integer[] order = new Integer[itemCount];
+            for (int i = 0; i < itemCount; i++) {
+                // few distinct scores, so that ties are common
+                scores[i] = rand.nextInt(8) * 0.5f;
+                order[i] = i;
+            }
+
+            heap.clear();
+            for (int i = 0; i < itemCount; i++) {
+                heap.offer(i, scores[i]);
+            }
+            heap.sort();
+
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer i1, Integer i2) {
+                    int cmp = Float.compare(scores[i2], scores[i1]);
+                    return cmp != 0 ? cmp : Integer.compare(i1, i2);
+                }
+            });
+
+            int num = Math.min(K, itemCount);
+            assertEquals(num, heap.size);
+            for (int s = 0; s < num; s++) {
+                assertEquals(order[s].intValue(), heap.ids[s]);
+                assertEquals(scores[order[s]], heap.scores[s], 0.0f);
+            }
+        }
+    }
+
+    @Test
+    public void testTiesPreferSmallerId() {
+        TopKHeap heap = new TopKHeap(3);
+        heap.offer(7, 5.0f);
+        heap.offer(2, 5.0f);
+        heap.offer(9, 5.0f);
+        heap.offer(4, 5.0f);
+        heap.offer(1, 4.5f);
+        heap.sort();
+
+        assertArrayEquals(new int[] { 2, 4, 7 }, heap.ids);
+    }
+}